@@ -3,6 +3,7 @@ package com.keimi.okamoto.app.items;
 import java.io.Serializable;
 
 public class ContactImpl implements Contact, Serializable {
+    private static final long serialVersionUID = 2882201626654912661L;
     private int id;
     private String name;
     private String note;
@@ -6,6 +6,8 @@ import java.util.Calendar;
 import java.util.Set;
 
 public class FutureMeetingImpl extends MeetingImpl implements FutureMeeting {
+    private static final long serialVersionUID = 1828011131910442317L;
+
     /**
      * Constructor method
      *
@@ -17,4 +19,16 @@ public class FutureMeetingImpl extends MeetingImpl implements FutureMeeting {
     public FutureMeetingImpl(int id, Calendar date, Set<Contact> aListOfContacts) throws IllegalMeetingException {
         super(id, date, aListOfContacts);
     }
+
+    /**
+     * Constructor method
+     *
+     * @param id              an id for a future meeting
+     * @param date            a date for the meeting, in milliseconds since the epoch
+     * @param aListOfContacts a list of contacts
+     * @throws com.keimi.okamoto.app.utils.IllegalMeetingException if there is not more than one contact in the list
+     */
+    public FutureMeetingImpl(int id, long date, Set<Contact> aListOfContacts) throws IllegalMeetingException {
+        super(id, date, aListOfContacts);
+    }
 }
@@ -23,6 +23,13 @@ public interface Meeting {
      */
     Calendar getDate();
 
+    /**
+     * Return the date of the meeting without creating a Calendar.
+     *
+     * @return the date of the meeting, in milliseconds since the epoch.
+     */
+    long getTime();
+
     /**
      * Return the details of people that attended the meeting.
      * The list contains a minimum of one contact (if there were
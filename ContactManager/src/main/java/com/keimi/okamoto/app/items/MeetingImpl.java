@@ -6,13 +6,20 @@ package com.keimi.okamoto.app.items;
 
 import com.keimi.okamoto.app.utils.IllegalMeetingException;
 
-import java.io.Serializable;
+import java.io.*;
 import java.util.Calendar;
 import java.util.Set;
 
 public class MeetingImpl implements Meeting, Serializable {
+    private static final long serialVersionUID = -7156087836395660736L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("date", Calendar.class),
+            new ObjectStreamField("time", long.class),
+            new ObjectStreamField("aListOfContacts", Set.class)
+    };
     private int id = 0;
-    private Calendar date;
+    private long date;
     private Set<Contact> aListOfContacts;
 
     /**
@@ -24,12 +31,44 @@ public class MeetingImpl implements Meeting, Serializable {
      * @throws com.keimi.okamoto.app.utils.IllegalMeetingException if there is not more than one contact in the list
      */
     public MeetingImpl(int id, Calendar date, Set<Contact> aListOfContacts) throws IllegalMeetingException {
+        this(id, date.getTimeInMillis(), aListOfContacts);
+    }
+
+    /**
+     * Constructor for MeetingImpl
+     *
+     * @param id              an id for a meeting
+     * @param date            a date for the meeting, in milliseconds since the epoch
+     * @param aListOfContacts a list of contacts
+     * @throws com.keimi.okamoto.app.utils.IllegalMeetingException if there is not more than one contact in the list
+     */
+    public MeetingImpl(int id, long date, Set<Contact> aListOfContacts) throws IllegalMeetingException {
         if (aListOfContacts.size() < 1) throw new IllegalMeetingException();
         this.id = id;
         this.date = date;
         this.aListOfContacts = aListOfContacts;
     }
 
+    /*
+     * The first meetings written kept the date as a Calendar, which is still read. The date is now written as its time.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("time", date);
+        fields.put("aListOfContacts", aListOfContacts);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        Calendar calendar = (Calendar) fields.get("date", null);
+        date = calendar != null ? calendar.getTimeInMillis() : fields.get("time", 0L);
+        aListOfContacts = (Set<Contact>) fields.get("aListOfContacts", null);
+    }
+
     @Override
     public int getId() {
         return id;
@@ -37,6 +76,13 @@ public class MeetingImpl implements Meeting, Serializable {
 
     @Override
     public Calendar getDate() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(date);
+        return calendar;
+    }
+
+    @Override
+    public long getTime() {
         return date;
     }
 
@@ -7,6 +7,7 @@ import java.util.Set;
 
 
 public class PastMeetingImpl extends MeetingImpl implements PastMeeting {
+    private static final long serialVersionUID = 2095250005138373983L;
     private String note = "";
 
     /**
@@ -18,6 +19,18 @@ public class PastMeetingImpl extends MeetingImpl implements PastMeeting {
      * @throws com.keimi.okamoto.app.utils.IllegalMeetingException if there is not more than one contact in the list
      */
     public PastMeetingImpl(int id, Calendar date, Set<Contact> aListOfContacts, String notes) throws IllegalMeetingException {
+        this(id, date.getTimeInMillis(), aListOfContacts, notes);
+    }
+
+    /**
+     * Constructor for PastMeetingImpl
+     *
+     * @param id              an id for a PastMeeting
+     * @param date            a date for the PastMeeting, in milliseconds since the epoch
+     * @param aListOfContacts a list of contacts
+     * @throws com.keimi.okamoto.app.utils.IllegalMeetingException if there is not more than one contact in the list
+     */
+    public PastMeetingImpl(int id, long date, Set<Contact> aListOfContacts, String notes) throws IllegalMeetingException {
         super(id, date, aListOfContacts);
         if (notes == null) {
             this.note = "";
@@ -0,0 +1,566 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.*;
+import com.keimi.okamoto.app.utils.*;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A MeetingContainer that keeps meetings in parallel primitive columns
+ * instead of one object per meeting. A row holds the id, the date in
+ * milliseconds, the position of the attendees in a shared pool of
+ * contact ids and the notes, which are null while the meeting is in
+ * the future. A column of rows sorted by date answers date queries with
+ * a binary search.
+ * <p/>
+ * Meetings handed out are light views over a row, made on demand.
+ * Contacts are looked up by id in the ContactsContainer when a view's
+ * contacts are asked for.
+ * <p/>
+ * As with MeetingContainerImpl, changes must come from one thread at a
+ * time. New rows are put in date order when they are added, so queries
+ * change nothing and can be run together under a shared read lock, as
+ * OptimisticMeetingContainerImpl does.
+ */
+public class ColumnarMeetingContainerImpl implements MeetingContainer, Serializable {
+    private ContactsContainer aContactsContainer;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private int[] ids;
+    private long[] dates;
+    private int[] attendeeOffsets;
+    private int[] attendeeCounts;
+    private String[] notes;
+    private int rowCount;
+    private int[] rowsByDate;
+    private int datedRowCount;
+    private int[] attendeePool;
+    private int attendeePoolSize;
+    private RowIndex rowIndex;
+    private ContactMeetingIndex contactMeetingIndex;
+    private NotesIndex aNotesIndex;
+    private Clock aClock;
+    private Set<Integer> changedMeetingIds;
+
+    /**
+     * Constructor method for ColumnarMeetingContainerImpl
+     *
+     * @param aContactsContainer              the container the attendees are looked up in
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     */
+    public ColumnarMeetingContainerImpl(ContactsContainer aContactsContainer, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        this(aContactsContainer, aUniqueNumberGeneratorUtilities, SystemClockImpl.getInstance());
+    }
+
+    /**
+     * Constructor method for ColumnarMeetingContainerImpl
+     *
+     * @param aContactsContainer              the container the attendees are looked up in
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     * @param aClock                          the clock that decides what is in the past and the future
+     */
+    public ColumnarMeetingContainerImpl(ContactsContainer aContactsContainer, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock) {
+        this.aContactsContainer = aContactsContainer;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        this.aClock = aClock;
+        changedMeetingIds = new HashSet<>();
+        ids = new int[16];
+        dates = new long[16];
+        attendeeOffsets = new int[16];
+        attendeeCounts = new int[16];
+        notes = new String[16];
+        rowsByDate = new int[16];
+        attendeePool = new int[64];
+        rowIndex = new RowIndex();
+        contactMeetingIndex = new ContactMeetingIndexImpl();
+        aNotesIndex = new NotesIndexImpl();
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+
+        return addFutureMeeting(aSetOfContacts, date.getTimeInMillis());
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, long date) throws IllegalArgumentException {
+        if (checkForPast(date) || aSetOfContacts == null || aSetOfContacts.isEmpty()) throw new IllegalArgumentException();
+
+        int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        addRow(uniqueID, date, aSetOfContacts, null);
+        indexNewRows();
+        return uniqueID;
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+
+        return addPastMeeting(aSetOfContacts, date.getTimeInMillis(), notes);
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, long date, String notes) throws IllegalArgumentException {
+        if (checkForFuture(date) || aSetOfContacts == null || aSetOfContacts.isEmpty() || notes == null) {
+            throw new IllegalArgumentException();
+        }
+
+        int id = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        addRow(id, date, aSetOfContacts, notes);
+        indexNewRows();
+        return id;
+    }
+
+    @Override
+    public void restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) throws IllegalArgumentException {
+        if (aSetOfContacts == null || aSetOfContacts.isEmpty()) throw new IllegalArgumentException();
+        aUniqueNumberGeneratorUtilities.skipPast(id);
+
+        int row = rowIndex.get(id);
+        if (row < 0) {
+            addRow(id, date, aSetOfContacts, notes);
+            indexNewRows();
+        } else if (notes != null) {
+            convertToPastMeeting(view(row), notes);
+        }
+    }
+
+    @Override
+    public int addMeetings(List<Set<Contact>> contactSets, long[] dates, List<String> notes) throws IllegalArgumentException {
+        if (contactSets == null || dates == null || notes == null) throw new IllegalArgumentException();
+        if (contactSets.size() != dates.length || notes.size() != dates.length) throw new IllegalArgumentException();
+        for (Set<Contact> aSetOfContacts : contactSets) {
+            if (aSetOfContacts == null || aSetOfContacts.isEmpty()) throw new IllegalArgumentException();
+        }
+        if (dates.length == 0) return -1;
+
+        int firstId = aUniqueNumberGeneratorUtilities.reserve(dates.length);
+        for (int i = 0; i < dates.length; i++) {
+            addRow(firstId + i, dates[i], contactSets.get(i), notes.get(i));
+        }
+        indexNewRows();
+        return firstId;
+    }
+
+    /*
+     * Helper method that appends a meeting to the columns and indexes it
+     */
+    private void addRow(int id, long time, Set<Contact> aSetOfContacts, String meetingNotes) {
+        if (rowCount == ids.length) {
+            int capacity = rowCount * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            dates = Arrays.copyOf(dates, capacity);
+            attendeeOffsets = Arrays.copyOf(attendeeOffsets, capacity);
+            attendeeCounts = Arrays.copyOf(attendeeCounts, capacity);
+            notes = Arrays.copyOf(notes, capacity);
+        }
+        if (attendeePoolSize + aSetOfContacts.size() > attendeePool.length) {
+            attendeePool = Arrays.copyOf(attendeePool, Math.max(attendeePool.length * 2, attendeePoolSize + aSetOfContacts.size()));
+        }
+
+        int row = rowCount++;
+        ids[row] = id;
+        dates[row] = time;
+        notes[row] = meetingNotes;
+        attendeeOffsets[row] = attendeePoolSize;
+        attendeeCounts[row] = aSetOfContacts.size();
+        boolean past = meetingNotes != null;
+        for (Contact contact : aSetOfContacts) {
+            attendeePool[attendeePoolSize++] = contact.getId();
+            contactMeetingIndex.addMeeting(contact.getId(), time, id, past);
+        }
+        rowIndex.put(id, row);
+        changedMeetingIds.add(id);
+        if (past) {
+            aNotesIndex.addNotes(id, meetingNotes);
+        }
+    }
+
+    @Override
+    public boolean checkForFuture(Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+        return checkForFuture(date.getTimeInMillis());
+    }
+
+    @Override
+    public boolean checkForFuture(long date) {
+        return date > aClock.currentTimeMillis();
+    }
+
+    @Override
+    public boolean checkForPast(Calendar date) throws IllegalArgumentException {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForPast(long date) {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        int row = rowIndex.get(id);
+        if (row < 0) {
+            return null;
+        }
+        return notes[row] == null ? new FutureMeetingView(row) : null;
+    }
+
+    @Override
+    public Meeting getMeeting(int id) {
+        int row = rowIndex.get(id);
+        return row < 0 ? null : view(row);
+    }
+
+    @Override
+    public Collection<Meeting> getAllMeetings() {
+        List<Meeting> meetings = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            meetings.add(view(row));
+        }
+        return Collections.unmodifiableList(meetings);
+    }
+
+    @Override
+    public Set<Integer> takeChangedMeetingIds() {
+        Set<Integer> changed = changedMeetingIds;
+        changedMeetingIds = new HashSet<>();
+        return changed;
+    }
+
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        int row = rowIndex.get(id);
+        if (row < 0) {
+            return null;
+        }
+        return notes[row] != null ? new PastMeetingView(row) : null;
+    }
+
+    @Override
+    public void convertToPastMeeting(Meeting aMeeting, String meetingNotes) throws IllegalArgumentException {
+        if (aMeeting == null || meetingNotes == null) throw new IllegalArgumentException();
+
+        int row = rowIndex.get(aMeeting.getId());
+        if (row < 0) throw new IllegalArgumentException();
+
+        int id = ids[row];
+        if (notes[row] == null) {
+            for (int i = attendeeOffsets[row]; i < attendeeOffsets[row] + attendeeCounts[row]; i++) {
+                contactMeetingIndex.removeMeeting(attendeePool[i], dates[row], id, false);
+                contactMeetingIndex.addMeeting(attendeePool[i], dates[row], id, true);
+            }
+        } else {
+            aNotesIndex.removeNotes(id, notes[row]);
+        }
+        notes[row] = meetingNotes;
+        aNotesIndex.addNotes(id, meetingNotes);
+        changedMeetingIds.add(id);
+    }
+
+    @Override
+    public int[] getMeetingIdListBy(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return contactMeetingIndex.getMeetingIds(contact.getId(), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<FutureMeeting> getFutureMeetings(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), false));
+    }
+
+    @Override
+    public List<PastMeeting> getPastMeetings(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), true));
+    }
+
+    @Override
+    public Set<Integer> getMeetingIdListBy(Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+
+        Calendar startOfDay = (Calendar) date.clone();
+        startOfDay.set(Calendar.HOUR_OF_DAY, 0);
+        startOfDay.set(Calendar.MINUTE, 0);
+        startOfDay.set(Calendar.SECOND, 0);
+        startOfDay.set(Calendar.MILLISECOND, 0);
+        Calendar startOfNextDay = (Calendar) startOfDay.clone();
+        startOfNextDay.add(Calendar.DATE, 1);
+
+        Set<Integer> meetingIds = new LinkedHashSet<>();
+        for (int row : getRowsBetween(startOfDay.getTimeInMillis(), startOfNextDay.getTimeInMillis())) {
+            meetingIds.add(ids[row]);
+        }
+        return meetingIds;
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(long from, long to) {
+        int[] rows = getRowsBetween(from, to);
+        List<Meeting> meetings = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            meetings.add(view(row));
+        }
+        return meetings;
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(contact, from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, long from, long to) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), from, to));
+    }
+
+    @Override
+    public int getMeetingCount(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return contactMeetingIndex.getMeetingCount(contact.getId());
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        return aNotesIndex.search(query, matchAll);
+    }
+
+    /*
+     * Helper method that finds the rows from the start time (inclusive) to the end
+     * time (exclusive) in rowsByDate, in chronological order
+     */
+    private int[] getRowsBetween(long start, long end) {
+        int from = firstRowFrom(start);
+        int to = firstRowFrom(end);
+        return from < to ? Arrays.copyOfRange(rowsByDate, from, to) : new int[0];
+    }
+
+    /*
+     * Binary search for the first position in rowsByDate at or after the time
+     */
+    private int firstRowFrom(long time) {
+        int low = 0;
+        int high = datedRowCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dates[rowsByDate[middle]] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Adds the rows added by the last change to rowsByDate. They are sorted on their
+     * own and merged in from the back, so rows added in date order only cost their
+     * own number, and a bulk load is sorted once.
+     */
+    private void indexNewRows() {
+        int newRowCount = rowCount - datedRowCount;
+        if (newRowCount == 0) return;
+
+        if (rowsByDate.length < rowCount) {
+            rowsByDate = Arrays.copyOf(rowsByDate, ids.length);
+        }
+        int[] newRows = new int[newRowCount];
+        for (int i = 0; i < newRowCount; i++) {
+            newRows[i] = datedRowCount + i;
+        }
+        sortRowsByDate(newRows, new int[newRowCount], 0, newRowCount);
+
+        int i = datedRowCount - 1;
+        int j = newRowCount - 1;
+        for (int k = rowCount - 1; j >= 0; k--) {
+            // at the same time the rows already indexed were added first, so they stay first
+            if (i >= 0 && dates[rowsByDate[i]] > dates[newRows[j]]) {
+                rowsByDate[k] = rowsByDate[i--];
+            } else {
+                rowsByDate[k] = newRows[j--];
+            }
+        }
+        datedRowCount = rowCount;
+    }
+
+    /*
+     * Stable merge sort of rows by their date, so meetings at the same
+     * time stay in the order they were added
+     */
+    private void sortRowsByDate(int[] rows, int[] buffer, int from, int to) {
+        if (to - from < 2) return;
+
+        int middle = (from + to) >>> 1;
+        sortRowsByDate(rows, buffer, from, middle);
+        sortRowsByDate(rows, buffer, middle, to);
+        if (dates[rows[middle - 1]] <= dates[rows[middle]]) return;
+
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j == to || (i < middle && dates[buffer[i]] <= dates[buffer[j]])) {
+                rows[k] = buffer[i++];
+            } else {
+                rows[k] = buffer[j++];
+            }
+        }
+    }
+
+    /*
+     * Helper method that makes views of meetings by id, keeping the order of the ids
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Meeting> List<T> listMeetings(int[] meetingIds) {
+        List<T> meetings = new ArrayList<>(meetingIds.length);
+        for (int id : meetingIds) {
+            meetings.add((T) view(rowIndex.get(id)));
+        }
+        return meetings;
+    }
+
+    private Meeting view(int row) {
+        return notes[row] == null ? new FutureMeetingView(row) : new PastMeetingView(row);
+    }
+
+    /*
+     * A meeting that reads its fields from a row of the columns
+     */
+    private abstract class MeetingView implements Meeting {
+        protected final int row;
+
+        private MeetingView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public int getId() {
+            return ids[row];
+        }
+
+        @Override
+        public Calendar getDate() {
+            Calendar date = Calendar.getInstance();
+            date.setTimeInMillis(dates[row]);
+            return date;
+        }
+
+        @Override
+        public long getTime() {
+            return dates[row];
+        }
+
+        @Override
+        public Set<Contact> getContacts() {
+            Set<Contact> contacts = new HashSet<>();
+            for (int i = attendeeOffsets[row]; i < attendeeOffsets[row] + attendeeCounts[row]; i++) {
+                contacts.add(aContactsContainer.getContact(attendeePool[i]));
+            }
+            return contacts;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MeetingView && ((MeetingView) o).row == row && getClass() == o.getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            return row;
+        }
+    }
+
+    private class FutureMeetingView extends MeetingView implements FutureMeeting {
+        private FutureMeetingView(int row) {
+            super(row);
+        }
+    }
+
+    private class PastMeetingView extends MeetingView implements PastMeeting {
+        private PastMeetingView(int row) {
+            super(row);
+        }
+
+        @Override
+        public String getNotes() {
+            return notes[row];
+        }
+    }
+
+    /*
+     * Open addressing table from meeting id to row
+     */
+    private static class RowIndex implements Serializable {
+        private int[] keys = new int[32];
+        private int[] rows = new int[32];
+        private int size;
+
+        private RowIndex() {
+            Arrays.fill(rows, -1);
+        }
+
+        private int get(int id) {
+            int mask = keys.length - 1;
+            for (int i = hash(id) & mask; rows[i] >= 0; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    return rows[i];
+                }
+            }
+            return -1;
+        }
+
+        private void put(int id, int row) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (rows[i] >= 0 && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (rows[i] < 0) {
+                size++;
+            }
+            keys[i] = id;
+            rows[i] = row;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldRows = rows;
+            keys = new int[oldKeys.length * 2];
+            rows = new int[oldRows.length * 2];
+            Arrays.fill(rows, -1);
+            size = 0;
+            for (int i = 0; i < oldRows.length; i++) {
+                if (oldRows[i] >= 0) {
+                    put(oldKeys[i], oldRows[i]);
+                }
+            }
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.FutureMeeting;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.utils.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A ContactManager that many threads can use at once.
+ * <p/>
+ * It is meant to be given a ConcurrentContactsContainerImpl and a
+ * ConcurrentMeetingContainerImpl, which can be read and added to without
+ * a lock. Queries go straight to the containers. Changes share the read
+ * side of a read-write lock, so they run side by side with each other,
+ * while flush, import and export take the write side, so a flush never
+ * writes a change half made and the shutdown hook cannot race one.
+ * <p/>
+ * Data read back by the DiskWriter comes in the DiskWriter's own
+ * containers, which are not thread-safe, so it is copied into the
+ * containers given, keeping its ids.
+ */
+public class ConcurrentContactManagerImpl implements ContactManager {
+    private static final int IMPORT_CHUNK_SIZE = 10000;
+
+    private final ContactsContainer aContactsContainer;
+    private final MeetingContainer aMeetingContainer;
+    private final DiskWriter aDiskWriter;
+    private final ReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private volatile PersistenceService aPersistenceService;
+
+    /**
+     * Constructor for ConcurrentContactManagerImpl
+     *
+     * @param aContactsContainer a thread-safe container that holds contacts
+     * @param aMeetingContainer  a thread-safe container that holds meetings
+     * @param aDiskWriter        the DiskWriter the data is read and written with
+     */
+    public ConcurrentContactManagerImpl(ContactsContainer aContactsContainer, MeetingContainer aMeetingContainer, DiskWriter aDiskWriter) {
+        this.aContactsContainer = aContactsContainer;
+        this.aMeetingContainer = aMeetingContainer;
+        this.aDiskWriter = aDiskWriter;
+        if (aDiskWriter.checkIfDataExists()) {
+            aDiskWriter.readDisk();
+            copyFrom(aDiskWriter.getContactContainer(), aDiskWriter.getMeetingContainer());
+        }
+        addShutdownHook();
+    }
+
+    /**
+     * Constructor for a ConcurrentContactManagerImpl that writes to disk in the background.
+     * Changes are written together once they have waited for the given time or
+     * once there are the given number of them, whichever comes first.
+     *
+     * @param aContactsContainer a thread-safe container that holds contacts
+     * @param aMeetingContainer  a thread-safe container that holds meetings
+     * @param aDiskWriter        the DiskWriter the changes are written with
+     * @param flushWindowMillis  the longest a change waits before it is written
+     * @param flushWindowSize    the number of changes that are written without waiting
+     */
+    public ConcurrentContactManagerImpl(ContactsContainer aContactsContainer, MeetingContainer aMeetingContainer, DiskWriter aDiskWriter,
+                                        long flushWindowMillis, int flushWindowSize) {
+        this(aContactsContainer, aMeetingContainer, aDiskWriter);
+        aPersistenceService = new PersistenceServiceImpl(commit(), flushWindowMillis, flushWindowSize);
+    }
+
+    /*
+     * Copies what was read from disk into the containers, contacts first so the meetings can find them,
+     * and then forgets the changes, as they are already on disk
+     */
+    private void copyFrom(ContactsContainer readContacts, MeetingContainer readMeetings) {
+        if (readContacts == null || readMeetings == null) return;
+
+        for (Contact contact : readContacts.getAllContacts()) {
+            aContactsContainer.restoreContact(contact.getId(), contact.getName(), contact.getNotes());
+        }
+        for (Meeting meeting : readMeetings.getAllMeetings()) {
+            Set<Contact> attendees = new HashSet<>();
+            for (Contact contact : meeting.getContacts()) {
+                Contact copied = aContactsContainer.getContact(contact.getId());
+                if (copied != null) {
+                    attendees.add(copied);
+                }
+            }
+            String notes = meeting instanceof PastMeeting ? ((PastMeeting) meeting).getNotes() : null;
+            aMeetingContainer.restoreMeeting(meeting.getId(), attendees, meeting.getTime(), notes);
+        }
+        aContactsContainer.takeChangedContactIds();
+        aMeetingContainer.takeChangedMeetingIds();
+    }
+
+    private void addShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                if (aPersistenceService != null) {
+                    aPersistenceService.shutdown();
+                } else {
+                    flush();
+                }
+            }
+        });
+    }
+
+    /*
+     * Tells the DiskWriter and the persistence service about a change. DiskWriters are not
+     * all thread-safe, so only one change is recorded with the DiskWriter at a time.
+     */
+    private void recordMeeting(int id) {
+        synchronized (aDiskWriter) {
+            aDiskWriter.recordMeeting(aMeetingContainer.getMeeting(id));
+        }
+        if (aPersistenceService != null) {
+            aPersistenceService.recordMutation();
+        }
+    }
+
+    private void recordContact(int id) {
+        synchronized (aDiskWriter) {
+            aDiskWriter.recordContact(aContactsContainer.getContact(id));
+        }
+        if (aPersistenceService != null) {
+            aPersistenceService.recordMutation();
+        }
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) throws IllegalArgumentException {
+        if (!aMeetingContainer.checkForFuture(date) || !aContactsContainer.checkForValidSetOfContacts(contacts)) {
+            throw new IllegalArgumentException();
+        }
+        commitLock.readLock().lock();
+        try {
+            int id = aMeetingContainer.addFutureMeeting(contacts, date);
+            recordMeeting(id);
+            return id;
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, long date) throws IllegalArgumentException {
+        if (!aMeetingContainer.checkForFuture(date) || !aContactsContainer.checkForValidSetOfContacts(contacts)) {
+            throw new IllegalArgumentException();
+        }
+        commitLock.readLock().lock();
+        try {
+            int id = aMeetingContainer.addFutureMeeting(contacts, date);
+            recordMeeting(id);
+            return id;
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PastMeeting getPastMeeting(int id) throws IllegalArgumentException {
+        Meeting aMeeting = aMeetingContainer.getMeeting(id);
+        if (aMeeting != null && aMeetingContainer.checkForFuture(aMeeting.getTime())) {
+            throw new IllegalArgumentException();
+        }
+        return aMeeting instanceof PastMeeting ? (PastMeeting) aMeeting : null;
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) throws IllegalArgumentException {
+        Meeting aMeeting = aMeetingContainer.getMeeting(id);
+        if (aMeeting != null && aMeetingContainer.checkForPast(aMeeting.getTime())) {
+            throw new IllegalArgumentException();
+        }
+        return aMeeting instanceof FutureMeeting ? (FutureMeeting) aMeeting : null;
+    }
+
+    @Override
+    public Meeting getMeeting(int id) {
+        return aMeetingContainer.getMeeting(id);
+    }
+
+    @Override
+    public List<Meeting> getFutureMeetingList(Contact contact) throws IllegalArgumentException {
+        if (!aContactsContainer.checkForValidName(contact.getName())) throw new IllegalArgumentException();
+
+        return new ArrayList<Meeting>(aMeetingContainer.getFutureMeetings(contact));
+    }
+
+    @Override
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        Set<Integer> meetingIds = aMeetingContainer.getMeetingIdListBy(date);
+        List<Meeting> meetings = new ArrayList<>();
+        if (meetingIds != null) {
+            for (int id : meetingIds) {
+                Meeting aMeeting = aMeetingContainer.getMeeting(id);
+                if (aMeeting instanceof FutureMeeting) {
+                    meetings.add(aMeeting);
+                }
+            }
+        }
+        return meetings;
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) throws NullPointerException, IllegalArgumentException {
+        if (from == null || to == null) throw new NullPointerException();
+        if (from.after(to)) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getMeetings(from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(long from, long to) throws IllegalArgumentException {
+        if (from > to) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getMeetings(from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) throws NullPointerException, IllegalArgumentException {
+        if (contact == null || from == null || to == null) throw new NullPointerException();
+        if (from.after(to) || !aContactsContainer.checkForValidId(contact.getId())) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getMeetings(contact, from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, long from, long to) throws NullPointerException, IllegalArgumentException {
+        if (contact == null) throw new NullPointerException();
+        if (from > to || !aContactsContainer.checkForValidId(contact.getId())) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getMeetings(contact, from, to);
+    }
+
+    @Override
+    public List<PastMeeting> getPastMeetingList(Contact contact) throws IllegalArgumentException {
+        if (!aContactsContainer.checkForValidName(contact.getName())) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getPastMeetings(contact);
+    }
+
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts, Calendar date, String notes) throws IllegalArgumentException, NullPointerException {
+        if (contacts == null || date == null || notes == null) throw new NullPointerException();
+        if (contacts.isEmpty() || !aContactsContainer.checkForValidSetOfContacts(contacts))
+            throw new IllegalArgumentException();
+
+        commitLock.readLock().lock();
+        try {
+            recordMeeting(aMeetingContainer.addPastMeeting(contacts, date, notes));
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts, long date, String notes) throws IllegalArgumentException, NullPointerException {
+        if (contacts == null || notes == null) throw new NullPointerException();
+        if (contacts.isEmpty() || !aContactsContainer.checkForValidSetOfContacts(contacts))
+            throw new IllegalArgumentException();
+
+        commitLock.readLock().lock();
+        try {
+            recordMeeting(aMeetingContainer.addPastMeeting(contacts, date, notes));
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addMeetingNotes(int id, String text) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+        if (text == null) throw new NullPointerException();
+
+        Meeting aMeeting = aMeetingContainer.getMeeting(id);
+
+        if (aMeeting == null) throw new IllegalArgumentException();
+        if (aMeetingContainer.checkForFuture(aMeeting.getTime())) throw new IllegalStateException();
+
+        commitLock.readLock().lock();
+        try {
+            aMeetingContainer.convertToPastMeeting(aMeeting, text);
+            recordMeeting(id);
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addNewContact(String name, String notes) throws NullPointerException {
+        if (name == null || notes == null) throw new NullPointerException();
+
+        commitLock.readLock().lock();
+        try {
+            recordContact(aContactsContainer.addContact(name, notes));
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Contact> getContacts(int... ids) throws IllegalArgumentException {
+        if (!aContactsContainer.checkForValidId(ids)) throw new IllegalArgumentException();
+
+        Set<Contact> result = new HashSet<>();
+        for (int id : ids) {
+            result.add(aContactsContainer.getContact(id));
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Contact> getContacts(String name) throws NullPointerException {
+        if (!aContactsContainer.checkForValidName(name)) throw new NullPointerException();
+
+        return aContactsContainer.getContacts(name);
+    }
+
+    @Override
+    public List<Contact> getContactsByPrefix(String prefix, int limit, boolean rankByMeetings) throws NullPointerException, IllegalArgumentException {
+        if (prefix == null) throw new NullPointerException();
+        if (limit < 1) throw new IllegalArgumentException();
+
+        if (!rankByMeetings) {
+            return aContactsContainer.getContactsByPrefix(prefix, limit);
+        }
+
+        return ContactManagerImpl.mostMet(aContactsContainer.iterateContactsByPrefix(prefix), aMeetingContainer, limit);
+    }
+
+    @Override
+    public Set<Integer> searchContactNotes(String query, boolean matchAll) throws NullPointerException {
+        if (query == null) throw new NullPointerException();
+
+        return aContactsContainer.searchNotes(query, matchAll);
+    }
+
+    @Override
+    public Set<Integer> searchMeetingNotes(String query, boolean matchAll) throws NullPointerException {
+        if (query == null) throw new NullPointerException();
+
+        return aMeetingContainer.searchNotes(query, matchAll);
+    }
+
+    /*
+     * The records are read before the lock is taken, so only adding them holds up other changes.
+     * They are added as a whole, so no flush made alongside them writes an import half way.
+     */
+    @Override
+    public int importData(Reader in, RecordFormat format) throws IOException, NullPointerException {
+        if (in == null || format == null) throw new NullPointerException();
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        BulkImporter.Batch batch = new BulkImporter(format, IMPORT_CHUNK_SIZE, threads).readRecords(in, aMeetingContainer);
+        int count;
+        commitLock.writeLock().lock();
+        try {
+            count = batch.addTo(aContactsContainer, aMeetingContainer);
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+        if (count > 0) {
+            flush();
+        }
+        return count;
+    }
+
+    @Override
+    public int exportData(Writer out, RecordFormat format) throws IOException, NullPointerException {
+        if (out == null || format == null) throw new NullPointerException();
+
+        commitLock.writeLock().lock();
+        try {
+            return new BulkExporter(format).exportRecords(out, aContactsContainer, aMeetingContainer);
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        write();
+    }
+
+    /*
+     * Returns whether the DiskWriter managed to write the data
+     */
+    private boolean write() {
+        commitLock.writeLock().lock();
+        try {
+            return aDiskWriter.writeToDisk(aContactsContainer, aMeetingContainer);
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * The commit run for flushAsync. A write that fails throws, which fails the Future of everyone waiting on it.
+     */
+    private Runnable commit() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (!write()) throw new IllegalStateException("The data could not be written");
+            }
+        };
+    }
+
+    @Override
+    public Future<Void> flushAsync() {
+        if (aPersistenceService != null) return aPersistenceService.flushAsync();
+
+        FutureTask<Void> commit = new FutureTask<>(commit(), null);
+        commit.run();
+        return commit;
+    }
+}
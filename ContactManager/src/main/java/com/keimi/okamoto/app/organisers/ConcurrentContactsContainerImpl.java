@@ -0,0 +1,222 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.utils.ConcurrentNotesIndexImpl;
+import com.keimi.okamoto.app.utils.ContactFactory;
+import com.keimi.okamoto.app.utils.NotesIndex;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * ContactsContainer that many threads can read and add to at once.
+ * <p/>
+ * The contacts and their indexes are kept in concurrent maps whose
+ * posting lists are concurrent sets, so reads take no lock. A new contact
+ * always has an id of its own, so adding contacts takes no lock either,
+ * as long as the unique number generator is thread-safe, like
+ * AtomicUniqueNumberGeneratorImpl. Only restoreContact, which can replace
+ * a contact and take it out of the indexes, is synchronized.
+ */
+public class ConcurrentContactsContainerImpl implements ContactsContainer {
+    private final ConcurrentMap<Integer, Contact> contactMap;
+    private final ConcurrentMap<String, Set<Contact>> nameIndex;
+    private final ConcurrentNavigableMap<String, Set<Contact>> prefixIndex;
+    private final NotesIndex aNotesIndex;
+    private final Set<Integer> changedContactIds;
+    private final ContactFactory aContactFactory;
+    private final UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+
+    /**
+     * Constructor for ConcurrentContactsContainerImpl
+     *
+     * @param aContactFactory                 the factory the contacts are made with
+     * @param aUniqueNumberGeneratorUtilities a thread-safe unique number generator
+     */
+    public ConcurrentContactsContainerImpl(ContactFactory aContactFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        contactMap = new ConcurrentHashMap<>();
+        nameIndex = new ConcurrentHashMap<>();
+        prefixIndex = new ConcurrentSkipListMap<>();
+        aNotesIndex = new ConcurrentNotesIndexImpl();
+        changedContactIds = newConcurrentSet();
+        this.aContactFactory = aContactFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+    }
+
+    private static <T> Set<T> newConcurrentSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+    }
+
+    @Override
+    public int addContact(String name, String notes) throws IllegalArgumentException {
+        if (name == null || notes == null) throw new IllegalArgumentException();
+        int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+
+        putContact(uniqueID, aContactFactory.createContact(uniqueID, name, notes));
+        return uniqueID;
+    }
+
+    @Override
+    public synchronized void restoreContact(int contactId, String name, String notes) throws IllegalArgumentException {
+        if (name == null || notes == null) throw new IllegalArgumentException();
+        aUniqueNumberGeneratorUtilities.skipPast(contactId);
+
+        putContact(contactId, aContactFactory.createContact(contactId, name, notes));
+    }
+
+    @Override
+    public int addContacts(List<String> names, List<String> notes) throws IllegalArgumentException {
+        if (names == null || notes == null || names.size() != notes.size()) throw new IllegalArgumentException();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i) == null || notes.get(i) == null) throw new IllegalArgumentException();
+        }
+        if (names.isEmpty()) return -1;
+
+        int firstId = aUniqueNumberGeneratorUtilities.reserve(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            putContact(firstId + i, aContactFactory.createContact(firstId + i, names.get(i), notes.get(i)));
+        }
+        return firstId;
+    }
+
+    /*
+     * Stores a contact and indexes it, taking a replaced contact out of the indexes.
+     * The contact goes into the map last, so it is never found before it can be found by name.
+     */
+    private void putContact(int contactId, Contact aNewContact) {
+        if (aNewContact == null) return;
+
+        addToIndex(nameIndex, aNewContact.getName(), aNewContact);
+        addToIndex(prefixIndex, toPrefixKey(aNewContact.getName()), aNewContact);
+        aNotesIndex.addNotes(contactId, aNewContact.getNotes());
+        Contact aReplacedContact = contactMap.put(contactId, aNewContact);
+        changedContactIds.add(contactId);
+        if (aReplacedContact != null) {
+            removeFromIndex(nameIndex, aReplacedContact.getName(), aReplacedContact);
+            removeFromIndex(prefixIndex, toPrefixKey(aReplacedContact.getName()), aReplacedContact);
+            if (!aReplacedContact.getNotes().equals(aNewContact.getNotes())) {
+                aNotesIndex.removeNotes(contactId, aReplacedContact.getNotes());
+                aNotesIndex.addNotes(contactId, aNewContact.getNotes());
+            }
+        }
+    }
+
+    private void addToIndex(ConcurrentMap<String, Set<Contact>> index, String key, Contact aContact) {
+        Set<Contact> contacts = index.get(key);
+        if (contacts == null) {
+            Set<Contact> newContacts = newConcurrentSet();
+            contacts = index.putIfAbsent(key, newContacts);
+            if (contacts == null) {
+                contacts = newContacts;
+            }
+        }
+        contacts.add(aContact);
+    }
+
+    /*
+     * An empty set is left in the index, as taking it out could lose a contact being added to it at the same time
+     */
+    private void removeFromIndex(ConcurrentMap<String, Set<Contact>> index, String key, Contact aContact) {
+        Set<Contact> contacts = index.get(key);
+        if (contacts != null) {
+            contacts.remove(aContact);
+        }
+    }
+
+    private String toPrefixKey(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    @Override
+    public Contact getContact(int contactId) {
+        return contactMap.get(contactId);
+    }
+
+    @Override
+    public Collection<Contact> getAllContacts() {
+        return Collections.unmodifiableCollection(contactMap.values());
+    }
+
+    /*
+     * Ids are taken out one at a time, so an id added while this runs is either returned now or kept for next time
+     */
+    @Override
+    public Set<Integer> takeChangedContactIds() {
+        Set<Integer> changed = new HashSet<>();
+        for (Iterator<Integer> ids = changedContactIds.iterator(); ids.hasNext(); ) {
+            changed.add(ids.next());
+            ids.remove();
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean checkForValidId(int... ids) {
+        for (int id : ids) {
+            if (!contactMap.containsKey(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Set<Contact> getContacts(String name) throws IllegalArgumentException {
+        if (name == null) throw new IllegalArgumentException();
+
+        Set<Contact> contacts = nameIndex.get(name);
+        if (contacts == null) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(contacts);
+    }
+
+    @Override
+    public boolean checkForValidName(String name) throws IllegalArgumentException {
+        if (name == null) throw new IllegalArgumentException();
+
+        Set<Contact> contacts = nameIndex.get(name);
+        return contacts != null && !contacts.isEmpty();
+    }
+
+    @Override
+    public List<Contact> getContactsByPrefix(String prefix, int limit) throws IllegalArgumentException {
+        if (prefix == null || limit < 1) throw new IllegalArgumentException();
+
+        List<Contact> result = new ArrayList<>();
+        for (Iterator<Contact> contacts = iterateContactsByPrefix(prefix); contacts.hasNext() && result.size() < limit; ) {
+            result.add(contacts.next());
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<Contact> iterateContactsByPrefix(String prefix) throws IllegalArgumentException {
+        if (prefix == null) throw new IllegalArgumentException();
+
+        return new PrefixIterator(prefixIndex, toPrefixKey(prefix));
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        return aNotesIndex.search(query, matchAll);
+    }
+
+    @Override
+    public boolean checkForValidSetOfContacts(Set<Contact> aSetOfContacts) throws IllegalArgumentException {
+        if (aSetOfContacts == null) throw new IllegalArgumentException();
+
+        for (Contact c : aSetOfContacts) {
+            if (checkForValidId(c.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,424 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.*;
+import com.keimi.okamoto.app.utils.SystemClockImpl;
+import com.keimi.okamoto.app.utils.Clock;
+import com.keimi.okamoto.app.utils.ConcurrentNotesIndexImpl;
+import com.keimi.okamoto.app.utils.ContactMeetingIndex;
+import com.keimi.okamoto.app.utils.IllegalMeetingException;
+import com.keimi.okamoto.app.utils.MeetingFactory;
+import com.keimi.okamoto.app.utils.NotesIndex;
+import com.keimi.okamoto.app.utils.StripedContactMeetingIndexImpl;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * MeetingContainer that many threads can read and add to at once.
+ * <p/>
+ * Meetings are kept in a ConcurrentHashMap, the dates in a concurrent
+ * skip list and the notes in a ConcurrentNotesIndexImpl, so reads take
+ * no lock, and neither do additions as long as the unique number
+ * generator is thread-safe, like AtomicUniqueNumberGeneratorImpl. The
+ * meetings of each contact are kept in a StripedContactMeetingIndexImpl,
+ * which locks only the stripe of the contact being read or changed.
+ * Changes to a meeting that is already held, converting it to a past
+ * meeting or restoring it again, lock a stripe of meeting ids, so two
+ * threads never change the same meeting at once.
+ */
+public class ConcurrentMeetingContainerImpl implements MeetingContainer {
+    private static final int STRIPES = 64;
+
+    private final ConcurrentMap<Integer, Meeting> aMeetingMap;
+    private final UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private final MeetingFactory aMeetingFactory;
+    private final ContactMeetingIndex contactMeetingIndex;
+    private final NotesIndex aNotesIndex;
+    private final ConcurrentNavigableMap<Long, Set<Integer>> timeIndex;
+    private final Clock aClock;
+    private final Set<Integer> changedMeetingIds;
+    private final Object[] meetingLocks;
+
+    /**
+     * Constructor for ConcurrentMeetingContainerImpl
+     *
+     * @param aMeetingFactory                 a Factory in charge of creation of meetings
+     * @param aUniqueNumberGeneratorUtilities a thread-safe unique number generator
+     */
+    public ConcurrentMeetingContainerImpl(MeetingFactory aMeetingFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        this(aMeetingFactory, aUniqueNumberGeneratorUtilities, SystemClockImpl.getInstance());
+    }
+
+    /**
+     * Constructor for ConcurrentMeetingContainerImpl
+     *
+     * @param aMeetingFactory                 a Factory in charge of creation of meetings
+     * @param aUniqueNumberGeneratorUtilities a thread-safe unique number generator
+     * @param aClock                          the clock that decides what is in the past and the future
+     */
+    public ConcurrentMeetingContainerImpl(MeetingFactory aMeetingFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities,
+                                          Clock aClock) {
+        aMeetingMap = new ConcurrentHashMap<>();
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        this.aClock = aClock;
+        contactMeetingIndex = new StripedContactMeetingIndexImpl(STRIPES);
+        aNotesIndex = new ConcurrentNotesIndexImpl();
+        timeIndex = new ConcurrentSkipListMap<>();
+        changedMeetingIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        meetingLocks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            meetingLocks[i] = new Object();
+        }
+    }
+
+    private Object lockFor(int meetingId) {
+        return meetingLocks[(meetingId & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, Calendar date) throws IllegalArgumentException {
+        if (checkForPast(date)) throw new IllegalArgumentException();
+
+        return addFutureMeeting(aSetOfContacts, date.getTimeInMillis());
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, long date) throws IllegalArgumentException {
+        if (checkForPast(date)) throw new IllegalArgumentException();
+
+        int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        try {
+            putFutureMeeting(aSetOfContacts, date, uniqueID, aMeetingFactory.createFutureMeeting(uniqueID, date, aSetOfContacts));
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+        return uniqueID;
+    }
+
+    /*
+     * The meeting is indexed before it goes into the map, and queries leave out
+     * ids that are not in the map yet, so a meeting is never seen half added
+     */
+    private void putFutureMeeting(Set<Contact> aSetOfContacts, long time, int meetingId, FutureMeeting aNewMeeting) {
+        if (aNewMeeting == null) return;
+
+        addToContactMeetingIndex(aSetOfContacts, time, meetingId, false);
+        addToTimeIndex(time, meetingId);
+        aMeetingMap.put(meetingId, aNewMeeting);
+        changedMeetingIds.add(meetingId);
+    }
+
+    private void putPastMeeting(Set<Contact> aSetOfContacts, long time, Meeting aNewMeeting, String notes) {
+        if (aNewMeeting == null) return;
+
+        addToContactMeetingIndex(aSetOfContacts, time, aNewMeeting.getId(), true);
+        addToTimeIndex(time, aNewMeeting.getId());
+        aNotesIndex.addNotes(aNewMeeting.getId(), notes);
+        aMeetingMap.put(aNewMeeting.getId(), aNewMeeting);
+        changedMeetingIds.add(aNewMeeting.getId());
+    }
+
+    private void addToContactMeetingIndex(Set<Contact> aSetOfContacts, long time, int meetingId, boolean past) {
+        for (Contact contact : aSetOfContacts) {
+            contactMeetingIndex.addMeeting(contact.getId(), time, meetingId, past);
+        }
+    }
+
+    private void removeFromContactMeetingIndex(Set<Contact> aSetOfContacts, long time, int meetingId, boolean past) {
+        for (Contact contact : aSetOfContacts) {
+            contactMeetingIndex.removeMeeting(contact.getId(), time, meetingId, past);
+        }
+    }
+
+    /*
+     * The ids at one time are kept in id order, which is the order they were added in
+     */
+    private void addToTimeIndex(long time, int meetingId) {
+        Set<Integer> meetingIds = timeIndex.get(time);
+        if (meetingIds == null) {
+            Set<Integer> newMeetingIds = new ConcurrentSkipListSet<>();
+            meetingIds = timeIndex.putIfAbsent(time, newMeetingIds);
+            if (meetingIds == null) {
+                meetingIds = newMeetingIds;
+            }
+        }
+        meetingIds.add(meetingId);
+    }
+
+    /*
+     * Looks up meetings by id, keeping the order of the ids and leaving out any not yet in the map
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Meeting> List<T> listMeetings(int[] meetingIds) {
+        List<T> meetings = new ArrayList<>(meetingIds.length);
+        for (int id : meetingIds) {
+            Meeting aMeeting = aMeetingMap.get(id);
+            if (aMeeting != null) {
+                meetings.add((T) aMeeting);
+            }
+        }
+        return meetings;
+    }
+
+    private Set<Integer> getMeetingIdsBetween(long start, long end) {
+        Set<Integer> result = new LinkedHashSet<>();
+        if (start < end) {
+            for (Set<Integer> meetingIds : timeIndex.subMap(start, true, end, false).values()) {
+                result.addAll(meetingIds);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean checkForFuture(Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+        return checkForFuture(date.getTimeInMillis());
+    }
+
+    @Override
+    public boolean checkForFuture(long date) {
+        return date > aClock.currentTimeMillis();
+    }
+
+    @Override
+    public boolean checkForPast(Calendar date) throws IllegalArgumentException {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForPast(long date) {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting aMeeting = aMeetingMap.get(id);
+        return aMeeting instanceof FutureMeeting ? (FutureMeeting) aMeeting : null;
+    }
+
+    @Override
+    public Meeting getMeeting(int id) {
+        return aMeetingMap.get(id);
+    }
+
+    @Override
+    public Collection<Meeting> getAllMeetings() {
+        return Collections.unmodifiableCollection(aMeetingMap.values());
+    }
+
+    @Override
+    public Set<Integer> takeChangedMeetingIds() {
+        Set<Integer> changed = new HashSet<>();
+        for (Iterator<Integer> ids = changedMeetingIds.iterator(); ids.hasNext(); ) {
+            changed.add(ids.next());
+            ids.remove();
+        }
+        return changed;
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes) throws IllegalArgumentException {
+        if (checkForFuture(date) || aSetOfContacts == null || notes == null) throw new IllegalArgumentException();
+
+        return addPastMeeting(aSetOfContacts, date.getTimeInMillis(), notes);
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, long date, String notes) throws IllegalArgumentException {
+        if (checkForFuture(date) || aSetOfContacts == null || notes == null) throw new IllegalArgumentException();
+
+        int id = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        try {
+            putPastMeeting(aSetOfContacts, date, aMeetingFactory.createPastMeeting(id, aSetOfContacts, date, notes), notes);
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+        return id;
+    }
+
+    @Override
+    public void restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) throws IllegalArgumentException {
+        if (aSetOfContacts == null) throw new IllegalArgumentException();
+        aUniqueNumberGeneratorUtilities.skipPast(id);
+
+        synchronized (lockFor(id)) {
+            Meeting aMeeting = aMeetingMap.get(id);
+            if (aMeeting != null) {
+                if (notes != null) {
+                    convertToPastMeeting(aMeeting, notes);
+                }
+                return;
+            }
+            try {
+                if (notes == null) {
+                    putFutureMeeting(aSetOfContacts, date, id, aMeetingFactory.createFutureMeeting(id, date, aSetOfContacts));
+                } else {
+                    putPastMeeting(aSetOfContacts, date, aMeetingFactory.createPastMeeting(id, aSetOfContacts, date, notes), notes);
+                }
+            } catch (IllegalMeetingException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public int addMeetings(List<Set<Contact>> contactSets, long[] dates, List<String> notes) throws IllegalArgumentException {
+        if (contactSets == null || dates == null || notes == null) throw new IllegalArgumentException();
+        if (contactSets.size() != dates.length || notes.size() != dates.length) throw new IllegalArgumentException();
+        for (Set<Contact> aSetOfContacts : contactSets) {
+            if (aSetOfContacts == null || aSetOfContacts.isEmpty()) throw new IllegalArgumentException();
+        }
+        if (dates.length == 0) return -1;
+
+        int firstId = aUniqueNumberGeneratorUtilities.reserve(dates.length);
+        for (int i = 0; i < dates.length; i++) {
+            int id = firstId + i;
+            try {
+                if (notes.get(i) == null) {
+                    putFutureMeeting(contactSets.get(i), dates[i], id, aMeetingFactory.createFutureMeeting(id, dates[i], contactSets.get(i)));
+                } else {
+                    putPastMeeting(contactSets.get(i), dates[i],
+                            aMeetingFactory.createPastMeeting(id, contactSets.get(i), dates[i], notes.get(i)), notes.get(i));
+                }
+            } catch (IllegalMeetingException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        return firstId;
+    }
+
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        Meeting aMeeting = aMeetingMap.get(id);
+        return aMeeting instanceof PastMeeting ? (PastMeeting) aMeeting : null;
+    }
+
+    @Override
+    public void convertToPastMeeting(Meeting aMeeting, String notes) throws IllegalArgumentException {
+        if (aMeeting == null || notes == null) throw new IllegalArgumentException();
+
+        int meetingId = aMeeting.getId();
+        Calendar meetingDate = aMeeting.getDate();
+        Set<Contact> contactSet = aMeeting.getContacts();
+        long time = meetingDate.getTimeInMillis();
+
+        synchronized (lockFor(meetingId)) {
+            try {
+                PastMeeting pastMeeting = aMeetingFactory.createPastMeeting(meetingId, contactSet, meetingDate, notes);
+                aNotesIndex.addNotes(meetingId, notes);
+                Meeting aReplacedMeeting = aMeetingMap.put(meetingId, pastMeeting);
+                changedMeetingIds.add(meetingId);
+                if (aReplacedMeeting instanceof PastMeeting) {
+                    String replacedNotes = ((PastMeeting) aReplacedMeeting).getNotes();
+                    if (!notes.equals(replacedNotes)) {
+                        aNotesIndex.removeNotes(meetingId, replacedNotes);
+                        aNotesIndex.addNotes(meetingId, notes);
+                    }
+                }
+
+                removeFromContactMeetingIndex(contactSet, time, meetingId, false);
+                addToContactMeetingIndex(contactSet, time, meetingId, true);
+                addToTimeIndex(time, meetingId);
+            } catch (IllegalMeetingException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public int[] getMeetingIdListBy(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return contactMeetingIndex.getMeetingIds(contact.getId(), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<FutureMeeting> getFutureMeetings(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        List<FutureMeeting> meetings = new ArrayList<>();
+        for (Meeting aMeeting : this.<Meeting>listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), false))) {
+            // a meeting converted while this ran is already a past meeting
+            if (aMeeting instanceof FutureMeeting) {
+                meetings.add((FutureMeeting) aMeeting);
+            }
+        }
+        return meetings;
+    }
+
+    @Override
+    public List<PastMeeting> getPastMeetings(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), true));
+    }
+
+    @Override
+    public Set<Integer> getMeetingIdListBy(Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+
+        Calendar startOfDay = (Calendar) date.clone();
+        startOfDay.set(Calendar.HOUR_OF_DAY, 0);
+        startOfDay.set(Calendar.MINUTE, 0);
+        startOfDay.set(Calendar.SECOND, 0);
+        startOfDay.set(Calendar.MILLISECOND, 0);
+        Calendar startOfNextDay = (Calendar) startOfDay.clone();
+        startOfNextDay.add(Calendar.DATE, 1);
+
+        return getMeetingIdsBetween(startOfDay.getTimeInMillis(), startOfNextDay.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(long from, long to) {
+        List<Meeting> meetings = new ArrayList<>();
+        for (int id : getMeetingIdsBetween(from, to)) {
+            Meeting aMeeting = aMeetingMap.get(id);
+            if (aMeeting != null) {
+                meetings.add(aMeeting);
+            }
+        }
+        return meetings;
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(contact, from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, long from, long to) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), from, to));
+    }
+
+    @Override
+    public int getMeetingCount(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return contactMeetingIndex.getMeetingCount(contact.getId());
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        return aNotesIndex.search(query, matchAll);
+    }
+}
@@ -4,10 +4,15 @@ import com.keimi.okamoto.app.items.Contact;
 import com.keimi.okamoto.app.items.FutureMeeting;
 import com.keimi.okamoto.app.items.Meeting;
 import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.utils.RecordFormat;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 /**
  * A class to manage your contact and meetings
@@ -24,6 +29,17 @@ public interface ContactManager {
      */
     int addFutureMeeting(Set<Contact> contacts, Calendar date);
 
+    /**
+     * Add a new meeting to be held in the future.
+     *
+     * @param contacts a list of contacts that will participate in the meeting
+     * @param date     the date on which the meeting will take place, in milliseconds since the epoch
+     * @return the ID for the meeting
+     * @throws IllegalArgumentException if meeting is set for the time in the past,
+     *                                  of/if any contact is unknown/non-existant.
+     */
+    int addFutureMeeting(Set<Contact> contacts, long date);
+
     /**
      * Returns the PAST meeting with the requested ID, or null if it there is none.
      *
@@ -74,6 +90,67 @@ public interface ContactManager {
      */
     List<Meeting> getFutureMeetingList(Calendar date);
 
+    /**
+     * Returns the list of meetings that are scheduled for, or that took
+     * place, from one date (inclusive) up to another (exclusive).
+     * <p/>
+     * If there are none, the returned list will be empty. Otherwise,
+     * the list will be chronologically sorted and will not contain any duplicates.
+     *
+     * @param from the start of the period
+     * @param to   the end of the period
+     * @return the list of meetings
+     * @throws NullPointerException     if any of the arguments is null
+     * @throws IllegalArgumentException if from is after to
+     */
+    List<Meeting> getMeetings(Calendar from, Calendar to);
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took
+     * place, from one date (inclusive) up to another (exclusive).
+     * <p/>
+     * If there are none, the returned list will be empty. Otherwise,
+     * the list will be chronologically sorted and will not contain any duplicates.
+     *
+     * @param from the start of the period, in milliseconds since the epoch
+     * @param to   the end of the period, in milliseconds since the epoch
+     * @return the list of meetings
+     * @throws IllegalArgumentException if from is after to
+     */
+    List<Meeting> getMeetings(long from, long to);
+
+    /**
+     * Returns the list of meetings with this contact that are scheduled
+     * for, or that took place, from one date (inclusive) up to another (exclusive).
+     * <p/>
+     * If there are none, the returned list will be empty. Otherwise,
+     * the list will be chronologically sorted and will not contain any duplicates.
+     *
+     * @param contact one of the user’s contacts
+     * @param from    the start of the period
+     * @param to      the end of the period
+     * @return the list of meetings with this contact
+     * @throws NullPointerException     if any of the arguments is null
+     * @throws IllegalArgumentException if the contact does not exist, or from is after to
+     */
+    List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to);
+
+    /**
+     * Returns the list of meetings with this contact that are scheduled
+     * for, or that took place, from one date (inclusive) up to another (exclusive).
+     * <p/>
+     * If there are none, the returned list will be empty. Otherwise,
+     * the list will be chronologically sorted and will not contain any duplicates.
+     *
+     * @param contact one of the user’s contacts
+     * @param from    the start of the period, in milliseconds since the epoch
+     * @param to      the end of the period, in milliseconds since the epoch
+     * @return the list of meetings with this contact
+     * @throws NullPointerException     if the contact is null
+     * @throws IllegalArgumentException if the contact does not exist, or from is after to
+     */
+    List<Meeting> getMeetings(Contact contact, long from, long to);
+
     /**
      * Returns the list of past meetings in which this contact has participated.
      * <p/>
@@ -98,6 +175,18 @@ public interface ContactManager {
      */
     void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text);
 
+    /**
+     * Create a new record for a meeting that took place in the past.
+     *
+     * @param contacts a list of participants
+     * @param date     the date on which the meeting took place, in milliseconds since the epoch
+     * @param text     messages to be added about the meeting.
+     * @throws IllegalArgumentException if the list of contacts is
+     *                                  empty, or any of the contacts does not exist
+     * @throws NullPointerException     if the contacts or the text are null
+     */
+    void addNewPastMeeting(Set<Contact> contacts, long date, String text);
+
     /**
      * Add notes to a meeting.
      * <p/>
@@ -141,6 +230,71 @@ public interface ContactManager {
      */
     Set<Contact> getContacts(String name);
 
+    /**
+     * Returns the contacts whose name starts with that string, ignoring case.
+     * <p/>
+     * Contacts are in alphabetical order of name, or, if rankByMeetings is true,
+     * the contacts with the most meetings come first.
+     *
+     * @param prefix         the start of the name to search for
+     * @param limit          the maximum number of contacts to return
+     * @param rankByMeetings true to order the contacts by their number of meetings
+     * @return a list of at most limit contacts whose name starts with that string.
+     * @throws NullPointerException     if the prefix is null
+     * @throws IllegalArgumentException if the limit is less than one
+     */
+    List<Contact> getContactsByPrefix(String prefix, int limit, boolean rankByMeetings);
+
+    /**
+     * Returns the IDs of the contacts whose notes mention the words of the query.
+     *
+     * @param query    one or more words to search for
+     * @param matchAll true if the notes must mention all of the words,
+     *                 false if any of the words is enough
+     * @return the IDs of the matching contacts (maybe empty).
+     * @throws NullPointerException if the query is null
+     */
+    Set<Integer> searchContactNotes(String query, boolean matchAll);
+
+    /**
+     * Returns the IDs of the past meetings whose notes mention the words of the query.
+     *
+     * @param query    one or more words to search for
+     * @param matchAll true if the notes must mention all of the words,
+     *                 false if any of the words is enough
+     * @return the IDs of the matching meetings (maybe empty).
+     * @throws NullPointerException if the query is null
+     */
+    Set<Integer> searchMeetingNotes(String query, boolean matchAll);
+
+    /**
+     * Adds every contact and meeting in a stream of records, which are
+     * parsed in parallel and added in one batch once they are all read.
+     * Contacts and meetings are given new ids; the ids in the records
+     * only match meetings to their contacts, which must be in the same
+     * stream. Nothing is added if any record is bad. The data is saved to
+     * disk once the import is done.
+     *
+     * @param in     the records
+     * @param format the format of the records
+     * @return the number of contacts and meetings added
+     * @throws NullPointerException if the stream or format are null
+     * @throws IOException          if the stream cannot be read or a record is bad
+     */
+    int importData(Reader in, RecordFormat format) throws IOException;
+
+    /**
+     * Writes every contact and meeting to a stream as records that
+     * importData can read back.
+     *
+     * @param out    where to write
+     * @param format the format of the records
+     * @return the number of contacts and meetings written
+     * @throws NullPointerException if the stream or format are null
+     * @throws IOException          if a record cannot be written
+     */
+    int exportData(Writer out, RecordFormat format) throws IOException;
+
     /**
      * Save all data to disk.
      * <p/>
@@ -148,4 +302,16 @@ public interface ContactManager {
      * is closed and when/if the user requests it.
      */
     void flush();
+
+    /**
+     * Save all data to disk without waiting for it.
+     * <p/>
+     * The returned Future is done once everything changed before
+     * the call is on disk. If the data could not be written, get
+     * throws an ExecutionException. Callers that do not need to know
+     * can ignore it.
+     *
+     * @return a Future that is done when the data is on disk
+     */
+    Future<Void> flushAsync();
 }
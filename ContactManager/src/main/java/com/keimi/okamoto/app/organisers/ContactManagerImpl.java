@@ -4,15 +4,24 @@ import com.keimi.okamoto.app.items.Contact;
 import com.keimi.okamoto.app.items.FutureMeeting;
 import com.keimi.okamoto.app.items.Meeting;
 import com.keimi.okamoto.app.items.PastMeeting;
-import com.keimi.okamoto.app.utils.DiskWriter;
+import com.keimi.okamoto.app.utils.*;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 
 public class ContactManagerImpl implements ContactManager {
+    private static final int IMPORT_CHUNK_SIZE = 10000;
+
     private ContactsContainer aContactsContainer;
     private MeetingContainer aMeetingContainer;
     private DiskWriter aDiskWriter;
+    private volatile PersistenceService aPersistenceService;
+    private final Object flushLock = new Object();
 
     /**
      * Constructor for ContactManagerImpl
@@ -33,6 +42,23 @@ public class ContactManagerImpl implements ContactManager {
         addShutdownHook();
     }
 
+    /**
+     * Constructor for a ContactManagerImpl that writes to disk in the background.
+     * Changes are written together once they have waited for the given time or
+     * once there are the given number of them, whichever comes first.
+     *
+     * @param aContactsContainer A container that holds contacts
+     * @param aMeetingContainer  A container that holds meetings
+     * @param aDiskWriter        the DiskWriter the changes are written with
+     * @param flushWindowMillis  the longest a change waits before it is written
+     * @param flushWindowSize    the number of changes that are written without waiting
+     */
+    public ContactManagerImpl(ContactsContainer aContactsContainer, MeetingContainer aMeetingContainer, DiskWriter aDiskWriter,
+                              long flushWindowMillis, int flushWindowSize) {
+        this(aContactsContainer, aMeetingContainer, aDiskWriter);
+        aPersistenceService = new PersistenceServiceImpl(commit(), flushWindowMillis, flushWindowSize);
+    }
+
     /**
      * This method adds a shutdown hook
      */
@@ -40,47 +66,85 @@ public class ContactManagerImpl implements ContactManager {
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
             public void run() {
-                flush();
+                if (aPersistenceService != null) {
+                    aPersistenceService.shutdown();
+                } else {
+                    flush();
+                }
             }
         });
     }
 
+    /*
+     * Lets the persistence service know about a change, if there is one
+     */
+    private void recordMutation() {
+        if (aPersistenceService != null) {
+            aPersistenceService.recordMutation();
+        }
+    }
+
     @Override
-    public int addFutureMeeting(Set<Contact> contacts, Calendar date) throws IllegalArgumentException {
+    public synchronized int addFutureMeeting(Set<Contact> contacts, Calendar date) throws IllegalArgumentException {
         if (!aMeetingContainer.checkForFuture(date) || !aContactsContainer.checkForValidSetOfContacts(contacts)) {
             throw new IllegalArgumentException();
         }
-        return aMeetingContainer.addFutureMeeting(contacts, date);
+        int id = aMeetingContainer.addFutureMeeting(contacts, date);
+        aDiskWriter.recordMeeting(aMeetingContainer.getMeeting(id));
+        recordMutation();
+        return id;
     }
 
     @Override
-    public PastMeeting getPastMeeting(int id) throws IllegalArgumentException {
+    public synchronized int addFutureMeeting(Set<Contact> contacts, long date) throws IllegalArgumentException {
+        if (!aMeetingContainer.checkForFuture(date) || !aContactsContainer.checkForValidSetOfContacts(contacts)) {
+            throw new IllegalArgumentException();
+        }
+        int id = aMeetingContainer.addFutureMeeting(contacts, date);
+        aDiskWriter.recordMeeting(aMeetingContainer.getMeeting(id));
+        recordMutation();
+        return id;
+    }
+
+    /*
+     * The container gives null for a meeting of the other kind, so the meeting is looked up
+     * to tell a meeting that is not there from one on the wrong side of now
+     */
+    @Override
+    public synchronized PastMeeting getPastMeeting(int id) throws IllegalArgumentException {
         PastMeeting pastMeeting = aMeetingContainer.getPastMeeting(id);
-        if (pastMeeting != null && aMeetingContainer.checkForFuture(pastMeeting.getDate())) {
+        Meeting aMeeting = pastMeeting != null ? pastMeeting : aMeetingContainer.getMeeting(id);
+        if (aMeeting != null && aMeetingContainer.checkForFuture(aMeeting.getTime())) {
             throw new IllegalArgumentException();
         }
         return pastMeeting;
     }
 
     @Override
-    public FutureMeeting getFutureMeeting(int id) throws IllegalArgumentException {
+    public synchronized FutureMeeting getFutureMeeting(int id) throws IllegalArgumentException {
         FutureMeeting futureMeeting = aMeetingContainer.getFutureMeeting(id);
-        if (futureMeeting != null && aMeetingContainer.checkForPast(futureMeeting.getDate())) {
+        Meeting aMeeting = futureMeeting != null ? futureMeeting : aMeetingContainer.getMeeting(id);
+        if (aMeeting != null && aMeetingContainer.checkForPast(aMeeting.getTime())) {
             throw new IllegalArgumentException();
         }
         return futureMeeting;
     }
 
     @Override
-    public Meeting getMeeting(int id) {
+    public synchronized Meeting getMeeting(int id) {
         return aMeetingContainer.getMeeting(id);
     }
 
     @Override
-    public List<Meeting> getFutureMeetingList(Contact contact) throws IllegalArgumentException {
+    public synchronized List<Meeting> getFutureMeetingList(Contact contact) throws IllegalArgumentException {
         if (!aContactsContainer.checkForValidName(contact.getName())) throw new IllegalArgumentException();
 
-        Set<Integer> meetingIds = aMeetingContainer.getMeetingIdListBy(contact);
+        return new ArrayList<Meeting>(aMeetingContainer.getFutureMeetings(contact));
+    }
+
+    @Override
+    public synchronized List<Meeting> getFutureMeetingList(Calendar date) {
+        Set<Integer> meetingIds = aMeetingContainer.getMeetingIdListBy(date);
         List<Meeting> meetings = new ArrayList<>();
         if (meetingIds != null) {
             for (int id : meetingIds) {
@@ -90,87 +154,94 @@ public class ContactManagerImpl implements ContactManager {
                 }
             }
         }
-        return sortInChronologicalOrder(meetings);
+        return meetings;
     }
 
-    /**
-     * A private method that sorts meeting in chronological order.
-     *
-     * @param meetings a list of meetings
-     * @return a list of meeting sorted in chronological order
-     */
-    private List<Meeting> sortInChronologicalOrder(List<Meeting> meetings) {
-        Collections.sort(meetings, new Comparator<Meeting>() {
-            @Override
-            public int compare(Meeting o1, Meeting o2) {
-                return o1.getDate().compareTo(o2.getDate());
-            }
-        });
-        return meetings;
+    @Override
+    public synchronized List<Meeting> getMeetings(Calendar from, Calendar to) throws NullPointerException, IllegalArgumentException {
+        if (from == null || to == null) throw new NullPointerException();
+        if (from.after(to)) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getMeetings(from, to);
     }
 
     @Override
-    public List<Meeting> getFutureMeetingList(Calendar date) {
-        Set<Integer> meetingIds = aMeetingContainer.getMeetingIdListBy(date);
-        List<Meeting> meetings = new ArrayList<>();
-        if (meetingIds != null) {
-            for (int id : meetingIds) {
-                Meeting aMeeting = aMeetingContainer.getMeeting(id);
-                if (aMeeting instanceof FutureMeeting) {
-                    meetings.add(aMeeting);
-                }
-            }
-        }
-        return sortInChronologicalOrder(meetings);
+    public synchronized List<Meeting> getMeetings(long from, long to) throws IllegalArgumentException {
+        if (from > to) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getMeetings(from, to);
+    }
+
+    @Override
+    public synchronized List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) throws NullPointerException, IllegalArgumentException {
+        if (contact == null || from == null || to == null) throw new NullPointerException();
+        if (from.after(to) || !aContactsContainer.checkForValidId(contact.getId())) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getMeetings(contact, from, to);
     }
 
     @Override
-    public List<PastMeeting> getPastMeetingList(Contact contact) {
+    public synchronized List<Meeting> getMeetings(Contact contact, long from, long to) throws NullPointerException, IllegalArgumentException {
+        if (contact == null) throw new NullPointerException();
+        if (from > to || !aContactsContainer.checkForValidId(contact.getId())) throw new IllegalArgumentException();
+
+        return aMeetingContainer.getMeetings(contact, from, to);
+    }
+
+    @Override
+    public synchronized List<PastMeeting> getPastMeetingList(Contact contact) throws IllegalArgumentException {
         if (!aContactsContainer.checkForValidName(contact.getName())) throw new IllegalArgumentException();
 
-        Set<Integer> meetingIds = aMeetingContainer.getMeetingIdListBy(contact);
-        List<Meeting> meetings = new ArrayList<>();
-        if (meetingIds != null) {
-            for (int id : meetingIds) {
-                Meeting aMeeting = aMeetingContainer.getMeeting(id);
-                if (aMeeting instanceof PastMeeting) {
-                    meetings.add(aMeeting);
-                }
-            }
-        }
-        return (List<PastMeeting>) (List<?>) sortInChronologicalOrder(meetings);
+        return aMeetingContainer.getPastMeetings(contact);
     }
 
     @Override
-    public void addNewPastMeeting(Set<Contact> contacts, Calendar date, String notes) throws IllegalArgumentException, NullPointerException {
+    public synchronized void addNewPastMeeting(Set<Contact> contacts, Calendar date, String notes) throws IllegalArgumentException, NullPointerException {
         if (contacts == null || date == null || notes == null) throw new NullPointerException();
         if (contacts.isEmpty() || !aContactsContainer.checkForValidSetOfContacts(contacts))
             throw new IllegalArgumentException();
 
-        aMeetingContainer.addPastMeeting(contacts, date, notes);
+        int id = aMeetingContainer.addPastMeeting(contacts, date, notes);
+        aDiskWriter.recordMeeting(aMeetingContainer.getMeeting(id));
+        recordMutation();
+    }
+
+    @Override
+    public synchronized void addNewPastMeeting(Set<Contact> contacts, long date, String notes) throws IllegalArgumentException, NullPointerException {
+        if (contacts == null || notes == null) throw new NullPointerException();
+        if (contacts.isEmpty() || !aContactsContainer.checkForValidSetOfContacts(contacts))
+            throw new IllegalArgumentException();
+
+        int id = aMeetingContainer.addPastMeeting(contacts, date, notes);
+        aDiskWriter.recordMeeting(aMeetingContainer.getMeeting(id));
+        recordMutation();
     }
 
     @Override
-    public void addMeetingNotes(int id, String text) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+    public synchronized void addMeetingNotes(int id, String text) throws NullPointerException, IllegalArgumentException, IllegalStateException {
         if (text == null) throw new NullPointerException();
 
         Meeting aMeeting = aMeetingContainer.getMeeting(id);
 
         if (aMeeting == null) throw new IllegalArgumentException();
-        if (aMeetingContainer.checkForFuture(aMeeting.getDate())) throw new IllegalStateException();
+        if (aMeetingContainer.checkForFuture(aMeeting.getTime())) throw new IllegalStateException();
 
         aMeetingContainer.convertToPastMeeting(aMeeting, text);
+        aDiskWriter.recordMeeting(aMeetingContainer.getMeeting(id));
+        recordMutation();
     }
 
     @Override
-    public void addNewContact(String name, String notes) throws NullPointerException {
+    public synchronized void addNewContact(String name, String notes) throws NullPointerException {
         if (name == null || notes == null) throw new NullPointerException();
 
-        aContactsContainer.addContact(name, notes);
+        int id = aContactsContainer.addContact(name, notes);
+        aDiskWriter.recordContact(aContactsContainer.getContact(id));
+        recordMutation();
     }
 
     @Override
-    public Set<Contact> getContacts(int... ids) throws IllegalArgumentException {
+    public synchronized Set<Contact> getContacts(int... ids) throws IllegalArgumentException {
         if (!aContactsContainer.checkForValidId(ids)) throw new IllegalArgumentException();
 
         Set<Contact> result = new HashSet<>();
@@ -181,14 +252,189 @@ public class ContactManagerImpl implements ContactManager {
     }
 
     @Override
-    public Set<Contact> getContacts(String name) throws NullPointerException {
+    public synchronized Set<Contact> getContacts(String name) throws NullPointerException {
         if (!aContactsContainer.checkForValidName(name)) throw new NullPointerException();
 
         return aContactsContainer.getContacts(name);
     }
 
+    @Override
+    public synchronized List<Contact> getContactsByPrefix(String prefix, int limit, boolean rankByMeetings) throws NullPointerException, IllegalArgumentException {
+        if (prefix == null) throw new NullPointerException();
+        if (limit < 1) throw new IllegalArgumentException();
+
+        if (!rankByMeetings) {
+            return aContactsContainer.getContactsByPrefix(prefix, limit);
+        }
+
+        return mostMet(aContactsContainer.iterateContactsByPrefix(prefix), aMeetingContainer, limit);
+    }
+
+    /*
+     * Keeps the limit contacts with the most meetings in a min-heap as the contacts are read from the
+     * index, so neither the whole range nor anything but the heap is ever held. Of contacts with as many
+     * meetings the earlier one is kept.
+     */
+    static List<Contact> mostMet(Iterator<Contact> contacts, MeetingContainer aMeetingContainer, int limit) {
+        PriorityQueue<RankedContact> heap = new PriorityQueue<>();
+        for (int position = 0; contacts.hasNext(); position++) {
+            Contact contact = contacts.next();
+            int meetingCount = aMeetingContainer.getMeetingCount(contact);
+            if (heap.size() < limit) {
+                heap.add(new RankedContact(contact, meetingCount, position));
+            } else if (meetingCount > heap.peek().meetingCount) {
+                heap.poll();
+                heap.add(new RankedContact(contact, meetingCount, position));
+            }
+        }
+
+        Contact[] ranked = new Contact[heap.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = heap.poll().contact;
+        }
+        return new ArrayList<>(Arrays.asList(ranked));
+    }
+
+    @Override
+    public synchronized Set<Integer> searchContactNotes(String query, boolean matchAll) throws NullPointerException {
+        if (query == null) throw new NullPointerException();
+
+        return aContactsContainer.searchNotes(query, matchAll);
+    }
+
+    @Override
+    public synchronized Set<Integer> searchMeetingNotes(String query, boolean matchAll) throws NullPointerException {
+        if (query == null) throw new NullPointerException();
+
+        return aMeetingContainer.searchNotes(query, matchAll);
+    }
+
+    /*
+     * Records imported in bulk are not recorded one at a time, so they are written with a single flush.
+     * They are read before the lock is taken, so only adding them holds up the other calls. The flush
+     * comes after the lock is given up, as a flush takes its own lock before this one.
+     */
+    @Override
+    public int importData(Reader in, RecordFormat format) throws IOException, NullPointerException {
+        if (in == null || format == null) throw new NullPointerException();
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        BulkImporter.Batch batch = new BulkImporter(format, IMPORT_CHUNK_SIZE, threads).readRecords(in, aMeetingContainer);
+        int count;
+        synchronized (this) {
+            count = batch.addTo(aContactsContainer, aMeetingContainer);
+        }
+        if (count > 0) {
+            flush();
+        }
+        return count;
+    }
+
+    /*
+     * Containers that keep a snapshot ready are exported from one, as they are written by flush, so changes
+     * go on while the records are written out. Other containers are exported under the lock.
+     */
+    @Override
+    public int exportData(Writer out, RecordFormat format) throws IOException, NullPointerException {
+        if (out == null || format == null) throw new NullPointerException();
+
+        ContactsView contacts;
+        MeetingsView meetings;
+        synchronized (this) {
+            if (!canTakeSnapshot()) return new BulkExporter(format).exportRecords(out, aContactsContainer, aMeetingContainer);
+
+            contacts = aContactsContainer instanceof VersionedContactsContainer
+                    ? ((VersionedContactsContainer) aContactsContainer).getSnapshot()
+                    : ((ContactsContainerImpl) aContactsContainer).getSnapshot();
+            meetings = aMeetingContainer instanceof VersionedMeetingContainer
+                    ? ((VersionedMeetingContainer) aMeetingContainer).getSnapshot()
+                    : ((MeetingContainerImpl) aMeetingContainer).getSnapshot();
+        }
+        return new BulkExporter(format).exportRecords(out, contacts, meetings);
+    }
+
+    /*
+     * The DiskWriter is handed a snapshot taken under the lock, so changes and reads go on while it is
+     * written. Versioned and plain containers both keep one ready, so taking it costs the same however
+     * many records there are. Other containers are written under the lock. Flushes still take turns,
+     * so an older snapshot is never written over a newer one.
+     */
     @Override
     public void flush() {
-        aDiskWriter.writeToDisk(aContactsContainer, aMeetingContainer);
+        write();
+    }
+
+    /*
+     * Returns whether the DiskWriter managed to write the data
+     */
+    private boolean write() {
+        synchronized (flushLock) {
+            ContactsView contacts;
+            MeetingsView meetings;
+            synchronized (this) {
+                if (!canTakeSnapshot()) return aDiskWriter.writeToDisk(aContactsContainer, aMeetingContainer);
+
+                contacts = aContactsContainer instanceof VersionedContactsContainer
+                        ? ((VersionedContactsContainer) aContactsContainer).takeSnapshot()
+                        : ((ContactsContainerImpl) aContactsContainer).takeSnapshot();
+                meetings = aMeetingContainer instanceof VersionedMeetingContainer
+                        ? ((VersionedMeetingContainer) aMeetingContainer).takeSnapshot()
+                        : ((MeetingContainerImpl) aMeetingContainer).takeSnapshot();
+            }
+            return aDiskWriter.writeToDisk(contacts, meetings);
+        }
+    }
+
+    /*
+     * Both containers have to give a snapshot, or one of them would be written while it changes
+     */
+    private boolean canTakeSnapshot() {
+        return (aContactsContainer instanceof VersionedContactsContainer || aContactsContainer instanceof ContactsContainerImpl)
+                && (aMeetingContainer instanceof VersionedMeetingContainer || aMeetingContainer instanceof MeetingContainerImpl);
+    }
+
+    /*
+     * The commit run for flushAsync. A write that fails throws, which fails the Future of everyone waiting on it.
+     */
+    private Runnable commit() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (!write()) throw new IllegalStateException("The data could not be written");
+            }
+        };
+    }
+
+    /*
+     * Without a persistence service the data is written straight away
+     */
+    @Override
+    public Future<Void> flushAsync() {
+        if (aPersistenceService != null) return aPersistenceService.flushAsync();
+
+        FutureTask<Void> commit = new FutureTask<>(commit(), null);
+        commit.run();
+        return commit;
+    }
+
+    /*
+     * A contact in the heap of mostMet, which puts the one to be dropped first at the head
+     */
+    private static class RankedContact implements Comparable<RankedContact> {
+        private final Contact contact;
+        private final int meetingCount;
+        private final int position;
+
+        private RankedContact(Contact contact, int meetingCount, int position) {
+            this.contact = contact;
+            this.meetingCount = meetingCount;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(RankedContact other) {
+            if (meetingCount != other.meetingCount) return meetingCount < other.meetingCount ? -1 : 1;
+            return position > other.position ? -1 : (position == other.position ? 0 : 1);
+        }
     }
 }
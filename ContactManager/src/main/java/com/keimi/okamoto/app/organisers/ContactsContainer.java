@@ -2,59 +2,43 @@ package com.keimi.okamoto.app.organisers;
 
 import com.keimi.okamoto.app.items.Contact;
 
-import java.util.Set;
+import java.util.List;
 
 /**
  * A ContactContainer.
  * ContactsContainer class created to take the implementation
  * responsibilities away from ContactManager.
  */
-public interface ContactsContainer {
+public interface ContactsContainer extends ContactsView {
+
     /**
      * Method that adds a contact to a HashMap
      *
      * @param name  Contacts name
      * @param notes Contact note
+     * @return the id of the new contact
      */
-    void addContact(String name, String notes);
+    int addContact(String name, String notes);
 
     /**
-     * Gets a contact from HashMap using the contacts ID.
+     * Puts back a contact that was read from disk, keeping
+     * its id. A contact already held with that id is replaced.
      *
      * @param contactId contact's ID
-     * @return a contact
-     */
-    Contact getContact(int contactId);
-
-    /**
-     * Checks for a valid id.
-     *
-     * @param ids variable number of Contact ids
-     * @return true if the contact exists.
-     */
-    boolean checkForValidId(int... ids);
-
-    /**
-     * Gets a set of contacts by name
-     *
-     * @param name a name of a contact
-     * @return a Set of contacts by name
-     */
-    Set<Contact> getContacts(String name);
-
-    /**
-     * boolean that returns true if the name is valid
-     *
-     * @param name a name of a contact
-     * @return boolean that returns true if the name is valid
+     * @param name      Contacts name
+     * @param notes     Contact note
      */
-    boolean checkForValidName(String name);
+    void restoreContact(int contactId, String name, String notes);
 
     /**
-     * checks that contacts are valid
+     * Adds a batch of contacts in one go. They take consecutive ids, in
+     * the order given, from a block taken from the unique number generator
+     * at once, and are indexed together once they are all in.
      *
-     * @param aSetOfContacts a List of contacts
-     * @return false if set of contacts in not valid
+     * @param names the names of the contacts
+     * @param notes the notes of the contacts, in the same order
+     * @return the id of the first contact, or -1 if there are none
+     * @throws IllegalArgumentException if a name or notes are null, or the lists differ in size
      */
-    boolean checkForValidSetOfContacts(Set<Contact> aSetOfContacts);
+    int addContacts(List<String> names, List<String> notes);
 }
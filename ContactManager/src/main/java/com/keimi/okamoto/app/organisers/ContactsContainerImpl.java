@@ -2,16 +2,24 @@ package com.keimi.okamoto.app.organisers;
 
 import com.keimi.okamoto.app.items.Contact;
 import com.keimi.okamoto.app.utils.ContactFactory;
+import com.keimi.okamoto.app.utils.NotesIndex;
+import com.keimi.okamoto.app.utils.NotesIndexImpl;
+import com.keimi.okamoto.app.utils.PersistentIntMap;
 import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 public class ContactsContainerImpl implements ContactsContainer, Serializable {
+    private static final long serialVersionUID = -4319548910629293206L;
     private Map<Integer, Contact> contactMap;
+    private transient volatile PersistentIntMap<Contact> contactVersions;
+    private transient Map<String, Set<Contact>> nameIndex;
+    private transient NavigableMap<String, Set<Contact>> prefixIndex;
+    private transient NotesIndex aNotesIndex;
+    private Set<Integer> changedContactIds;
     private ContactFactory aContactFactory;
     private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
 
@@ -23,17 +31,161 @@ public class ContactsContainerImpl implements ContactsContainer, Serializable {
      */
     public ContactsContainerImpl(ContactFactory aContactFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
         contactMap = new HashMap<>();
+        contactVersions = PersistentIntMap.empty();
+        nameIndex = new HashMap<>();
+        prefixIndex = new TreeMap<>();
+        aNotesIndex = new NotesIndexImpl();
+        changedContactIds = new HashSet<>();
         this.aContactFactory = aContactFactory;
         this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
     }
 
     @Override
-    public void addContact(String name, String notes) throws IllegalArgumentException {
+    public int addContact(String name, String notes) throws IllegalArgumentException {
         if (name == null || notes == null) throw new IllegalArgumentException();
         int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
 
-        Contact aNewContact = aContactFactory.createContact(uniqueID, name, notes);
-        contactMap.put(uniqueID, aNewContact);
+        putContact(uniqueID, aContactFactory.createContact(uniqueID, name, notes));
+        return uniqueID;
+    }
+
+    @Override
+    public void restoreContact(int contactId, String name, String notes) throws IllegalArgumentException {
+        if (name == null || notes == null) throw new IllegalArgumentException();
+        aUniqueNumberGeneratorUtilities.skipPast(contactId);
+
+        putContact(contactId, aContactFactory.createContact(contactId, name, notes));
+    }
+
+    /*
+     * Puts back a contact that is already made, so a copy of a container can share its contacts
+     */
+    void restoreContact(Contact aContact) {
+        aUniqueNumberGeneratorUtilities.skipPast(aContact.getId());
+
+        putContact(aContact.getId(), aContact);
+    }
+
+    /*
+     * The contacts go into the map first and into the indexes after, so each index is built in one pass
+     */
+    @Override
+    public int addContacts(List<String> names, List<String> notes) throws IllegalArgumentException {
+        if (names == null || notes == null || names.size() != notes.size()) throw new IllegalArgumentException();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i) == null || notes.get(i) == null) throw new IllegalArgumentException();
+        }
+        if (names.isEmpty()) return -1;
+
+        int firstId = aUniqueNumberGeneratorUtilities.reserve(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            Contact aNewContact = aContactFactory.createContact(firstId + i, names.get(i), notes.get(i));
+            contactMap.put(firstId + i, aNewContact);
+            putVersion(firstId + i, aNewContact);
+            changedContactIds.add(firstId + i);
+        }
+        for (int i = 0; i < names.size(); i++) {
+            Contact aNewContact = contactMap.get(firstId + i);
+            if (aNewContact != null) {
+                addToNameIndex(aNewContact);
+                aNotesIndex.addNotes(aNewContact.getId(), aNewContact.getNotes());
+            }
+        }
+        return firstId;
+    }
+
+    /*
+     * Helper method to store a contact and index it, taking a replaced contact out of the indexes
+     */
+    private void putContact(int contactId, Contact aNewContact) {
+        Contact aReplacedContact = contactMap.put(contactId, aNewContact);
+        putVersion(contactId, aNewContact);
+        changedContactIds.add(contactId);
+        if (aReplacedContact != null) {
+            removeFromNameIndex(aReplacedContact);
+            aNotesIndex.removeNotes(aReplacedContact.getId(), aReplacedContact.getNotes());
+        }
+        if (aNewContact != null) {
+            addToNameIndex(aNewContact);
+            aNotesIndex.addNotes(aNewContact.getId(), aNewContact.getNotes());
+        }
+    }
+
+    /*
+     * Keeps the persistent copy of the map in step with it, so a snapshot does not have to copy the map
+     */
+    private void putVersion(int contactId, Contact aContact) {
+        contactVersions = aContact == null ? contactVersions.remove(contactId) : contactVersions.put(contactId, aContact);
+    }
+
+    /*
+     * The persistent copy and the indexes are not written out with the container, so they are built again from
+     * the map when it is read. The serialVersionUID is that of the first containers written, which only held the
+     * map, so they are read as having no changes.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        contactVersions = PersistentIntMap.empty();
+        nameIndex = new HashMap<>();
+        prefixIndex = new TreeMap<>();
+        aNotesIndex = new NotesIndexImpl();
+        if (changedContactIds == null) {
+            changedContactIds = new HashSet<>();
+        }
+        for (Map.Entry<Integer, Contact> entry : contactMap.entrySet()) {
+            Contact aContact = entry.getValue();
+            putVersion(entry.getKey(), aContact);
+            if (aContact != null) {
+                addToNameIndex(aContact);
+                aNotesIndex.addNotes(aContact.getId(), aContact.getNotes());
+            }
+        }
+    }
+
+    /*
+     * Helper method to add a contact to the nameIndex and prefixIndex
+     */
+    private void addToNameIndex(Contact aContact) {
+        if (aContact.getName() == null) return;
+
+        addToIndex(nameIndex, aContact.getName(), aContact);
+        addToIndex(prefixIndex, toPrefixKey(aContact.getName()), aContact);
+    }
+
+    /*
+     * Helper method to remove a contact that has been replaced from the nameIndex and prefixIndex
+     */
+    private void removeFromNameIndex(Contact aContact) {
+        if (aContact.getName() == null) return;
+
+        removeFromIndex(nameIndex, aContact.getName(), aContact);
+        removeFromIndex(prefixIndex, toPrefixKey(aContact.getName()), aContact);
+    }
+
+    private void addToIndex(Map<String, Set<Contact>> index, String key, Contact aContact) {
+        Set<Contact> contacts = index.get(key);
+        if (contacts == null) {
+            contacts = new HashSet<>();
+            index.put(key, contacts);
+        }
+        contacts.add(aContact);
+    }
+
+    private void removeFromIndex(Map<String, Set<Contact>> index, String key, Contact aContact) {
+        Set<Contact> contacts = index.get(key);
+        if (contacts != null) {
+            contacts.remove(aContact);
+            if (contacts.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /*
+     * Prefix searches ignore case, so names are kept in lower case in the prefixIndex
+     */
+    private String toPrefixKey(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
     }
 
     @Override
@@ -41,6 +193,48 @@ public class ContactsContainerImpl implements ContactsContainer, Serializable {
         return contactMap.get(contactId);
     }
 
+    @Override
+    public Collection<Contact> getAllContacts() {
+        return Collections.unmodifiableCollection(contactMap.values());
+    }
+
+    @Override
+    public Set<Integer> takeChangedContactIds() {
+        Set<Integer> changed = changedContactIds;
+        changedContactIds = new HashSet<>();
+        return changed;
+    }
+
+    /**
+     * Gets the contacts as they are now, without copying them. Nothing done to this
+     * container afterwards shows in the snapshot, so it can be read while the container
+     * goes on changing. Its indexes are only built if a query needs them.
+     *
+     * @return a ContactsView
+     */
+    public ContactsView getSnapshot() {
+        return new ContactsSnapshot(contactVersions, Collections.<Integer>emptySet(), aContactFactory, aUniqueNumberGeneratorUtilities, false);
+    }
+
+    /**
+     * Gets the contacts as they are now, without copying them, and moves the ids of the
+     * contacts changed since the last snapshot was taken into it. Nothing done to this
+     * container afterwards shows in the snapshot, so it can be written to disk while the
+     * container goes on changing. Its indexes are only built if a query needs them.
+     *
+     * @return a ContactsView whose takeChangedContactIds gives the ids changed since the last snapshot was taken
+     */
+    public ContactsView takeSnapshot() {
+        return new ContactsSnapshot(contactVersions, takeChangedContactIds(), aContactFactory, aUniqueNumberGeneratorUtilities, false);
+    }
+
+    /*
+     * The version is published on every change, so it can be read from any thread while the container changes
+     */
+    PersistentIntMap<Contact> getVersion() {
+        return contactVersions;
+    }
+
     @Override
     public boolean checkForValidId(int... ids) {
         boolean result = true;
@@ -56,28 +250,45 @@ public class ContactsContainerImpl implements ContactsContainer, Serializable {
     public Set<Contact> getContacts(String name) throws IllegalArgumentException {
         if (name == null) throw new IllegalArgumentException();
 
-        Set<Contact> resultSet = new HashSet<>();
-        for (Contact c : contactMap.values()) {
-            if (c != null && c.getName().equals(name)) {
-                resultSet.add(c);
-            }
+        Set<Contact> contacts = nameIndex.get(name);
+        if (contacts == null) {
+            return new HashSet<>();
         }
-        return resultSet;
+        return new HashSet<>(contacts);
     }
 
     @Override
     public boolean checkForValidName(String name) throws IllegalArgumentException {
         if (name == null) throw new IllegalArgumentException();
 
-        boolean result = false;
-        for (Contact c : contactMap.values()) {
-            if (c != null && c.getName().equals(name)) {
-                result = true;
-            }
+        return nameIndex.containsKey(name);
+    }
+
+    @Override
+    public List<Contact> getContactsByPrefix(String prefix, int limit) throws IllegalArgumentException {
+        if (prefix == null || limit < 1) throw new IllegalArgumentException();
+
+        List<Contact> result = new ArrayList<>();
+        for (Iterator<Contact> contacts = iterateContactsByPrefix(prefix); contacts.hasNext() && result.size() < limit; ) {
+            result.add(contacts.next());
         }
         return result;
     }
 
+    @Override
+    public Iterator<Contact> iterateContactsByPrefix(String prefix) throws IllegalArgumentException {
+        if (prefix == null) throw new IllegalArgumentException();
+
+        return new PrefixIterator(prefixIndex, toPrefixKey(prefix));
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        return aNotesIndex.search(query, matchAll);
+    }
+
     @Override
     public boolean checkForValidSetOfContacts(Set<Contact> aSetOfContacts) throws IllegalArgumentException {
         if (aSetOfContacts == null) throw new IllegalArgumentException();
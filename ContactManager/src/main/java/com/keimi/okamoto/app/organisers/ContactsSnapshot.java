@@ -0,0 +1,182 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.utils.AtomicUniqueNumberGeneratorImpl;
+import com.keimi.okamoto.app.utils.ContactFactory;
+import com.keimi.okamoto.app.utils.PersistentIntMap;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The contacts of a ContactsContainerImpl or VersionedContactsContainerImpl
+ * at one point in time.
+ * <p/>
+ * Looking contacts up by id reads the version straight away. The name
+ * and notes indexes are only built, from the version, the first time a
+ * query needs them, so a snapshot taken for a flush or a scan costs
+ * nothing but the reference to the version. A snapshot is written to a
+ * stream as its contacts alone, and read back as the kind of container
+ * it was taken from, holding them.
+ */
+class ContactsSnapshot implements ContactsView, Serializable {
+    private final PersistentIntMap<Contact> contacts;
+    private final ContactFactory aContactFactory;
+    private final UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private final boolean versioned;
+    private Set<Integer> changedContactIds;
+    private transient ContactsContainerImpl indexed;
+
+    ContactsSnapshot(PersistentIntMap<Contact> contacts, Set<Integer> changedContactIds, ContactFactory aContactFactory,
+                     UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, boolean versioned) {
+        this.contacts = contacts;
+        this.changedContactIds = changedContactIds;
+        this.aContactFactory = aContactFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        this.versioned = versioned;
+    }
+
+    /*
+     * Builds a container with indexes from the version the first time one is needed, sharing its contacts.
+     * It has a generator of its own, so building it leaves the generator of the live container alone.
+     */
+    private synchronized ContactsContainerImpl indexed() {
+        if (indexed == null) {
+            ContactsContainerImpl copy = new ContactsContainerImpl(aContactFactory, new AtomicUniqueNumberGeneratorImpl(1));
+            for (Contact c : contacts.values()) {
+                copy.restoreContact(c);
+            }
+            copy.takeChangedContactIds();
+            indexed = copy;
+        }
+        return indexed;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerialForm(this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("A ContactsSnapshot is read through its SerialForm");
+    }
+
+    /*
+     * What a snapshot is written as: the contacts of the version, with what is needed to put them back
+     * into the kind of container the snapshot was taken from. Nothing is indexed until the stream is read.
+     */
+    private static class SerialForm implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final ContactFactory aContactFactory;
+        private final UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+        private final boolean versioned;
+        private transient Collection<Contact> contacts;
+
+        SerialForm(ContactsSnapshot snapshot) {
+            this.aContactFactory = snapshot.aContactFactory;
+            this.aUniqueNumberGeneratorUtilities = snapshot.aUniqueNumberGeneratorUtilities;
+            this.versioned = snapshot.versioned;
+            this.contacts = snapshot.contacts.values();
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            out.writeInt(contacts.size());
+            for (Contact c : contacts) {
+                out.writeObject(c);
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            int count = in.readInt();
+            if (count < 0) throw new InvalidObjectException("Negative contact count " + count);
+            List<Contact> read = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                read.add((Contact) in.readObject());
+            }
+            contacts = read;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            if (versioned) {
+                VersionedContactsContainerImpl container = new VersionedContactsContainerImpl(aContactFactory, aUniqueNumberGeneratorUtilities);
+                for (Contact c : contacts) {
+                    container.restoreContact(c);
+                }
+                container.takeChangedContactIds();
+                return container;
+            }
+            ContactsContainerImpl container = new ContactsContainerImpl(aContactFactory, aUniqueNumberGeneratorUtilities);
+            for (Contact c : contacts) {
+                container.restoreContact(c);
+            }
+            container.takeChangedContactIds();
+            return container;
+        }
+    }
+
+    @Override
+    public Contact getContact(int contactId) {
+        return contacts.get(contactId);
+    }
+
+    @Override
+    public Collection<Contact> getAllContacts() {
+        return contacts.values();
+    }
+
+    @Override
+    public synchronized Set<Integer> takeChangedContactIds() {
+        Set<Integer> changed = changedContactIds;
+        changedContactIds = new HashSet<>();
+        return changed;
+    }
+
+    @Override
+    public boolean checkForValidId(int... ids) {
+        for (int id : ids) {
+            if (!contacts.containsKey(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Set<Contact> getContacts(String name) {
+        return indexed().getContacts(name);
+    }
+
+    @Override
+    public boolean checkForValidName(String name) {
+        return indexed().checkForValidName(name);
+    }
+
+    @Override
+    public List<Contact> getContactsByPrefix(String prefix, int limit) {
+        return indexed().getContactsByPrefix(prefix, limit);
+    }
+
+    @Override
+    public Iterator<Contact> iterateContactsByPrefix(String prefix) {
+        return indexed().iterateContactsByPrefix(prefix);
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) {
+        return indexed().searchNotes(query, matchAll);
+    }
+
+    @Override
+    public boolean checkForValidSetOfContacts(Set<Contact> aSetOfContacts) {
+        if (aSetOfContacts == null) throw new IllegalArgumentException();
+
+        for (Contact c : aSetOfContacts) {
+            if (contacts.containsKey(c.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,101 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The contacts of a ContactsContainer, read but not changed.
+ * A snapshot of a container only gives this much, and it is all
+ * a DiskWriter needs to write the contacts out.
+ */
+public interface ContactsView {
+
+    /**
+     * Gets a contact from HashMap using the contacts ID.
+     *
+     * @param contactId contact's ID
+     * @return a contact
+     */
+    Contact getContact(int contactId);
+
+    /**
+     * Gets every contact, in no particular order.
+     *
+     * @return a read-only view of all the contacts
+     */
+    Collection<Contact> getAllContacts();
+
+    /**
+     * Gets the ids of the contacts added or replaced since
+     * the last call, and starts keeping track again.
+     *
+     * @return the ids of the changed contacts
+     */
+    Set<Integer> takeChangedContactIds();
+
+    /**
+     * Checks for a valid id.
+     *
+     * @param ids variable number of Contact ids
+     * @return true if the contact exists.
+     */
+    boolean checkForValidId(int... ids);
+
+    /**
+     * Gets a set of contacts by name
+     *
+     * @param name a name of a contact
+     * @return a Set of contacts by name
+     */
+    Set<Contact> getContacts(String name);
+
+    /**
+     * boolean that returns true if the name is valid
+     *
+     * @param name a name of a contact
+     * @return boolean that returns true if the name is valid
+     */
+    boolean checkForValidName(String name);
+
+    /**
+     * Gets the contacts whose name starts with the given prefix,
+     * ignoring case, in alphabetical order of name.
+     *
+     * @param prefix the start of a contact's name
+     * @param limit  the maximum number of contacts to return
+     * @return a List of at most limit contacts
+     */
+    List<Contact> getContactsByPrefix(String prefix, int limit);
+
+    /**
+     * Goes through the contacts whose name starts with the given prefix,
+     * ignoring case, in the order getContactsByPrefix returns them, for
+     * a caller that does not know how many it will need.
+     *
+     * @param prefix the start of a contact's name
+     * @return an Iterator over the contacts
+     */
+    Iterator<Contact> iterateContactsByPrefix(String prefix);
+
+    /**
+     * Gets the ids of the contacts whose notes contain the words of the query.
+     *
+     * @param query    one or more words to search for
+     * @param matchAll true if the notes must contain all of the words,
+     *                 false if any of the words is enough
+     * @return a Set of contact ids
+     */
+    Set<Integer> searchNotes(String query, boolean matchAll);
+
+    /**
+     * checks that contacts are valid
+     *
+     * @param aSetOfContacts a List of contacts
+     * @return false if set of contacts in not valid
+     */
+    boolean checkForValidSetOfContacts(Set<Contact> aSetOfContacts);
+}
@@ -0,0 +1,223 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.utils.ContactFactory;
+import com.keimi.okamoto.app.utils.NotesIndex;
+import com.keimi.okamoto.app.utils.NotesIndexImpl;
+import com.keimi.okamoto.app.utils.SnapshotReader;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+
+import java.util.*;
+
+/**
+ * A ContactsContainer over an indexed snapshot. Contacts are decoded
+ * the first time they are asked for, by id or through the snapshot's
+ * name table, and kept once decoded.
+ * <p/>
+ * Contacts that are added or changed go into a ContactsContainerImpl
+ * that sits over the snapshot and is asked first, so a change never
+ * reads more of the snapshot than the contact it replaces. Searching
+ * notes needs an index over every contact in the snapshot, so the first
+ * search builds one and every search after that uses it.
+ */
+public class MappedContactsContainerImpl implements ContactsContainer {
+    private SnapshotReader snapshot;
+    private ContactFactory aContactFactory;
+    private Map<Integer, Contact> decodedContacts;
+    private ContactsContainerImpl changedContacts;
+    private NotesIndex snapshotNotes;
+
+    /**
+     * Constructor for MappedContactsContainerImpl
+     *
+     * @param snapshot                        the snapshot the contacts are read from
+     * @param aContactFactory                 a Factory in charge of creation of contacts
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     */
+    public MappedContactsContainerImpl(SnapshotReader snapshot, ContactFactory aContactFactory,
+                                       UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        this.snapshot = snapshot;
+        this.aContactFactory = aContactFactory;
+        decodedContacts = new HashMap<>();
+        changedContacts = new ContactsContainerImpl(aContactFactory, aUniqueNumberGeneratorUtilities);
+    }
+
+    /*
+     * Indexes the notes of every contact in the snapshot. The contacts decoded for it are not kept,
+     * and the ones that have changed since are left out when the index is searched.
+     */
+    private NotesIndex indexSnapshot() {
+        if (snapshotNotes == null) {
+            NotesIndex notes = new NotesIndexImpl();
+            for (int entry = 0; entry < snapshot.getContactCount(); entry++) {
+                int id = snapshot.getContactId(entry);
+                Contact contact = decodedContacts.get(id);
+                notes.addNotes(id, (contact != null ? contact : snapshot.readContact(id, aContactFactory)).getNotes());
+            }
+            snapshotNotes = notes;
+        }
+        return snapshotNotes;
+    }
+
+    /**
+     * Checks if every contact has been read from the snapshot.
+     *
+     * @return true once a call has needed the whole snapshot
+     */
+    public synchronized boolean isLoaded() {
+        return snapshotNotes != null;
+    }
+
+    @Override
+    public synchronized Contact getContact(int contactId) {
+        Contact contact = changedContacts.getContact(contactId);
+        if (contact != null) return contact;
+
+        contact = decodedContacts.get(contactId);
+        if (contact == null) {
+            contact = snapshot.readContact(contactId, aContactFactory);
+            if (contact != null) {
+                decodedContacts.put(contactId, contact);
+            }
+        }
+        return contact;
+    }
+
+    @Override
+    public synchronized Collection<Contact> getAllContacts() {
+        List<Contact> contacts = new ArrayList<>(snapshot.getContactCount());
+        for (int entry = 0; entry < snapshot.getContactCount(); entry++) {
+            int id = snapshot.getContactId(entry);
+            Contact contact = changedContacts.getContact(id);
+            if (contact == null) {
+                contact = decodedContacts.get(id);
+            }
+            contacts.add(contact != null ? contact : snapshot.readContact(id, aContactFactory));
+        }
+        for (Contact contact : changedContacts.getAllContacts()) {
+            if (!snapshot.hasContact(contact.getId())) {
+                contacts.add(contact);
+            }
+        }
+        return Collections.unmodifiableList(contacts);
+    }
+
+    /*
+     * Only the contacts over the snapshot can have changed since it was written
+     */
+    @Override
+    public synchronized Set<Integer> takeChangedContactIds() {
+        return changedContacts.takeChangedContactIds();
+    }
+
+    @Override
+    public synchronized boolean checkForValidId(int... ids) {
+        boolean result = true;
+        for (int id : ids) {
+            if (changedContacts.getContact(id) == null && !snapshot.hasContact(id)) {
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean checkForValidSetOfContacts(Set<Contact> aSetOfContacts) throws IllegalArgumentException {
+        if (aSetOfContacts == null) throw new IllegalArgumentException();
+
+        boolean result = false;
+        for (Contact c : aSetOfContacts) {
+            if (checkForValidId(c.getId())) {
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized int addContact(String name, String notes) {
+        return changedContacts.addContact(name, notes);
+    }
+
+    @Override
+    public synchronized void restoreContact(int contactId, String name, String notes) {
+        changedContacts.restoreContact(contactId, name, notes);
+    }
+
+    @Override
+    public synchronized int addContacts(List<String> names, List<String> notes) {
+        return changedContacts.addContacts(names, notes);
+    }
+
+    /*
+     * The name table ignores case, so the contacts it finds are checked for the exact name
+     */
+    @Override
+    public synchronized Set<Contact> getContacts(String name) throws IllegalArgumentException {
+        if (name == null) throw new IllegalArgumentException();
+
+        Set<Contact> contacts = changedContacts.getContacts(name);
+        for (int id : snapshot.getContactIdsByName(name)) {
+            if (changedContacts.getContact(id) != null) continue;
+
+            Contact contact = getContact(id);
+            if (name.equals(contact.getName())) {
+                contacts.add(contact);
+            }
+        }
+        return contacts;
+    }
+
+    @Override
+    public boolean checkForValidName(String name) throws IllegalArgumentException {
+        return !getContacts(name).isEmpty();
+    }
+
+    /*
+     * The snapshot is asked for enough names to make up for the ones that have changed,
+     * and both lists are put in the order of the name table: names ignoring case, then ids
+     */
+    @Override
+    public synchronized List<Contact> getContactsByPrefix(String prefix, int limit) throws IllegalArgumentException {
+        if (prefix == null || limit < 1) throw new IllegalArgumentException();
+
+        List<Contact> contacts = new ArrayList<>(changedContacts.getContactsByPrefix(prefix, limit));
+        int wanted = (int) Math.min(Integer.MAX_VALUE, (long) limit + changedContacts.getAllContacts().size());
+        for (int id : snapshot.getContactIdsByPrefix(prefix, wanted)) {
+            if (changedContacts.getContact(id) == null) {
+                contacts.add(getContact(id));
+            }
+        }
+        Collections.sort(contacts, new Comparator<Contact>() {
+            @Override
+            public int compare(Contact o1, Contact o2) {
+                int result = o1.getName().toLowerCase(Locale.ENGLISH).compareTo(o2.getName().toLowerCase(Locale.ENGLISH));
+                return result != 0 ? result : Integer.compare(o1.getId(), o2.getId());
+            }
+        });
+        return contacts.size() > limit ? new ArrayList<>(contacts.subList(0, limit)) : contacts;
+    }
+
+    /*
+     * The changed contacts and the snapshot's are only in order once they are put together, so they are
+     * gathered first
+     */
+    @Override
+    public Iterator<Contact> iterateContactsByPrefix(String prefix) {
+        return getContactsByPrefix(prefix, Integer.MAX_VALUE).iterator();
+    }
+
+    @Override
+    public synchronized Set<Integer> searchNotes(String query, boolean matchAll) {
+        if (query == null) throw new IllegalArgumentException();
+
+        Set<Integer> ids = new HashSet<>();
+        for (int id : indexSnapshot().search(query, matchAll)) {
+            if (changedContacts.getContact(id) == null) {
+                ids.add(id);
+            }
+        }
+        ids.addAll(changedContacts.searchNotes(query, matchAll));
+        return ids;
+    }
+}
@@ -0,0 +1,369 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.*;
+import com.keimi.okamoto.app.utils.*;
+
+import java.util.*;
+
+/**
+ * A MeetingContainer over an indexed snapshot. Meetings are decoded
+ * the first time they are asked for by id, and kept once decoded. Date
+ * queries are answered from the date table of the snapshot's index.
+ * <p/>
+ * Meetings that are added or changed go into a MeetingContainerImpl
+ * that sits over the snapshot and is asked first, so a change never
+ * reads more of the snapshot than the meeting it replaces. Meetings are
+ * looked up by contact through the attendee table of the snapshot's
+ * index. Searching notes needs an index over every meeting in the
+ * snapshot, so the first search builds it, holding only ids, and every
+ * search after that uses it. What the snapshot and the changed meetings
+ * hold is put together in date order.
+ */
+public class MappedMeetingContainerImpl implements MeetingContainer {
+    private SnapshotReader snapshot;
+    private ContactsContainer aContactsContainer;
+    private MeetingFactory aMeetingFactory;
+    private Clock aClock;
+    private Map<Integer, Meeting> decodedMeetings;
+    private MeetingContainerImpl changedMeetings;
+    private NotesIndex snapshotNotes;
+
+    /**
+     * Constructor for MappedMeetingContainerImpl
+     *
+     * @param snapshot                        the snapshot the meetings are read from
+     * @param aContactsContainer              the container the attendees are looked up in
+     * @param aMeetingFactory                 a Factory in charge of creation of meetings
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     * @param aClock                          the clock that decides what is in the past and the future
+     */
+    public MappedMeetingContainerImpl(SnapshotReader snapshot, ContactsContainer aContactsContainer, MeetingFactory aMeetingFactory,
+                                      UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock) {
+        this.snapshot = snapshot;
+        this.aContactsContainer = aContactsContainer;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aClock = aClock;
+        decodedMeetings = new HashMap<>();
+        changedMeetings = new MeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock);
+    }
+
+    /*
+     * Indexes the notes of every past meeting in the snapshot. The meetings decoded for it
+     * are not kept, and the ones that have changed since are left out when the index is read.
+     */
+    private synchronized NotesIndex indexSnapshotNotes() {
+        if (snapshotNotes == null) {
+            NotesIndex notes = new NotesIndexImpl();
+            for (int entry = 0; entry < snapshot.getMeetingCount(); entry++) {
+                int id = snapshot.getMeetingId(entry);
+                Meeting meeting = decodedMeetings.get(id);
+                if (meeting == null) {
+                    meeting = snapshot.readMeeting(id, aContactsContainer, aMeetingFactory);
+                }
+                if (meeting instanceof PastMeeting) {
+                    notes.addNotes(id, ((PastMeeting) meeting).getNotes());
+                }
+            }
+            snapshotNotes = notes;
+        }
+        return snapshotNotes;
+    }
+
+    /*
+     * Puts a meeting from the snapshot over it before it is changed, so the indexes of the
+     * changed meetings know it
+     */
+    private void keepChanged(int id) {
+        if (changedMeetings.getMeeting(id) == null) {
+            Meeting meeting = getMeeting(id);
+            if (meeting != null) {
+                changedMeetings.restoreMeeting(meeting);
+            }
+        }
+    }
+
+    /*
+     * Puts the meetings of the snapshot that have not changed together with the changed meetings, in date order
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Meeting> List<T> merge(int[] snapshotIds, List<T> changed) {
+        List<T> meetings = new ArrayList<>(snapshotIds.length + changed.size());
+        for (int id : snapshotIds) {
+            if (changedMeetings.getMeeting(id) == null) {
+                meetings.add((T) getMeeting(id));
+            }
+        }
+        if (!changed.isEmpty()) {
+            meetings.addAll(changed);
+            sortByDate(meetings);
+        }
+        return meetings;
+    }
+
+    private static void sortByDate(List<? extends Meeting> meetings) {
+        Collections.sort(meetings, new Comparator<Meeting>() {
+            @Override
+            public int compare(Meeting o1, Meeting o2) {
+                return Long.compare(o1.getTime(), o2.getTime());
+            }
+        });
+    }
+
+    /*
+     * The changed meetings from one date up to another that the snapshot does not hold at all
+     */
+    private List<Meeting> getNewMeetings(long from, long to) {
+        List<Meeting> meetings = new ArrayList<>();
+        for (Meeting meeting : changedMeetings.getMeetings(from, to)) {
+            if (!snapshot.hasMeeting(meeting.getId())) {
+                meetings.add(meeting);
+            }
+        }
+        return meetings;
+    }
+
+    private static int[] toIds(List<? extends Meeting> meetings) {
+        int[] ids = new int[meetings.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = meetings.get(i).getId();
+        }
+        return ids;
+    }
+
+    /**
+     * Checks if every meeting has been read from the snapshot.
+     *
+     * @return true once a call has needed the whole snapshot
+     */
+    public synchronized boolean isLoaded() {
+        return snapshotNotes != null;
+    }
+
+    @Override
+    public synchronized Meeting getMeeting(int id) {
+        Meeting meeting = changedMeetings.getMeeting(id);
+        if (meeting != null) return meeting;
+
+        meeting = decodedMeetings.get(id);
+        if (meeting == null) {
+            meeting = snapshot.readMeeting(id, aContactsContainer, aMeetingFactory);
+            if (meeting != null) {
+                decodedMeetings.put(id, meeting);
+            }
+        }
+        return meeting;
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting aMeeting = getMeeting(id);
+        return aMeeting instanceof FutureMeeting ? (FutureMeeting) aMeeting : null;
+    }
+
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        Meeting aMeeting = getMeeting(id);
+        return aMeeting instanceof PastMeeting ? (PastMeeting) aMeeting : null;
+    }
+
+    @Override
+    public synchronized Collection<Meeting> getAllMeetings() {
+        List<Meeting> meetings = new ArrayList<>(snapshot.getMeetingCount());
+        for (int entry = 0; entry < snapshot.getMeetingCount(); entry++) {
+            int id = snapshot.getMeetingId(entry);
+            Meeting meeting = changedMeetings.getMeeting(id);
+            if (meeting == null) {
+                meeting = decodedMeetings.get(id);
+            }
+            meetings.add(meeting != null ? meeting : snapshot.readMeeting(id, aContactsContainer, aMeetingFactory));
+        }
+        for (Meeting meeting : changedMeetings.getAllMeetings()) {
+            if (!snapshot.hasMeeting(meeting.getId())) {
+                meetings.add(meeting);
+            }
+        }
+        return Collections.unmodifiableList(meetings);
+    }
+
+    /*
+     * Only the meetings over the snapshot can have changed since it was written
+     */
+    @Override
+    public synchronized Set<Integer> takeChangedMeetingIds() {
+        return changedMeetings.takeChangedMeetingIds();
+    }
+
+    @Override
+    public boolean checkForFuture(Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+        return checkForFuture(date.getTimeInMillis());
+    }
+
+    @Override
+    public boolean checkForFuture(long date) {
+        return date > aClock.currentTimeMillis();
+    }
+
+    @Override
+    public boolean checkForPast(Calendar date) throws IllegalArgumentException {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForPast(long date) {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public Set<Integer> getMeetingIdListBy(Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+
+        Calendar startOfDay = (Calendar) date.clone();
+        startOfDay.set(Calendar.HOUR_OF_DAY, 0);
+        startOfDay.set(Calendar.MINUTE, 0);
+        startOfDay.set(Calendar.SECOND, 0);
+        startOfDay.set(Calendar.MILLISECOND, 0);
+        Calendar startOfNextDay = (Calendar) startOfDay.clone();
+        startOfNextDay.add(Calendar.DATE, 1);
+
+        long from = startOfDay.getTimeInMillis();
+        long to = startOfNextDay.getTimeInMillis();
+        Set<Integer> meetingIds = new LinkedHashSet<>();
+        synchronized (this) {
+            // a changed meeting keeps its date, so only new meetings have to be put in among the snapshot's
+            int[] ids = getNewMeetings(from, to).isEmpty() ? snapshot.getMeetingIdsBetween(from, to) : toIds(getMeetings(from, to));
+            for (int id : ids) {
+                meetingIds.add(id);
+            }
+        }
+        return meetingIds;
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public synchronized List<Meeting> getMeetings(long from, long to) {
+        int[] ids = snapshot.getMeetingIdsBetween(from, to);
+        List<Meeting> meetings = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            meetings.add(getMeeting(id));
+        }
+        List<Meeting> newMeetings = getNewMeetings(from, to);
+        if (!newMeetings.isEmpty()) {
+            meetings.addAll(newMeetings);
+            sortByDate(meetings);
+        }
+        return meetings;
+    }
+
+    @Override
+    public synchronized int addFutureMeeting(Set<Contact> aSetOfContacts, Calendar date) {
+        return changedMeetings.addFutureMeeting(aSetOfContacts, date);
+    }
+
+    @Override
+    public synchronized int addFutureMeeting(Set<Contact> aSetOfContacts, long date) {
+        return changedMeetings.addFutureMeeting(aSetOfContacts, date);
+    }
+
+    @Override
+    public synchronized int addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes) {
+        return changedMeetings.addPastMeeting(aSetOfContacts, date, notes);
+    }
+
+    @Override
+    public synchronized int addPastMeeting(Set<Contact> aSetOfContacts, long date, String notes) {
+        return changedMeetings.addPastMeeting(aSetOfContacts, date, notes);
+    }
+
+    /*
+     * A meeting the snapshot holds is only changed by being given notes
+     */
+    @Override
+    public synchronized void restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) {
+        if (aSetOfContacts == null) throw new IllegalArgumentException();
+        if (changedMeetings.getMeeting(id) == null && snapshot.hasMeeting(id)) {
+            if (notes == null) return;
+            keepChanged(id);
+        }
+        changedMeetings.restoreMeeting(id, aSetOfContacts, date, notes);
+    }
+
+    @Override
+    public synchronized int addMeetings(List<Set<Contact>> contactSets, long[] dates, List<String> notes) {
+        return changedMeetings.addMeetings(contactSets, dates, notes);
+    }
+
+    @Override
+    public synchronized void convertToPastMeeting(Meeting aMeeting, String notes) {
+        if (aMeeting == null || notes == null) throw new IllegalArgumentException();
+
+        keepChanged(aMeeting.getId());
+        changedMeetings.convertToPastMeeting(aMeeting, notes);
+    }
+
+    @Override
+    public int[] getMeetingIdListBy(Contact contact) {
+        return toIds(getMeetings(contact, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Override
+    public synchronized List<FutureMeeting> getFutureMeetings(Contact contact) {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return merge(snapshot.getMeetingIdsOf(contact.getId(), false), changedMeetings.getFutureMeetings(contact));
+    }
+
+    @Override
+    public synchronized List<PastMeeting> getPastMeetings(Contact contact) {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return merge(snapshot.getMeetingIdsOf(contact.getId(), true), changedMeetings.getPastMeetings(contact));
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(contact, from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public synchronized List<Meeting> getMeetings(Contact contact, long from, long to) {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return merge(snapshot.getMeetingIdsOf(contact.getId(), from, to), changedMeetings.getMeetings(contact, from, to));
+    }
+
+    @Override
+    public synchronized int getMeetingCount(Contact contact) {
+        if (contact == null) throw new IllegalArgumentException();
+
+        int count = changedMeetings.getMeetingCount(contact);
+        for (int id : snapshot.getMeetingIdsOf(contact.getId(), Long.MIN_VALUE, Long.MAX_VALUE)) {
+            if (changedMeetings.getMeeting(id) == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized Set<Integer> searchNotes(String query, boolean matchAll) {
+        if (query == null) throw new IllegalArgumentException();
+
+        Set<Integer> ids = new HashSet<>();
+        for (int id : indexSnapshotNotes().search(query, matchAll)) {
+            if (changedMeetings.getMeeting(id) == null) {
+                ids.add(id);
+            }
+        }
+        ids.addAll(changedMeetings.searchNotes(query, matchAll));
+        return ids;
+    }
+}
@@ -1,11 +1,10 @@
 package com.keimi.okamoto.app.organisers;
 
 import com.keimi.okamoto.app.items.Contact;
-import com.keimi.okamoto.app.items.FutureMeeting;
 import com.keimi.okamoto.app.items.Meeting;
-import com.keimi.okamoto.app.items.PastMeeting;
 
 import java.util.Calendar;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -13,7 +12,7 @@ import java.util.Set;
  * MeetingsContainer class created to take the implementation
  * responsibilities away from ContactManager.
  */
-public interface MeetingContainer {
+public interface MeetingContainer extends MeetingsView {
 
     /**
      * A method to add a future meeting, taking in a Set of contacts
@@ -26,53 +25,62 @@ public interface MeetingContainer {
     int addFutureMeeting(Set<Contact> aSetOfContacts, Calendar date);
 
     /**
-     * A method that checks if the date is in the future.
-     *
-     * @param date a date
-     * @return true if it is set in the future
-     */
-    boolean checkForFuture(Calendar date);
-
-    /**
-     * A method that checks if the date is in the past.
+     * A method to add a future meeting, taking in a Set of contacts
+     * and the date in milliseconds since the epoch.
      *
-     * @param date a date
-     * @return true if it is set in the past
+     * @param aSetOfContacts contacts that will attend the meeting
+     * @param date           date of a meeting, in milliseconds since the epoch
+     * @return the meeting id
      */
-    boolean checkForPast(Calendar date);
+    int addFutureMeeting(Set<Contact> aSetOfContacts, long date);
 
     /**
-     * A method that retrieves a future meeting by meeting id
+     * Adds a past meeting to map.
      *
-     * @param id an id of a meeting
-     * @return a FutureMeeting
+     * @param aSetOfContacts a set of contacts who attended the meeting
+     * @param date           the date the meeting was held
+     * @param notes          some notes about the meeting
+     * @return the meeting id
      */
-    FutureMeeting getFutureMeeting(int id);
+    int addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes);
 
     /**
-     * A method that retrieves a meeting by a meeting id
+     * Adds a past meeting to map.
      *
-     * @param id an id of a meeting
-     * @return a Meeting
+     * @param aSetOfContacts a set of contacts who attended the meeting
+     * @param date           the date the meeting was held, in milliseconds since the epoch
+     * @param notes          some notes about the meeting
+     * @return the meeting id
      */
-    Meeting getMeeting(int id);
+    int addPastMeeting(Set<Contact> aSetOfContacts, long date, String notes);
 
     /**
-     * Adds a past meeting to map.
+     * Puts back a meeting that was read from disk, keeping its id.
+     * The date is not checked against the current time. A meeting
+     * already held with that id is replaced, so a future meeting
+     * restored again with notes becomes a past meeting.
      *
-     * @param aSetOfContacts a set of contacts who attended the meeting
-     * @param date           the date the meeting was held
-     * @param notes          some notes about the meeting
+     * @param id             an id of a meeting
+     * @param aSetOfContacts a set of contacts who attend the meeting
+     * @param date           the date of the meeting, in milliseconds since the epoch
+     * @param notes          some notes about the meeting, or null for a future meeting
      */
-    void addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes);
+    void restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes);
 
     /**
-     * Retrieves the past meeting by id.
+     * Adds a batch of meetings in one go. They take consecutive ids, in
+     * the order given, from a block taken from the unique number generator
+     * at once, and are indexed together once they are all in. As with
+     * restoreMeeting, dates are not checked against the current time: a
+     * meeting with notes is a past meeting and one without is a future one.
      *
-     * @param id an id of a meeting
-     * @return a PastMeeting
+     * @param contactSets the contacts who attend each meeting
+     * @param dates       the date of each meeting, in milliseconds since the epoch
+     * @param notes       the notes of each meeting, or null for a future meeting
+     * @return the id of the first meeting, or -1 if there are none
+     * @throws IllegalArgumentException if a set of contacts is null or empty, or the sizes differ
      */
-    PastMeeting getPastMeeting(int id);
+    int addMeetings(List<Set<Contact>> contactSets, long[] dates, List<String> notes);
 
     /**
      * A method that converts a meeting to a meeting that
@@ -82,22 +90,4 @@ public interface MeetingContainer {
      * @param notes    some notes about the meeting
      */
     void convertToPastMeeting(Meeting aMeeting, String notes);
-
-    /**
-     * Gets a set of meeting id's with the specified
-     * contact.
-     *
-     * @param contact a contact
-     * @return a set of meeting ids
-     */
-    Set<Integer> getMeetingIdListBy(Contact contact);
-
-    /**
-     * Gets a set of meeting id's with the specified
-     * date.
-     *
-     * @param date a date the meeting was held
-     * @return a set of meeting ids
-     */
-    Set<Integer> getMeetingIdListBy(Calendar date);
 }
@@ -1,19 +1,34 @@
 package com.keimi.okamoto.app.organisers;
 
 import com.keimi.okamoto.app.items.*;
+import com.keimi.okamoto.app.utils.SystemClockImpl;
+import com.keimi.okamoto.app.utils.Clock;
+import com.keimi.okamoto.app.utils.ContactMeetingIndex;
+import com.keimi.okamoto.app.utils.ContactMeetingIndexImpl;
 import com.keimi.okamoto.app.utils.IllegalMeetingException;
 import com.keimi.okamoto.app.utils.MeetingFactory;
+import com.keimi.okamoto.app.utils.NotesIndex;
+import com.keimi.okamoto.app.utils.NotesIndexImpl;
+import com.keimi.okamoto.app.utils.PersistentIntMap;
 import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 
 
 public class MeetingContainerImpl implements MeetingContainer, Serializable {
+    private static final long serialVersionUID = 8174905571983582677L;
     private Map<Integer, Meeting> aMeetingMap;
+    private transient volatile PersistentIntMap<Meeting> meetingVersions;
     private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
     private MeetingFactory aMeetingFactory;
-    private Map<Integer, Set<Integer>> contactMeetingMap;
+    private transient ContactMeetingIndex contactMeetingIndex;
+    private transient NotesIndex aNotesIndex;
+    private transient NavigableMap<Long, Set<Integer>> timeIndex;
+    private Clock aClock;
+    private Set<Integer> changedMeetingIds;
 
     /**
      * Constructor method for MeetingContainerImpl
@@ -22,10 +37,26 @@ public class MeetingContainerImpl implements MeetingContainer, Serializable {
      * @param aUniqueNumberGeneratorUtilities a unique number generator
      */
     public MeetingContainerImpl(MeetingFactory aMeetingFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        this(aMeetingFactory, aUniqueNumberGeneratorUtilities, SystemClockImpl.getInstance());
+    }
+
+    /**
+     * Constructor method for MeetingContainerImpl
+     *
+     * @param aMeetingFactory                 a Factory in charge of creation of meetings
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     * @param aClock                          the clock that decides what is in the past and the future
+     */
+    public MeetingContainerImpl(MeetingFactory aMeetingFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock) {
         aMeetingMap = new HashMap<>();
+        meetingVersions = PersistentIntMap.empty();
         this.aMeetingFactory = aMeetingFactory;
         this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
-        contactMeetingMap = new HashMap<>();
+        this.aClock = aClock;
+        contactMeetingIndex = new ContactMeetingIndexImpl();
+        aNotesIndex = new NotesIndexImpl();
+        timeIndex = new TreeMap<>();
+        changedMeetingIds = new HashSet<>();
     }
 
     @Override
@@ -33,40 +64,160 @@ public class MeetingContainerImpl implements MeetingContainer, Serializable {
         if (checkForPast(date)) throw new IllegalArgumentException();
 
         int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
-        if (checkForFuture(date)) {
-            FutureMeeting aNewMeeting = null;
-            try {
-                aNewMeeting = aMeetingFactory.createFutureMeeting(uniqueID, date, aSetOfContacts);
-            } catch (IllegalMeetingException e) {
-                e.printStackTrace();
-            }
-            addToContactMeetingMap(aSetOfContacts, aNewMeeting);
-            aMeetingMap.put(uniqueID, aNewMeeting);
+        FutureMeeting aNewMeeting = null;
+        try {
+            aNewMeeting = aMeetingFactory.createFutureMeeting(uniqueID, date, aSetOfContacts);
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
         }
+        putFutureMeeting(aSetOfContacts, date.getTimeInMillis(), uniqueID, aNewMeeting);
         return uniqueID;
     }
 
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, long date) throws IllegalArgumentException {
+        if (checkForPast(date)) throw new IllegalArgumentException();
+
+        int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        FutureMeeting aNewMeeting = null;
+        try {
+            aNewMeeting = aMeetingFactory.createFutureMeeting(uniqueID, date, aSetOfContacts);
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+        putFutureMeeting(aSetOfContacts, date, uniqueID, aNewMeeting);
+        return uniqueID;
+    }
+
+    /*
+     * Helper method to store a new future meeting and index it
+     */
+    private void putFutureMeeting(Set<Contact> aSetOfContacts, long time, int meetingId, FutureMeeting aNewMeeting) {
+        addToContactMeetingIndex(aSetOfContacts, time, meetingId, false);
+        addToTimeIndex(time, meetingId);
+        aMeetingMap.put(meetingId, aNewMeeting);
+        putVersion(meetingId, aNewMeeting);
+        changedMeetingIds.add(meetingId);
+    }
+
+    /*
+     * Keeps the persistent copy of the map in step with it, so a snapshot does not have to copy the map
+     */
+    private void putVersion(int meetingId, Meeting aMeeting) {
+        meetingVersions = aMeeting == null ? meetingVersions.remove(meetingId) : meetingVersions.put(meetingId, aMeeting);
+    }
+
+    /*
+     * The persistent copy and the indexes are not written out with the container, so they are built again from
+     * the map when it is read. The serialVersionUID is that of the first containers written, which only held the
+     * map, so they are read with the system clock and as having no changes.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        meetingVersions = PersistentIntMap.empty();
+        contactMeetingIndex = new ContactMeetingIndexImpl();
+        aNotesIndex = new NotesIndexImpl();
+        timeIndex = new TreeMap<>();
+        if (aClock == null) {
+            aClock = SystemClockImpl.getInstance();
+        }
+        if (changedMeetingIds == null) {
+            changedMeetingIds = new HashSet<>();
+        }
+        for (Map.Entry<Integer, Meeting> entry : aMeetingMap.entrySet()) {
+            Meeting aMeeting = entry.getValue();
+            putVersion(entry.getKey(), aMeeting);
+            if (aMeeting != null) {
+                boolean past = aMeeting instanceof PastMeeting;
+                addToContactMeetingIndex(aMeeting.getContacts(), aMeeting.getTime(), aMeeting.getId(), past);
+                addToTimeIndex(aMeeting.getTime(), aMeeting.getId());
+                if (past) {
+                    aNotesIndex.addNotes(aMeeting.getId(), ((PastMeeting) aMeeting).getNotes());
+                }
+            }
+        }
+    }
+
+    /*
+     * Helper method to store a new past meeting and index it
+     */
+    private void putPastMeeting(Set<Contact> aSetOfContacts, long time, Meeting aNewMeeting, String notes) {
+        if (aNewMeeting != null) {
+            aMeetingMap.put(aNewMeeting.getId(), aNewMeeting);
+            putVersion(aNewMeeting.getId(), aNewMeeting);
+            changedMeetingIds.add(aNewMeeting.getId());
+            addToContactMeetingIndex(aSetOfContacts, time, aNewMeeting.getId(), true);
+            addToTimeIndex(time, aNewMeeting.getId());
+            aNotesIndex.addNotes(aNewMeeting.getId(), notes);
+        }
+    }
+
     /*
-     * Helper method to add to a contactMeetingMap
+     * Helper method to add a meeting to each of its contacts in the contactMeetingIndex
      */
-    private void addToContactMeetingMap(Set<Contact> aSetOfContacts, FutureMeeting aNewMeeting) {
+    private void addToContactMeetingIndex(Set<Contact> aSetOfContacts, long time, int meetingId, boolean past) {
         for (Contact contact : aSetOfContacts) {
-            Set<Integer> meetingIds = contactMeetingMap.get(contact.getId());
-            if (meetingIds == null) {
-                meetingIds = new HashSet<>();
-                meetingIds.add(aNewMeeting.getId());
-                contactMeetingMap.put(contact.getId(), meetingIds);
-            } else {
-                meetingIds.add(aNewMeeting.getId());
+            contactMeetingIndex.addMeeting(contact.getId(), time, meetingId, past);
+        }
+    }
+
+    /*
+     * Helper method to remove a meeting from each of its contacts in the contactMeetingIndex
+     */
+    private void removeFromContactMeetingIndex(Set<Contact> aSetOfContacts, long time, int meetingId, boolean past) {
+        for (Contact contact : aSetOfContacts) {
+            contactMeetingIndex.removeMeeting(contact.getId(), time, meetingId, past);
+        }
+    }
+
+    /*
+     * Helper method to add a meeting to the timeIndex, which keeps
+     * meeting ids in chronological order
+     */
+    private void addToTimeIndex(long time, int meetingId) {
+        Set<Integer> meetingIds = timeIndex.get(time);
+        if (meetingIds == null) {
+            meetingIds = new LinkedHashSet<>();
+            timeIndex.put(time, meetingIds);
+        }
+        meetingIds.add(meetingId);
+    }
+
+    /*
+     * Helper method that looks up meetings by id, keeping the order of the ids
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Meeting> List<T> listMeetings(int[] meetingIds) {
+        List<T> meetings = new ArrayList<>(meetingIds.length);
+        for (int id : meetingIds) {
+            meetings.add((T) aMeetingMap.get(id));
+        }
+        return meetings;
+    }
+
+    /*
+     * Helper method that lists, in chronological order, the ids of the
+     * meetings from the start time (inclusive) to the end time (exclusive)
+     */
+    private Set<Integer> getMeetingIdsBetween(long start, long end) {
+        Set<Integer> result = new LinkedHashSet<>();
+        if (start < end) {
+            for (Set<Integer> meetingIds : timeIndex.subMap(start, true, end, false).values()) {
+                result.addAll(meetingIds);
             }
         }
+        return result;
     }
 
     @Override
     public boolean checkForFuture(Calendar date) throws IllegalArgumentException {
         if (date == null) throw new IllegalArgumentException();
-        Calendar now = Calendar.getInstance();
-        return date.after(now);
+        return checkForFuture(date.getTimeInMillis());
+    }
+
+    @Override
+    public boolean checkForFuture(long date) {
+        return date > aClock.currentTimeMillis();
     }
 
     @Override
@@ -74,9 +225,15 @@ public class MeetingContainerImpl implements MeetingContainer, Serializable {
         return !checkForFuture(date);
     }
 
+    @Override
+    public boolean checkForPast(long date) {
+        return !checkForFuture(date);
+    }
+
     @Override
     public FutureMeeting getFutureMeeting(int id) {
-        return (FutureMeeting) aMeetingMap.get(id);
+        Meeting aMeeting = aMeetingMap.get(id);
+        return aMeeting instanceof FutureMeeting ? (FutureMeeting) aMeeting : null;
     }
 
     @Override
@@ -85,7 +242,49 @@ public class MeetingContainerImpl implements MeetingContainer, Serializable {
     }
 
     @Override
-    public void addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes) throws IllegalArgumentException {
+    public Collection<Meeting> getAllMeetings() {
+        return Collections.unmodifiableCollection(aMeetingMap.values());
+    }
+
+    @Override
+    public Set<Integer> takeChangedMeetingIds() {
+        Set<Integer> changed = changedMeetingIds;
+        changedMeetingIds = new HashSet<>();
+        return changed;
+    }
+
+    /**
+     * Gets the meetings as they are now, without copying them. Meetings are replaced
+     * rather than changed, so nothing done to this container afterwards shows in the
+     * snapshot, and it can be read while the container goes on changing.
+     *
+     * @return a MeetingsView
+     */
+    public MeetingsView getSnapshot() {
+        return new MeetingsSnapshot(meetingVersions, Collections.<Integer>emptySet(), aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock, false);
+    }
+
+    /**
+     * Gets the meetings as they are now, without copying them, and moves the ids of the
+     * meetings changed since the last snapshot was taken into it. Meetings are replaced
+     * rather than changed, so nothing done to this container afterwards shows in the
+     * snapshot, and it can be written to disk while the container goes on changing.
+     *
+     * @return a MeetingsView whose takeChangedMeetingIds gives the ids changed since the last snapshot was taken
+     */
+    public MeetingsView takeSnapshot() {
+        return new MeetingsSnapshot(meetingVersions, takeChangedMeetingIds(), aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock, false);
+    }
+
+    /*
+     * The version is published on every change, so it can be read from any thread while the container changes
+     */
+    PersistentIntMap<Meeting> getVersion() {
+        return meetingVersions;
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes) throws IllegalArgumentException {
         if (checkForFuture(date) || aSetOfContacts == null || notes == null) throw new IllegalArgumentException();
         Meeting aNewMeeting = null;
         int id = aUniqueNumberGeneratorUtilities.getUniqueNumber();
@@ -94,14 +293,103 @@ public class MeetingContainerImpl implements MeetingContainer, Serializable {
         } catch (IllegalMeetingException e) {
             e.printStackTrace();
         }
-        if (aNewMeeting != null) {
-            aMeetingMap.put(aNewMeeting.getId(), aNewMeeting);
+        putPastMeeting(aSetOfContacts, date.getTimeInMillis(), aNewMeeting, notes);
+        return id;
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, long date, String notes) throws IllegalArgumentException {
+        if (checkForFuture(date) || aSetOfContacts == null || notes == null) throw new IllegalArgumentException();
+        Meeting aNewMeeting = null;
+        int id = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        try {
+            aNewMeeting = aMeetingFactory.createPastMeeting(id, aSetOfContacts, date, notes);
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+        putPastMeeting(aSetOfContacts, date, aNewMeeting, notes);
+        return id;
+    }
+
+    @Override
+    public void restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) throws IllegalArgumentException {
+        if (aSetOfContacts == null) throw new IllegalArgumentException();
+        aUniqueNumberGeneratorUtilities.skipPast(id);
+
+        Meeting aMeeting = aMeetingMap.get(id);
+        if (aMeeting != null) {
+            if (notes != null) {
+                convertToPastMeeting(aMeeting, notes);
+            }
+            return;
+        }
+        try {
+            if (notes == null) {
+                putFutureMeeting(aSetOfContacts, date, id, aMeetingFactory.createFutureMeeting(id, date, aSetOfContacts));
+            } else {
+                putPastMeeting(aSetOfContacts, date, aMeetingFactory.createPastMeeting(id, aSetOfContacts, date, notes), notes);
+            }
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * Puts back a meeting that is already made into a container that does not hold it yet,
+     * so a copy of a container can share its meetings
+     */
+    void restoreMeeting(Meeting aMeeting) {
+        aUniqueNumberGeneratorUtilities.skipPast(aMeeting.getId());
+
+        if (aMeeting instanceof PastMeeting) {
+            putPastMeeting(aMeeting.getContacts(), aMeeting.getTime(), aMeeting, ((PastMeeting) aMeeting).getNotes());
+        } else {
+            putFutureMeeting(aMeeting.getContacts(), aMeeting.getTime(), aMeeting.getId(), (FutureMeeting) aMeeting);
+        }
+    }
+
+    /*
+     * The meetings go into the map first and into the indexes after, so each index is built in one pass
+     */
+    @Override
+    public int addMeetings(List<Set<Contact>> contactSets, long[] dates, List<String> notes) throws IllegalArgumentException {
+        if (contactSets == null || dates == null || notes == null) throw new IllegalArgumentException();
+        if (contactSets.size() != dates.length || notes.size() != dates.length) throw new IllegalArgumentException();
+        for (Set<Contact> aSetOfContacts : contactSets) {
+            if (aSetOfContacts == null || aSetOfContacts.isEmpty()) throw new IllegalArgumentException();
+        }
+        if (dates.length == 0) return -1;
+
+        int firstId = aUniqueNumberGeneratorUtilities.reserve(dates.length);
+        for (int i = 0; i < dates.length; i++) {
+            int id = firstId + i;
+            try {
+                Meeting aNewMeeting = notes.get(i) == null
+                        ? aMeetingFactory.createFutureMeeting(id, dates[i], contactSets.get(i))
+                        : aMeetingFactory.createPastMeeting(id, contactSets.get(i), dates[i], notes.get(i));
+                aMeetingMap.put(id, aNewMeeting);
+                putVersion(id, aNewMeeting);
+                changedMeetingIds.add(id);
+            } catch (IllegalMeetingException e) {
+                throw new IllegalArgumentException(e);
+            }
         }
+        for (int i = 0; i < dates.length; i++) {
+            int id = firstId + i;
+            boolean past = notes.get(i) != null;
+            addToContactMeetingIndex(contactSets.get(i), dates[i], id, past);
+            addToTimeIndex(dates[i], id);
+            if (past) {
+                aNotesIndex.addNotes(id, notes.get(i));
+            }
+        }
+        return firstId;
     }
 
     @Override
     public PastMeeting getPastMeeting(int id) {
-        return (PastMeeting) aMeetingMap.get(id);
+        Meeting aMeeting = aMeetingMap.get(id);
+        return aMeeting instanceof PastMeeting ? (PastMeeting) aMeeting : null;
     }
 
     @Override
@@ -114,28 +402,100 @@ public class MeetingContainerImpl implements MeetingContainer, Serializable {
 
         try {
             PastMeeting pastMeeting = aMeetingFactory.createPastMeeting(futureMeetingId, futureContactSet, futureMeetingDate, notes);
-            aMeetingMap.put(futureMeetingId, pastMeeting);
+            Meeting aReplacedMeeting = aMeetingMap.put(futureMeetingId, pastMeeting);
+            putVersion(futureMeetingId, pastMeeting);
+            changedMeetingIds.add(futureMeetingId);
+            if (aReplacedMeeting instanceof PastMeeting) {
+                aNotesIndex.removeNotes(futureMeetingId, ((PastMeeting) aReplacedMeeting).getNotes());
+            }
+            aNotesIndex.addNotes(futureMeetingId, notes);
+
+            long time = futureMeetingDate.getTimeInMillis();
+            removeFromContactMeetingIndex(futureContactSet, time, futureMeetingId, false);
+            addToContactMeetingIndex(futureContactSet, time, futureMeetingId, true);
+            addToTimeIndex(time, futureMeetingId);
         } catch (IllegalMeetingException e) {
             e.printStackTrace();
         }
     }
 
     @Override
-    public Set<Integer> getMeetingIdListBy(Contact contact) throws IllegalArgumentException {
+    public int[] getMeetingIdListBy(Contact contact) throws IllegalArgumentException {
         if (contact == null) throw new IllegalArgumentException();
-        return contactMeetingMap.get(contact.getId());
+
+        return contactMeetingIndex.getMeetingIds(contact.getId(), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<FutureMeeting> getFutureMeetings(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), false));
+    }
+
+    @Override
+    public List<PastMeeting> getPastMeetings(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), true));
     }
 
     @Override
     public Set<Integer> getMeetingIdListBy(Calendar date) throws IllegalArgumentException {
         if (date == null) throw new IllegalArgumentException();
 
-        Set<Integer> meetingIds = new HashSet<>();
-        for (Meeting meeting : aMeetingMap.values()) {
-            if (meeting instanceof FutureMeeting && meeting.getDate() == date) {
-                meetingIds.add(meeting.getId());
-            }
+        Calendar startOfDay = (Calendar) date.clone();
+        startOfDay.set(Calendar.HOUR_OF_DAY, 0);
+        startOfDay.set(Calendar.MINUTE, 0);
+        startOfDay.set(Calendar.SECOND, 0);
+        startOfDay.set(Calendar.MILLISECOND, 0);
+        Calendar startOfNextDay = (Calendar) startOfDay.clone();
+        startOfNextDay.add(Calendar.DATE, 1);
+
+        return getMeetingIdsBetween(startOfDay.getTimeInMillis(), startOfNextDay.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(long from, long to) {
+        List<Meeting> meetings = new ArrayList<>();
+        for (int id : getMeetingIdsBetween(from, to)) {
+            meetings.add(aMeetingMap.get(id));
         }
-        return meetingIds;
+        return meetings;
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(contact, from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, long from, long to) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return listMeetings(contactMeetingIndex.getMeetingIds(contact.getId(), from, to));
+    }
+
+    @Override
+    public int getMeetingCount(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return contactMeetingIndex.getMeetingCount(contact.getId());
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        return aNotesIndex.search(query, matchAll);
     }
 }
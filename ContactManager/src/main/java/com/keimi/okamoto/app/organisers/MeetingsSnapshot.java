@@ -0,0 +1,226 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.FutureMeeting;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.utils.AtomicUniqueNumberGeneratorImpl;
+import com.keimi.okamoto.app.utils.Clock;
+import com.keimi.okamoto.app.utils.MeetingFactory;
+import com.keimi.okamoto.app.utils.PersistentIntMap;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The meetings of a MeetingContainerImpl or VersionedMeetingContainerImpl
+ * at one point in time.
+ * <p/>
+ * Looking meetings up by id reads the version straight away. The
+ * contact, date and notes indexes are only built, from the version, the
+ * first time a query needs them, so a snapshot taken for a flush or a
+ * scan costs nothing but the reference to the version. A snapshot is
+ * written to a stream as its meetings alone, and read back as the kind
+ * of container it was taken from, holding them.
+ */
+class MeetingsSnapshot implements MeetingsView, Serializable {
+    private final PersistentIntMap<Meeting> meetings;
+    private final MeetingFactory aMeetingFactory;
+    private final UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private final Clock aClock;
+    private final boolean versioned;
+    private Set<Integer> changedMeetingIds;
+    private transient MeetingContainerImpl indexed;
+
+    MeetingsSnapshot(PersistentIntMap<Meeting> meetings, Set<Integer> changedMeetingIds, MeetingFactory aMeetingFactory,
+                     UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock, boolean versioned) {
+        this.meetings = meetings;
+        this.changedMeetingIds = changedMeetingIds;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        this.aClock = aClock;
+        this.versioned = versioned;
+    }
+
+    /*
+     * Builds a container with indexes from the version the first time one is needed, sharing its meetings.
+     * It has a generator of its own, so building it leaves the generator of the live container alone.
+     */
+    private synchronized MeetingContainerImpl indexed() {
+        if (indexed == null) {
+            MeetingContainerImpl copy = new MeetingContainerImpl(aMeetingFactory, new AtomicUniqueNumberGeneratorImpl(1), aClock);
+            for (Meeting m : meetings.values()) {
+                copy.restoreMeeting(m);
+            }
+            copy.takeChangedMeetingIds();
+            indexed = copy;
+        }
+        return indexed;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerialForm(this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("A MeetingsSnapshot is read through its SerialForm");
+    }
+
+    /*
+     * What a snapshot is written as: the meetings of the version, with what is needed to put them back
+     * into the kind of container the snapshot was taken from. Nothing is indexed until the stream is read.
+     */
+    private static class SerialForm implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final MeetingFactory aMeetingFactory;
+        private final UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+        private final Clock aClock;
+        private final boolean versioned;
+        private transient Collection<Meeting> meetings;
+
+        SerialForm(MeetingsSnapshot snapshot) {
+            this.aMeetingFactory = snapshot.aMeetingFactory;
+            this.aUniqueNumberGeneratorUtilities = snapshot.aUniqueNumberGeneratorUtilities;
+            this.aClock = snapshot.aClock;
+            this.versioned = snapshot.versioned;
+            this.meetings = snapshot.meetings.values();
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            out.writeInt(meetings.size());
+            for (Meeting m : meetings) {
+                out.writeObject(m);
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            int count = in.readInt();
+            if (count < 0) throw new InvalidObjectException("Negative meeting count " + count);
+            List<Meeting> read = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                read.add((Meeting) in.readObject());
+            }
+            meetings = read;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            if (versioned) {
+                VersionedMeetingContainerImpl container = new VersionedMeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock);
+                for (Meeting m : meetings) {
+                    container.restoreMeeting(m);
+                }
+                container.takeChangedMeetingIds();
+                return container;
+            }
+            MeetingContainerImpl container = new MeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock);
+            for (Meeting m : meetings) {
+                container.restoreMeeting(m);
+            }
+            container.takeChangedMeetingIds();
+            return container;
+        }
+    }
+
+    @Override
+    public boolean checkForFuture(Calendar date) {
+        if (date == null) throw new IllegalArgumentException();
+        return checkForFuture(date.getTimeInMillis());
+    }
+
+    @Override
+    public boolean checkForFuture(long date) {
+        return date > aClock.currentTimeMillis();
+    }
+
+    @Override
+    public boolean checkForPast(Calendar date) {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForPast(long date) {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting aMeeting = meetings.get(id);
+        return aMeeting instanceof FutureMeeting ? (FutureMeeting) aMeeting : null;
+    }
+
+    @Override
+    public Meeting getMeeting(int id) {
+        return meetings.get(id);
+    }
+
+    @Override
+    public Collection<Meeting> getAllMeetings() {
+        return meetings.values();
+    }
+
+    @Override
+    public synchronized Set<Integer> takeChangedMeetingIds() {
+        Set<Integer> changed = changedMeetingIds;
+        changedMeetingIds = new HashSet<>();
+        return changed;
+    }
+
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        Meeting aMeeting = meetings.get(id);
+        return aMeeting instanceof PastMeeting ? (PastMeeting) aMeeting : null;
+    }
+
+    @Override
+    public int[] getMeetingIdListBy(Contact contact) {
+        return indexed().getMeetingIdListBy(contact);
+    }
+
+    @Override
+    public List<FutureMeeting> getFutureMeetings(Contact contact) {
+        return indexed().getFutureMeetings(contact);
+    }
+
+    @Override
+    public List<PastMeeting> getPastMeetings(Contact contact) {
+        return indexed().getPastMeetings(contact);
+    }
+
+    @Override
+    public Set<Integer> getMeetingIdListBy(Calendar date) {
+        return indexed().getMeetingIdListBy(date);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) {
+        return indexed().getMeetings(from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(long from, long to) {
+        return indexed().getMeetings(from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) {
+        return indexed().getMeetings(contact, from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, long from, long to) {
+        return indexed().getMeetings(contact, from, to);
+    }
+
+    @Override
+    public int getMeetingCount(Contact contact) {
+        return indexed().getMeetingCount(contact);
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) {
+        return indexed().searchNotes(query, matchAll);
+    }
+}
@@ -0,0 +1,187 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.FutureMeeting;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The meetings of a MeetingContainer, read but not changed.
+ * A snapshot of a container only gives this much, and it is all
+ * a DiskWriter needs to write the meetings out.
+ */
+public interface MeetingsView {
+
+    /**
+     * A method that checks if the date is in the future.
+     *
+     * @param date a date
+     * @return true if it is set in the future
+     */
+    boolean checkForFuture(Calendar date);
+
+    /**
+     * A method that checks if the date is in the future.
+     *
+     * @param date a date, in milliseconds since the epoch
+     * @return true if it is set in the future
+     */
+    boolean checkForFuture(long date);
+
+    /**
+     * A method that checks if the date is in the past.
+     *
+     * @param date a date
+     * @return true if it is set in the past
+     */
+    boolean checkForPast(Calendar date);
+
+    /**
+     * A method that checks if the date is in the past.
+     *
+     * @param date a date, in milliseconds since the epoch
+     * @return true if it is set in the past
+     */
+    boolean checkForPast(long date);
+
+    /**
+     * A method that retrieves a future meeting by meeting id
+     *
+     * @param id an id of a meeting
+     * @return a FutureMeeting, or null if there is no meeting with that id or it is a past meeting
+     */
+    FutureMeeting getFutureMeeting(int id);
+
+    /**
+     * A method that retrieves a meeting by a meeting id
+     *
+     * @param id an id of a meeting
+     * @return a Meeting
+     */
+    Meeting getMeeting(int id);
+
+    /**
+     * Gets every meeting, past and future, in no particular order.
+     *
+     * @return a read-only view of all the meetings
+     */
+    Collection<Meeting> getAllMeetings();
+
+    /**
+     * Gets the ids of the meetings added, converted or
+     * replaced since the last call, and starts keeping track again.
+     *
+     * @return the ids of the changed meetings
+     */
+    Set<Integer> takeChangedMeetingIds();
+
+    /**
+     * Retrieves the past meeting by id.
+     *
+     * @param id an id of a meeting
+     * @return a PastMeeting, or null if there is no meeting with that id or it is a future meeting
+     */
+    PastMeeting getPastMeeting(int id);
+
+    /**
+     * Gets the meeting id's, past and future, with
+     * the specified contact.
+     *
+     * @param contact a contact
+     * @return meeting ids in chronological order, empty if there are none
+     */
+    int[] getMeetingIdListBy(Contact contact);
+
+    /**
+     * Gets the future meetings with the specified contact.
+     *
+     * @param contact a contact
+     * @return a list of future meetings in chronological order
+     */
+    List<FutureMeeting> getFutureMeetings(Contact contact);
+
+    /**
+     * Gets the past meetings with the specified contact.
+     *
+     * @param contact a contact
+     * @return a list of past meetings in chronological order
+     */
+    List<PastMeeting> getPastMeetings(Contact contact);
+
+    /**
+     * Gets a set of meeting id's held on the same
+     * day as the specified date, whatever the time.
+     * The set iterates in chronological order.
+     *
+     * @param date a date the meeting was held
+     * @return a set of meeting ids
+     */
+    Set<Integer> getMeetingIdListBy(Calendar date);
+
+    /**
+     * Gets the meetings held from one date (inclusive)
+     * up to another (exclusive).
+     *
+     * @param from the earliest date of a meeting
+     * @param to   the date all meetings are before
+     * @return a list of meetings in chronological order
+     */
+    List<Meeting> getMeetings(Calendar from, Calendar to);
+
+    /**
+     * Gets the meetings held from one date (inclusive)
+     * up to another (exclusive).
+     *
+     * @param from the earliest date of a meeting, in milliseconds since the epoch
+     * @param to   the date all meetings are before, in milliseconds since the epoch
+     * @return a list of meetings in chronological order
+     */
+    List<Meeting> getMeetings(long from, long to);
+
+    /**
+     * Gets the meetings with the specified contact held
+     * from one date (inclusive) up to another (exclusive).
+     *
+     * @param contact a contact
+     * @param from    the earliest date of a meeting
+     * @param to      the date all meetings are before
+     * @return a list of meetings in chronological order
+     */
+    List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to);
+
+    /**
+     * Gets the meetings with the specified contact held
+     * from one date (inclusive) up to another (exclusive).
+     *
+     * @param contact a contact
+     * @param from    the earliest date of a meeting, in milliseconds since the epoch
+     * @param to      the date all meetings are before, in milliseconds since the epoch
+     * @return a list of meetings in chronological order
+     */
+    List<Meeting> getMeetings(Contact contact, long from, long to);
+
+    /**
+     * Gets the number of meetings the specified
+     * contact has been scheduled for.
+     *
+     * @param contact a contact
+     * @return the number of meetings with the contact
+     */
+    int getMeetingCount(Contact contact);
+
+    /**
+     * Gets the ids of the past meetings whose notes contain
+     * the words of the query.
+     *
+     * @param query    one or more words to search for
+     * @param matchAll true if the notes must contain all of the words,
+     *                 false if any of the words is enough
+     * @return a set of meeting ids
+     */
+    Set<Integer> searchNotes(String query, boolean matchAll);
+}
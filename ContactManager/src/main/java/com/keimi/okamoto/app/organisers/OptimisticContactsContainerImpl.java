@@ -0,0 +1,176 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.utils.SequenceLock;
+
+import java.util.*;
+
+/**
+ * ContactsContainer that lets many threads read a ContactsContainerImpl,
+ * or any other ContactsContainer made for one thread, while one of them
+ * writes to it.
+ * <p/>
+ * Every change takes the write lock of a SequenceLock. Looking contacts
+ * up by id or by name only reads hash tables, so with optimistic reads
+ * those take no lock unless something is written while they run.
+ * Prefix searches walk a tree and notes searches walk whole posting
+ * lists, so those always take the read lock.
+ */
+public class OptimisticContactsContainerImpl implements ContactsContainer {
+    private final ContactsContainer aContactsContainer;
+    private final SequenceLock lock;
+
+    /**
+     * Constructor for OptimisticContactsContainerImpl
+     *
+     * @param aContactsContainer the container that holds the contacts, which no one else may use
+     * @param optimisticReads    whether reads are tried without the lock first
+     */
+    public OptimisticContactsContainerImpl(ContactsContainer aContactsContainer, boolean optimisticReads) {
+        if (aContactsContainer == null) throw new IllegalArgumentException();
+
+        this.aContactsContainer = aContactsContainer;
+        this.lock = new SequenceLock(optimisticReads);
+    }
+
+    /**
+     * Returns the lock the contacts are guarded by.
+     *
+     * @return the lock
+     */
+    public SequenceLock getLock() {
+        return lock;
+    }
+
+    @Override
+    public int addContact(String name, String notes) {
+        lock.lockWrite();
+        try {
+            return aContactsContainer.addContact(name, notes);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public void restoreContact(int contactId, String name, String notes) {
+        lock.lockWrite();
+        try {
+            aContactsContainer.restoreContact(contactId, name, notes);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public int addContacts(List<String> names, List<String> notes) {
+        lock.lockWrite();
+        try {
+            return aContactsContainer.addContacts(names, notes);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public Contact getContact(final int contactId) {
+        return lock.read(new SequenceLock.Read<Contact>() {
+            @Override
+            public Contact read() {
+                return aContactsContainer.getContact(contactId);
+            }
+        });
+    }
+
+    /*
+     * The contacts are copied, as a view of them could not be read without the lock
+     */
+    @Override
+    public Collection<Contact> getAllContacts() {
+        return lock.readLocked(new SequenceLock.Read<Collection<Contact>>() {
+            @Override
+            public Collection<Contact> read() {
+                return Collections.unmodifiableList(new ArrayList<>(aContactsContainer.getAllContacts()));
+            }
+        });
+    }
+
+    @Override
+    public Set<Integer> takeChangedContactIds() {
+        lock.lockWrite();
+        try {
+            return aContactsContainer.takeChangedContactIds();
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public boolean checkForValidId(final int... ids) {
+        return lock.read(new SequenceLock.Read<Boolean>() {
+            @Override
+            public Boolean read() {
+                return aContactsContainer.checkForValidId(ids);
+            }
+        });
+    }
+
+    @Override
+    public Set<Contact> getContacts(final String name) {
+        return lock.read(new SequenceLock.Read<Set<Contact>>() {
+            @Override
+            public Set<Contact> read() {
+                return aContactsContainer.getContacts(name);
+            }
+        });
+    }
+
+    @Override
+    public boolean checkForValidName(final String name) {
+        return lock.read(new SequenceLock.Read<Boolean>() {
+            @Override
+            public Boolean read() {
+                return aContactsContainer.checkForValidName(name);
+            }
+        });
+    }
+
+    @Override
+    public List<Contact> getContactsByPrefix(final String prefix, final int limit) {
+        return lock.readLocked(new SequenceLock.Read<List<Contact>>() {
+            @Override
+            public List<Contact> read() {
+                return aContactsContainer.getContactsByPrefix(prefix, limit);
+            }
+        });
+    }
+
+    /*
+     * A read under the sequence lock is only checked when it returns, so the contacts are gathered
+     * under it rather than read as the iterator moves
+     */
+    @Override
+    public Iterator<Contact> iterateContactsByPrefix(String prefix) {
+        return getContactsByPrefix(prefix, Integer.MAX_VALUE).iterator();
+    }
+
+    @Override
+    public Set<Integer> searchNotes(final String query, final boolean matchAll) {
+        return lock.readLocked(new SequenceLock.Read<Set<Integer>>() {
+            @Override
+            public Set<Integer> read() {
+                return aContactsContainer.searchNotes(query, matchAll);
+            }
+        });
+    }
+
+    @Override
+    public boolean checkForValidSetOfContacts(final Set<Contact> aSetOfContacts) {
+        return lock.read(new SequenceLock.Read<Boolean>() {
+            @Override
+            public Boolean read() {
+                return aContactsContainer.checkForValidSetOfContacts(aSetOfContacts);
+            }
+        });
+    }
+}
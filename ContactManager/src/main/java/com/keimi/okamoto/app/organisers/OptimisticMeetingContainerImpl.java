@@ -0,0 +1,291 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.FutureMeeting;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.utils.SequenceLock;
+
+import java.util.*;
+
+/**
+ * MeetingContainer that lets many threads read a MeetingContainerImpl,
+ * or any other MeetingContainer made for one thread, while one of them
+ * writes to it.
+ * <p/>
+ * Every change takes the write lock of a SequenceLock. Looking meetings
+ * up by id or by contact only reads hash tables and arrays, so with
+ * optimistic reads those take no lock unless something is written while
+ * they run. Reads that walk a tree or a whole collection, such as the
+ * meetings between two dates, always take the read lock, as a tree
+ * caught half rebalanced is not safe to walk.
+ */
+public class OptimisticMeetingContainerImpl implements MeetingContainer {
+    private final MeetingContainer aMeetingContainer;
+    private final SequenceLock lock;
+
+    /**
+     * Constructor for OptimisticMeetingContainerImpl
+     *
+     * @param aMeetingContainer the container that holds the meetings, which no one else may use
+     * @param optimisticReads   whether reads are tried without the lock first
+     */
+    public OptimisticMeetingContainerImpl(MeetingContainer aMeetingContainer, boolean optimisticReads) {
+        if (aMeetingContainer == null) throw new IllegalArgumentException();
+
+        this.aMeetingContainer = aMeetingContainer;
+        this.lock = new SequenceLock(optimisticReads);
+    }
+
+    /**
+     * Returns the lock the meetings are guarded by.
+     *
+     * @return the lock
+     */
+    public SequenceLock getLock() {
+        return lock;
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, Calendar date) {
+        lock.lockWrite();
+        try {
+            return aMeetingContainer.addFutureMeeting(aSetOfContacts, date);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, long date) {
+        lock.lockWrite();
+        try {
+            return aMeetingContainer.addFutureMeeting(aSetOfContacts, date);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public boolean checkForFuture(Calendar date) {
+        return aMeetingContainer.checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForFuture(long date) {
+        return aMeetingContainer.checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForPast(Calendar date) {
+        return aMeetingContainer.checkForPast(date);
+    }
+
+    @Override
+    public boolean checkForPast(long date) {
+        return aMeetingContainer.checkForPast(date);
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(final int id) {
+        return lock.read(new SequenceLock.Read<FutureMeeting>() {
+            @Override
+            public FutureMeeting read() {
+                return aMeetingContainer.getFutureMeeting(id);
+            }
+        });
+    }
+
+    @Override
+    public Meeting getMeeting(final int id) {
+        return lock.read(new SequenceLock.Read<Meeting>() {
+            @Override
+            public Meeting read() {
+                return aMeetingContainer.getMeeting(id);
+            }
+        });
+    }
+
+    /*
+     * The meetings are copied, as a view of them could not be read without the lock
+     */
+    @Override
+    public Collection<Meeting> getAllMeetings() {
+        return lock.readLocked(new SequenceLock.Read<Collection<Meeting>>() {
+            @Override
+            public Collection<Meeting> read() {
+                return Collections.unmodifiableList(new ArrayList<>(aMeetingContainer.getAllMeetings()));
+            }
+        });
+    }
+
+    @Override
+    public Set<Integer> takeChangedMeetingIds() {
+        lock.lockWrite();
+        try {
+            return aMeetingContainer.takeChangedMeetingIds();
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes) {
+        lock.lockWrite();
+        try {
+            return aMeetingContainer.addPastMeeting(aSetOfContacts, date, notes);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, long date, String notes) {
+        lock.lockWrite();
+        try {
+            return aMeetingContainer.addPastMeeting(aSetOfContacts, date, notes);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public void restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) {
+        lock.lockWrite();
+        try {
+            aMeetingContainer.restoreMeeting(id, aSetOfContacts, date, notes);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public int addMeetings(List<Set<Contact>> contactSets, long[] dates, List<String> notes) {
+        lock.lockWrite();
+        try {
+            return aMeetingContainer.addMeetings(contactSets, dates, notes);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public PastMeeting getPastMeeting(final int id) {
+        return lock.read(new SequenceLock.Read<PastMeeting>() {
+            @Override
+            public PastMeeting read() {
+                return aMeetingContainer.getPastMeeting(id);
+            }
+        });
+    }
+
+    @Override
+    public void convertToPastMeeting(Meeting aMeeting, String notes) {
+        lock.lockWrite();
+        try {
+            aMeetingContainer.convertToPastMeeting(aMeeting, notes);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    @Override
+    public int[] getMeetingIdListBy(final Contact contact) {
+        return lock.read(new SequenceLock.Read<int[]>() {
+            @Override
+            public int[] read() {
+                return aMeetingContainer.getMeetingIdListBy(contact);
+            }
+        });
+    }
+
+    @Override
+    public List<FutureMeeting> getFutureMeetings(final Contact contact) {
+        return lock.read(new SequenceLock.Read<List<FutureMeeting>>() {
+            @Override
+            public List<FutureMeeting> read() {
+                return aMeetingContainer.getFutureMeetings(contact);
+            }
+        });
+    }
+
+    @Override
+    public List<PastMeeting> getPastMeetings(final Contact contact) {
+        return lock.read(new SequenceLock.Read<List<PastMeeting>>() {
+            @Override
+            public List<PastMeeting> read() {
+                return aMeetingContainer.getPastMeetings(contact);
+            }
+        });
+    }
+
+    @Override
+    public Set<Integer> getMeetingIdListBy(final Calendar date) {
+        return lock.readLocked(new SequenceLock.Read<Set<Integer>>() {
+            @Override
+            public Set<Integer> read() {
+                return aMeetingContainer.getMeetingIdListBy(date);
+            }
+        });
+    }
+
+    @Override
+    public List<Meeting> getMeetings(final Calendar from, final Calendar to) {
+        return lock.readLocked(new SequenceLock.Read<List<Meeting>>() {
+            @Override
+            public List<Meeting> read() {
+                return aMeetingContainer.getMeetings(from, to);
+            }
+        });
+    }
+
+    @Override
+    public List<Meeting> getMeetings(final long from, final long to) {
+        return lock.readLocked(new SequenceLock.Read<List<Meeting>>() {
+            @Override
+            public List<Meeting> read() {
+                return aMeetingContainer.getMeetings(from, to);
+            }
+        });
+    }
+
+    @Override
+    public List<Meeting> getMeetings(final Contact contact, final Calendar from, final Calendar to) {
+        return lock.read(new SequenceLock.Read<List<Meeting>>() {
+            @Override
+            public List<Meeting> read() {
+                return aMeetingContainer.getMeetings(contact, from, to);
+            }
+        });
+    }
+
+    @Override
+    public List<Meeting> getMeetings(final Contact contact, final long from, final long to) {
+        return lock.read(new SequenceLock.Read<List<Meeting>>() {
+            @Override
+            public List<Meeting> read() {
+                return aMeetingContainer.getMeetings(contact, from, to);
+            }
+        });
+    }
+
+    @Override
+    public int getMeetingCount(final Contact contact) {
+        return lock.read(new SequenceLock.Read<Integer>() {
+            @Override
+            public Integer read() {
+                return aMeetingContainer.getMeetingCount(contact);
+            }
+        });
+    }
+
+    @Override
+    public Set<Integer> searchNotes(final String query, final boolean matchAll) {
+        return lock.readLocked(new SequenceLock.Read<Set<Integer>>() {
+            @Override
+            public Set<Integer> read() {
+                return aMeetingContainer.searchNotes(query, matchAll);
+            }
+        });
+    }
+}
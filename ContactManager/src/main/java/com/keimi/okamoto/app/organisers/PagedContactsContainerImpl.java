@@ -0,0 +1,152 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.utils.ContactFactory;
+import com.keimi.okamoto.app.utils.PagedStore;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+
+import java.util.*;
+
+/**
+ * A ContactsContainer kept in a PagedStore. Nothing is held in memory
+ * but the pages in the store's buffer pool: every lookup goes through the
+ * store's B+trees and decodes the contact it finds, and a contact that is
+ * added goes straight into the store.
+ * <p/>
+ * Since contacts are decoded on each lookup, two lookups of the same id
+ * return two Contact objects.
+ */
+public class PagedContactsContainerImpl implements ContactsContainer {
+    private PagedStore store;
+    private ContactFactory aContactFactory;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+
+    /**
+     * Constructor for PagedContactsContainerImpl
+     *
+     * @param store                           the store the contacts are kept in
+     * @param aContactFactory                 a Factory in charge of creation of contacts
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     */
+    public PagedContactsContainerImpl(PagedStore store, ContactFactory aContactFactory,
+                                      UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        this.store = store;
+        this.aContactFactory = aContactFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+    }
+
+    @Override
+    public int addContact(String name, String notes) throws IllegalArgumentException {
+        if (name == null || notes == null) throw new IllegalArgumentException();
+        int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+
+        store.putContact(aContactFactory.createContact(uniqueID, name, notes));
+        return uniqueID;
+    }
+
+    @Override
+    public void restoreContact(int contactId, String name, String notes) throws IllegalArgumentException {
+        if (name == null || notes == null) throw new IllegalArgumentException();
+        aUniqueNumberGeneratorUtilities.skipPast(contactId);
+
+        store.putContact(aContactFactory.createContact(contactId, name, notes));
+    }
+
+    @Override
+    public int addContacts(List<String> names, List<String> notes) throws IllegalArgumentException {
+        if (names == null || notes == null || names.size() != notes.size()) throw new IllegalArgumentException();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i) == null || notes.get(i) == null) throw new IllegalArgumentException();
+        }
+        if (names.isEmpty()) return -1;
+
+        int firstId = aUniqueNumberGeneratorUtilities.reserve(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            store.putContact(aContactFactory.createContact(firstId + i, names.get(i), notes.get(i)));
+        }
+        return firstId;
+    }
+
+    @Override
+    public Contact getContact(int contactId) {
+        return store.readContact(contactId, aContactFactory);
+    }
+
+    @Override
+    public Collection<Contact> getAllContacts() {
+        int[] ids = store.getContactIds();
+        List<Contact> contacts = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            contacts.add(getContact(id));
+        }
+        return Collections.unmodifiableList(contacts);
+    }
+
+    /*
+     * Contacts are written to the store as they are added, so none are ever waiting to be written
+     */
+    @Override
+    public Set<Integer> takeChangedContactIds() {
+        return new HashSet<>();
+    }
+
+    @Override
+    public boolean checkForValidId(int... ids) {
+        boolean result = true;
+        for (int id : ids) {
+            if (!store.hasContact(id)) {
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Contact> getContacts(String name) throws IllegalArgumentException {
+        if (name == null) throw new IllegalArgumentException();
+
+        return new HashSet<>(store.getContactsNamed(name, aContactFactory));
+    }
+
+    @Override
+    public boolean checkForValidName(String name) throws IllegalArgumentException {
+        if (name == null) throw new IllegalArgumentException();
+
+        return !store.getContactsNamed(name, aContactFactory).isEmpty();
+    }
+
+    @Override
+    public List<Contact> getContactsByPrefix(String prefix, int limit) throws IllegalArgumentException {
+        if (prefix == null || limit < 1) throw new IllegalArgumentException();
+
+        return store.getContactsByPrefix(prefix, limit, aContactFactory);
+    }
+
+    /*
+     * The store hands out the contacts of a scan only once the scan is over, so they are gathered first
+     */
+    @Override
+    public Iterator<Contact> iterateContactsByPrefix(String prefix) {
+        return getContactsByPrefix(prefix, Integer.MAX_VALUE).iterator();
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        return store.searchContactNotes(query, matchAll);
+    }
+
+    @Override
+    public boolean checkForValidSetOfContacts(Set<Contact> aSetOfContacts) throws IllegalArgumentException {
+        if (aSetOfContacts == null) throw new IllegalArgumentException();
+
+        boolean result = false;
+        for (Contact c : aSetOfContacts) {
+            if (checkForValidId(c.getId())) {
+                result = true;
+            }
+        }
+        return result;
+    }
+}
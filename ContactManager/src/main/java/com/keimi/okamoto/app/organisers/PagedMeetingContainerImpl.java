@@ -0,0 +1,338 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.*;
+import com.keimi.okamoto.app.utils.*;
+
+import java.util.*;
+
+/**
+ * A MeetingContainer kept in a PagedStore. Meetings are looked up through
+ * the store's B+trees, by id, by date and by attendee, and decoded when
+ * they are found; a meeting that is added or turned into a past meeting
+ * goes straight into the store.
+ * <p/>
+ * The store lists a contact's meetings in order of id, so the meetings of
+ * a contact are read and then put in chronological order.
+ */
+public class PagedMeetingContainerImpl implements MeetingContainer {
+    private PagedStore store;
+    private ContactsContainer aContactsContainer;
+    private MeetingFactory aMeetingFactory;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private Clock aClock;
+
+    /**
+     * Constructor for PagedMeetingContainerImpl
+     *
+     * @param store                           the store the meetings are kept in
+     * @param aContactsContainer              the container the attendees are looked up in
+     * @param aMeetingFactory                 a Factory in charge of creation of meetings
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     * @param aClock                          the clock that decides what is in the past and the future
+     */
+    public PagedMeetingContainerImpl(PagedStore store, ContactsContainer aContactsContainer, MeetingFactory aMeetingFactory,
+                                     UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock) {
+        this.store = store;
+        this.aContactsContainer = aContactsContainer;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        this.aClock = aClock;
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, Calendar date) throws IllegalArgumentException {
+        if (checkForPast(date)) throw new IllegalArgumentException();
+
+        int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        try {
+            putMeeting(aMeetingFactory.createFutureMeeting(uniqueID, date, aSetOfContacts));
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+        return uniqueID;
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, long date) throws IllegalArgumentException {
+        if (checkForPast(date)) throw new IllegalArgumentException();
+
+        int uniqueID = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        try {
+            putMeeting(aMeetingFactory.createFutureMeeting(uniqueID, date, aSetOfContacts));
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+        return uniqueID;
+    }
+
+    /*
+     * Helper method to store a meeting, leaving out one the factory did not make
+     */
+    private void putMeeting(Meeting aMeeting) {
+        if (aMeeting != null) {
+            store.putMeeting(aMeeting);
+        }
+    }
+
+    /*
+     * Helper method that looks up meetings by id, keeping the order of the ids
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Meeting> List<T> listMeetings(int[] meetingIds) {
+        List<T> meetings = new ArrayList<>(meetingIds.length);
+        for (int id : meetingIds) {
+            meetings.add((T) getMeeting(id));
+        }
+        return meetings;
+    }
+
+    /*
+     * Helper method that reads the meetings of a contact, in chronological order
+     */
+    private List<Meeting> getContactMeetings(Contact contact) {
+        List<Meeting> meetings = listMeetings(store.getMeetingIdsWith(contact.getId()));
+        Collections.sort(meetings, new Comparator<Meeting>() {
+            @Override
+            public int compare(Meeting o1, Meeting o2) {
+                return Long.compare(o1.getTime(), o2.getTime());
+            }
+        });
+        return meetings;
+    }
+
+    @Override
+    public boolean checkForFuture(Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+        return checkForFuture(date.getTimeInMillis());
+    }
+
+    @Override
+    public boolean checkForFuture(long date) {
+        return date > aClock.currentTimeMillis();
+    }
+
+    @Override
+    public boolean checkForPast(Calendar date) throws IllegalArgumentException {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForPast(long date) {
+        return !checkForFuture(date);
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting aMeeting = getMeeting(id);
+        return aMeeting instanceof FutureMeeting ? (FutureMeeting) aMeeting : null;
+    }
+
+    @Override
+    public Meeting getMeeting(int id) {
+        return store.readMeeting(id, aContactsContainer, aMeetingFactory);
+    }
+
+    @Override
+    public Collection<Meeting> getAllMeetings() {
+        return Collections.unmodifiableList(listMeetings(store.getMeetingIds()));
+    }
+
+    /*
+     * Meetings are written to the store as they change, so none are ever waiting to be written
+     */
+    @Override
+    public Set<Integer> takeChangedMeetingIds() {
+        return new HashSet<>();
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes) throws IllegalArgumentException {
+        if (checkForFuture(date) || aSetOfContacts == null || notes == null) throw new IllegalArgumentException();
+        int id = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        try {
+            putMeeting(aMeetingFactory.createPastMeeting(id, aSetOfContacts, date, notes));
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+        return id;
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, long date, String notes) throws IllegalArgumentException {
+        if (checkForFuture(date) || aSetOfContacts == null || notes == null) throw new IllegalArgumentException();
+        int id = aUniqueNumberGeneratorUtilities.getUniqueNumber();
+        try {
+            putMeeting(aMeetingFactory.createPastMeeting(id, aSetOfContacts, date, notes));
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+        return id;
+    }
+
+    @Override
+    public void restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) throws IllegalArgumentException {
+        if (aSetOfContacts == null) throw new IllegalArgumentException();
+        aUniqueNumberGeneratorUtilities.skipPast(id);
+
+        Meeting aMeeting = getMeeting(id);
+        if (aMeeting != null) {
+            if (notes != null) {
+                convertToPastMeeting(aMeeting, notes);
+            }
+            return;
+        }
+        try {
+            if (notes == null) {
+                putMeeting(aMeetingFactory.createFutureMeeting(id, date, aSetOfContacts));
+            } else {
+                putMeeting(aMeetingFactory.createPastMeeting(id, aSetOfContacts, date, notes));
+            }
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public int addMeetings(List<Set<Contact>> contactSets, long[] dates, List<String> notes) throws IllegalArgumentException {
+        if (contactSets == null || dates == null || notes == null) throw new IllegalArgumentException();
+        if (contactSets.size() != dates.length || notes.size() != dates.length) throw new IllegalArgumentException();
+        for (Set<Contact> aSetOfContacts : contactSets) {
+            if (aSetOfContacts == null || aSetOfContacts.isEmpty()) throw new IllegalArgumentException();
+        }
+        if (dates.length == 0) return -1;
+
+        int firstId = aUniqueNumberGeneratorUtilities.reserve(dates.length);
+        for (int i = 0; i < dates.length; i++) {
+            try {
+                if (notes.get(i) == null) {
+                    putMeeting(aMeetingFactory.createFutureMeeting(firstId + i, dates[i], contactSets.get(i)));
+                } else {
+                    putMeeting(aMeetingFactory.createPastMeeting(firstId + i, contactSets.get(i), dates[i], notes.get(i)));
+                }
+            } catch (IllegalMeetingException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        return firstId;
+    }
+
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        Meeting aMeeting = getMeeting(id);
+        return aMeeting instanceof PastMeeting ? (PastMeeting) aMeeting : null;
+    }
+
+    @Override
+    public void convertToPastMeeting(Meeting aMeeting, String notes) throws IllegalArgumentException {
+        if (aMeeting == null || notes == null) throw new IllegalArgumentException();
+
+        try {
+            putMeeting(aMeetingFactory.createPastMeeting(aMeeting.getId(), aMeeting.getContacts(), aMeeting.getDate(), notes));
+        } catch (IllegalMeetingException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public int[] getMeetingIdListBy(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        List<Meeting> meetings = getContactMeetings(contact);
+        int[] ids = new int[meetings.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = meetings.get(i).getId();
+        }
+        return ids;
+    }
+
+    @Override
+    public List<FutureMeeting> getFutureMeetings(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        List<FutureMeeting> meetings = new ArrayList<>();
+        for (Meeting meeting : getContactMeetings(contact)) {
+            if (!(meeting instanceof PastMeeting)) {
+                meetings.add((FutureMeeting) meeting);
+            }
+        }
+        return meetings;
+    }
+
+    @Override
+    public List<PastMeeting> getPastMeetings(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        List<PastMeeting> meetings = new ArrayList<>();
+        for (Meeting meeting : getContactMeetings(contact)) {
+            if (meeting instanceof PastMeeting) {
+                meetings.add((PastMeeting) meeting);
+            }
+        }
+        return meetings;
+    }
+
+    @Override
+    public Set<Integer> getMeetingIdListBy(Calendar date) throws IllegalArgumentException {
+        if (date == null) throw new IllegalArgumentException();
+
+        Calendar startOfDay = (Calendar) date.clone();
+        startOfDay.set(Calendar.HOUR_OF_DAY, 0);
+        startOfDay.set(Calendar.MINUTE, 0);
+        startOfDay.set(Calendar.SECOND, 0);
+        startOfDay.set(Calendar.MILLISECOND, 0);
+        Calendar startOfNextDay = (Calendar) startOfDay.clone();
+        startOfNextDay.add(Calendar.DATE, 1);
+
+        Set<Integer> meetingIds = new LinkedHashSet<>();
+        for (int id : store.getMeetingIdsBetween(startOfDay.getTimeInMillis(), startOfNextDay.getTimeInMillis())) {
+            meetingIds.add(id);
+        }
+        return meetingIds;
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(long from, long to) {
+        return listMeetings(store.getMeetingIdsBetween(from, to));
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException();
+
+        return getMeetings(contact, from.getTimeInMillis(), to.getTimeInMillis());
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, long from, long to) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        List<Meeting> meetings = new ArrayList<>();
+        for (Meeting meeting : getContactMeetings(contact)) {
+            if (meeting.getTime() >= from && meeting.getTime() < to) {
+                meetings.add(meeting);
+            }
+        }
+        return meetings;
+    }
+
+    @Override
+    public int getMeetingCount(Contact contact) throws IllegalArgumentException {
+        if (contact == null) throw new IllegalArgumentException();
+
+        return store.getMeetingIdsWith(contact.getId()).length;
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        return store.searchMeetingNotes(query, matchAll);
+    }
+}
@@ -0,0 +1,56 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+
+import java.util.*;
+
+/**
+ * Goes through the contacts of a prefix index whose keys start with a
+ * prefix, moving along the index only as far as it is asked to, so a
+ * caller that stops early never reads the rest of the range.
+ */
+class PrefixIterator implements Iterator<Contact> {
+    private final String key;
+    private final Iterator<Map.Entry<String, Set<Contact>>> entries;
+    private Iterator<Contact> contacts = Collections.<Contact>emptyIterator();
+    private boolean pastRange;
+
+    /**
+     * Constructor for PrefixIterator
+     *
+     * @param prefixIndex the contacts by their names in lower case
+     * @param key         the prefix in lower case
+     */
+    PrefixIterator(NavigableMap<String, Set<Contact>> prefixIndex, String key) {
+        this.key = key;
+        this.entries = prefixIndex.tailMap(key, true).entrySet().iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!contacts.hasNext()) {
+            if (pastRange || !entries.hasNext()) return false;
+
+            Map.Entry<String, Set<Contact>> entry = entries.next();
+            if (!entry.getKey().startsWith(key)) {
+                // the keys after this one are past the range too
+                pastRange = true;
+                return false;
+            }
+            contacts = entry.getValue().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public Contact next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        return contacts.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
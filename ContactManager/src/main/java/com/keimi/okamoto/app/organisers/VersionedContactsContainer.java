@@ -0,0 +1,27 @@
+package com.keimi.okamoto.app.organisers;
+
+/**
+ * A ContactsContainer that keeps its contacts in versions that never
+ * change, so it can hand out the contacts as they are now without
+ * copying them, while changes go on making new versions.
+ */
+public interface VersionedContactsContainer extends ContactsContainer {
+
+    /**
+     * Gets the contacts as they are now. Nothing done to this container
+     * afterwards shows in the snapshot, which only reads.
+     *
+     * @return a ContactsView
+     */
+    ContactsView getSnapshot();
+
+    /**
+     * Gets the contacts as they are now, like getSnapshot, and moves the
+     * ids of the contacts changed since the last snapshot was taken into
+     * it, for writing to disk.
+     *
+     * @return a ContactsView whose takeChangedContactIds
+     * gives the ids changed since the last snapshot was taken
+     */
+    ContactsView takeSnapshot();
+}
@@ -0,0 +1,135 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.utils.ContactFactory;
+import com.keimi.okamoto.app.utils.PersistentIntMap;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * VersionedContactsContainer over a ContactsContainerImpl, which keeps
+ * the contacts by id in a PersistentIntMap as well as in its indexes.
+ * Each change makes a new version of the map and publishes it, so a
+ * snapshot is only a reference to the version of the moment, and a
+ * version is reclaimed once no snapshot holds it.
+ * <p/>
+ * Changes, and the queries that use the indexes, must come from one
+ * thread at a time, as with ContactsContainerImpl, but looking contacts
+ * up by id and taking snapshots read the published version and can be
+ * done from any thread at any time.
+ */
+public class VersionedContactsContainerImpl implements VersionedContactsContainer, Serializable {
+    private final ContactsContainerImpl aContactsContainer;
+    private final ContactFactory aContactFactory;
+    private final UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+
+    /**
+     * Constructor for VersionedContactsContainerImpl
+     *
+     * @param aContactFactory                 the factory the contacts are made with
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     */
+    public VersionedContactsContainerImpl(ContactFactory aContactFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        this.aContactsContainer = new ContactsContainerImpl(aContactFactory, aUniqueNumberGeneratorUtilities);
+        this.aContactFactory = aContactFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+    }
+
+    @Override
+    public int addContact(String name, String notes) {
+        return aContactsContainer.addContact(name, notes);
+    }
+
+    @Override
+    public void restoreContact(int contactId, String name, String notes) {
+        aContactsContainer.restoreContact(contactId, name, notes);
+    }
+
+    /*
+     * Puts back a contact that is already made, so a snapshot read from a stream can share its contacts
+     */
+    void restoreContact(Contact aContact) {
+        aContactsContainer.restoreContact(aContact);
+    }
+
+    @Override
+    public int addContacts(List<String> names, List<String> notes) {
+        return aContactsContainer.addContacts(names, notes);
+    }
+
+    @Override
+    public ContactsView getSnapshot() {
+        return new ContactsSnapshot(aContactsContainer.getVersion(), Collections.<Integer>emptySet(), aContactFactory,
+                aUniqueNumberGeneratorUtilities, true);
+    }
+
+    /*
+     * Callers take the snapshot in the same critical section as their changes, so no change falls between the two
+     */
+    @Override
+    public ContactsView takeSnapshot() {
+        return new ContactsSnapshot(aContactsContainer.getVersion(), aContactsContainer.takeChangedContactIds(), aContactFactory,
+                aUniqueNumberGeneratorUtilities, true);
+    }
+
+    @Override
+    public Contact getContact(int contactId) {
+        return aContactsContainer.getVersion().get(contactId);
+    }
+
+    /*
+     * The version is never changed, so the contacts can be read while new ones are added
+     */
+    @Override
+    public Collection<Contact> getAllContacts() {
+        return aContactsContainer.getVersion().values();
+    }
+
+    @Override
+    public Set<Integer> takeChangedContactIds() {
+        return aContactsContainer.takeChangedContactIds();
+    }
+
+    @Override
+    public boolean checkForValidId(int... ids) {
+        PersistentIntMap<Contact> version = aContactsContainer.getVersion();
+        for (int id : ids) {
+            if (!version.containsKey(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Set<Contact> getContacts(String name) {
+        return aContactsContainer.getContacts(name);
+    }
+
+    @Override
+    public boolean checkForValidName(String name) {
+        return aContactsContainer.checkForValidName(name);
+    }
+
+    @Override
+    public List<Contact> getContactsByPrefix(String prefix, int limit) {
+        return aContactsContainer.getContactsByPrefix(prefix, limit);
+    }
+
+    @Override
+    public Iterator<Contact> iterateContactsByPrefix(String prefix) {
+        return aContactsContainer.iterateContactsByPrefix(prefix);
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) {
+        return aContactsContainer.searchNotes(query, matchAll);
+    }
+
+    @Override
+    public boolean checkForValidSetOfContacts(Set<Contact> aSetOfContacts) {
+        return aContactsContainer.checkForValidSetOfContacts(aSetOfContacts);
+    }
+}
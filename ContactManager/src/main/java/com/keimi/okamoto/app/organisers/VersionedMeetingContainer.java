@@ -0,0 +1,27 @@
+package com.keimi.okamoto.app.organisers;
+
+/**
+ * A MeetingContainer that keeps its meetings in versions that never
+ * change, so it can hand out the meetings as they are now without
+ * copying them, while changes go on making new versions.
+ */
+public interface VersionedMeetingContainer extends MeetingContainer {
+
+    /**
+     * Gets the meetings as they are now. Nothing done to this container
+     * afterwards shows in the snapshot, which only reads.
+     *
+     * @return a MeetingsView
+     */
+    MeetingsView getSnapshot();
+
+    /**
+     * Gets the meetings as they are now, like getSnapshot, and moves the
+     * ids of the meetings changed since the last snapshot was taken into
+     * it, for writing to disk.
+     *
+     * @return a MeetingsView whose takeChangedMeetingIds
+     * gives the ids changed since the last snapshot was taken
+     */
+    MeetingsView takeSnapshot();
+}
@@ -0,0 +1,213 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.FutureMeeting;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.utils.SystemClockImpl;
+import com.keimi.okamoto.app.utils.Clock;
+import com.keimi.okamoto.app.utils.MeetingFactory;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * VersionedMeetingContainer over a MeetingContainerImpl, which keeps
+ * the meetings by id in a PersistentIntMap as well as in its indexes.
+ * Each change makes a new version of the map and publishes it, so a
+ * snapshot is only a reference to the version of the moment, and a
+ * version is reclaimed once no snapshot holds it.
+ * <p/>
+ * Changes, and the queries that use the indexes, must come from one
+ * thread at a time, as with MeetingContainerImpl, but looking meetings
+ * up by id and taking snapshots read the published version and can be
+ * done from any thread at any time.
+ */
+public class VersionedMeetingContainerImpl implements VersionedMeetingContainer, Serializable {
+    private final MeetingContainerImpl aMeetingContainer;
+    private final MeetingFactory aMeetingFactory;
+    private final UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private final Clock aClock;
+
+    /**
+     * Constructor for VersionedMeetingContainerImpl
+     *
+     * @param aMeetingFactory                 the factory the meetings are made with
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     */
+    public VersionedMeetingContainerImpl(MeetingFactory aMeetingFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        this(aMeetingFactory, aUniqueNumberGeneratorUtilities, SystemClockImpl.getInstance());
+    }
+
+    /**
+     * Constructor for VersionedMeetingContainerImpl
+     *
+     * @param aMeetingFactory                 the factory the meetings are made with
+     * @param aUniqueNumberGeneratorUtilities a unique number generator
+     * @param aClock                          the clock that decides what is in the past and the future
+     */
+    public VersionedMeetingContainerImpl(MeetingFactory aMeetingFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock) {
+        this.aMeetingContainer = new MeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock);
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        this.aClock = aClock;
+    }
+
+    @Override
+    public MeetingsView getSnapshot() {
+        return new MeetingsSnapshot(aMeetingContainer.getVersion(), Collections.<Integer>emptySet(), aMeetingFactory,
+                aUniqueNumberGeneratorUtilities, aClock, true);
+    }
+
+    /*
+     * Callers take the snapshot in the same critical section as their changes, so no change falls between the two
+     */
+    @Override
+    public MeetingsView takeSnapshot() {
+        return new MeetingsSnapshot(aMeetingContainer.getVersion(), aMeetingContainer.takeChangedMeetingIds(), aMeetingFactory,
+                aUniqueNumberGeneratorUtilities, aClock, true);
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, Calendar date) {
+        return aMeetingContainer.addFutureMeeting(aSetOfContacts, date);
+    }
+
+    @Override
+    public int addFutureMeeting(Set<Contact> aSetOfContacts, long date) {
+        return aMeetingContainer.addFutureMeeting(aSetOfContacts, date);
+    }
+
+    @Override
+    public boolean checkForFuture(Calendar date) {
+        return aMeetingContainer.checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForFuture(long date) {
+        return aMeetingContainer.checkForFuture(date);
+    }
+
+    @Override
+    public boolean checkForPast(Calendar date) {
+        return aMeetingContainer.checkForPast(date);
+    }
+
+    @Override
+    public boolean checkForPast(long date) {
+        return aMeetingContainer.checkForPast(date);
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting aMeeting = aMeetingContainer.getVersion().get(id);
+        return aMeeting instanceof FutureMeeting ? (FutureMeeting) aMeeting : null;
+    }
+
+    @Override
+    public Meeting getMeeting(int id) {
+        return aMeetingContainer.getVersion().get(id);
+    }
+
+    /*
+     * The version is never changed, so the meetings can be read while new ones are added
+     */
+    @Override
+    public Collection<Meeting> getAllMeetings() {
+        return aMeetingContainer.getVersion().values();
+    }
+
+    @Override
+    public Set<Integer> takeChangedMeetingIds() {
+        return aMeetingContainer.takeChangedMeetingIds();
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, Calendar date, String notes) {
+        return aMeetingContainer.addPastMeeting(aSetOfContacts, date, notes);
+    }
+
+    @Override
+    public int addPastMeeting(Set<Contact> aSetOfContacts, long date, String notes) {
+        return aMeetingContainer.addPastMeeting(aSetOfContacts, date, notes);
+    }
+
+    @Override
+    public void restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) {
+        aMeetingContainer.restoreMeeting(id, aSetOfContacts, date, notes);
+    }
+
+    /*
+     * Puts back a meeting that is already made, so a snapshot read from a stream can share its meetings
+     */
+    void restoreMeeting(Meeting aMeeting) {
+        aMeetingContainer.restoreMeeting(aMeeting);
+    }
+
+    @Override
+    public int addMeetings(List<Set<Contact>> contactSets, long[] dates, List<String> notes) {
+        return aMeetingContainer.addMeetings(contactSets, dates, notes);
+    }
+
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        Meeting aMeeting = aMeetingContainer.getVersion().get(id);
+        return aMeeting instanceof PastMeeting ? (PastMeeting) aMeeting : null;
+    }
+
+    @Override
+    public void convertToPastMeeting(Meeting aMeeting, String notes) {
+        aMeetingContainer.convertToPastMeeting(aMeeting, notes);
+    }
+
+    @Override
+    public int[] getMeetingIdListBy(Contact contact) {
+        return aMeetingContainer.getMeetingIdListBy(contact);
+    }
+
+    @Override
+    public List<FutureMeeting> getFutureMeetings(Contact contact) {
+        return aMeetingContainer.getFutureMeetings(contact);
+    }
+
+    @Override
+    public List<PastMeeting> getPastMeetings(Contact contact) {
+        return aMeetingContainer.getPastMeetings(contact);
+    }
+
+    @Override
+    public Set<Integer> getMeetingIdListBy(Calendar date) {
+        return aMeetingContainer.getMeetingIdListBy(date);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) {
+        return aMeetingContainer.getMeetings(from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(long from, long to) {
+        return aMeetingContainer.getMeetings(from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, Calendar from, Calendar to) {
+        return aMeetingContainer.getMeetings(contact, from, to);
+    }
+
+    @Override
+    public List<Meeting> getMeetings(Contact contact, long from, long to) {
+        return aMeetingContainer.getMeetings(contact, from, to);
+    }
+
+    @Override
+    public int getMeetingCount(Contact contact) {
+        return aMeetingContainer.getMeetingCount(contact);
+    }
+
+    @Override
+    public Set<Integer> searchNotes(String query, boolean matchAll) {
+        return aMeetingContainer.searchNotes(query, matchAll);
+    }
+}
@@ -0,0 +1,122 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A unique number generator that many threads can use at once without
+ * waiting for each other.
+ * <p/>
+ * The numbers come from an AtomicLong, the high-water mark: every number
+ * below it may have been handed out. Each thread takes a block of
+ * numbers from it at a time and hands them out one by one from a
+ * ThreadLocal, so getUniqueNumber touches shared memory only once a
+ * block. The numbers are unique but not in order across threads, and
+ * the rest of a thread's block is lost when the program stops.
+ * <p/>
+ * skipPast raises a floor as well as the high-water mark, and a thread
+ * whose block is below the floor drops it and takes a new one, so a
+ * number read back from disk is never handed out again.
+ */
+public class AtomicUniqueNumberGeneratorImpl implements UniqueNumberGeneratorUtilities, Serializable {
+    private static final long LIMIT = Integer.MAX_VALUE + 1L;
+
+    private final int blockSize;
+    private final AtomicLong highWaterMark;
+    private volatile long floor;
+    private final transient ThreadLocal<Block> blocks = new ThreadLocal<Block>() {
+        @Override
+        protected Block initialValue() {
+            return new Block();
+        }
+    };
+
+    /*
+     * The numbers a thread has left in the block it took
+     */
+    private static class Block {
+        private long next;
+        private long end;
+    }
+
+    /**
+     * Constructor for AtomicUniqueNumberGeneratorImpl
+     *
+     * @param blockSize the number of numbers a thread takes at a time
+     */
+    public AtomicUniqueNumberGeneratorImpl(int blockSize) {
+        this(blockSize, 0);
+    }
+
+    /**
+     * Constructor for an AtomicUniqueNumberGeneratorImpl that starts at a given number.
+     *
+     * @param blockSize the number of numbers a thread takes at a time
+     * @param start     the first number that may be handed out
+     */
+    public AtomicUniqueNumberGeneratorImpl(int blockSize, int start) {
+        if (blockSize < 1 || start < 0) throw new IllegalArgumentException();
+
+        this.blockSize = blockSize;
+        highWaterMark = new AtomicLong(start);
+        floor = start;
+    }
+
+    @Override
+    public int getUniqueNumber() {
+        Block block = blocks.get();
+        if (block.next >= block.end || block.next < floor) {
+            long start = take(blockSize);
+            block.next = start;
+            block.end = Math.min(start + blockSize, LIMIT);
+        }
+        return (int) block.next++;
+    }
+
+    @Override
+    public int reserve(int count) {
+        if (count < 1) throw new IllegalArgumentException();
+
+        return (int) take(count);
+    }
+
+    /*
+     * Moves the high-water mark past count numbers and returns the first of them
+     */
+    private long take(int count) {
+        long start = highWaterMark.getAndAdd(count);
+        if (start + count > LIMIT) throw new IllegalStateException("There are no unique numbers left");
+        return start;
+    }
+
+    @Override
+    public void skipPast(int number) {
+        long next = number + 1L;
+        long current;
+        while ((current = highWaterMark.get()) < next) {
+            if (highWaterMark.compareAndSet(current, next)) break;
+        }
+        synchronized (this) {
+            if (floor < next) {
+                floor = next;
+            }
+        }
+    }
+
+    /**
+     * Gets the high-water mark. Every number handed out, or in a block
+     * taken by a thread, is below it.
+     *
+     * @return the high-water mark
+     */
+    public long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    /*
+     * The blocks belong to the threads of this run, so a copy that is read back starts afresh at the high-water mark
+     */
+    private Object readResolve() {
+        return new AtomicUniqueNumberGeneratorImpl(blockSize, (int) Math.min(highWaterMark.get(), Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,405 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A B+tree of (long key, long value) entries kept in the pages of a
+ * BufferPool, one node to a page. Leaves are chained in key order so a
+ * range is read by finding its first leaf and following the chain.
+ * <p/>
+ * A unique tree maps each key to one value, and putting a key that is
+ * already there replaces its value. A tree that is not unique keeps any
+ * number of values for a key, ordered by key and then value, which is how
+ * the secondary indexes of a PagedStore hold more than one id for a date,
+ * contact or word.
+ * <p/>
+ * Entries are taken out of their leaf without merging nodes, so a tree
+ * that has had a lot removed can be left with leaves that are nearly
+ * empty. The tree is not thread safe.
+ */
+public class BPlusTree {
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int TYPE = 0;
+    private static final int COUNT = 1;
+    private static final int LINK = 3;
+    private static final int ENTRIES = 11;
+    private static final int LEAF_ENTRY = 16;
+    private static final int INTERNAL_ENTRY = 24;
+    private static final long NO_PAGE = -1;
+
+    private final BufferPool pool;
+    private final boolean unique;
+    private final int leafCapacity;
+    private final int internalCapacity;
+    private long root;
+
+    /**
+     * Visits the entries of a range in order.
+     */
+    public interface Visitor {
+        /**
+         * @param key   the key of the entry
+         * @param value the value of the entry
+         * @return false to stop the scan
+         * @throws IOException if the visitor cannot read what it needs
+         */
+        boolean visit(long key, long value) throws IOException;
+    }
+
+    /*
+     * What a node that has split hands up to its parent
+     */
+    private static class Split {
+        private final long key;
+        private final long value;
+        private final long page;
+
+        private Split(long key, long value, long page) {
+            this.key = key;
+            this.value = value;
+            this.page = page;
+        }
+    }
+
+    /**
+     * Constructor for a tree that is already in the pool.
+     *
+     * @param pool   the pages of the tree
+     * @param root   the page of its root
+     * @param unique true if each key has one value
+     */
+    public BPlusTree(BufferPool pool, long root, boolean unique) {
+        this.pool = pool;
+        this.root = root;
+        this.unique = unique;
+        this.leafCapacity = (pool.getPageSize() - ENTRIES) / LEAF_ENTRY;
+        this.internalCapacity = (pool.getPageSize() - ENTRIES) / INTERNAL_ENTRY;
+    }
+
+    /**
+     * Makes an empty tree, with a leaf for its root.
+     *
+     * @param pool   the pool to allocate the root in
+     * @param unique true if each key has one value
+     * @return the tree
+     * @throws IOException if the root cannot be allocated
+     */
+    public static BPlusTree create(BufferPool pool, boolean unique) throws IOException {
+        BufferPool.Page page = pool.allocate();
+        try {
+            page.getData().put(TYPE, LEAF);
+            page.getData().putLong(LINK, NO_PAGE);
+        } finally {
+            pool.unpin(page);
+        }
+        return new BPlusTree(pool, page.getNumber(), unique);
+    }
+
+    /**
+     * @return the page of the root, which changes when the root splits
+     */
+    public long getRoot() {
+        return root;
+    }
+
+    /**
+     * Adds an entry. In a unique tree the value of a key that is already
+     * there is replaced; otherwise an entry that is already there is left as it is.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return true if the tree has one more entry than before
+     * @throws IOException if a page cannot be read or written
+     */
+    public boolean put(long key, long value) throws IOException {
+        boolean[] added = new boolean[1];
+        Split split = insert(root, key, value, added);
+        if (split != null) {
+            BufferPool.Page page = pool.allocate();
+            try {
+                ByteBuffer data = page.getData();
+                data.put(TYPE, INTERNAL);
+                data.putShort(COUNT, (short) 1);
+                data.putLong(LINK, root);
+                data.putLong(ENTRIES, split.key);
+                data.putLong(ENTRIES + 8, split.value);
+                data.putLong(ENTRIES + 16, split.page);
+            } finally {
+                pool.unpin(page);
+            }
+            root = page.getNumber();
+        }
+        return added[0];
+    }
+
+    /**
+     * Looks up the value of a key in a unique tree.
+     *
+     * @param key     the key
+     * @param missing what to return if the key is not there
+     * @return the value of the key, or missing
+     * @throws IOException if a page cannot be read
+     */
+    public long get(long key, long missing) throws IOException {
+        BufferPool.Page page = pool.pin(findLeaf(key, Long.MIN_VALUE));
+        try {
+            ByteBuffer data = page.getData();
+            int position = search(data, LEAF_ENTRY, key, Long.MIN_VALUE);
+            if (position < count(data) && data.getLong(ENTRIES + position * LEAF_ENTRY) == key) {
+                return data.getLong(ENTRIES + position * LEAF_ENTRY + 8);
+            }
+            return missing;
+        } finally {
+            pool.unpin(page);
+        }
+    }
+
+    /**
+     * Takes an entry out of the tree. In a unique tree the value is not
+     * looked at, and the key is taken out whatever its value.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return true if the entry was there
+     * @throws IOException if a page cannot be read or written
+     */
+    public boolean remove(long key, long value) throws IOException {
+        BufferPool.Page page = pool.pin(findLeaf(key, value));
+        try {
+            ByteBuffer data = page.getData();
+            int count = count(data);
+            int position = search(data, LEAF_ENTRY, key, value);
+            if (position == count || compare(entryKey(data, position), entryValue(data, position), key, value) != 0) {
+                return false;
+            }
+            int offset = ENTRIES + position * LEAF_ENTRY;
+            System.arraycopy(data.array(), offset + LEAF_ENTRY, data.array(), offset, (count - position - 1) * LEAF_ENTRY);
+            data.putShort(COUNT, (short) (count - 1));
+            page.markDirty();
+            return true;
+        } finally {
+            pool.unpin(page);
+        }
+    }
+
+    /**
+     * Visits, in order, the entries with keys from one key (inclusive)
+     * to another (exclusive).
+     *
+     * @param from    the first key
+     * @param to      the key to stop at
+     * @param visitor what to call with each entry
+     * @throws IOException if a page cannot be read, or the visitor throws it
+     */
+    public void scan(long from, long to, Visitor visitor) throws IOException {
+        if (from >= to) return;
+
+        long next = findLeaf(from, Long.MIN_VALUE);
+        int position = -1;
+        while (next != NO_PAGE) {
+            BufferPool.Page page = pool.pin(next);
+            try {
+                ByteBuffer data = page.getData();
+                if (position < 0) {
+                    position = search(data, LEAF_ENTRY, from, Long.MIN_VALUE);
+                }
+                for (int count = count(data); position < count; position++) {
+                    long key = entryKey(data, position);
+                    if (key >= to || !visitor.visit(key, entryValue(data, position))) return;
+                }
+                next = data.getLong(LINK);
+                position = 0;
+            } finally {
+                pool.unpin(page);
+            }
+        }
+    }
+
+    /*
+     * Walks down from the root to the leaf an entry belongs in
+     */
+    private long findLeaf(long key, long value) throws IOException {
+        long number = root;
+        while (true) {
+            BufferPool.Page page = pool.pin(number);
+            try {
+                ByteBuffer data = page.getData();
+                if (data.get(TYPE) == LEAF) return number;
+
+                number = child(data, childIndex(data, key, value));
+            } finally {
+                pool.unpin(page);
+            }
+        }
+    }
+
+    /*
+     * Inserts into the subtree under a page, returning how the page split if it did
+     */
+    private Split insert(long number, long key, long value, boolean[] added) throws IOException {
+        BufferPool.Page page = pool.pin(number);
+        try {
+            ByteBuffer data = page.getData();
+            if (data.get(TYPE) == LEAF) return insertIntoLeaf(page, key, value, added);
+
+            int index = childIndex(data, key, value);
+            Split split = insert(child(data, index), key, value, added);
+            if (split == null) return null;
+
+            return insertIntoInternal(page, index, split);
+        } finally {
+            pool.unpin(page);
+        }
+    }
+
+    private Split insertIntoLeaf(BufferPool.Page page, long key, long value, boolean[] added) throws IOException {
+        ByteBuffer data = page.getData();
+        int count = count(data);
+        int position = search(data, LEAF_ENTRY, key, value);
+        if (position < count && compare(entryKey(data, position), entryValue(data, position), key, value) == 0) {
+            if (unique) {
+                data.putLong(ENTRIES + position * LEAF_ENTRY + 8, value);
+                page.markDirty();
+            }
+            return null;
+        }
+        added[0] = true;
+        page.markDirty();
+
+        byte[] entries = withEntry(data, count, LEAF_ENTRY, position, key, value, 0);
+        if (count < leafCapacity) {
+            System.arraycopy(entries, 0, data.array(), ENTRIES, entries.length);
+            data.putShort(COUNT, (short) (count + 1));
+            return null;
+        }
+
+        int left = (count + 1) / 2;
+        BufferPool.Page right = pool.allocate();
+        try {
+            ByteBuffer rightData = right.getData();
+            rightData.put(TYPE, LEAF);
+            rightData.putShort(COUNT, (short) (count + 1 - left));
+            rightData.putLong(LINK, data.getLong(LINK));
+            System.arraycopy(entries, left * LEAF_ENTRY, rightData.array(), ENTRIES, (count + 1 - left) * LEAF_ENTRY);
+
+            System.arraycopy(entries, 0, data.array(), ENTRIES, left * LEAF_ENTRY);
+            data.putShort(COUNT, (short) left);
+            data.putLong(LINK, right.getNumber());
+            return new Split(rightData.getLong(ENTRIES), rightData.getLong(ENTRIES + 8), right.getNumber());
+        } finally {
+            pool.unpin(right);
+        }
+    }
+
+    /*
+     * Adds the separator of a child that has split after the child it split from,
+     * splitting this node too if it is full and handing its middle separator up
+     */
+    private Split insertIntoInternal(BufferPool.Page page, int index, Split split) throws IOException {
+        ByteBuffer data = page.getData();
+        int count = count(data);
+        byte[] entries = withEntry(data, count, INTERNAL_ENTRY, index, split.key, split.value, split.page);
+        page.markDirty();
+        if (count < internalCapacity) {
+            System.arraycopy(entries, 0, data.array(), ENTRIES, entries.length);
+            data.putShort(COUNT, (short) (count + 1));
+            return null;
+        }
+
+        int middle = (count + 1) / 2;
+        ByteBuffer promoted = ByteBuffer.wrap(entries, middle * INTERNAL_ENTRY, INTERNAL_ENTRY);
+        long promotedKey = promoted.getLong();
+        long promotedValue = promoted.getLong();
+        long promotedChild = promoted.getLong();
+        BufferPool.Page right = pool.allocate();
+        try {
+            ByteBuffer rightData = right.getData();
+            rightData.put(TYPE, INTERNAL);
+            rightData.putShort(COUNT, (short) (count - middle));
+            rightData.putLong(LINK, promotedChild);
+            System.arraycopy(entries, (middle + 1) * INTERNAL_ENTRY, rightData.array(), ENTRIES, (count - middle) * INTERNAL_ENTRY);
+
+            System.arraycopy(entries, 0, data.array(), ENTRIES, middle * INTERNAL_ENTRY);
+            data.putShort(COUNT, (short) middle);
+            return new Split(promotedKey, promotedValue, right.getNumber());
+        } finally {
+            pool.unpin(right);
+        }
+    }
+
+    /*
+     * Copies the entries of a node with one more put in at a position
+     */
+    private byte[] withEntry(ByteBuffer data, int count, int entrySize, int position, long key, long value, long child) {
+        byte[] entries = new byte[(count + 1) * entrySize];
+        System.arraycopy(data.array(), ENTRIES, entries, 0, position * entrySize);
+        System.arraycopy(data.array(), ENTRIES + position * entrySize, entries, (position + 1) * entrySize, (count - position) * entrySize);
+        ByteBuffer entry = ByteBuffer.wrap(entries, position * entrySize, entrySize);
+        entry.putLong(key).putLong(value);
+        if (entrySize == INTERNAL_ENTRY) {
+            entry.putLong(child);
+        }
+        return entries;
+    }
+
+    /*
+     * The first position in a node whose entry is not before the one given
+     */
+    private int search(ByteBuffer data, int entrySize, long key, long value) {
+        int low = 0;
+        int high = count(data);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int offset = ENTRIES + middle * entrySize;
+            if (compare(data.getLong(offset), data.getLong(offset + 8), key, value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * The child to go down to is the one after the last separator that is not after the entry
+     */
+    private int childIndex(ByteBuffer data, long key, long value) {
+        int low = 0;
+        int high = count(data);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int offset = ENTRIES + middle * INTERNAL_ENTRY;
+            if (compare(data.getLong(offset), data.getLong(offset + 8), key, value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long child(ByteBuffer data, int index) {
+        return index == 0 ? data.getLong(LINK) : data.getLong(ENTRIES + (index - 1) * INTERNAL_ENTRY + 16);
+    }
+
+    private int compare(long key1, long value1, long key2, long value2) {
+        int result = Long.compare(key1, key2);
+        if (result != 0 || unique) return result;
+
+        return Long.compare(value1, value2);
+    }
+
+    private static int count(ByteBuffer data) {
+        return data.getShort(COUNT);
+    }
+
+    private static long entryKey(ByteBuffer data, int position) {
+        return data.getLong(ENTRIES + position * LEAF_ENTRY);
+    }
+
+    private static long entryValue(ByteBuffer data, int position) {
+        return data.getLong(ENTRIES + position * LEAF_ENTRY + 8);
+    }
+}
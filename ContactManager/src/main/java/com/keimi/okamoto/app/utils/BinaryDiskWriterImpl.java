@@ -0,0 +1,222 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
+import com.keimi.okamoto.app.organisers.ContactsContainerImpl;
+import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
+import com.keimi.okamoto.app.organisers.MeetingContainerImpl;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A DiskWriter that writes snapshots in a compact binary format instead
+ * of serializing the containers. Only the fields of the contacts and
+ * meetings are written, using the codecs in SnapshotCodec:
+ * <pre>
+ * int    magic, "CMSB"
+ * byte   version
+ * varint number of contacts, then for each: varint id, name, notes
+ * varint number of meetings in date order, then for each: varint id,
+ *        date as the difference from the previous meeting, varint number
+ *        of attendees, their varint ids, and the notes (null if future)
+ * </pre>
+ * Reading builds new containers and puts every record back under its id,
+ * which rebuilds the indexes as it goes.
+ */
+public class BinaryDiskWriterImpl implements DiskWriter {
+    static final int MAGIC = 0x434D5342;
+    static final byte VERSION = 1;
+
+    private File file;
+    private ContactFactory aContactFactory;
+    private MeetingFactory aMeetingFactory;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+
+    /**
+     * Constructor for BinaryDiskWriterImpl
+     *
+     * @param filename                        the file the snapshot is written to
+     * @param aContactFactory                 the factory for the contacts that are read
+     * @param aMeetingFactory                 the factory for the meetings that are read
+     * @param aUniqueNumberGeneratorUtilities the unique number generator for the containers that are read
+     */
+    public BinaryDiskWriterImpl(String filename, ContactFactory aContactFactory, MeetingFactory aMeetingFactory,
+                                UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        this.file = new File(filename);
+        this.aContactFactory = aContactFactory;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+    }
+
+    @Override
+    public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeRecords(out, aContactsContainer.getAllContacts(), aMeetingContainer.getAllMeetings());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        try {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * Writes the contact records and then the meeting records, as laid out above
+     */
+    static void writeRecords(DataOutputStream out, Collection<Contact> contacts, Collection<Meeting> meetings) throws IOException {
+        writeContacts(out, contacts);
+        writeMeetings(out, meetings);
+    }
+
+    private static void writeContacts(DataOutputStream out, Collection<Contact> contacts) throws IOException {
+        List<Contact> present = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            if (contact != null) {
+                present.add(contact);
+            }
+        }
+        SnapshotCodec.writeVarInt(out, present.size());
+        for (Contact contact : present) {
+            SnapshotCodec.writeContact(out, contact);
+        }
+    }
+
+    /*
+     * Meetings are written in date order so the dates can be written as small differences
+     */
+    private static void writeMeetings(DataOutputStream out, Collection<Meeting> meetings) throws IOException {
+        List<Meeting> sorted = new ArrayList<>(meetings.size());
+        for (Meeting meeting : meetings) {
+            if (meeting != null) {
+                sorted.add(meeting);
+            }
+        }
+        Collections.sort(sorted, new Comparator<Meeting>() {
+            @Override
+            public int compare(Meeting o1, Meeting o2) {
+                return Long.compare(o1.getTime(), o2.getTime());
+            }
+        });
+        SnapshotCodec.writeVarInt(out, sorted.size());
+        long previousDate = 0;
+        for (Meeting meeting : sorted) {
+            SnapshotCodec.writeMeeting(out, meeting, previousDate);
+            previousDate = meeting.getTime();
+        }
+    }
+
+    /*
+     * The whole of both containers is written by writeToDisk, so nothing is recorded per change
+     */
+    @Override
+    public void recordContact(Contact aContact) {
+    }
+
+    @Override
+    public void recordMeeting(Meeting aMeeting) {
+    }
+
+    @Override
+    public boolean checkIfDataExists() {
+        return file.exists();
+    }
+
+    @Override
+    public void readDisk() {
+        ContactsContainer contacts = new ContactsContainerImpl(aContactFactory, aUniqueNumberGeneratorUtilities);
+        MeetingContainer meetings = new MeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a snapshot: " + file);
+            byte version = in.readByte();
+            if (version != VERSION) throw new IOException("Unknown snapshot version " + version);
+            readRecords(in, contacts, meetings);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        contactsContainer = contacts;
+        meetingContainer = meetings;
+    }
+
+    /*
+     * Reads the records written by writeRecords, putting each back under its id
+     */
+    static void readRecords(DataInputStream in, ContactsContainer contacts, MeetingContainer meetings) throws IOException {
+        List<ImportRecord> contactRecords = new ArrayList<>();
+        List<ImportRecord> meetingRecords = new ArrayList<>();
+        decodeRecords(in, contactRecords, meetingRecords);
+
+        for (ImportRecord record : contactRecords) {
+            contacts.restoreContact(record.getId(), record.getName(), record.getNotes());
+        }
+        for (ImportRecord record : meetingRecords) {
+            restoreMeeting(record, contacts, meetings);
+        }
+    }
+
+    /*
+     * Reads the records written by writeRecords into ImportRecords, with the dates added back up,
+     * without making any Contact or Meeting
+     */
+    static void decodeRecords(DataInput in, List<ImportRecord> contacts, List<ImportRecord> meetings) throws IOException {
+        int contactCount = SnapshotCodec.readVarInt(in);
+        for (int i = 0; i < contactCount; i++) {
+            int id = SnapshotCodec.readVarInt(in);
+            String name = SnapshotCodec.readString(in);
+            contacts.add(ImportRecord.contact(id, name, SnapshotCodec.readString(in)));
+        }
+
+        int meetingCount = SnapshotCodec.readVarInt(in);
+        long date = 0;
+        for (int i = 0; i < meetingCount; i++) {
+            int id = SnapshotCodec.readVarInt(in);
+            date += SnapshotCodec.readVarLong(in);
+            int[] contactIds = new int[SnapshotCodec.readVarInt(in)];
+            for (int j = 0; j < contactIds.length; j++) {
+                contactIds[j] = SnapshotCodec.readVarInt(in);
+            }
+            meetings.add(ImportRecord.meeting(id, date, contactIds, SnapshotCodec.readString(in)));
+        }
+    }
+
+    /*
+     * Puts a decoded meeting back under its id, leaving out attendees that are not in the contacts
+     */
+    static void restoreMeeting(ImportRecord record, ContactsContainer contacts, MeetingContainer meetings) {
+        Set<Contact> attendees = new HashSet<>();
+        for (int contactId : record.getContactIds()) {
+            Contact contact = contacts.getContact(contactId);
+            if (contact != null) {
+                attendees.add(contact);
+            }
+        }
+        meetings.restoreMeeting(record.getId(), attendees, record.getDate(), record.getNotes());
+    }
+
+    @Override
+    public ContactsContainer getContactContainer() {
+        return contactsContainer;
+    }
+
+    @Override
+    public MeetingContainer getMeetingContainer() {
+        return meetingContainer;
+    }
+}
@@ -0,0 +1,343 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * A cache of the fixed-size pages of a file, holding at most a set number
+ * of them in memory.
+ * <p/>
+ * A page is pinned while it is being used, and a pinned page is never
+ * evicted. When a page that is not cached is asked for and the pool is
+ * full, the least recently used page that is not pinned is evicted, and
+ * written back first if it has been changed. If every page is pinned the
+ * pool grows past its size until some are unpinned.
+ * <p/>
+ * Given a journal, a changed page that is evicted is appended to the
+ * journal instead of written over the page in the file, and read back from
+ * there, so the file is not touched between flushes. A flush appends the
+ * rest of the changed pages and a mark that the flush is whole, forces the
+ * journal, and only then copies the pages into the file:
+ * <pre>
+ * for each page: long page number, int length, the page
+ * long   -1, once the flush is whole
+ * </pre>
+ * A flush that is cut short is finished by recover if its mark made it to
+ * the journal, and thrown away if not, so the file is always as it was
+ * after one flush or the next. Without a journal changed pages are written
+ * in place whenever they are evicted.
+ */
+public class BufferPool {
+    private static final long FLUSH_MARK = -1;
+    private static final int JOURNAL_ENTRY_HEADER = 12;
+
+    private final FileChannel channel;
+    private final FileChannel journal;
+    private final int pageSize;
+    private final int capacity;
+    private final LinkedHashMap<Long, Page> pages;
+    private final Map<Long, Long> journalledPages = new HashMap<>();
+    private long pageCount;
+    private long hits;
+    private long reads;
+    private long writes;
+
+    /**
+     * A page of the file, as it is in memory.
+     */
+    public static class Page {
+        private final long number;
+        private final ByteBuffer data;
+        private int pins;
+        private boolean dirty;
+
+        private Page(long number, ByteBuffer data) {
+            this.number = number;
+            this.data = data;
+        }
+
+        /**
+         * @return the number of the page in the file
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * @return the contents of the page, to be read and written at absolute positions
+         */
+        public ByteBuffer getData() {
+            return data;
+        }
+
+        /**
+         * Marks the page as changed, so it is written back before it is evicted.
+         */
+        public void markDirty() {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Constructor for BufferPool
+     *
+     * @param channel  the file the pages are in
+     * @param pageSize the size of a page in bytes
+     * @param capacity the number of pages kept in memory
+     * @throws IOException if the size of the file cannot be read
+     */
+    public BufferPool(FileChannel channel, int pageSize, int capacity) throws IOException {
+        this(channel, pageSize, capacity, null);
+    }
+
+    /**
+     * Constructor for a BufferPool that keeps changed pages in a journal until they are flushed.
+     * Anything left in the journal is thrown away, so recover has to be run on it first.
+     *
+     * @param channel  the file the pages are in
+     * @param pageSize the size of a page in bytes
+     * @param capacity the number of pages kept in memory
+     * @param journal  the journal, or null to write changed pages in place
+     * @throws IOException if the size of the file cannot be read or the journal cannot be emptied
+     */
+    public BufferPool(FileChannel channel, int pageSize, int capacity, FileChannel journal) throws IOException {
+        if (pageSize < 64 || capacity < 1) throw new IllegalArgumentException();
+
+        this.channel = channel;
+        this.journal = journal;
+        if (journal != null) {
+            journal.truncate(0);
+        }
+        this.pageSize = pageSize;
+        this.capacity = capacity;
+        this.pages = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+        this.pageCount = (channel.size() + pageSize - 1) / pageSize;
+    }
+
+    /**
+     * Pins a page, reading it from the file if it is not in memory.
+     * Every call must be matched by a call to unpin.
+     *
+     * @param number the number of the page
+     * @return the page
+     * @throws IOException if the page cannot be read, or a page being evicted cannot be written
+     */
+    public Page pin(long number) throws IOException {
+        if (number < 0 || number >= pageCount) throw new IllegalArgumentException("No page " + number);
+
+        Page page = pages.get(number);
+        if (page != null) {
+            hits++;
+        } else {
+            makeRoom();
+            ByteBuffer data = ByteBuffer.allocate(pageSize);
+            Long journalPosition = journalledPages.get(number);
+            if (journalPosition == null) {
+                read(channel, data, number * pageSize);
+            } else {
+                read(journal, data, journalPosition + JOURNAL_ENTRY_HEADER);
+            }
+            reads++;
+            page = new Page(number, data);
+            pages.put(number, page);
+        }
+        page.pins++;
+        return page;
+    }
+
+    /**
+     * Adds a page of zeros to the end of the file and pins it.
+     *
+     * @return the new page
+     * @throws IOException if a page being evicted cannot be written
+     */
+    public Page allocate() throws IOException {
+        makeRoom();
+        Page page = new Page(pageCount++, ByteBuffer.allocate(pageSize));
+        page.markDirty();
+        page.pins++;
+        pages.put(page.number, page);
+        return page;
+    }
+
+    /**
+     * Unpins a page, so that it can be evicted once it is not used by anyone else.
+     *
+     * @param page the page pinned by pin or allocate
+     */
+    public void unpin(Page page) {
+        if (page.pins == 0) throw new IllegalStateException("Page " + page.number + " is not pinned");
+        page.pins--;
+    }
+
+    /*
+     * Evicts the least recently used pages that are not pinned until there is room for one more
+     */
+    private void makeRoom() throws IOException {
+        Iterator<Map.Entry<Long, Page>> iterator = pages.entrySet().iterator();
+        while (pages.size() >= capacity && iterator.hasNext()) {
+            Page page = iterator.next().getValue();
+            if (page.pins == 0) {
+                write(page);
+                iterator.remove();
+            }
+        }
+    }
+
+    /*
+     * Writes a changed page over its place in the file, or to the end of the journal if there is one
+     */
+    private void write(Page page) throws IOException {
+        if (!page.dirty) return;
+
+        ByteBuffer data = page.data.duplicate();
+        data.clear();
+        if (journal == null) {
+            write(channel, data, page.number * pageSize);
+        } else {
+            long position = journal.size();
+            ByteBuffer header = ByteBuffer.allocate(JOURNAL_ENTRY_HEADER);
+            header.putLong(page.number).putInt(pageSize).flip();
+            write(journal, header, position);
+            write(journal, data, position + JOURNAL_ENTRY_HEADER);
+            journalledPages.put(page.number, position);
+        }
+        page.dirty = false;
+        writes++;
+    }
+
+    /**
+     * Writes every changed page back to the file and forces it to disk.
+     * With a journal the pages are in the journal, and forced, before any
+     * of them is written to the file.
+     *
+     * @throws IOException if the pages cannot be written
+     */
+    public void flush() throws IOException {
+        for (Page page : pages.values()) {
+            write(page);
+        }
+        if (journal == null) {
+            channel.force(false);
+            return;
+        }
+        if (journalledPages.isEmpty()) return;
+
+        ByteBuffer mark = ByteBuffer.allocate(8);
+        mark.putLong(FLUSH_MARK).flip();
+        write(journal, mark, journal.size());
+        journal.force(false);
+        ByteBuffer data = ByteBuffer.allocate(pageSize);
+        for (Map.Entry<Long, Long> entry : journalledPages.entrySet()) {
+            data.clear();
+            read(journal, data, entry.getValue() + JOURNAL_ENTRY_HEADER);
+            data.flip();
+            write(channel, data, entry.getKey() * pageSize);
+        }
+        channel.force(false);
+        journal.truncate(0);
+        journalledPages.clear();
+    }
+
+    /**
+     * Finishes or throws away a flush that was cut short. If the journal
+     * holds a whole flush its pages are written to the file, in the order
+     * they were journalled; otherwise the file is left as it was after the
+     * flush before. Either way the journal is emptied.
+     *
+     * @param channel the file the pages are in
+     * @param journal the journal of the BufferPool that had the file
+     * @throws IOException if the journal cannot be read or the file cannot be written
+     */
+    public static void recover(FileChannel channel, FileChannel journal) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        boolean whole = false;
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_ENTRY_HEADER);
+        while (position + 8 <= journal.size()) {
+            header.clear();
+            read(journal, header, position);
+            if (header.getLong(0) == FLUSH_MARK) {
+                whole = true;
+                break;
+            }
+            int length = header.getInt(8);
+            if (length < 0 || position + JOURNAL_ENTRY_HEADER + length > journal.size()) break;
+            entries.add(new long[]{header.getLong(0), position + JOURNAL_ENTRY_HEADER, length});
+            position += JOURNAL_ENTRY_HEADER + length;
+        }
+
+        if (whole) {
+            for (long[] entry : entries) {
+                ByteBuffer data = ByteBuffer.allocate((int) entry[2]);
+                read(journal, data, entry[1]);
+                data.flip();
+                write(channel, data, entry[0] * entry[2]);
+            }
+            channel.force(false);
+        }
+        journal.truncate(0);
+        journal.force(false);
+    }
+
+    /*
+     * Reads until the buffer is full or the file ends, leaving the rest of a page past the end as zeros
+     */
+    private static void read(FileChannel from, ByteBuffer data, long position) throws IOException {
+        long start = position - data.position();
+        while (data.hasRemaining()) {
+            if (from.read(data, start + data.position()) < 0) break;
+        }
+    }
+
+    private static void write(FileChannel to, ByteBuffer data, long position) throws IOException {
+        long start = position - data.position();
+        while (data.hasRemaining()) {
+            to.write(data, start + data.position());
+        }
+    }
+
+    /**
+     * @return the size of a page in bytes
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the number of pages in the file, counting those not yet written
+     */
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return the number of pages in memory
+     */
+    public int getCachedPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * @return the number of times a page was found in memory
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return the number of pages read from the file
+     */
+    public long getReadCount() {
+        return reads;
+    }
+
+    /**
+     * @return the number of pages written to the file, or to the journal if there is one
+     */
+    public long getWriteCount() {
+        return writes;
+    }
+}
@@ -0,0 +1,53 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsView;
+import com.keimi.okamoto.app.organisers.MeetingsView;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes every contact and then every meeting of a pair of containers
+ * to a stream as records in a RecordFormat, which a BulkImporter can
+ * read back. Each record is written as it is reached in the containers,
+ * with nothing collected along the way.
+ */
+public class BulkExporter {
+    private final RecordFormat format;
+
+    /**
+     * Constructor for BulkExporter
+     *
+     * @param format the format of the records
+     */
+    public BulkExporter(RecordFormat format) {
+        if (format == null) throw new IllegalArgumentException();
+
+        this.format = format;
+    }
+
+    /**
+     * Writes the records. The stream is flushed but not closed.
+     *
+     * @param out                where to write
+     * @param aContactsContainer the contacts to write
+     * @param aMeetingContainer  the meetings to write
+     * @return the number of contacts and meetings written
+     * @throws IOException if a record cannot be written
+     */
+    public int exportRecords(Writer out, ContactsView aContactsContainer, MeetingsView aMeetingContainer) throws IOException {
+        int count = 0;
+        for (Contact contact : aContactsContainer.getAllContacts()) {
+            format.writeContact(out, contact);
+            count++;
+        }
+        for (Meeting meeting : aMeetingContainer.getAllMeetings()) {
+            format.writeMeeting(out, meeting);
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+}
@@ -0,0 +1,248 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.MeetingContainer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Loads contacts and meetings into a pair of containers from a stream
+ * of records in a RecordFormat.
+ * <p/>
+ * The stream is read a chunk of records at a time, and the chunks are
+ * parsed on a pool of threads while the next ones are read, with only a
+ * few chunks in flight so a large import is never all in memory as text.
+ * What is parsed is kept as plain columns. Once the stream is done, every
+ * contact and then every meeting goes to its container in one batch,
+ * which takes a block of ids at once and builds its indexes once, instead
+ * of adding and indexing a record at a time.
+ * <p/>
+ * Each record keeps the id it had where it came from only until the
+ * meetings are matched to their contacts. Contacts and meetings are given
+ * new ids, and nothing is added unless every meeting's contacts are in
+ * the import.
+ * <p/>
+ * Reading and checking the records is kept apart from adding them, so a
+ * caller that locks its containers only has to hold the lock while the
+ * Batch is added, not while the stream is read.
+ */
+public class BulkImporter {
+    private final RecordFormat format;
+    private final int chunkSize;
+    private final int threads;
+
+    /*
+     * The records of one chunk once it is parsed
+     */
+    private static class Chunk {
+        private final List<ImportRecord> records = new ArrayList<>();
+    }
+
+    /**
+     * Constructor for BulkImporter
+     *
+     * @param format    the format of the records
+     * @param chunkSize the number of records parsed together
+     * @param threads   the number of threads that parse
+     */
+    public BulkImporter(RecordFormat format, int chunkSize, int threads) {
+        if (format == null || chunkSize < 1 || threads < 1) throw new IllegalArgumentException();
+
+        this.format = format;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads every record from a stream and adds them to the containers.
+     *
+     * @param in                 the records; blank lines are skipped
+     * @param aContactsContainer the container the contacts are added to
+     * @param aMeetingContainer  the container the meetings are added to
+     * @return the number of contacts and meetings added
+     * @throws IOException if the stream cannot be read, a record cannot be parsed,
+     *                     or a meeting has a contact that is not in the import
+     */
+    public int importRecords(Reader in, ContactsContainer aContactsContainer, MeetingContainer aMeetingContainer) throws IOException {
+        return readRecords(in, aMeetingContainer).addTo(aContactsContainer, aMeetingContainer);
+    }
+
+    /**
+     * Reads and checks every record from a stream, without adding any of them.
+     *
+     * @param in                the records; blank lines are skipped
+     * @param aMeetingContainer the container the meetings will be added to, whose clock tells the past from the future
+     * @return the records, ready to be added
+     * @throws IOException if the stream cannot be read, a record cannot be parsed,
+     *                     or a meeting has a contact that is not in the import
+     */
+    public Batch readRecords(Reader in, MeetingContainer aMeetingContainer) throws IOException {
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BulkImporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Batch batch = new Batch();
+        try {
+            Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            BufferedReader reader = new BufferedReader(in);
+            List<String> chunk = new ArrayList<>(chunkSize);
+            int lineNumber = 0;
+            int chunkStart = 1;
+            StringBuilder record = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (record.length() > 0) {
+                    record.append('\n');
+                } else if (line.trim().isEmpty()) {
+                    continue;
+                }
+                record.append(line);
+                if (!format.isComplete(record.toString())) continue;
+
+                chunk.add(record.toString());
+                record.setLength(0);
+                if (chunk.size() == chunkSize) {
+                    inFlight.add(parsers.submit(parse(chunk, chunkStart)));
+                    chunk = new ArrayList<>(chunkSize);
+                    chunkStart = lineNumber + 1;
+                    // keep a few chunks ahead of the one being collected
+                    if (inFlight.size() > threads * 2) {
+                        batch.add(await(inFlight.poll()));
+                    }
+                }
+            }
+            if (record.length() > 0) throw new IOException("Last record is cut short at line " + lineNumber);
+            if (!chunk.isEmpty()) {
+                inFlight.add(parsers.submit(parse(chunk, chunkStart)));
+            }
+            while (!inFlight.isEmpty()) {
+                batch.add(await(inFlight.poll()));
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+        batch.check(aMeetingContainer);
+        return batch;
+    }
+
+    private Callable<Chunk> parse(final List<String> records, final int firstLine) {
+        return new Callable<Chunk>() {
+            @Override
+            public Chunk call() throws IOException {
+                Chunk chunk = new Chunk();
+                for (String record : records) {
+                    try {
+                        chunk.records.add(format.parse(record));
+                    } catch (IOException e) {
+                        throw new IOException("In the chunk from line " + firstLine + ": " + e.getMessage(), e);
+                    }
+                }
+                return chunk;
+            }
+        };
+    }
+
+    private Chunk await(Future<Chunk> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * The records read from a stream, kept as columns until they are added.
+     */
+    public static final class Batch {
+        private final Map<Integer, Integer> contactRows = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<String> contactNotes = new ArrayList<>();
+        private final List<int[]> attendees = new ArrayList<>();
+        private final List<String> meetingNotes = new ArrayList<>();
+        private final List<Integer> meetingSourceIds = new ArrayList<>();
+        private long[] dates = new long[16];
+
+        private Batch() {
+        }
+
+        private void add(Chunk chunk) throws IOException {
+            for (ImportRecord record : chunk.records) {
+                if (record.isMeeting()) {
+                    if (meetingNotes.size() == dates.length) {
+                        dates = Arrays.copyOf(dates, dates.length * 2);
+                    }
+                    dates[meetingNotes.size()] = record.getDate();
+                    attendees.add(record.getContactIds());
+                    meetingNotes.add(record.getNotes());
+                    meetingSourceIds.add(record.getId());
+                } else {
+                    if (contactRows.put(record.getId(), names.size()) != null) {
+                        throw new IOException("Contact " + record.getId() + " is in the import twice");
+                    }
+                    names.add(record.getName());
+                    contactNotes.add(record.getNotes());
+                }
+            }
+        }
+
+        /*
+         * Checks every meeting before anything is added, so a bad import adds nothing: it needs a contact,
+         * every contact has to be in the import, and a meeting with notes has to be in the past and one
+         * without in the future, by the clock of the meeting container
+         */
+        private void check(MeetingContainer aMeetingContainer) throws IOException {
+            for (int meeting = 0; meeting < attendees.size(); meeting++) {
+                if (attendees.get(meeting).length == 0) {
+                    throw new IOException("Meeting " + meetingSourceIds.get(meeting) + " has no contacts");
+                }
+                if (meetingNotes.get(meeting) != null && !aMeetingContainer.checkForPast(dates[meeting])) {
+                    throw new IOException("Meeting " + meetingSourceIds.get(meeting) + " has notes but is not in the past");
+                }
+                if (meetingNotes.get(meeting) == null && !aMeetingContainer.checkForFuture(dates[meeting])) {
+                    throw new IOException("Meeting " + meetingSourceIds.get(meeting) + " has no notes but is not in the future");
+                }
+                for (int contactId : attendees.get(meeting)) {
+                    if (!contactRows.containsKey(contactId)) {
+                        throw new IOException("Meeting " + meetingSourceIds.get(meeting) + " has contact " + contactId
+                                + ", which is not in the import");
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the records to the containers, contacts first so the meetings can find them.
+         *
+         * @param aContactsContainer the container the contacts are added to
+         * @param aMeetingContainer  the container the meetings are added to
+         * @return the number of contacts and meetings added
+         */
+        public int addTo(ContactsContainer aContactsContainer, MeetingContainer aMeetingContainer) {
+            int firstContactId = aContactsContainer.addContacts(names, contactNotes);
+            List<Set<Contact>> contactSets = new ArrayList<>(attendees.size());
+            for (int[] contactIds : attendees) {
+                Set<Contact> contacts = new HashSet<>();
+                for (int contactId : contactIds) {
+                    contacts.add(aContactsContainer.getContact(firstContactId + contactRows.get(contactId)));
+                }
+                contactSets.add(contacts);
+            }
+            aMeetingContainer.addMeetings(contactSets, Arrays.copyOf(dates, meetingNotes.size()), meetingNotes);
+            return names.size() + meetingNotes.size();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+
+public class CachedClockImpl implements Clock, Serializable {
+    private static final long RESOLUTION = 10;
+    private static CachedClockImpl singleton;
+    private transient volatile long now;
+
+    /**
+     * Private method to stop other classes from
+     * instantiating this object.
+     */
+    private CachedClockImpl() {
+        now = System.currentTimeMillis();
+    }
+
+    /**
+     * Static method that allows people to reach the single
+     * instance. The first call starts a daemon thread that
+     * refreshes the time every few milliseconds, so the time
+     * can be that much behind. A meeting dated now can then
+     * look like it is still in the future, which is why the
+     * containers use SystemClockImpl unless given this clock.
+     *
+     * @return the single instance.
+     */
+    public static synchronized Clock getInstance() {
+        if (singleton == null) {
+            singleton = new CachedClockImpl();
+            singleton.start();
+        }
+        return singleton;
+    }
+
+    /*
+     * Starts the thread that keeps the cached time up to date
+     */
+    private void start() {
+        Thread ticker = new Thread("CachedClock") {
+            @Override
+            public void run() {
+                while (true) {
+                    now = System.currentTimeMillis();
+                    try {
+                        Thread.sleep(RESOLUTION);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        };
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /*
+     * Keeps the clock a single instance when a container holding it is read from disk
+     */
+    private Object readResolve() {
+        return getInstance();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+}
@@ -0,0 +1,15 @@
+package com.keimi.okamoto.app.utils;
+
+/**
+ * A source of the current time. The meeting containers ask
+ * a clock for the time so that it can be read without creating
+ * a Calendar, and so that tests can decide what "now" is.
+ */
+public interface Clock {
+    /**
+     * Method that gets the current time.
+     *
+     * @return the current time, in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+}
@@ -0,0 +1,432 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A snapshot file whose records are compressed in blocks that can each be
+ * inflated on their own, so a single record is read by inflating only the
+ * block it is in.
+ * <p/>
+ * The records are written with the codecs in SnapshotCodec into blocks of
+ * about 64KB, each compressed with a Deflater of its own. The index after
+ * the blocks is not compressed, and is read into memory when the file is
+ * opened:
+ * <pre>
+ * int    magic, "CMCS"
+ * byte   version
+ * the compressed blocks
+ * int    number of blocks, then (long position, int compressed length,
+ *        int length) for each
+ * int    number of contacts, then (int id, int block, int offset) sorted by id
+ * int    number of meetings, then (long date, int id, int block, int offset)
+ *        sorted by date, then (int id, int entry in the date table) sorted by id
+ * the meetings of each contact, as written by SnapshotAttendeeTable
+ * the names of the contacts, as written by SnapshotNameTable
+ * long   position of the index
+ * </pre>
+ * The last few blocks read are kept inflated, as records read together
+ * tend to have been written together.
+ */
+public class CompressedSnapshot implements SnapshotReader, Closeable {
+    static final int MAGIC = 0x434D4353;
+    static final byte VERSION = 3;
+    static final int BLOCK_SIZE = 65536;
+    private static final int BLOCK_ENTRY = 16;
+    private static final int CONTACT_ENTRY = 12;
+    private static final int MEETING_ENTRY = 20;
+    private static final int MEETING_ID_ENTRY = 8;
+    private static final int CACHED_BLOCKS = 16;
+
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final ByteBuffer index;
+    private final int blockCount;
+    private final int contactCount;
+    private final int contactTable;
+    private final int meetingCount;
+    private final int meetingTable;
+    private final int meetingIdTable;
+    private final int attendeeTable;
+    private final int nameTable;
+    private final Map<Integer, ByteBuffer> inflatedBlocks;
+
+    private CompressedSnapshot(RandomAccessFile randomAccessFile) throws IOException {
+        this.randomAccessFile = randomAccessFile;
+        this.channel = randomAccessFile.getChannel();
+        long size = channel.size();
+        if (size < 13) throw new IOException("Not a compressed snapshot");
+        ByteBuffer header = readFully(0, 5);
+        if (header.getInt(0) != MAGIC) throw new IOException("Not a compressed snapshot");
+        if (header.get(4) != VERSION) throw new IOException("Unknown snapshot version " + header.get(4));
+
+        long indexPosition = readFully(size - 8, 8).getLong(0);
+        if (size - 8 - indexPosition > Integer.MAX_VALUE) throw new IOException("Snapshot index is too large");
+        index = readFully(indexPosition, (int) (size - 8 - indexPosition));
+        blockCount = index.getInt(0);
+        int contactPosition = 4 + blockCount * BLOCK_ENTRY;
+        contactCount = index.getInt(contactPosition);
+        contactTable = contactPosition + 4;
+        meetingCount = index.getInt(contactTable + contactCount * CONTACT_ENTRY);
+        meetingTable = contactTable + contactCount * CONTACT_ENTRY + 4;
+        meetingIdTable = meetingTable + meetingCount * MEETING_ENTRY;
+        attendeeTable = meetingIdTable + meetingCount * MEETING_ID_ENTRY;
+        nameTable = attendeeTable + SnapshotAttendeeTable.length(index, attendeeTable);
+
+        inflatedBlocks = new LinkedHashMap<Integer, ByteBuffer>(CACHED_BLOCKS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+                return size() > CACHED_BLOCKS;
+            }
+        };
+    }
+
+    /**
+     * Opens a compressed snapshot, reading its index into memory.
+     *
+     * @param file the file written by write
+     * @return the snapshot, which keeps the file open until it is closed
+     * @throws IOException if the file cannot be read or is not a compressed snapshot
+     */
+    public static CompressedSnapshot open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return new CompressedSnapshot(randomAccessFile);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the contacts and meetings as a compressed snapshot file. The
+     * file is written next to the target and moved into place when it is
+     * complete.
+     *
+     * @param file     the file to write
+     * @param contacts the contacts to write
+     * @param meetings the meetings to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, Collection<Contact> contacts, Collection<Meeting> meetings) throws IOException {
+        List<Contact> contactList = MappedSnapshot.sortById(contacts);
+        List<Meeting> meetingList = MappedSnapshot.sortByDate(meetings);
+
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            BlockWriter blocks = new BlockWriter(out);
+            long[] contactLocations = new long[contactList.size()];
+            for (int i = 0; i < contactList.size(); i++) {
+                contactLocations[i] = blocks.location();
+                SnapshotCodec.writeContact(blocks.records, contactList.get(i));
+                blocks.endRecord();
+            }
+            long[] meetingLocations = new long[meetingList.size()];
+            for (int i = 0; i < meetingList.size(); i++) {
+                meetingLocations[i] = blocks.location();
+                SnapshotCodec.writeMeeting(blocks.records, meetingList.get(i), 0);
+                blocks.endRecord();
+            }
+            blocks.finish();
+
+            long indexPosition = blocks.position;
+            out.writeInt(blocks.positions.size());
+            for (int i = 0; i < blocks.positions.size(); i++) {
+                out.writeLong(blocks.positions.get(i));
+                out.writeInt(blocks.compressedLengths.get(i));
+                out.writeInt(blocks.lengths.get(i));
+            }
+            out.writeInt(contactList.size());
+            for (int i = 0; i < contactList.size(); i++) {
+                out.writeInt(contactList.get(i).getId());
+                out.writeLong(contactLocations[i]);
+            }
+            out.writeInt(meetingList.size());
+            for (int i = 0; i < meetingList.size(); i++) {
+                out.writeLong(meetingList.get(i).getTime());
+                out.writeInt(meetingList.get(i).getId());
+                out.writeLong(meetingLocations[i]);
+            }
+            for (int entry : MappedSnapshot.entriesById(meetingList)) {
+                out.writeInt(meetingList.get(entry).getId());
+                out.writeInt(entry);
+            }
+            SnapshotAttendeeTable.write(out, meetingList);
+            SnapshotNameTable.write(out, contactList);
+            out.writeLong(indexPosition);
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Gathers records into a block and writes the block compressed once it is full.
+     * A location is the block number in the high int and the offset in the low int,
+     * which is also how it is written to the index.
+     */
+    private static class BlockWriter {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE * 2);
+        private final DataOutputStream records = new DataOutputStream(block);
+        private final Deflater deflater = new Deflater();
+        private final byte[] compressed = new byte[BLOCK_SIZE];
+        private final List<Long> positions = new ArrayList<>();
+        private final List<Integer> compressedLengths = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private long position = 5;
+
+        private BlockWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private long location() {
+            return ((long) positions.size() << 32) | block.size();
+        }
+
+        private void endRecord() throws IOException {
+            if (block.size() >= BLOCK_SIZE) {
+                writeBlock();
+            }
+        }
+
+        private void finish() throws IOException {
+            if (block.size() > 0) {
+                writeBlock();
+            }
+            deflater.end();
+        }
+
+        private void writeBlock() throws IOException {
+            deflater.reset();
+            deflater.setInput(block.toByteArray());
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                int written = deflater.deflate(compressed);
+                out.write(compressed, 0, written);
+                compressedLength += written;
+            }
+            positions.add(position);
+            compressedLengths.add(compressedLength);
+            lengths.add(block.size());
+            position += compressedLength;
+            block.reset();
+        }
+    }
+
+    /**
+     * @return the number of compressed blocks in the snapshot
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    @Override
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    @Override
+    public int getContactId(int entry) {
+        return index.getInt(contactTable + entry * CONTACT_ENTRY);
+    }
+
+    @Override
+    public boolean hasContact(int contactId) {
+        return findContact(contactId) >= 0;
+    }
+
+    @Override
+    public Contact readContact(int contactId, ContactFactory aContactFactory) {
+        int entry = findContact(contactId);
+        if (entry < 0) return null;
+
+        try {
+            return SnapshotCodec.readContact(recordAt(contactTable + entry * CONTACT_ENTRY + 4), aContactFactory);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int[] getContactIdsByName(String name) {
+        return SnapshotNameTable.find(index, nameTable, SnapshotNameTable.toKey(name), false, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int[] getContactIdsByPrefix(String prefix, int limit) {
+        return SnapshotNameTable.find(index, nameTable, SnapshotNameTable.toKey(prefix), true, limit);
+    }
+
+    private int findContact(int contactId) {
+        int low = 0;
+        int high = contactCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = getContactId(middle);
+            if (id < contactId) {
+                low = middle + 1;
+            } else if (id > contactId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getMeetingCount() {
+        return meetingCount;
+    }
+
+    @Override
+    public int getMeetingId(int entry) {
+        return index.getInt(meetingIdTable + entry * MEETING_ID_ENTRY);
+    }
+
+    @Override
+    public boolean hasMeeting(int meetingId) {
+        return findMeeting(meetingId) >= 0;
+    }
+
+    @Override
+    public Meeting readMeeting(int meetingId, ContactsContainer aContactsContainer, MeetingFactory aMeetingFactory) {
+        int entry = findMeeting(meetingId);
+        if (entry < 0) return null;
+
+        try {
+            return SnapshotCodec.readMeeting(recordAt(meetingTable + entry * MEETING_ENTRY + 12), 0, aContactsContainer, aMeetingFactory);
+        } catch (IOException | IllegalMeetingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int[] getMeetingIdsBetween(long from, long to) {
+        if (from >= to) return new int[0];
+
+        int start = firstMeetingAtOrAfter(from);
+        int end = firstMeetingAtOrAfter(to);
+        int[] ids = new int[end - start];
+        for (int entry = start; entry < end; entry++) {
+            ids[entry - start] = index.getInt(meetingTable + entry * MEETING_ENTRY + 8);
+        }
+        return ids;
+    }
+
+    @Override
+    public int[] getMeetingIdsOf(int contactId, boolean past) {
+        return SnapshotAttendeeTable.find(index, attendeeTable, contactId, past);
+    }
+
+    @Override
+    public int[] getMeetingIdsOf(int contactId, long from, long to) {
+        return SnapshotAttendeeTable.find(index, attendeeTable, contactId, from, to);
+    }
+
+    private int firstMeetingAtOrAfter(long date) {
+        int low = 0;
+        int high = meetingCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index.getLong(meetingTable + middle * MEETING_ENTRY) < date) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Finds the entry of a meeting in the date table through the id table
+     */
+    private int findMeeting(int meetingId) {
+        int low = 0;
+        int high = meetingCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = getMeetingId(middle);
+            if (id < meetingId) {
+                low = middle + 1;
+            } else if (id > meetingId) {
+                high = middle - 1;
+            } else {
+                return index.getInt(meetingIdTable + middle * MEETING_ID_ENTRY + 4);
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * A view of the inflated block holding the record whose location is at a place in the index
+     */
+    private ByteBuffer recordAt(int locationInIndex) throws IOException {
+        int block = index.getInt(locationInIndex);
+        int offset = index.getInt(locationInIndex + 4);
+        ByteBuffer in = inflateBlock(block).duplicate();
+        in.position(offset);
+        return in;
+    }
+
+    private ByteBuffer inflateBlock(int block) throws IOException {
+        synchronized (inflatedBlocks) {
+            ByteBuffer inflated = inflatedBlocks.get(block);
+            if (inflated != null) return inflated;
+        }
+
+        int entry = 4 + block * BLOCK_ENTRY;
+        ByteBuffer compressed = readFully(index.getLong(entry), index.getInt(entry + 8));
+        byte[] bytes = new byte[index.getInt(entry + 12)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int length = 0;
+            while (length < bytes.length) {
+                int read = inflater.inflate(bytes, length, bytes.length - length);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) throw new IOException("Block " + block + " is cut short");
+                length += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + block + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer inflated = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        synchronized (inflatedBlocks) {
+            inflatedBlocks.put(block, inflated);
+        }
+        return inflated;
+    }
+
+    /*
+     * Positional reads do not move the channel's position, so several threads can read at once
+     */
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+}
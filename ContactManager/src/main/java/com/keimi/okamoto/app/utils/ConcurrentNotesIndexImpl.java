@@ -0,0 +1,76 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * NotesIndex that can be added to, taken from and searched by many
+ * threads at once. Each word has a posting list backed by a
+ * ConcurrentHashMap, so no lock is taken; a search sees every id added
+ * before it started, and may or may not see ids added while it runs.
+ */
+public class ConcurrentNotesIndexImpl implements NotesIndex, Serializable {
+    private final ConcurrentMap<String, Set<Integer>> postings;
+
+    /**
+     * Constructor that makes an empty index.
+     */
+    public ConcurrentNotesIndexImpl() {
+        postings = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void addNotes(int id, String notes) {
+        for (String word : NotesIndexImpl.tokenize(notes)) {
+            Set<Integer> ids = postings.get(word);
+            if (ids == null) {
+                Set<Integer> newIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+                ids = postings.putIfAbsent(word, newIds);
+                if (ids == null) {
+                    ids = newIds;
+                }
+            }
+            ids.add(id);
+        }
+    }
+
+    /*
+     * A posting list left empty stays in the map, as taking it out could lose an id being added to it at the same time
+     */
+    @Override
+    public void removeNotes(int id, String notes) {
+        for (String word : NotesIndexImpl.tokenize(notes)) {
+            Set<Integer> ids = postings.get(word);
+            if (ids != null) {
+                ids.remove(id);
+            }
+        }
+    }
+
+    @Override
+    public Set<Integer> search(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        Set<String> words = NotesIndexImpl.tokenize(query);
+        Set<Integer> result = new HashSet<>();
+        boolean first = true;
+        for (String word : words) {
+            Set<Integer> ids = postings.get(word);
+            if (!matchAll) {
+                if (ids != null) {
+                    result.addAll(ids);
+                }
+            } else if (ids == null) {
+                return new HashSet<>();
+            } else if (first) {
+                result.addAll(ids);
+            } else {
+                result.retainAll(ids);
+            }
+            first = false;
+        }
+        return result;
+    }
+}
@@ -7,6 +7,7 @@ import java.io.Serializable;
 
 
 public class ContactFactoryImpl implements ContactFactory, Serializable {
+    private static final long serialVersionUID = 1001024016614849276L;
 
     @Override
     public Contact createContact(int id, String name, String note) {
@@ -0,0 +1,31 @@
+package com.keimi.okamoto.app.utils;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A server that lets other programs use a ContactManager over HTTP,
+ * sending and receiving JSON.
+ */
+public interface ContactManagerServer {
+
+    /**
+     * Starts taking requests.
+     */
+    void start();
+
+    /**
+     * Stops taking requests, giving the requests being handled up to the
+     * given number of seconds to finish.
+     *
+     * @param delaySeconds the longest to wait for requests being handled
+     */
+    void stop(int delaySeconds);
+
+    /**
+     * Gets the address the server takes requests on, with the port it
+     * was given if it was asked for any free port.
+     *
+     * @return the address of the server
+     */
+    InetSocketAddress getAddress();
+}
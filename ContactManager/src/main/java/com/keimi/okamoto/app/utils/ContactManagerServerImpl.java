@@ -0,0 +1,445 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.FutureMeeting;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.organisers.ContactManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ContactManagerServer built on the HTTP server that comes with the JDK.
+ * Each request is one call to the ContactManager:
+ * <pre>
+ * POST /contacts                {"name":"...","notes":"..."}             addNewContact
+ * GET  /contacts?ids=1,2                                                 getContacts(int...)
+ * GET  /contacts?name=...                                                getContacts(String)
+ * GET  /contacts?prefix=...&amp;limit=10&amp;rank=true                   getContactsByPrefix
+ * GET  /contacts/search?q=...&amp;all=true                               searchContactNotes
+ * POST /meetings                {"contacts":[1,2],"date":1400000000000}  addFutureMeeting
+ * POST /meetings                {"contacts":[1],"date":...,"notes":"..."} addNewPastMeeting
+ * GET  /meetings/7?type=future                                           getMeeting
+ * POST /meetings/7/notes        {"notes":"..."}                          addMeetingNotes
+ * GET  /meetings?contact=1&amp;type=future                               getFutureMeetingList or getPastMeetingList
+ * GET  /meetings?contact=1&amp;from=...&amp;to=...                       getMeetings, for a contact or for everyone
+ * GET  /meetings?date=...                                                getFutureMeetingList(Calendar)
+ * GET  /meetings/search?q=...&amp;all=true                               searchMeetingNotes
+ * POST /flush                                                            flush
+ * </pre>
+ * Dates are milliseconds since the epoch. Contacts are sent as
+ * {"id":1,"name":"...","notes":"..."} and meetings as
+ * {"id":7,"date":...,"contacts":[1,2],"notes":"..."}, with null notes for
+ * a future meeting. Adding a future meeting answers 201 with {"id":n},
+ * the id it was given; adding a contact or a past meeting answers 201
+ * with no body, as the ContactManager does not give their ids. Arguments the ContactManager turns down
+ * get 400, meetings that cannot take notes yet get 409 and ids in the path
+ * or the query that are not there get 404. A meeting asked for by type
+ * that is of the other type is not there either.
+ * <p/>
+ * The server reads requests on one thread and hands each one to an
+ * executor. By default that is a cached thread pool, which starts a
+ * thread whenever none is free, so requests waiting on a flush do not
+ * hold up the rest the way they do in a fixed pool.
+ */
+public class ContactManagerServerImpl implements ContactManagerServer {
+    private static final String UTF_8 = "UTF-8";
+
+    private final ContactManager aContactManager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+
+    /**
+     * Constructor for a ContactManagerServerImpl that handles requests on a cached thread pool
+     *
+     * @param aContactManager the ContactManager the requests are made of
+     * @param address         the address to take requests on, port 0 for any free port
+     * @throws IOException if the address cannot be bound
+     */
+    public ContactManagerServerImpl(ContactManager aContactManager, InetSocketAddress address) throws IOException {
+        this(aContactManager, address, 0, null);
+    }
+
+    /**
+     * Constructor for ContactManagerServerImpl
+     *
+     * @param aContactManager the ContactManager the requests are made of
+     * @param address         the address to take requests on, port 0 for any free port
+     * @param backlog         the number of connections that can wait to be accepted, 0 for the system default
+     * @param executor        the executor the requests are handled on, or null for a cached thread pool
+     * @throws IOException if the address cannot be bound
+     */
+    public ContactManagerServerImpl(ContactManager aContactManager, InetSocketAddress address, int backlog, ExecutorService executor) throws IOException {
+        if (aContactManager == null || address == null || backlog < 0) throw new IllegalArgumentException();
+
+        this.aContactManager = aContactManager;
+        this.ownExecutor = executor == null;
+        this.executor = executor == null ? newCachedExecutor() : executor;
+        server = HttpServer.create(address, backlog);
+        server.setExecutor(this.executor);
+        server.createContext("/", new Handler());
+    }
+
+    private static ExecutorService newCachedExecutor() {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "contact-manager-http-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        server.start();
+    }
+
+    /*
+     * An executor that was handed in belongs to the caller, so it is left running
+     */
+    @Override
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /*
+     * The status and JSON body of a response; a null body is sent as no content
+     */
+    private static class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static final Response NOT_FOUND = new Response(404, "{\"error\":\"Not found\"}");
+    private static final Response NO_CONTENT = new Response(204, null);
+    private static final Response CREATED = new Response(201, null);
+
+    /*
+     * Thrown when an id in the path or the query is not there, so it is not taken for a bad argument
+     */
+    private static class NotFoundException extends RuntimeException {
+    }
+
+    /*
+     * Turns each request into a call to the ContactManager, and what goes wrong into a status
+     */
+    private class Handler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            Response response;
+            try {
+                String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                if ("GET".equals(exchange.getRequestMethod())) {
+                    response = get(path, query);
+                } else if ("POST".equals(exchange.getRequestMethod())) {
+                    response = post(path, readBody(exchange.getRequestBody()));
+                } else {
+                    response = new Response(405, error("Method not allowed"));
+                }
+            } catch (NotFoundException e) {
+                response = NOT_FOUND;
+            } catch (IllegalArgumentException | IOException e) {
+                response = new Response(400, error(e.getMessage() == null ? "Bad request" : e.getMessage()));
+            } catch (IllegalStateException e) {
+                response = new Response(409, error(e.getMessage() == null ? "Conflict" : e.getMessage()));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                response = new Response(500, error("Internal error"));
+            }
+            send(exchange, response);
+        }
+    }
+
+    private Response get(String[] path, Map<String, String> query) throws IOException {
+        if (path[0].equals("contacts") && path.length == 1) return new Response(200, toJson(findContacts(query)));
+        if (path[0].equals("contacts") && path.length == 2 && path[1].equals("search")) {
+            return new Response(200, idsToJson(aContactManager.searchContactNotes(required(query, "q"), isTrue(query, "all"))));
+        }
+        if (path[0].equals("meetings") && path.length == 1) return new Response(200, meetingsToJson(findMeetings(query)));
+        if (path[0].equals("meetings") && path.length == 2 && path[1].equals("search")) {
+            return new Response(200, idsToJson(aContactManager.searchMeetingNotes(required(query, "q"), isTrue(query, "all"))));
+        }
+        if (path[0].equals("meetings") && path.length == 2) {
+            Meeting aMeeting = aContactManager.getMeeting(Integer.parseInt(path[1]));
+            String type = query.get("type");
+            if (aMeeting == null || "future".equals(type) && !(aMeeting instanceof FutureMeeting)
+                    || "past".equals(type) && !(aMeeting instanceof PastMeeting)) {
+                return NOT_FOUND;
+            }
+            return new Response(200, toJson(aMeeting));
+        }
+        return NOT_FOUND;
+    }
+
+    private Collection<Contact> findContacts(Map<String, String> query) {
+        if (query.containsKey("ids")) return contacts(parseIds(query.get("ids")));
+        if (query.containsKey("name")) return aContactManager.getContacts(query.get("name"));
+        if (query.containsKey("prefix")) {
+            int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10;
+            return aContactManager.getContactsByPrefix(query.get("prefix"), limit, isTrue(query, "rank"));
+        }
+        throw new IllegalArgumentException("Give ids, name or prefix");
+    }
+
+    private List<? extends Meeting> findMeetings(Map<String, String> query) {
+        if (query.containsKey("date")) return aContactManager.getFutureMeetingList(toCalendar(Long.parseLong(query.get("date"))));
+
+        Contact contact = query.containsKey("contact") ? contact(Integer.parseInt(query.get("contact"))) : null;
+        if (query.containsKey("from") || query.containsKey("to")) {
+            long from = Long.parseLong(required(query, "from"));
+            long to = Long.parseLong(required(query, "to"));
+            return contact == null ? aContactManager.getMeetings(from, to) : aContactManager.getMeetings(contact, from, to);
+        }
+        if (contact == null) throw new IllegalArgumentException("Give date, contact or from and to");
+        if ("past".equals(query.get("type"))) return aContactManager.getPastMeetingList(contact);
+        return aContactManager.getFutureMeetingList(contact);
+    }
+
+    private Response post(String[] path, String body) throws IOException {
+        if (path[0].equals("flush") && path.length == 1) {
+            aContactManager.flush();
+            return NO_CONTENT;
+        }
+        Map<String, Object> fields = JsonLinesRecordFormatImpl.parseObject(body);
+        if (path[0].equals("contacts") && path.length == 1) {
+            aContactManager.addNewContact(text(fields, "name"), text(fields, "notes"));
+            return CREATED;
+        }
+        if (path[0].equals("meetings") && path.length == 1) {
+            Set<Contact> contacts = aContactManager.getContacts(ids(fields));
+            long date = number(fields, "date");
+            if (fields.get("notes") == null) {
+                return created(aContactManager.addFutureMeeting(contacts, date));
+            }
+            aContactManager.addNewPastMeeting(contacts, date, text(fields, "notes"));
+            return CREATED;
+        }
+        if (path[0].equals("meetings") && path.length == 3 && path[2].equals("notes")) {
+            int id = Integer.parseInt(path[1]);
+            if (aContactManager.getMeeting(id) == null) return NOT_FOUND;
+            aContactManager.addMeetingNotes(id, text(fields, "notes"));
+            return NO_CONTENT;
+        }
+        return NOT_FOUND;
+    }
+
+    private static Response created(int id) {
+        return new Response(201, "{\"id\":" + id + "}");
+    }
+
+    /*
+     * The ContactManager turns down unknown ids as a bad argument, which here means they are not there
+     */
+    private Set<Contact> contacts(int... ids) {
+        try {
+            return aContactManager.getContacts(ids);
+        } catch (IllegalArgumentException e) {
+            throw new NotFoundException();
+        }
+    }
+
+    private Contact contact(int id) {
+        return contacts(id).iterator().next();
+    }
+
+    private static Calendar toCalendar(long millis) {
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(millis);
+        return date;
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) throw new IllegalArgumentException("Missing " + name);
+        return value;
+    }
+
+    private static boolean isTrue(Map<String, String> query, String name) {
+        return "true".equals(query.get(name));
+    }
+
+    private static int[] parseIds(String ids) {
+        String[] parts = ids.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Integer.parseInt(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static int[] ids(Map<String, Object> fields) throws IOException {
+        Object contacts = fields.get("contacts");
+        if (!(contacts instanceof List)) throw new IOException("Field contacts is not an array");
+
+        List<?> values = (List<?>) contacts;
+        int[] ids = new int[values.size()];
+        for (int i = 0; i < ids.length; i++) {
+            if (!(values.get(i) instanceof Long)) throw new IOException("Contact id is not a number");
+            ids[i] = ((Long) values.get(i)).intValue();
+        }
+        return ids;
+    }
+
+    private static long number(Map<String, Object> fields, String name) throws IOException {
+        Object value = fields.get(name);
+        if (!(value instanceof Long)) throw new IOException("Field " + name + " is not a number");
+        return (Long) value;
+    }
+
+    /*
+     * A missing string is turned down here, as the ContactManager would take it for a programming error
+     */
+    private static String text(Map<String, Object> fields, String name) throws IOException {
+        Object value = fields.get(name);
+        if (value == null) throw new IOException("Missing " + name);
+        if (!(value instanceof String)) throw new IOException("Field " + name + " is not a string");
+        return (String) value;
+    }
+
+    /*
+     * Parameters given more than once keep the last value
+     */
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, UTF_8), URLDecoder.decode(value, UTF_8));
+        }
+        return query;
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toString(UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        try {
+            if (response.body == null) {
+                exchange.sendResponseHeaders(response.status, -1);
+                return;
+            }
+            byte[] bytes = response.body.getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String error(String message) throws IOException {
+        StringWriter out = new StringWriter();
+        out.write("{\"error\":");
+        JsonLinesRecordFormatImpl.writeString(out, message);
+        out.write('}');
+        return out.toString();
+    }
+
+    private static String toJson(Collection<Contact> contacts) throws IOException {
+        StringWriter out = new StringWriter();
+        out.write('[');
+        boolean first = true;
+        for (Contact contact : contacts) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write("{\"id\":");
+            out.write(Integer.toString(contact.getId()));
+            out.write(",\"name\":");
+            JsonLinesRecordFormatImpl.writeString(out, contact.getName());
+            out.write(",\"notes\":");
+            JsonLinesRecordFormatImpl.writeString(out, contact.getNotes());
+            out.write('}');
+            first = false;
+        }
+        out.write(']');
+        return out.toString();
+    }
+
+    private static String meetingsToJson(List<? extends Meeting> meetings) throws IOException {
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < meetings.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(toJson(meetings.get(i)));
+        }
+        return out.append(']').toString();
+    }
+
+    private static String toJson(Meeting aMeeting) throws IOException {
+        StringWriter out = new StringWriter();
+        out.write("{\"id\":");
+        out.write(Integer.toString(aMeeting.getId()));
+        out.write(",\"date\":");
+        out.write(Long.toString(aMeeting.getTime()));
+        out.write(",\"contacts\":[");
+        boolean first = true;
+        for (Contact contact : aMeeting.getContacts()) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write(Integer.toString(contact.getId()));
+            first = false;
+        }
+        out.write("],\"notes\":");
+        JsonLinesRecordFormatImpl.writeString(out, aMeeting instanceof PastMeeting ? ((PastMeeting) aMeeting).getNotes() : null);
+        out.write('}');
+        return out.toString();
+    }
+
+    private static String idsToJson(Set<Integer> ids) {
+        List<Integer> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(sorted.get(i));
+        }
+        return out.append(']').toString();
+    }
+}
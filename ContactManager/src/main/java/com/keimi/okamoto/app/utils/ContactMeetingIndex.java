@@ -0,0 +1,57 @@
+package com.keimi.okamoto.app.utils;
+
+/**
+ * An index from contacts to the meetings they attend.
+ * Meeting ids are kept in chronological order for each contact,
+ * separately for future and past meetings, and are handed out
+ * as primitive arrays so a query never boxes an id.
+ */
+public interface ContactMeetingIndex {
+    /**
+     * Adds a meeting to a contact.
+     *
+     * @param contactId the id of a contact attending the meeting
+     * @param time      the date of the meeting in milliseconds since the epoch
+     * @param meetingId the id of the meeting
+     * @param past      true if the meeting is a past meeting
+     */
+    void addMeeting(int contactId, long time, int meetingId, boolean past);
+
+    /**
+     * Removes a meeting from a contact.
+     *
+     * @param contactId the id of a contact attending the meeting
+     * @param time      the date the meeting was added with
+     * @param meetingId the id of the meeting
+     * @param past      true if the meeting was added as a past meeting
+     */
+    void removeMeeting(int contactId, long time, int meetingId, boolean past);
+
+    /**
+     * Gets the future or the past meetings of a contact.
+     *
+     * @param contactId the id of a contact
+     * @param past      true for the past meetings, false for the future ones
+     * @return meeting ids in chronological order, empty if there are none
+     */
+    int[] getMeetingIds(int contactId, boolean past);
+
+    /**
+     * Gets all of the meetings of a contact held from one time
+     * (inclusive) up to another (exclusive).
+     *
+     * @param contactId the id of a contact
+     * @param from      the earliest time in milliseconds since the epoch
+     * @param to        the time all meetings are before
+     * @return meeting ids in chronological order, empty if there are none
+     */
+    int[] getMeetingIds(int contactId, long from, long to);
+
+    /**
+     * Gets the number of meetings, future and past, of a contact.
+     *
+     * @param contactId the id of a contact
+     * @return the number of meetings
+     */
+    int getMeetingCount(int contactId);
+}
@@ -0,0 +1,199 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * ContactMeetingIndex kept in primitive arrays: an open addressing
+ * table keyed on the contact id, where each contact has two posting
+ * lists of meeting ids sorted by date.
+ */
+public class ContactMeetingIndexImpl implements ContactMeetingIndex, Serializable {
+    private static final int[] NO_MEETINGS = new int[0];
+    private int[] contactIds;
+    private Postings[] postings;
+    private int size;
+
+    /**
+     * Constructor that makes an empty index.
+     */
+    public ContactMeetingIndexImpl() {
+        contactIds = new int[16];
+        postings = new Postings[16];
+    }
+
+    @Override
+    public void addMeeting(int contactId, long time, int meetingId, boolean past) {
+        Postings contactPostings = getPostings(contactId);
+        if (contactPostings == null) {
+            contactPostings = new Postings();
+            put(contactId, contactPostings);
+        }
+        (past ? contactPostings.past : contactPostings.future).add(time, meetingId);
+    }
+
+    @Override
+    public void removeMeeting(int contactId, long time, int meetingId, boolean past) {
+        Postings contactPostings = getPostings(contactId);
+        if (contactPostings != null) {
+            (past ? contactPostings.past : contactPostings.future).remove(time, meetingId);
+        }
+    }
+
+    @Override
+    public int[] getMeetingIds(int contactId, boolean past) {
+        Postings contactPostings = getPostings(contactId);
+        if (contactPostings == null) {
+            return NO_MEETINGS;
+        }
+        PostingList list = past ? contactPostings.past : contactPostings.future;
+        return Arrays.copyOf(list.ids, list.size);
+    }
+
+    @Override
+    public int[] getMeetingIds(int contactId, long from, long to) {
+        Postings contactPostings = getPostings(contactId);
+        if (contactPostings == null || from >= to) {
+            return NO_MEETINGS;
+        }
+
+        PostingList future = contactPostings.future;
+        PostingList past = contactPostings.past;
+        int i = future.indexOf(from);
+        int j = past.indexOf(from);
+        int futureEnd = future.indexOf(to);
+        int pastEnd = past.indexOf(to);
+
+        int[] result = new int[futureEnd - i + pastEnd - j];
+        int k = 0;
+        while (i < futureEnd || j < pastEnd) {
+            if (j == pastEnd || (i < futureEnd && future.times[i] <= past.times[j])) {
+                result[k++] = future.ids[i++];
+            } else {
+                result[k++] = past.ids[j++];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getMeetingCount(int contactId) {
+        Postings contactPostings = getPostings(contactId);
+        return contactPostings == null ? 0 : contactPostings.future.size + contactPostings.past.size;
+    }
+
+    /*
+     * Linear probing lookup of the postings of a contact
+     */
+    private Postings getPostings(int contactId) {
+        int mask = contactIds.length - 1;
+        for (int i = hash(contactId) & mask; postings[i] != null; i = (i + 1) & mask) {
+            if (contactIds[i] == contactId) {
+                return postings[i];
+            }
+        }
+        return null;
+    }
+
+    private void put(int contactId, Postings contactPostings) {
+        if ((size + 1) * 2 > contactIds.length) {
+            resize();
+        }
+        int mask = contactIds.length - 1;
+        int i = hash(contactId) & mask;
+        while (postings[i] != null) {
+            i = (i + 1) & mask;
+        }
+        contactIds[i] = contactId;
+        postings[i] = contactPostings;
+        size++;
+    }
+
+    private void resize() {
+        int[] oldContactIds = contactIds;
+        Postings[] oldPostings = postings;
+        contactIds = new int[oldContactIds.length * 2];
+        postings = new Postings[oldPostings.length * 2];
+        size = 0;
+        for (int i = 0; i < oldPostings.length; i++) {
+            if (oldPostings[i] != null) {
+                put(oldContactIds[i], oldPostings[i]);
+            }
+        }
+    }
+
+    /*
+     * Spreads consecutive ids over the table
+     */
+    private static int hash(int contactId) {
+        int h = contactId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /*
+     * The future and past meetings of one contact
+     */
+    private static class Postings implements Serializable {
+        private final PostingList future = new PostingList();
+        private final PostingList past = new PostingList();
+    }
+
+    /*
+     * Meeting ids sorted by date, in two parallel arrays
+     */
+    private static class PostingList implements Serializable {
+        private long[] times = new long[2];
+        private int[] ids = new int[2];
+        private int size;
+
+        private void add(long time, int meetingId) {
+            if (find(time, meetingId) >= 0) return;
+
+            if (size == ids.length) {
+                times = Arrays.copyOf(times, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int i = time == Long.MAX_VALUE ? size : indexOf(time + 1);
+            System.arraycopy(times, i, times, i + 1, size - i);
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            times[i] = time;
+            ids[i] = meetingId;
+            size++;
+        }
+
+        private void remove(long time, int meetingId) {
+            int i = find(time, meetingId);
+            if (i < 0) return;
+
+            System.arraycopy(times, i + 1, times, i, size - i - 1);
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            size--;
+        }
+
+        private int find(long time, int meetingId) {
+            for (int i = indexOf(time); i < size && times[i] == time; i++) {
+                if (ids[i] == meetingId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /*
+         * Index of the first meeting at or after the time
+         */
+        private int indexOf(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
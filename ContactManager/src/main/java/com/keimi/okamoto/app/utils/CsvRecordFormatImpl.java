@@ -0,0 +1,145 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records as comma separated values:
+ * <pre>
+ * contact,id,"name","notes"
+ * meeting,id,date in milliseconds,contact ids separated by spaces,"notes"
+ * </pre>
+ * Text is quoted, with a quote in it doubled, and a quoted value may run
+ * over more than one line. The notes of a future meeting are left empty
+ * and unquoted, which tells them apart from past meeting notes that are
+ * empty.
+ */
+public class CsvRecordFormatImpl implements RecordFormat {
+    private static final String CONTACT = "contact";
+    private static final String MEETING = "meeting";
+
+    /*
+     * A record is whole once every quote that was opened has been closed
+     */
+    @Override
+    public boolean isComplete(String record) {
+        int quotes = 0;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 == 0;
+    }
+
+    @Override
+    public ImportRecord parse(String record) throws IOException {
+        List<String> fields = split(record);
+        try {
+            if (CONTACT.equals(fields.get(0)) && fields.size() == 4) {
+                return ImportRecord.contact(Integer.parseInt(fields.get(1)), text(fields.get(2)), text(fields.get(3)));
+            }
+            if (MEETING.equals(fields.get(0)) && fields.size() == 5) {
+                String[] ids = fields.get(3).trim().isEmpty() ? new String[0] : fields.get(3).trim().split(" +");
+                int[] contactIds = new int[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    contactIds[i] = Integer.parseInt(ids[i]);
+                }
+                return ImportRecord.meeting(Integer.parseInt(fields.get(1)), Long.parseLong(fields.get(2)), contactIds, fields.get(4));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad number in record: " + record, e);
+        }
+        throw new IOException("Not a contact or meeting record: " + record);
+    }
+
+    /*
+     * Splits a record into its values, unquoting them. A value that was
+     * not quoted and is empty comes back as null.
+     */
+    private List<String> split(String record) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (inQuotes) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                field.setLength(0);
+                quoted = false;
+            } else {
+                field.append(c);
+            }
+        }
+        if (inQuotes) throw new IOException("Unclosed quote in record: " + record);
+
+        fields.add(quoted || field.length() > 0 ? field.toString() : null);
+        return fields;
+    }
+
+    private String text(String field) {
+        return field == null ? "" : field;
+    }
+
+    @Override
+    public void writeContact(Writer out, Contact aContact) throws IOException {
+        out.write(CONTACT);
+        out.write(',');
+        out.write(Integer.toString(aContact.getId()));
+        out.write(',');
+        writeQuoted(out, aContact.getName());
+        out.write(',');
+        writeQuoted(out, aContact.getNotes());
+        out.write('\n');
+    }
+
+    @Override
+    public void writeMeeting(Writer out, Meeting aMeeting) throws IOException {
+        out.write(MEETING);
+        out.write(',');
+        out.write(Integer.toString(aMeeting.getId()));
+        out.write(',');
+        out.write(Long.toString(aMeeting.getTime()));
+        out.write(',');
+        boolean first = true;
+        for (Contact contact : aMeeting.getContacts()) {
+            if (!first) {
+                out.write(' ');
+            }
+            out.write(Integer.toString(contact.getId()));
+            first = false;
+        }
+        out.write(',');
+        if (aMeeting instanceof PastMeeting) {
+            writeQuoted(out, ((PastMeeting) aMeeting).getNotes());
+        }
+        out.write('\n');
+    }
+
+    private void writeQuoted(Writer out, String value) throws IOException {
+        out.write('"');
+        if (value != null) {
+            out.write(value.replace("\"", "\"\""));
+        }
+        out.write('"');
+    }
+}
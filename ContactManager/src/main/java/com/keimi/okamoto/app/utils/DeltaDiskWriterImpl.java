@@ -0,0 +1,246 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
+import com.keimi.okamoto.app.organisers.ContactsContainerImpl;
+import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
+import com.keimi.okamoto.app.organisers.MeetingContainerImpl;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A DiskWriter that writes only what has changed since the last write.
+ * <p/>
+ * The first write, and every merge, writes a base file with every record.
+ * After that each write asks the containers which contacts and meetings
+ * have changed and writes just those to a new delta segment next to the
+ * base, named after it with ".delta." and the segment's number. Once
+ * there are enough segments they are merged back into a new base, so
+ * reading never has to replay more than a few of them.
+ * <p/>
+ * Both kinds of file hold records as laid out by BinaryDiskWriterImpl:
+ * <pre>
+ * int    magic, "CMDB" for the base or "CMDS" for a segment
+ * byte   version
+ * varint for the base, the number of the last segment merged into it;
+ *        for a segment, its own number
+ * the contact records, then the meeting records
+ * </pre>
+ * Reading puts the base back and then every segment numbered after the
+ * last one the base holds, in order, so a merge interrupted before its
+ * segments are deleted does not replay them over the newer base.
+ */
+public class DeltaDiskWriterImpl implements DiskWriter {
+    static final int BASE_MAGIC = 0x434D4442;
+    static final int SEGMENT_MAGIC = 0x434D4453;
+    static final byte VERSION = 1;
+    private static final String SEGMENT_SUFFIX = ".delta.";
+
+    private File file;
+    private int mergeThreshold;
+    private ContactFactory aContactFactory;
+    private MeetingFactory aMeetingFactory;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private int lastSegment;
+    private int segmentsSinceMerge;
+    private boolean mergeNeeded;
+
+    /**
+     * Constructor for DeltaDiskWriterImpl
+     *
+     * @param filename                        the base file; segments are written next to it
+     * @param mergeThreshold                  the number of segments written before they are merged into the base
+     * @param aContactFactory                 the factory for the contacts that are read
+     * @param aMeetingFactory                 the factory for the meetings that are read
+     * @param aUniqueNumberGeneratorUtilities the unique number generator for the containers that are read
+     */
+    public DeltaDiskWriterImpl(String filename, int mergeThreshold, ContactFactory aContactFactory, MeetingFactory aMeetingFactory,
+                               UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        if (mergeThreshold < 1) throw new IllegalArgumentException();
+
+        this.file = new File(filename);
+        this.mergeThreshold = mergeThreshold;
+        this.aContactFactory = aContactFactory;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        mergeNeeded = true;
+    }
+
+    /**
+     * Writes the changed records to a new segment, or merges everything
+     * into a new base when there is no base yet or enough segments.
+     */
+    @Override
+    public synchronized boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        Set<Integer> changedContactIds = aContactsContainer.takeChangedContactIds();
+        Set<Integer> changedMeetingIds = aMeetingContainer.takeChangedMeetingIds();
+
+        try {
+            if (mergeNeeded || !file.exists() || segmentsSinceMerge >= mergeThreshold) {
+                writeBase(aContactsContainer.getAllContacts(), aMeetingContainer.getAllMeetings());
+            } else if (!changedContactIds.isEmpty() || !changedMeetingIds.isEmpty()) {
+                writeSegment(lookUpContacts(aContactsContainer, changedContactIds), lookUpMeetings(aMeetingContainer, changedMeetingIds));
+            }
+        } catch (IOException e) {
+            // the changes have been taken from the containers, so only a full write can be sure to hold them
+            mergeNeeded = true;
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    private List<Contact> lookUpContacts(ContactsView aContactsContainer, Set<Integer> ids) {
+        List<Contact> contacts = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            contacts.add(aContactsContainer.getContact(id));
+        }
+        return contacts;
+    }
+
+    private List<Meeting> lookUpMeetings(MeetingsView aMeetingContainer, Set<Integer> ids) {
+        List<Meeting> meetings = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            meetings.add(aMeetingContainer.getMeeting(id));
+        }
+        return meetings;
+    }
+
+    /*
+     * Writes every record to a new base covering the segments so far, then deletes those segments
+     */
+    private void writeBase(Collection<Contact> contacts, Collection<Meeting> meetings) throws IOException {
+        writeFile(file, BASE_MAGIC, lastSegment, contacts, meetings);
+        for (File segment : findSegments().values()) {
+            Files.deleteIfExists(segment.toPath());
+        }
+        segmentsSinceMerge = 0;
+        mergeNeeded = false;
+    }
+
+    private void writeSegment(Collection<Contact> contacts, Collection<Meeting> meetings) throws IOException {
+        int segmentNumber = lastSegment + 1;
+        writeFile(segmentFile(segmentNumber), SEGMENT_MAGIC, segmentNumber, contacts, meetings);
+        lastSegment = segmentNumber;
+        segmentsSinceMerge++;
+    }
+
+    private void writeFile(File target, int magic, int segmentNumber, Collection<Contact> contacts, Collection<Meeting> meetings) throws IOException {
+        File temporaryFile = new File(target.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 65536))) {
+            out.writeInt(magic);
+            out.writeByte(VERSION);
+            SnapshotCodec.writeVarInt(out, segmentNumber);
+            BinaryDiskWriterImpl.writeRecords(out, contacts, meetings);
+        }
+        Files.move(temporaryFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File segmentFile(int segmentNumber) {
+        return new File(file.getPath() + SEGMENT_SUFFIX + segmentNumber);
+    }
+
+    /*
+     * Finds the segments next to the base, in the order they were written
+     */
+    private SortedMap<Integer, File> findSegments() {
+        SortedMap<Integer, File> segments = new TreeMap<>();
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + SEGMENT_SUFFIX;
+        File[] files = directory.listFiles();
+        if (files == null) return segments;
+
+        for (File candidate : files) {
+            String name = candidate.getName();
+            if (name.startsWith(prefix)) {
+                try {
+                    segments.put(Integer.parseInt(name.substring(prefix.length())), candidate);
+                } catch (NumberFormatException e) {
+                    // a temporary file left by an interrupted write
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Gets the number of segments written since the base was last merged.
+     *
+     * @return the number of segments waiting to be merged
+     */
+    public synchronized int getSegmentCount() {
+        return segmentsSinceMerge;
+    }
+
+    /*
+     * Every change is found by asking the containers in writeToDisk, so nothing is recorded per change
+     */
+    @Override
+    public void recordContact(Contact aContact) {
+    }
+
+    @Override
+    public void recordMeeting(Meeting aMeeting) {
+    }
+
+    @Override
+    public boolean checkIfDataExists() {
+        return file.exists();
+    }
+
+    @Override
+    public synchronized void readDisk() {
+        ContactsContainer contacts = new ContactsContainerImpl(aContactFactory, aUniqueNumberGeneratorUtilities);
+        MeetingContainer meetings = new MeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities);
+
+        try {
+            int mergedSegment = readFile(file, BASE_MAGIC, contacts, meetings);
+            lastSegment = mergedSegment;
+            segmentsSinceMerge = 0;
+            for (Map.Entry<Integer, File> segment : findSegments().tailMap(mergedSegment + 1).entrySet()) {
+                readFile(segment.getValue(), SEGMENT_MAGIC, contacts, meetings);
+                lastSegment = segment.getKey();
+                segmentsSinceMerge++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        // what has just been read is already on disk
+        contacts.takeChangedContactIds();
+        meetings.takeChangedMeetingIds();
+        mergeNeeded = false;
+        contactsContainer = contacts;
+        meetingContainer = meetings;
+    }
+
+    private int readFile(File source, int magic, ContactsContainer contacts, MeetingContainer meetings) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source), 65536))) {
+            if (in.readInt() != magic) throw new IOException("Not a base or delta segment: " + source);
+            byte version = in.readByte();
+            if (version != VERSION) throw new IOException("Unknown delta version " + version);
+
+            int segmentNumber = SnapshotCodec.readVarInt(in);
+            BinaryDiskWriterImpl.readRecords(in, contacts, meetings);
+            return segmentNumber;
+        }
+    }
+
+    @Override
+    public ContactsContainer getContactContainer() {
+        return contactsContainer;
+    }
+
+    @Override
+    public MeetingContainer getMeetingContainer() {
+        return meetingContainer;
+    }
+}
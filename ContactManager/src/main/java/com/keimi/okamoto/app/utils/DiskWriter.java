@@ -1,8 +1,12 @@
 package com.keimi.okamoto.app.utils;
 
 
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
 import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
 import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
 
 /**
  * Disk writer is a class that is responsible for the data
@@ -12,10 +16,30 @@ public interface DiskWriter {
     /**
      * Writes data to disk. Data is serialized here.
      *
-     * @param aContactsContainer a ContactsContainer
-     * @param aMeetingContainer  a MeetingContainer
+     * @param aContactsContainer the contacts, a ContactsContainer or a snapshot of one
+     * @param aMeetingContainer  the meetings, a MeetingContainer or a snapshot of one
+     * @return true if the data was written, false if writing it failed
      */
-    void writeToDisk(ContactsContainer aContactsContainer, MeetingContainer aMeetingContainer);
+    boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer);
+
+    /**
+     * Records a contact that has just been added, so that
+     * it is kept even if writeToDisk is never called.
+     *
+     * @param aContact the new contact
+     * @throws IllegalStateException if the contact should have been recorded but could not be
+     */
+    void recordContact(Contact aContact);
+
+    /**
+     * Records a meeting that has just been added or has
+     * just had notes added, so that the change is kept even
+     * if writeToDisk is never called.
+     *
+     * @param aMeeting the new or changed meeting
+     * @throws IllegalStateException if the meeting should have been recorded but could not be
+     */
+    void recordMeeting(Meeting aMeeting);
 
     /**
      * Checks of the data exists
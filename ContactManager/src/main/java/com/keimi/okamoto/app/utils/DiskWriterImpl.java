@@ -1,35 +1,78 @@
 package com.keimi.okamoto.app.utils;
 
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
 import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
 import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 
 public class DiskWriterImpl implements DiskWriter {
-    private static final String filename = "contacts.txt";
+    private static final String defaultFilename = "contacts.txt";
+    private final String filename;
     private ContactsContainer contactsContainer;
     private MeetingContainer meetingContainer;
 
+    /**
+     * Constructor for a DiskWriterImpl that writes to contacts.txt
+     */
+    public DiskWriterImpl() {
+        this(defaultFilename);
+    }
+
+    /**
+     * Constructor for DiskWriterImpl
+     *
+     * @param filename the file the containers are written to
+     */
+    public DiskWriterImpl(String filename) {
+        this.filename = filename;
+    }
+
+    /*
+     * The containers are written to a file next to the old one, which is only
+     * replaced once the new one is complete, so a failed write leaves the old one
+     */
     @Override
-    public void writeToDisk(ContactsContainer aContactsContainer, MeetingContainer aMeetingContainer) {
-        FileOutputStream fos;
-        ObjectOutputStream out;
+    public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        File temporaryFile = new File(filename + ".tmp");
 
-        try {
-            fos = new FileOutputStream(DiskWriterImpl.filename);
-            out = new ObjectOutputStream(fos);
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(temporaryFile))) {
             out.writeObject(aContactsContainer);
             out.writeObject(aMeetingContainer);
-            out.close();
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
+        try {
+            Files.move(temporaryFile.toPath(), new File(filename).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * The whole of both containers is written by writeToDisk, so nothing is recorded per change
+     */
+    @Override
+    public void recordContact(Contact aContact) {
+    }
+
+    @Override
+    public void recordMeeting(Meeting aMeeting) {
     }
 
     @Override
     public boolean checkIfDataExists() {
-        File file = new File(DiskWriterImpl.filename);
+        File file = new File(filename);
         return file.exists();
     }
 
@@ -39,7 +82,7 @@ public class DiskWriterImpl implements DiskWriter {
         ObjectInputStream in;
 
         try {
-            fis = new FileInputStream(DiskWriterImpl.filename);
+            fis = new FileInputStream(filename);
             in = new ObjectInputStream(fis);
             contactsContainer = (ContactsContainer) in.readObject();
             meetingContainer = (MeetingContainer) in.readObject();
@@ -0,0 +1,119 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
+import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A DiskWriter that writes the high-water mark of an
+ * AtomicUniqueNumberGeneratorImpl next to what another DiskWriter writes,
+ * and puts it back when the data is read, so no number handed out before
+ * a restart is handed out again after it, whether or not the record that
+ * had it was written. The mark is kept in a file of its own:
+ * <pre>
+ * int  magic, "CMHW"
+ * byte version
+ * long the high-water mark
+ * </pre>
+ * It is written after the data, so it is never below a number in the
+ * data it goes with.
+ */
+public class HighWaterMarkDiskWriterImpl implements DiskWriter {
+    static final int MAGIC = 0x434D4857;
+    static final byte VERSION = 1;
+
+    private DiskWriter aDiskWriter;
+    private File file;
+    private AtomicUniqueNumberGeneratorImpl aUniqueNumberGenerator;
+
+    /**
+     * Constructor for HighWaterMarkDiskWriterImpl
+     *
+     * @param aDiskWriter            the DiskWriter that writes and reads the data
+     * @param filename               the file the high-water mark is written to
+     * @param aUniqueNumberGenerator the generator whose high-water mark is kept
+     */
+    public HighWaterMarkDiskWriterImpl(DiskWriter aDiskWriter, String filename, AtomicUniqueNumberGeneratorImpl aUniqueNumberGenerator) {
+        if (aDiskWriter == null || filename == null || aUniqueNumberGenerator == null) throw new IllegalArgumentException();
+
+        this.aDiskWriter = aDiskWriter;
+        this.file = new File(filename);
+        this.aUniqueNumberGenerator = aUniqueNumberGenerator;
+    }
+
+    @Override
+    public synchronized boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        boolean written = aDiskWriter.writeToDisk(aContactsContainer, aMeetingContainer);
+        try {
+            writeHighWaterMark(aUniqueNumberGenerator.getHighWaterMark());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return written;
+    }
+
+    private void writeHighWaterMark(long highWaterMark) throws IOException {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temporaryFile))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(highWaterMark);
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void recordContact(Contact aContact) {
+        aDiskWriter.recordContact(aContact);
+    }
+
+    @Override
+    public void recordMeeting(Meeting aMeeting) {
+        aDiskWriter.recordMeeting(aMeeting);
+    }
+
+    @Override
+    public boolean checkIfDataExists() {
+        return aDiskWriter.checkIfDataExists();
+    }
+
+    /*
+     * Without a mark the generator still skips past every id that is read back
+     */
+    @Override
+    public synchronized void readDisk() {
+        aDiskWriter.readDisk();
+        if (!file.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a high-water mark: " + file);
+            byte version = in.readByte();
+            if (version != VERSION) throw new IOException("Unknown high-water mark version " + version);
+
+            long highWaterMark = in.readLong();
+            if (highWaterMark > 0) {
+                aUniqueNumberGenerator.skipPast((int) Math.min(highWaterMark - 1, Integer.MAX_VALUE));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public ContactsContainer getContactContainer() {
+        return aDiskWriter.getContactContainer();
+    }
+
+    @Override
+    public MeetingContainer getMeetingContainer() {
+        return aDiskWriter.getMeetingContainer();
+    }
+}
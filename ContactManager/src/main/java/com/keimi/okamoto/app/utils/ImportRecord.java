@@ -0,0 +1,88 @@
+package com.keimi.okamoto.app.utils;
+
+/**
+ * A contact or meeting as it was read from a line of an import, before
+ * it is given an id of its own. Ids in a record are the ones the data
+ * had where it came from, and are only used to match meetings to their
+ * contacts.
+ */
+public class ImportRecord {
+    private final boolean meeting;
+    private final int id;
+    private final String name;
+    private final String notes;
+    private final long date;
+    private final int[] contactIds;
+
+    private ImportRecord(boolean meeting, int id, String name, String notes, long date, int[] contactIds) {
+        this.meeting = meeting;
+        this.id = id;
+        this.name = name;
+        this.notes = notes;
+        this.date = date;
+        this.contactIds = contactIds;
+    }
+
+    /**
+     * @param id    the id of the contact where it came from
+     * @param name  the name of the contact
+     * @param notes the notes about the contact
+     * @return a record of a contact
+     */
+    public static ImportRecord contact(int id, String name, String notes) {
+        return new ImportRecord(false, id, name, notes, 0, null);
+    }
+
+    /**
+     * @param id         the id of the meeting where it came from
+     * @param date       the date of the meeting, in milliseconds since the epoch
+     * @param contactIds the ids of the contacts who attend, where they came from
+     * @param notes      the notes about the meeting, or null for a future meeting
+     * @return a record of a meeting
+     */
+    public static ImportRecord meeting(int id, long date, int[] contactIds, String notes) {
+        return new ImportRecord(true, id, null, notes, date, contactIds);
+    }
+
+    /**
+     * @return true for a meeting, false for a contact
+     */
+    public boolean isMeeting() {
+        return meeting;
+    }
+
+    /**
+     * @return the id where the record came from
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of a contact
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the notes, which are null for a future meeting
+     */
+    public String getNotes() {
+        return notes;
+    }
+
+    /**
+     * @return the date of a meeting, in milliseconds since the epoch
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * @return the ids of the contacts who attend a meeting
+     */
+    public int[] getContactIds() {
+        return contactIds;
+    }
+}
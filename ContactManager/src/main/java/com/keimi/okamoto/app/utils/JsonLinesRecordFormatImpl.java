@@ -0,0 +1,296 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records as JSON objects, one to a line:
+ * <pre>
+ * {"type":"contact","id":1,"name":"...","notes":"..."}
+ * {"type":"meeting","id":2,"date":1400000000000,"contacts":[1],"notes":"..."}
+ * </pre>
+ * The notes of a future meeting are null. Fields that are not known are
+ * skipped, as long as they hold strings, numbers, booleans, null or
+ * arrays of those.
+ */
+public class JsonLinesRecordFormatImpl implements RecordFormat {
+    private static final String CONTACT = "contact";
+    private static final String MEETING = "meeting";
+
+    /*
+     * Line breaks in strings are escaped, so every record is one line
+     */
+    @Override
+    public boolean isComplete(String record) {
+        return true;
+    }
+
+    @Override
+    public ImportRecord parse(String record) throws IOException {
+        Map<String, Object> fields = parseObject(record);
+        Object type = fields.get("type");
+        if (CONTACT.equals(type)) {
+            return ImportRecord.contact(number(fields, "id").intValue(), text(fields, "name"), text(fields, "notes"));
+        }
+        if (MEETING.equals(type)) {
+            Object contacts = fields.get("contacts");
+            if (!(contacts instanceof List)) throw new IOException("Meeting without contacts: " + record);
+
+            List<?> ids = (List<?>) contacts;
+            int[] contactIds = new int[ids.size()];
+            for (int i = 0; i < contactIds.length; i++) {
+                if (!(ids.get(i) instanceof Long)) throw new IOException("Contact id is not a number: " + record);
+                contactIds[i] = ((Long) ids.get(i)).intValue();
+            }
+            Object notes = fields.get("notes");
+            if (notes != null && !(notes instanceof String)) throw new IOException("Notes are not a string: " + record);
+            return ImportRecord.meeting(number(fields, "id").intValue(), number(fields, "date"), contactIds, (String) notes);
+        }
+        throw new IOException("Not a contact or meeting record: " + record);
+    }
+
+    private Long number(Map<String, Object> fields, String name) throws IOException {
+        Object value = fields.get(name);
+        if (!(value instanceof Long)) throw new IOException("Field " + name + " is not a number");
+        return (Long) value;
+    }
+
+    private String text(Map<String, Object> fields, String name) throws IOException {
+        Object value = fields.get(name);
+        if (value == null) return "";
+        if (!(value instanceof String)) throw new IOException("Field " + name + " is not a string");
+        return (String) value;
+    }
+
+    @Override
+    public void writeContact(Writer out, Contact aContact) throws IOException {
+        out.write("{\"type\":\"contact\",\"id\":");
+        out.write(Integer.toString(aContact.getId()));
+        out.write(",\"name\":");
+        writeString(out, aContact.getName());
+        out.write(",\"notes\":");
+        writeString(out, aContact.getNotes());
+        out.write("}\n");
+    }
+
+    @Override
+    public void writeMeeting(Writer out, Meeting aMeeting) throws IOException {
+        out.write("{\"type\":\"meeting\",\"id\":");
+        out.write(Integer.toString(aMeeting.getId()));
+        out.write(",\"date\":");
+        out.write(Long.toString(aMeeting.getTime()));
+        out.write(",\"contacts\":[");
+        boolean first = true;
+        for (Contact contact : aMeeting.getContacts()) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write(Integer.toString(contact.getId()));
+            first = false;
+        }
+        out.write("],\"notes\":");
+        writeString(out, aMeeting instanceof PastMeeting ? ((PastMeeting) aMeeting).getNotes() : null);
+        out.write("}\n");
+    }
+
+    /*
+     * Also used by ContactManagerServerImpl, which speaks the same JSON
+     */
+    static void writeString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    /*
+     * Parses one flat JSON object, for ContactManagerServerImpl as well as for records
+     */
+    static Map<String, Object> parseObject(String text) throws IOException {
+        return new Parser(text).parseObject();
+    }
+
+    /*
+     * Just enough of a JSON parser for one flat object; numbers are read as longs
+     */
+    private static class Parser {
+        private final String text;
+        private int position;
+
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        private Map<String, Object> parseObject() throws IOException {
+            Map<String, Object> fields = new HashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                position++;
+            } else {
+                do {
+                    String name = parseString();
+                    expect(':');
+                    fields.put(name, parseValue());
+                } while (next(',', '}') == ',');
+            }
+            if (peek() != 0) throw error("Text after the object");
+            return fields;
+        }
+
+        private Object parseValue() throws IOException {
+            char c = peek();
+            if (c == '"') return parseString();
+            if (c == '[') return parseArray();
+            if (c == '-' || (c >= '0' && c <= '9')) return parseNumber();
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            throw error("Unexpected value");
+        }
+
+        private List<Object> parseArray() throws IOException {
+            List<Object> values = new ArrayList<>();
+            expect('[');
+            if (peek() == ']') {
+                position++;
+                return values;
+            }
+            do {
+                Object value = parseValue();
+                if (value instanceof List) throw error("Nested arrays are not supported");
+                values.add(value);
+            } while (next(',', ']') == ',');
+            return values;
+        }
+
+        private Long parseNumber() throws IOException {
+            int start = position;
+            if (text.charAt(position) == '-') {
+                position++;
+            }
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            try {
+                return Long.parseLong(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Bad number");
+            }
+        }
+
+        private String parseString() throws IOException {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') return value.toString();
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position == text.length()) break;
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) throw error("Bad escape");
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            }
+            throw error("Unclosed string");
+        }
+
+        private void expect(char expected) throws IOException {
+            if (peek() != expected) throw error("Expected " + expected);
+            position++;
+        }
+
+        private char next(char first, char second) throws IOException {
+            char c = peek();
+            if (c != first && c != second) throw error("Expected " + first + " or " + second);
+            position++;
+            return c;
+        }
+
+        /*
+         * The next character that is not white space, or 0 at the end
+         */
+        private char peek() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at " + position + " in record: " + text);
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.organisers.*;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A DiskWriter that appends a small record to a log every time a
+ * contact or meeting is added or changed, instead of writing every
+ * contact and meeting again. Every so many records, and whenever
+ * writeToDisk is called, a snapshot of both containers is written with
+ * another DiskWriter and the log is cut down to the records the snapshot
+ * does not hold, which are those logged after a snapshot handed in by the
+ * caller was taken. If the snapshot could not be written the log is kept,
+ * as it is then the only copy of the records since the last snapshot.
+ * The snapshots taken every so many records are of the containers given
+ * to the constructor, or read from disk. They are taken by the thread that
+ * logs the record, which holds the containers still, and written by a
+ * background thread, so the change being logged does not wait for them.
+ * Containers that cannot hand out a snapshot are written by the thread
+ * that logs the record instead.
+ * <p/>
+ * On startup the snapshot is read and the records in the log are
+ * replayed on top of it. A meeting record holds the whole meeting, so
+ * replaying a record that is already in the snapshot does no harm.
+ * <p/>
+ * Records are appended under a different lock from the one snapshots are
+ * written under, so a change can be logged while a snapshot handed in by
+ * the caller is being written.
+ * <p/>
+ * A record that cannot be appended is cut back off the log, and the
+ * failure is thrown as an IllegalStateException, so the change is not
+ * taken to be kept. It is still in the containers, so the next snapshot
+ * holds it.
+ */
+public class LogDiskWriterImpl implements DiskWriter {
+    private static final byte CONTACT_RECORD = 1;
+    private static final byte MEETING_RECORD = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private DiskWriter aSnapshotWriter;
+    private File logFile;
+    private int snapshotInterval;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private final Object logLock = new Object();
+    private final Lock snapshotLock = new ReentrantLock();
+    private final AtomicBoolean periodicSnapshotDue = new AtomicBoolean();
+    private final AtomicLong snapshotsHandedIn = new AtomicLong();
+    private final ExecutorService snapshotWriter = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "LogDiskWriter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private volatile Future<?> periodicSnapshot;
+    private DataOutputStream log;
+    private long logStart;
+    private int recordCount;
+
+    /**
+     * Constructor for LogDiskWriterImpl
+     *
+     * @param aSnapshotWriter    the DiskWriter the snapshots are written and read with
+     * @param logFilename        the file the records are appended to
+     * @param snapshotInterval   the number of records after which a snapshot is taken
+     * @param aContactsContainer the ContactsContainer that is snapshot, and replayed into if there is no snapshot yet
+     * @param aMeetingContainer  the MeetingContainer that is snapshot, and replayed into if there is no snapshot yet
+     */
+    public LogDiskWriterImpl(DiskWriter aSnapshotWriter, String logFilename, int snapshotInterval,
+                             ContactsContainer aContactsContainer, MeetingContainer aMeetingContainer) {
+        if (snapshotInterval < 1) throw new IllegalArgumentException();
+        this.aSnapshotWriter = aSnapshotWriter;
+        this.logFile = new File(logFilename);
+        this.snapshotInterval = snapshotInterval;
+        this.contactsContainer = aContactsContainer;
+        this.meetingContainer = aMeetingContainer;
+    }
+
+    @Override
+    public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        snapshotsHandedIn.incrementAndGet();
+        snapshotLock.lock();
+        try {
+            return writeSnapshot(aContactsContainer, aMeetingContainer);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /*
+     * Only cutting the log down holds up the records being logged, not writing the snapshot
+     */
+    private boolean writeSnapshot(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        synchronized (logLock) {
+            recordCount = 0;
+        }
+        if (!aSnapshotWriter.writeToDisk(aContactsContainer, aMeetingContainer)) return false;
+
+        synchronized (logLock) {
+            closeLog();
+            keepRecordsNotIn(aContactsContainer, aMeetingContainer);
+        }
+        return true;
+    }
+
+    /*
+     * The containers may be a snapshot taken before the last few records were logged, so the log is
+     * only cut down to the records the snapshot does not match rather than deleted. If it cannot be
+     * rewritten it is kept whole, as replaying a record that is in the snapshot does no harm.
+     */
+    private void keepRecordsNotIn(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        if (!logFile.exists()) return;
+
+        File keptFile = new File(logFile.getPath() + ".tmp");
+        recordCount = 0;
+        try {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(keptFile)))) {
+                copyRecordsNotIn(in, out, aContactsContainer, aMeetingContainer);
+            }
+            if (recordCount == 0) {
+                Files.delete(keptFile.toPath());
+                Files.delete(logFile.toPath());
+            } else {
+                Files.move(keptFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            keptFile.delete();
+        }
+    }
+
+    private void copyRecordsNotIn(DataInputStream in, DataOutputStream out, ContactsView aContactsContainer,
+                                  MeetingsView aMeetingContainer) throws IOException {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                if (type == CONTACT_RECORD) {
+                    int id = in.readInt();
+                    String name = readString(in);
+                    String notes = readString(in);
+                    Contact contact = aContactsContainer.getContact(id);
+                    if (contact == null || !Objects.equals(contact.getName(), name) || !Objects.equals(contact.getNotes(), notes)) {
+                        out.writeByte(CONTACT_RECORD);
+                        out.writeInt(id);
+                        writeString(out, name);
+                        writeString(out, notes);
+                        recordCount++;
+                    }
+                } else if (type == MEETING_RECORD) {
+                    int id = in.readInt();
+                    long date = in.readLong();
+                    int[] contactIds = new int[in.readInt()];
+                    for (int i = 0; i < contactIds.length; i++) {
+                        contactIds[i] = in.readInt();
+                    }
+                    String notes = readString(in);
+                    Meeting meeting = aMeetingContainer.getMeeting(id);
+                    if (meeting == null || meeting.getTime() != date || !hasContacts(meeting, contactIds)
+                            || !Objects.equals(meeting instanceof PastMeeting ? ((PastMeeting) meeting).getNotes() : null, notes)) {
+                        out.writeByte(MEETING_RECORD);
+                        out.writeInt(id);
+                        out.writeLong(date);
+                        out.writeInt(contactIds.length);
+                        for (int contactId : contactIds) {
+                            out.writeInt(contactId);
+                        }
+                        writeString(out, notes);
+                        recordCount++;
+                    }
+                } else {
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // the end of the log, or of a record that was not finished
+        }
+    }
+
+    /*
+     * The contacts of a meeting are a set, so they are compared whatever order they were logged in
+     */
+    private static boolean hasContacts(Meeting aMeeting, int[] contactIds) {
+        Set<Contact> contacts = aMeeting.getContacts();
+        if (contacts.size() != contactIds.length) return false;
+
+        Set<Integer> ids = new HashSet<>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        for (int contactId : contactIds) {
+            if (!ids.contains(contactId)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void recordContact(Contact aContact) {
+        if (aContact == null) return;
+
+        boolean snapshotDue;
+        synchronized (logLock) {
+            long start = -1;
+            try {
+                DataOutputStream out = openLog();
+                start = logStart + out.size();
+                out.writeByte(CONTACT_RECORD);
+                out.writeInt(aContact.getId());
+                writeString(out, aContact.getName());
+                writeString(out, aContact.getNotes());
+                out.flush();
+            } catch (IOException e) {
+                dropRecord(start);
+                throw new IllegalStateException("The record could not be logged", e);
+            }
+            snapshotDue = recorded();
+        }
+        if (snapshotDue) {
+            takePeriodicSnapshot();
+        }
+    }
+
+    @Override
+    public void recordMeeting(Meeting aMeeting) {
+        if (aMeeting == null) return;
+
+        boolean snapshotDue;
+        synchronized (logLock) {
+            long start = -1;
+            try {
+                DataOutputStream out = openLog();
+                start = logStart + out.size();
+                Set<Contact> contacts = aMeeting.getContacts();
+                out.writeByte(MEETING_RECORD);
+                out.writeInt(aMeeting.getId());
+                out.writeLong(aMeeting.getTime());
+                out.writeInt(contacts.size());
+                for (Contact contact : contacts) {
+                    out.writeInt(contact.getId());
+                }
+                writeString(out, aMeeting instanceof PastMeeting ? ((PastMeeting) aMeeting).getNotes() : null);
+                out.flush();
+            } catch (IOException e) {
+                dropRecord(start);
+                throw new IllegalStateException("The record could not be logged", e);
+            }
+            snapshotDue = recorded();
+        }
+        if (snapshotDue) {
+            takePeriodicSnapshot();
+        }
+    }
+
+    /*
+     * Cuts a record that was only partly written off the log, so the records logged after it can be replayed
+     */
+    private void dropRecord(long start) {
+        closeLog();
+        if (start >= 0) {
+            truncateLog(start);
+        }
+    }
+
+    /*
+     * Counts a record and returns whether enough records have been written for a snapshot
+     */
+    private boolean recorded() {
+        recordCount++;
+        return recordCount >= snapshotInterval && contactsContainer != null && meetingContainer != null;
+    }
+
+    /*
+     * A snapshot that is already waiting to be written cuts the log down as well, so no other is taken.
+     * The snapshot is taken here, where the caller holds the containers still, and written in the background.
+     */
+    private void takePeriodicSnapshot() {
+        if (!canTakeSnapshot()) {
+            writeLiveContainers();
+            return;
+        }
+        if (!periodicSnapshotDue.compareAndSet(false, true)) return;
+
+        final ContactsView contacts = contactsContainer instanceof VersionedContactsContainer
+                ? ((VersionedContactsContainer) contactsContainer).takeSnapshot()
+                : ((ContactsContainerImpl) contactsContainer).takeSnapshot();
+        final MeetingsView meetings = meetingContainer instanceof VersionedMeetingContainer
+                ? ((VersionedMeetingContainer) meetingContainer).takeSnapshot()
+                : ((MeetingContainerImpl) meetingContainer).takeSnapshot();
+        final long handedIn = snapshotsHandedIn.get();
+        periodicSnapshot = snapshotWriter.submit(new Runnable() {
+            @Override
+            public void run() {
+                periodicSnapshotDue.set(false);
+                snapshotLock.lock();
+                try {
+                    // a snapshot handed in since may be newer, and the log already keeps what it does not hold
+                    if (snapshotsHandedIn.get() == handedIn) {
+                        writeSnapshot(contacts, meetings);
+                    }
+                } finally {
+                    snapshotLock.unlock();
+                }
+            }
+        });
+    }
+
+    /*
+     * Both containers have to give a snapshot, or one of them would be written while it changes
+     */
+    private boolean canTakeSnapshot() {
+        return (contactsContainer instanceof VersionedContactsContainer || contactsContainer instanceof ContactsContainerImpl)
+                && (meetingContainer instanceof VersionedMeetingContainer || meetingContainer instanceof MeetingContainerImpl);
+    }
+
+    /*
+     * A snapshot that is already being written cuts the log down as well, so the change
+     * that is being logged does not wait for it
+     */
+    private void writeLiveContainers() {
+        if (!snapshotLock.tryLock()) return;
+
+        try {
+            writeSnapshot(contactsContainer, meetingContainer);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /*
+     * Waits for the last snapshot taken every so many records to be written, so a test can look at the files
+     */
+    void awaitPeriodicSnapshot(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        Future<?> snapshot = periodicSnapshot;
+        if (snapshot != null) {
+            snapshot.get(timeout, unit);
+        }
+    }
+
+    @Override
+    public boolean checkIfDataExists() {
+        return aSnapshotWriter.checkIfDataExists() || logFile.exists();
+    }
+
+    @Override
+    public void readDisk() {
+        snapshotLock.lock();
+        try {
+            synchronized (logLock) {
+                read();
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void read() {
+        if (aSnapshotWriter.checkIfDataExists()) {
+            aSnapshotWriter.readDisk();
+            // a snapshot that could not be read leaves the log to be replayed into the containers given
+            if (aSnapshotWriter.getContactContainer() != null && aSnapshotWriter.getMeetingContainer() != null) {
+                contactsContainer = aSnapshotWriter.getContactContainer();
+                meetingContainer = aSnapshotWriter.getMeetingContainer();
+            }
+        }
+        if (logFile.exists() && contactsContainer != null && meetingContainer != null) {
+            replayLog();
+        }
+    }
+
+    /*
+     * Applies the records in the log to the containers. A record that was only
+     * partly written when the program stopped is cut off the end of the log.
+     */
+    private void replayLog() {
+        long validLength = 0;
+        recordCount = 0;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+             DataInputStream in = new DataInputStream(counter)) {
+            while (true) {
+                byte type = in.readByte();
+                if (type == CONTACT_RECORD) {
+                    int id = in.readInt();
+                    String name = readString(in);
+                    String notes = readString(in);
+                    contactsContainer.restoreContact(id, name, notes);
+                } else if (type == MEETING_RECORD) {
+                    int id = in.readInt();
+                    long date = in.readLong();
+                    int size = in.readInt();
+                    Set<Contact> contacts = new HashSet<>();
+                    for (int i = 0; i < size; i++) {
+                        Contact contact = contactsContainer.getContact(in.readInt());
+                        if (contact != null) {
+                            contacts.add(contact);
+                        }
+                    }
+                    String notes = readString(in);
+                    meetingContainer.restoreMeeting(id, contacts, date, notes);
+                } else {
+                    break;
+                }
+                validLength = counter.getCount();
+                recordCount++;
+            }
+        } catch (EOFException e) {
+            // the last record was not finished, so it is dropped
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        truncateLog(validLength);
+    }
+
+    private void truncateLog(long length) {
+        if (logFile.length() == length) return;
+
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(length);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        if (log == null) {
+            logStart = logFile.length();
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+        }
+        return log;
+    }
+
+    private void closeLog() {
+        if (log == null) return;
+
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        log = null;
+    }
+
+    /*
+     * Strings are written as a length followed by UTF-8 bytes, with -1 for null,
+     * so that notes are not limited to the 64KB of writeUTF
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    @Override
+    public ContactsContainer getContactContainer() {
+        return contactsContainer;
+    }
+
+    @Override
+    public MeetingContainer getMeetingContainer() {
+        return meetingContainer;
+    }
+
+    /*
+     * Keeps count of the bytes of the log that have been read
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+}
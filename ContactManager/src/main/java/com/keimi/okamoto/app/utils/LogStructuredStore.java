@@ -0,0 +1,661 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A log-structured store of records under long keys, kept in a directory.
+ * <p/>
+ * A record that is put goes to the end of a write-ahead log and into a
+ * sorted in-memory table. When the table is full, or when flush is called,
+ * it is written out as a new segment: an immutable file of records in key
+ * order with an index of keys at its end. So every write to disk is
+ * sequential, whether to the log or to a new segment.
+ * <p/>
+ * A key is looked up in the table and then in the segments from newest to
+ * oldest, each by a binary search of its index, so a read touches at most
+ * one record per segment. A background thread merges segments in tiers:
+ * once there are enough neighbouring segments of about the same size it
+ * merges them into one of the next size up, keeping only the newest record
+ * under each key. A record is so rewritten once per tier rather than once
+ * per merge, and the number of segments, and so the cost of a read, grows
+ * only with the logarithm of the size of the store.
+ * <p/>
+ * A segment file is laid out as:
+ * <pre>
+ * int    magic, "CMLS"
+ * byte   version
+ * for each record in key order: long key, int length, the record
+ * int    number of records, then (long key, long position, int length) for each
+ * long   position of the index
+ * </pre>
+ * Only neighbouring segments are merged, so the segments stay in the order
+ * they were written. The merged segment takes the name of the newest segment
+ * merged into it, and the older ones are deleted after it is in place, so a
+ * merge that is interrupted leaves only records that the merged segment
+ * overrides.
+ */
+public class LogStructuredStore implements Closeable {
+    static final int MAGIC = 0x434D4C53;
+    static final byte VERSION = 1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String LOG_NAME = "memtable.log";
+    private static final int INDEX_ENTRY = 20;
+
+    private final File directory;
+    private final int memtableLimit;
+    private final int compactionThreshold;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private final ExecutorService compactor;
+    private SortedMap<Long, byte[]> memtable;
+    private List<Segment> segments;
+    private DataOutputStream log;
+    private long nextSequence;
+    private boolean compactionScheduled;
+    private boolean closed;
+    private long droppedRecords;
+
+    /**
+     * Constructor for LogStructuredStore. Opens the segments already in the
+     * directory and replays the write-ahead log into the table.
+     *
+     * @param directory           the directory the store is kept in, which is made if it does not exist
+     * @param memtableLimit       the number of records the table holds before it is written as a segment
+     * @param compactionThreshold the number of segments of about the same size that are merged together
+     * @throws IOException if the directory cannot be read
+     */
+    public LogStructuredStore(File directory, int memtableLimit, int compactionThreshold) throws IOException {
+        if (memtableLimit < 1 || compactionThreshold < 2) throw new IllegalArgumentException();
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot make " + directory);
+
+        this.directory = directory;
+        this.memtableLimit = memtableLimit;
+        this.compactionThreshold = compactionThreshold;
+        compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LogStructuredStore compaction");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        memtable = new TreeMap<>();
+        segments = openSegments();
+        nextSequence = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).sequence + 1;
+        replayLog();
+    }
+
+    /**
+     * Makes a key out of a record type and an id, so that the records
+     * of a type are kept together in id order.
+     *
+     * @param type the type of record
+     * @param id   the id of the record within its type
+     * @return the key
+     */
+    public static long key(byte type, int id) {
+        return ((long) type << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Puts a record under a key, in place of any record already there.
+     * The record is in the write-ahead log before this returns.
+     *
+     * @param key    the key
+     * @param record the record
+     * @throws IOException if the record cannot be logged
+     */
+    public void put(long key, byte[] record) throws IOException {
+        if (record == null) throw new IllegalArgumentException();
+
+        lock.writeLock().lock();
+        try {
+            DataOutputStream out = openLog();
+            out.writeLong(key);
+            out.writeInt(record.length);
+            out.write(record);
+            out.flush();
+            memtable.put(key, record);
+            if (memtable.size() >= memtableLimit) {
+                flushMemtable();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the newest record under a key.
+     *
+     * @param key the key
+     * @return the record, or null if there is none
+     * @throws IOException if a segment cannot be read
+     */
+    public byte[] get(long key) throws IOException {
+        lock.readLock().lock();
+        try {
+            byte[] record = memtable.get(key);
+            if (record != null) return record;
+
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                record = segments.get(i).get(key);
+                if (record != null) return record;
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the newest record under every key, in key order.
+     *
+     * @return the records by key
+     * @throws IOException if a segment cannot be read
+     */
+    public SortedMap<Long, byte[]> getAll() throws IOException {
+        lock.readLock().lock();
+        try {
+            SortedMap<Long, byte[]> records = new TreeMap<>();
+            for (Segment segment : segments) {
+                try (SegmentReader reader = segment.reader()) {
+                    while (reader.next()) {
+                        records.put(reader.key, reader.record);
+                    }
+                }
+            }
+            records.putAll(memtable);
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the records in the table as a new segment and starts a new
+     * write-ahead log.
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            flushMemtable();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Called holding the write lock
+     */
+    private void flushMemtable() throws IOException {
+        if (memtable.isEmpty()) return;
+
+        long sequence = nextSequence++;
+        File file = segmentFile(sequence);
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (SegmentWriter writer = new SegmentWriter(temporaryFile)) {
+            for (Map.Entry<Long, byte[]> entry : memtable.entrySet()) {
+                writer.write(entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        List<Segment> newSegments = new ArrayList<>(segments);
+        newSegments.add(Segment.open(file, sequence));
+        segments = newSegments;
+
+        memtable = new TreeMap<>();
+        closeLog();
+        Files.deleteIfExists(new File(directory, LOG_NAME).toPath());
+
+        if (!compactionScheduled && findTier(segments) != null) {
+            compactionScheduled = true;
+            compactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compactTiers();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Merges every segment into one, keeping only the newest record under
+     * each key. Records are merged as they are read, so only one record
+     * from each segment is held at a time. Puts and reads carry on while
+     * the merge is written; segments written in the meantime are kept as
+     * they are.
+     *
+     * @throws IOException if the segments cannot be merged
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            if (closed) return;
+            List<Segment> inputs;
+            lock.readLock().lock();
+            try {
+                inputs = segments;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (inputs.size() < 2) return;
+
+            merge(inputs, 0);
+        }
+    }
+
+    /*
+     * What the background thread runs: merges the oldest run of segments in the smallest tier that
+     * has enough of them, and goes on until no tier has, as a merge can fill the tier above it
+     */
+    void compactTiers() throws IOException {
+        synchronized (compactionLock) {
+            while (!closed) {
+                List<Segment> inputs;
+                int start;
+                lock.readLock().lock();
+                try {
+                    compactionScheduled = false;
+                    int[] tier = findTier(segments);
+                    if (tier == null) return;
+                    start = tier[0];
+                    inputs = segments.subList(start, start + compactionThreshold);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                merge(inputs, start);
+            }
+        }
+    }
+
+    /*
+     * Finds the smallest tier with compactionThreshold neighbouring segments in it. Returns the
+     * position of the oldest of them and the tier, or null if no tier has enough segments.
+     */
+    private int[] findTier(List<Segment> candidates) {
+        int[] found = null;
+        int runStart = 0;
+        for (int i = 1; i <= candidates.size(); i++) {
+            int runTier = tierOf(candidates.get(runStart));
+            if (i < candidates.size() && tierOf(candidates.get(i)) == runTier) continue;
+
+            if (i - runStart >= compactionThreshold && (found == null || runTier < found[1])) {
+                found = new int[]{runStart, runTier};
+            }
+            runStart = i;
+        }
+        return found;
+    }
+
+    /*
+     * A segment of up to memtableLimit records is in tier 0, and each tier above holds segments up to
+     * compactionThreshold times larger than the one below
+     */
+    private int tierOf(Segment segment) {
+        int tier = 0;
+        long limit = memtableLimit;
+        while (segment.keys.length > limit) {
+            limit *= compactionThreshold;
+            tier++;
+        }
+        return tier;
+    }
+
+    /*
+     * Merges neighbouring segments, found from the given position in the list, into one that takes the
+     * place of the newest of them. Called holding the compaction lock, so the list only grows meanwhile.
+     */
+    private void merge(List<Segment> inputs, int start) throws IOException {
+        Segment newest = inputs.get(inputs.size() - 1);
+        File temporaryFile = new File(newest.file.getPath() + ".merge");
+        long dropped = merge(inputs, temporaryFile);
+
+        lock.writeLock().lock();
+        try {
+            for (Segment input : inputs) {
+                input.close();
+            }
+            Files.move(temporaryFile.toPath(), newest.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (Segment input : inputs.subList(0, inputs.size() - 1)) {
+                Files.deleteIfExists(input.file.toPath());
+            }
+            List<Segment> newSegments = new ArrayList<>(segments.subList(0, start));
+            newSegments.add(Segment.open(newest.file, newest.sequence));
+            newSegments.addAll(segments.subList(start + inputs.size(), segments.size()));
+            segments = newSegments;
+            droppedRecords += dropped;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Merges sorted segments into one file, the newest segment winning on equal keys.
+     * Returns the number of records left out because a newer one had the same key.
+     */
+    private static long merge(List<Segment> inputs, File target) throws IOException {
+        List<SegmentReader> readers = new ArrayList<>();
+        long dropped = 0;
+        try (SegmentWriter writer = new SegmentWriter(target)) {
+            PriorityQueue<SegmentReader> queue = new PriorityQueue<>(inputs.size(), new Comparator<SegmentReader>() {
+                @Override
+                public int compare(SegmentReader o1, SegmentReader o2) {
+                    int result = Long.compare(o1.key, o2.key);
+                    return result != 0 ? result : Long.compare(o2.sequence, o1.sequence);
+                }
+            });
+            for (Segment input : inputs) {
+                SegmentReader reader = input.reader();
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            boolean written = false;
+            long lastKey = 0;
+            while (!queue.isEmpty()) {
+                SegmentReader reader = queue.poll();
+                if (written && reader.key == lastKey) {
+                    dropped++;
+                } else {
+                    writer.write(reader.key, reader.record);
+                    lastKey = reader.key;
+                    written = true;
+                }
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (SegmentReader reader : readers) {
+                reader.close();
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * @return the number of segments in the store
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of records merges have left out because a newer record had the same key
+     */
+    public long getDroppedRecordCount() {
+        lock.readLock().lock();
+        try {
+            return droppedRecords;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if the store holds any records.
+     *
+     * @return true if there are no segments and no records in the table
+     */
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            return segments.isEmpty() && memtable.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the background merges and closes the files. Records in the
+     * table stay in the write-ahead log until the store is opened again.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        synchronized (compactionLock) {
+            closed = true;
+            lock.writeLock().lock();
+            try {
+                closeLog();
+                for (Segment segment : segments) {
+                    segment.close();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    /*
+     * Opens the segments in the directory, oldest first, leaving out temporary files
+     */
+    private List<Segment> openSegments() throws IOException {
+        List<Segment> opened = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) return opened;
+
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                long sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                opened.add(Segment.open(file, sequence));
+            }
+        }
+        return opened;
+    }
+
+    /*
+     * Puts the records in the log back into the table, cutting off a record that was only partly written
+     */
+    private void replayLog() throws IOException {
+        File logFile = new File(directory, LOG_NAME);
+        if (!logFile.exists()) return;
+
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                long key = in.readLong();
+                int length = in.readInt();
+                if (length < 0) break;
+                byte[] record = new byte[length];
+                in.readFully(record);
+                memtable.put(key, record);
+                validLength += 12 + length;
+            }
+        } catch (EOFException e) {
+            // the end of the log, or a record cut short by a crash
+        }
+        if (logFile.length() != validLength) {
+            try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+                file.setLength(validLength);
+            }
+        }
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        if (log == null) {
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, LOG_NAME), true)));
+        }
+        return log;
+    }
+
+    private void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            log = null;
+        }
+    }
+
+    /*
+     * An open segment file and its index, kept in memory
+     */
+    private static class Segment {
+        private final File file;
+        private final long sequence;
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final long[] keys;
+        private final long[] positions;
+        private final int[] lengths;
+
+        private Segment(File file, long sequence, RandomAccessFile randomAccessFile) throws IOException {
+            this.file = file;
+            this.sequence = sequence;
+            this.randomAccessFile = randomAccessFile;
+            this.channel = randomAccessFile.getChannel();
+
+            long size = channel.size();
+            if (size < 17 || read(0, 5).getInt() != MAGIC) throw new IOException("Not a segment: " + file);
+            long indexPosition = read(size - 8, 8).getLong();
+            int count = read(indexPosition, 4).getInt();
+            ByteBuffer index = read(indexPosition + 4, count * INDEX_ENTRY);
+            keys = new long[count];
+            positions = new long[count];
+            lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = index.getLong();
+                positions[i] = index.getLong();
+                lengths[i] = index.getInt();
+            }
+        }
+
+        private static Segment open(File file, long sequence) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                return new Segment(file, sequence, randomAccessFile);
+            } catch (IOException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+        }
+
+        private byte[] get(long key) throws IOException {
+            int entry = Arrays.binarySearch(keys, key);
+            if (entry < 0) return null;
+
+            return read(positions[entry], lengths[entry]).array();
+        }
+
+        private SegmentReader reader() throws IOException {
+            return new SegmentReader(this);
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        private void close() {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /*
+     * Reads the records of a segment in key order, one at a time
+     */
+    private static class SegmentReader implements Closeable {
+        private final long sequence;
+        private final DataInputStream in;
+        private int remaining;
+        private long key;
+        private byte[] record;
+
+        private SegmentReader(Segment segment) throws IOException {
+            this.sequence = segment.sequence;
+            this.remaining = segment.keys.length;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file), 65536));
+            in.skipBytes(5);
+        }
+
+        private boolean next() throws IOException {
+            if (remaining == 0) return false;
+
+            remaining--;
+            key = in.readLong();
+            record = new byte[in.readInt()];
+            in.readFully(record);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /*
+     * Writes records given in key order, then the index
+     */
+    private static class SegmentWriter implements Closeable {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        private final DataOutputStream indexOut = new DataOutputStream(index);
+        private long position = 5;
+        private int count;
+
+        private SegmentWriter(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        private void write(long key, byte[] record) throws IOException {
+            out.writeLong(key);
+            out.writeInt(record.length);
+            indexOut.writeLong(key);
+            indexOut.writeLong(position + 12);
+            indexOut.writeInt(record.length);
+            out.write(record);
+            position += 12 + record.length;
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeInt(count);
+            index.writeTo(out);
+            out.writeLong(position);
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+
+public class ManualClockImpl implements Clock, Serializable {
+    private volatile long now;
+
+    /**
+     * Constructor for ManualClockImpl
+     *
+     * @param now the time the clock starts at, in milliseconds since the epoch
+     */
+    public ManualClockImpl(long now) {
+        this.now = now;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * Sets the time of the clock.
+     *
+     * @param now the new time, in milliseconds since the epoch
+     */
+    public synchronized void setTime(long now) {
+        this.now = now;
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param millis the number of milliseconds to move the clock by
+     */
+    public synchronized void advance(long millis) {
+        now += millis;
+    }
+}
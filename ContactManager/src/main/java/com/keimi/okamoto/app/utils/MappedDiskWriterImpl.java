@@ -0,0 +1,143 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
+import com.keimi.okamoto.app.organisers.MappedContactsContainerImpl;
+import com.keimi.okamoto.app.organisers.MappedMeetingContainerImpl;
+import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * A DiskWriter that writes indexed snapshots and reads them by mapping
+ * the file into memory. readDisk only maps the file and reads its footer,
+ * so startup does not depend on how much data there is; the containers it
+ * returns decode each contact and meeting when it is first asked for.
+ * <p/>
+ * Snapshots can be written compressed instead, as a CompressedSnapshot,
+ * which trades the time to inflate a block for less to read from disk.
+ * readDisk reads either kind, whichever the file holds.
+ */
+public class MappedDiskWriterImpl implements DiskWriter {
+    private File file;
+    private boolean compressed;
+    private ContactFactory aContactFactory;
+    private MeetingFactory aMeetingFactory;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private Clock aClock;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+
+    /**
+     * Constructor for MappedDiskWriterImpl
+     *
+     * @param filename                        the file the snapshot is written to
+     * @param aContactFactory                 the factory for the contacts that are read
+     * @param aMeetingFactory                 the factory for the meetings that are read
+     * @param aUniqueNumberGeneratorUtilities the unique number generator for the containers that are read
+     * @param aClock                          the clock for the MeetingContainer that is read
+     */
+    public MappedDiskWriterImpl(String filename, ContactFactory aContactFactory, MeetingFactory aMeetingFactory,
+                                UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock) {
+        this(filename, false, aContactFactory, aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock);
+    }
+
+    /**
+     * Constructor for a MappedDiskWriterImpl that can write compressed snapshots
+     *
+     * @param filename                        the file the snapshot is written to
+     * @param compressed                      true to write the records in compressed blocks
+     * @param aContactFactory                 the factory for the contacts that are read
+     * @param aMeetingFactory                 the factory for the meetings that are read
+     * @param aUniqueNumberGeneratorUtilities the unique number generator for the containers that are read
+     * @param aClock                          the clock for the MeetingContainer that is read
+     */
+    public MappedDiskWriterImpl(String filename, boolean compressed, ContactFactory aContactFactory, MeetingFactory aMeetingFactory,
+                                UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock) {
+        this.file = new File(filename);
+        this.compressed = compressed;
+        this.aContactFactory = aContactFactory;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        this.aClock = aClock;
+    }
+
+    @Override
+    public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        try {
+            if (compressed) {
+                CompressedSnapshot.write(file, aContactsContainer.getAllContacts(), aMeetingContainer.getAllMeetings());
+            } else {
+                MappedSnapshot.write(file, aContactsContainer.getAllContacts(), aMeetingContainer.getAllMeetings());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * The whole of both containers is written by writeToDisk, so nothing is recorded per change
+     */
+    @Override
+    public void recordContact(Contact aContact) {
+    }
+
+    @Override
+    public void recordMeeting(Meeting aMeeting) {
+    }
+
+    @Override
+    public boolean checkIfDataExists() {
+        return file.exists();
+    }
+
+    @Override
+    public void readDisk() {
+        SnapshotReader snapshot;
+        try {
+            snapshot = openSnapshot();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (snapshot.getContactCount() > 0) {
+            aUniqueNumberGeneratorUtilities.skipPast(snapshot.getContactId(snapshot.getContactCount() - 1));
+        }
+        if (snapshot.getMeetingCount() > 0) {
+            aUniqueNumberGeneratorUtilities.skipPast(snapshot.getMeetingId(snapshot.getMeetingCount() - 1));
+        }
+        contactsContainer = new MappedContactsContainerImpl(snapshot, aContactFactory, aUniqueNumberGeneratorUtilities);
+        meetingContainer = new MappedMeetingContainerImpl(snapshot, contactsContainer, aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock);
+    }
+
+    /*
+     * Opens the file as whichever kind of snapshot its magic number says it is
+     */
+    private SnapshotReader openSnapshot() throws IOException {
+        int magic;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            magic = in.readInt();
+        }
+        if (magic == CompressedSnapshot.MAGIC) return CompressedSnapshot.open(file);
+
+        return MappedSnapshot.open(file);
+    }
+
+    @Override
+    public ContactsContainer getContactContainer() {
+        return contactsContainer;
+    }
+
+    @Override
+    public MeetingContainer getMeetingContainer() {
+        return meetingContainer;
+    }
+}
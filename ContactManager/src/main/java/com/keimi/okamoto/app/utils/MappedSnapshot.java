@@ -0,0 +1,368 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A snapshot file that is memory-mapped and read one record at a time.
+ * <p/>
+ * The records are written with the codecs in SnapshotCodec, followed by
+ * an index of fixed-size entries and, in the last eight bytes, the
+ * position of the index:
+ * <pre>
+ * int    magic, "CMMS"
+ * byte   version
+ * the contact records, then the meeting records
+ * int    number of contacts, then (int id, long position) sorted by id
+ * int    number of meetings, then (long date, int id, long position) sorted by date
+ *        then (int id, int entry in the date table) sorted by id
+ * the meetings of each contact, as written by SnapshotAttendeeTable
+ * the names of the contacts, as written by SnapshotNameTable
+ * long   position of the index
+ * </pre>
+ * Opening reads only the header and footer; lookups binary search the index
+ * in place, so no record is decoded until it is asked for. The file has to
+ * fit in a single mapping, so it is limited to 2GB.
+ */
+public class MappedSnapshot implements SnapshotReader {
+    static final int MAGIC = 0x434D4D53;
+    static final byte VERSION = 3;
+    private static final int CONTACT_ENTRY = 12;
+    private static final int MEETING_ENTRY = 20;
+    private static final int MEETING_ID_ENTRY = 8;
+
+    private final ByteBuffer buffer;
+    private final int contactCount;
+    private final int contactTable;
+    private final int meetingCount;
+    private final int meetingTable;
+    private final int meetingIdTable;
+    private final int attendeeTable;
+    private final int nameTable;
+
+    private MappedSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < 13 || buffer.getInt(0) != MAGIC) throw new IOException("Not a mapped snapshot");
+        if (buffer.get(4) != VERSION) throw new IOException("Unknown snapshot version " + buffer.get(4));
+
+        int indexPosition = (int) buffer.getLong(buffer.limit() - 8);
+        contactCount = buffer.getInt(indexPosition);
+        contactTable = indexPosition + 4;
+        meetingCount = buffer.getInt(contactTable + contactCount * CONTACT_ENTRY);
+        meetingTable = contactTable + contactCount * CONTACT_ENTRY + 4;
+        meetingIdTable = meetingTable + meetingCount * MEETING_ENTRY;
+        attendeeTable = meetingIdTable + meetingCount * MEETING_ID_ENTRY;
+        nameTable = attendeeTable + SnapshotAttendeeTable.length(buffer, attendeeTable);
+    }
+
+    /**
+     * Maps a snapshot file into memory.
+     *
+     * @param file the file written by write
+     * @return the snapshot
+     * @throws IOException if the file cannot be mapped or is not a snapshot
+     */
+    public static MappedSnapshot open(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Snapshot is too large to map: " + file);
+            return new MappedSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the contacts and meetings as a snapshot file. The file is
+     * written next to the target and moved into place when it is complete.
+     *
+     * @param file     the file to write
+     * @param contacts the contacts to write
+     * @param meetings the meetings to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, Collection<Contact> contacts, Collection<Meeting> meetings) throws IOException {
+        List<Contact> contactList = sortById(contacts);
+        List<Meeting> meetingList = sortByDate(meetings);
+
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 65536));
+        try (DataOutputStream out = new DataOutputStream(counter)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            long[] contactPositions = new long[contactList.size()];
+            for (int i = 0; i < contactList.size(); i++) {
+                contactPositions[i] = counter.getCount();
+                SnapshotCodec.writeContact(out, contactList.get(i));
+            }
+            long[] meetingPositions = new long[meetingList.size()];
+            for (int i = 0; i < meetingList.size(); i++) {
+                meetingPositions[i] = counter.getCount();
+                SnapshotCodec.writeMeeting(out, meetingList.get(i), 0);
+            }
+
+            long indexPosition = counter.getCount();
+            out.writeInt(contactList.size());
+            for (int i = 0; i < contactList.size(); i++) {
+                out.writeInt(contactList.get(i).getId());
+                out.writeLong(contactPositions[i]);
+            }
+            out.writeInt(meetingList.size());
+            for (int i = 0; i < meetingList.size(); i++) {
+                out.writeLong(meetingList.get(i).getTime());
+                out.writeInt(meetingList.get(i).getId());
+                out.writeLong(meetingPositions[i]);
+            }
+            for (int entry : entriesById(meetingList)) {
+                out.writeInt(meetingList.get(entry).getId());
+                out.writeInt(entry);
+            }
+            SnapshotAttendeeTable.write(out, meetingList);
+            SnapshotNameTable.write(out, contactList);
+            out.writeLong(indexPosition);
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Keeps count of the bytes written, and fails the write that would make the file too large to map.
+     * DataOutputStream.size() stops counting at Integer.MAX_VALUE, so it cannot tell.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            grow(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            grow(len);
+            out.write(b, off, len);
+        }
+
+        private void grow(int length) throws IOException {
+            if (count + length > Integer.MAX_VALUE) throw new IOException("Snapshot is too large to map");
+            count += length;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+
+    /*
+     * The contacts that are not null, in id order
+     */
+    static List<Contact> sortById(Collection<Contact> contacts) {
+        List<Contact> contactList = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            if (contact != null) {
+                contactList.add(contact);
+            }
+        }
+        Collections.sort(contactList, new Comparator<Contact>() {
+            @Override
+            public int compare(Contact o1, Contact o2) {
+                return Integer.compare(o1.getId(), o2.getId());
+            }
+        });
+        return contactList;
+    }
+
+    /*
+     * The meetings that are not null, in date order and then id order
+     */
+    static List<Meeting> sortByDate(Collection<Meeting> meetings) {
+        List<Meeting> meetingList = new ArrayList<>(meetings.size());
+        for (Meeting meeting : meetings) {
+            if (meeting != null) {
+                meetingList.add(meeting);
+            }
+        }
+        Collections.sort(meetingList, new Comparator<Meeting>() {
+            @Override
+            public int compare(Meeting o1, Meeting o2) {
+                int result = Long.compare(o1.getTime(), o2.getTime());
+                return result != 0 ? result : Integer.compare(o1.getId(), o2.getId());
+            }
+        });
+        return meetingList;
+    }
+
+    /*
+     * The positions of the meetings in a list sorted by date, in the order of their ids
+     */
+    static Integer[] entriesById(final List<Meeting> sortedByDate) {
+        Integer[] byId = new Integer[sortedByDate.size()];
+        for (int i = 0; i < byId.length; i++) {
+            byId[i] = i;
+        }
+        Arrays.sort(byId, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Integer.compare(sortedByDate.get(o1).getId(), sortedByDate.get(o2).getId());
+            }
+        });
+        return byId;
+    }
+
+    @Override
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    @Override
+    public int getContactId(int entry) {
+        return buffer.getInt(contactTable + entry * CONTACT_ENTRY);
+    }
+
+    @Override
+    public boolean hasContact(int contactId) {
+        return findContact(contactId) >= 0;
+    }
+
+    @Override
+    public Contact readContact(int contactId, ContactFactory aContactFactory) {
+        int entry = findContact(contactId);
+        if (entry < 0) return null;
+
+        try {
+            return SnapshotCodec.readContact(recordAt(buffer.getLong(contactTable + entry * CONTACT_ENTRY + 4)), aContactFactory);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int[] getContactIdsByName(String name) {
+        return SnapshotNameTable.find(buffer, nameTable, SnapshotNameTable.toKey(name), false, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int[] getContactIdsByPrefix(String prefix, int limit) {
+        return SnapshotNameTable.find(buffer, nameTable, SnapshotNameTable.toKey(prefix), true, limit);
+    }
+
+    private int findContact(int contactId) {
+        int low = 0;
+        int high = contactCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = getContactId(middle);
+            if (id < contactId) {
+                low = middle + 1;
+            } else if (id > contactId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getMeetingCount() {
+        return meetingCount;
+    }
+
+    @Override
+    public int getMeetingId(int entry) {
+        return buffer.getInt(meetingIdTable + entry * MEETING_ID_ENTRY);
+    }
+
+    @Override
+    public boolean hasMeeting(int meetingId) {
+        return findMeeting(meetingId) >= 0;
+    }
+
+    @Override
+    public Meeting readMeeting(int meetingId, ContactsContainer aContactsContainer, MeetingFactory aMeetingFactory) {
+        int entry = findMeeting(meetingId);
+        if (entry < 0) return null;
+
+        try {
+            return SnapshotCodec.readMeeting(recordAt(buffer.getLong(meetingTable + entry * MEETING_ENTRY + 12)), 0, aContactsContainer, aMeetingFactory);
+        } catch (IOException | IllegalMeetingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int[] getMeetingIdsBetween(long from, long to) {
+        if (from >= to) return new int[0];
+
+        int start = firstMeetingAtOrAfter(from);
+        int end = firstMeetingAtOrAfter(to);
+        int[] ids = new int[end - start];
+        for (int entry = start; entry < end; entry++) {
+            ids[entry - start] = buffer.getInt(meetingTable + entry * MEETING_ENTRY + 8);
+        }
+        return ids;
+    }
+
+    @Override
+    public int[] getMeetingIdsOf(int contactId, boolean past) {
+        return SnapshotAttendeeTable.find(buffer, attendeeTable, contactId, past);
+    }
+
+    @Override
+    public int[] getMeetingIdsOf(int contactId, long from, long to) {
+        return SnapshotAttendeeTable.find(buffer, attendeeTable, contactId, from, to);
+    }
+
+    private int firstMeetingAtOrAfter(long date) {
+        int low = 0;
+        int high = meetingCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(meetingTable + middle * MEETING_ENTRY) < date) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Finds the entry of a meeting in the date table through the id table
+     */
+    private int findMeeting(int meetingId) {
+        int low = 0;
+        int high = meetingCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = getMeetingId(middle);
+            if (id < meetingId) {
+                low = middle + 1;
+            } else if (id > meetingId) {
+                high = middle - 1;
+            } else {
+                return buffer.getInt(meetingIdTable + middle * MEETING_ID_ENTRY + 4);
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * A view of the buffer at a record, so reads from several threads do not share a position
+     */
+    private ByteBuffer recordAt(long position) {
+        ByteBuffer in = buffer.duplicate();
+        in.position((int) position);
+        return in;
+    }
+}
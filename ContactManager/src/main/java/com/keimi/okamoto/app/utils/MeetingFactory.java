@@ -20,6 +20,17 @@ public interface MeetingFactory {
      */
     FutureMeeting createFutureMeeting(int id, Calendar date, Set<Contact> aSetOfContacts) throws IllegalMeetingException;
 
+    /**
+     * A method that creates future meetings
+     *
+     * @param id             id of a meeting
+     * @param date           date for the meeting to be held, in milliseconds since the epoch
+     * @param aSetOfContacts a set of contacts attending the meeting
+     * @return a FutureMeeting
+     * @throws IllegalMeetingException if the there is less that one contact attending the meeting
+     */
+    FutureMeeting createFutureMeeting(int id, long date, Set<Contact> aSetOfContacts) throws IllegalMeetingException;
+
     /**
      * @param id             id of a meeting
      * @param aSetOfContacts a set of contacts attending the meeting
@@ -29,4 +40,14 @@ public interface MeetingFactory {
      * @throws IllegalMeetingException if the there is less that one contact attending the meeting
      */
     PastMeeting createPastMeeting(int id, Set<Contact> aSetOfContacts, Calendar date, String notes) throws IllegalArgumentException, IllegalMeetingException;
+
+    /**
+     * @param id             id of a meeting
+     * @param aSetOfContacts a set of contacts attending the meeting
+     * @param date           date for the meeting to be held, in milliseconds since the epoch
+     * @param notes          some notes about the meeting
+     * @return a PastMeeting
+     * @throws IllegalMeetingException if the there is less that one contact attending the meeting
+     */
+    PastMeeting createPastMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) throws IllegalMeetingException;
 }
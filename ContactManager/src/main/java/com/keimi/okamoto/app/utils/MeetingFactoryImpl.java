@@ -8,6 +8,7 @@ import java.util.Set;
 
 
 public class MeetingFactoryImpl implements MeetingFactory, Serializable {
+    private static final long serialVersionUID = -2466881744108711767L;
 
     @Override
     public FutureMeeting createFutureMeeting(int id, Calendar date, Set<Contact> aListOfContacts) throws IllegalMeetingException {
@@ -18,4 +19,14 @@ public class MeetingFactoryImpl implements MeetingFactory, Serializable {
     public PastMeeting createPastMeeting(int id, Set<Contact> aSetOfContacts, Calendar date, String notes) throws IllegalMeetingException {
         return new PastMeetingImpl(id, date, aSetOfContacts, notes);
     }
+
+    @Override
+    public FutureMeeting createFutureMeeting(int id, long date, Set<Contact> aListOfContacts) throws IllegalMeetingException {
+        return new FutureMeetingImpl(id, date, aListOfContacts);
+    }
+
+    @Override
+    public PastMeeting createPastMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes) throws IllegalMeetingException {
+        return new PastMeetingImpl(id, date, aSetOfContacts, notes);
+    }
 }
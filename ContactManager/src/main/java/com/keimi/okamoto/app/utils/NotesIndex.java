@@ -0,0 +1,36 @@
+package com.keimi.okamoto.app.utils;
+
+import java.util.Set;
+
+/**
+ * An inverted index over notes. The notes are split into
+ * words so the ids of the items that mention a word can be
+ * found without reading every note.
+ */
+public interface NotesIndex {
+    /**
+     * Adds the words of some notes to the index.
+     *
+     * @param id    the id of the item the notes belong to
+     * @param notes the notes to be indexed
+     */
+    void addNotes(int id, String notes);
+
+    /**
+     * Removes the words of some notes from the index.
+     *
+     * @param id    the id of the item the notes belong to
+     * @param notes the notes that were indexed for the id
+     */
+    void removeNotes(int id, String notes);
+
+    /**
+     * Finds the ids whose notes contain the words of the query.
+     *
+     * @param query    one or more words to search for
+     * @param matchAll true if all of the words must be found (AND),
+     *                 false if any of the words is enough (OR)
+     * @return a set of ids, empty if nothing matches
+     */
+    Set<Integer> search(String query, boolean matchAll);
+}
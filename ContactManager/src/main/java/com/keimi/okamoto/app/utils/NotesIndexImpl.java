@@ -0,0 +1,114 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+import java.util.*;
+
+public class NotesIndexImpl implements NotesIndex, Serializable {
+    private Map<String, Set<Integer>> postings;
+
+    /**
+     * Constructor that makes an empty index.
+     */
+    public NotesIndexImpl() {
+        postings = new HashMap<>();
+    }
+
+    @Override
+    public void addNotes(int id, String notes) {
+        for (String word : tokenize(notes)) {
+            Set<Integer> ids = postings.get(word);
+            if (ids == null) {
+                ids = new HashSet<>();
+                postings.put(word, ids);
+            }
+            ids.add(id);
+        }
+    }
+
+    @Override
+    public void removeNotes(int id, String notes) {
+        for (String word : tokenize(notes)) {
+            Set<Integer> ids = postings.get(word);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<Integer> search(String query, boolean matchAll) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException();
+
+        Set<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return new HashSet<>();
+        }
+        return matchAll ? searchAll(words) : searchAny(words);
+    }
+
+    /*
+     * Intersects the postings, starting with the smallest so the
+     * result never grows past it.
+     */
+    private Set<Integer> searchAll(Set<String> words) {
+        List<Set<Integer>> matches = new ArrayList<>();
+        for (String word : words) {
+            Set<Integer> ids = postings.get(word);
+            if (ids == null) {
+                return new HashSet<>();
+            }
+            matches.add(ids);
+        }
+        Collections.sort(matches, new Comparator<Set<Integer>>() {
+            @Override
+            public int compare(Set<Integer> o1, Set<Integer> o2) {
+                return Integer.compare(o1.size(), o2.size());
+            }
+        });
+
+        Set<Integer> result = new HashSet<>(matches.get(0));
+        for (int i = 1; i < matches.size() && !result.isEmpty(); i++) {
+            result.retainAll(matches.get(i));
+        }
+        return result;
+    }
+
+    private Set<Integer> searchAny(Set<String> words) {
+        Set<Integer> result = new HashSet<>();
+        for (String word : words) {
+            Set<Integer> ids = postings.get(word);
+            if (ids != null) {
+                result.addAll(ids);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Splits text into lower case words made of letters and digits.
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> words = new HashSet<>();
+        if (text == null) {
+            return words;
+        }
+
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
@@ -0,0 +1,123 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
+import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
+import com.keimi.okamoto.app.organisers.PagedContactsContainerImpl;
+import com.keimi.okamoto.app.organisers.PagedMeetingContainerImpl;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A DiskWriter over a PagedStore. readDisk only reads the store's header,
+ * and the containers it returns look every contact and meeting up in the
+ * store's pages through its buffer pool, so neither startup nor memory
+ * use depends on how much is stored.
+ * <p/>
+ * The paged containers write to the store as they change. Containers of
+ * any other kind have what they changed put in the store by writeToDisk,
+ * which then writes the changed pages to the file.
+ */
+public class PagedDiskWriterImpl implements DiskWriter {
+    private PagedStore store;
+    private ContactFactory aContactFactory;
+    private MeetingFactory aMeetingFactory;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private Clock aClock;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+
+    /**
+     * Constructor for PagedDiskWriterImpl. Opens the store straight away.
+     *
+     * @param filename                        the file the store is kept in
+     * @param pageSize                        the size of a page in bytes, for a new file
+     * @param cachePages                      the number of pages kept in memory
+     * @param aContactFactory                 the factory for the contacts that are read
+     * @param aMeetingFactory                 the factory for the meetings that are read
+     * @param aUniqueNumberGeneratorUtilities the unique number generator for the containers that are read
+     * @param aClock                          the clock for the MeetingContainer that is read
+     * @throws IllegalStateException if the store cannot be opened
+     */
+    public PagedDiskWriterImpl(String filename, int pageSize, int cachePages, ContactFactory aContactFactory, MeetingFactory aMeetingFactory,
+                               UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities, Clock aClock) {
+        try {
+            this.store = PagedStore.open(new File(filename), pageSize, cachePages);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.aContactFactory = aContactFactory;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        this.aClock = aClock;
+    }
+
+    @Override
+    public synchronized boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        for (int id : aContactsContainer.takeChangedContactIds()) {
+            Contact contact = aContactsContainer.getContact(id);
+            if (contact != null) {
+                store.putContact(contact);
+            }
+        }
+        for (int id : aMeetingContainer.takeChangedMeetingIds()) {
+            Meeting meeting = aMeetingContainer.getMeeting(id);
+            if (meeting != null) {
+                store.putMeeting(meeting);
+            }
+        }
+        try {
+            store.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * Changes reach the store through the containers, so nothing is recorded per change
+     */
+    @Override
+    public void recordContact(Contact aContact) {
+    }
+
+    @Override
+    public void recordMeeting(Meeting aMeeting) {
+    }
+
+    /**
+     * @return the store the records are kept in
+     */
+    public PagedStore getStore() {
+        return store;
+    }
+
+    @Override
+    public boolean checkIfDataExists() {
+        return store.getContactCount() > 0 || store.getMeetingCount() > 0;
+    }
+
+    @Override
+    public void readDisk() {
+        if (checkIfDataExists()) {
+            aUniqueNumberGeneratorUtilities.skipPast(store.getMaxId());
+        }
+        contactsContainer = new PagedContactsContainerImpl(store, aContactFactory, aUniqueNumberGeneratorUtilities);
+        meetingContainer = new PagedMeetingContainerImpl(store, contactsContainer, aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock);
+    }
+
+    @Override
+    public ContactsContainer getContactContainer() {
+        return contactsContainer;
+    }
+
+    @Override
+    public MeetingContainer getMeetingContainer() {
+        return meetingContainer;
+    }
+}
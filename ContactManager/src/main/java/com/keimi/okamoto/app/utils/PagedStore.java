@@ -0,0 +1,679 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Contacts and meetings kept in a single file of fixed-size pages, read
+ * and written through a BufferPool, so the memory it uses depends on the
+ * size of the pool and not on how much is stored.
+ * <p/>
+ * Records are written with the codecs in SnapshotCodec and appended to
+ * heap pages, and B+trees in the same file find them: by contact id and by
+ * meeting id, and, for the queries the containers answer, by name, by the
+ * first letters of a name, by the words of the notes, by meeting date and
+ * by attendee. Looking a record up by id reads one page for each level of
+ * a tree and one for the record. A record that is replaced is written
+ * again and its old copy is left where it was.
+ * <p/>
+ * Page 0 is a header:
+ * <pre>
+ * int    magic, "CMBT"
+ * int    version
+ * int    page size
+ * long   root page of each tree
+ * long   current heap page, int offset in it
+ * int    number of contacts, int number of meetings, int highest id
+ * </pre>
+ * The header is written by flush. Changed pages that do not fit in the
+ * pool go to a journal next to the file, named after it with ".journal"
+ * on the end, rather than over their pages in the file, and flush only
+ * writes pages into the file once they are all in the journal. So the file
+ * is always as it was after a flush: a flush that was cut short is
+ * finished from the journal when the store is next opened, and changes
+ * made after the last flush are lost.
+ */
+public class PagedStore implements Closeable {
+    static final int MAGIC = 0x434D4254;
+    static final int VERSION = 1;
+    private static final int TREE_COUNT = 8;
+    private static final int CONTACTS = 0;
+    private static final int MEETINGS = 1;
+    private static final int NAMES = 2;
+    private static final int PREFIXES = 3;
+    private static final int CONTACT_WORDS = 4;
+    private static final int DATES = 5;
+    private static final int ATTENDEES = 6;
+    private static final int MEETING_WORDS = 7;
+    private static final boolean[] UNIQUE = {true, true, false, false, false, false, false, false};
+    private static final int PREFIX_LENGTH = 4;
+
+    private final FileChannel channel;
+    private final File journalFile;
+    private final FileChannel journal;
+    private final BufferPool pool;
+    private final BPlusTree[] trees;
+    private long heapPage;
+    private int heapOffset;
+    private int contactCount;
+    private int meetingCount;
+    private int maxId;
+
+    /*
+     * The fields of a meeting record, for taking its old entries out of the indexes
+     */
+    private static class MeetingRecord {
+        private long date;
+        private int[] attendeeIds;
+        private String notes;
+    }
+
+    private PagedStore(FileChannel channel, File journalFile, FileChannel journal, BufferPool pool) {
+        this.channel = channel;
+        this.journalFile = journalFile;
+        this.journal = journal;
+        this.pool = pool;
+        this.trees = new BPlusTree[TREE_COUNT];
+    }
+
+    /**
+     * Opens a store, making the file if it does not exist. The page size
+     * of a file that exists is the one it was made with.
+     *
+     * @param file       the file
+     * @param pageSize   the size of a page in bytes, for a new file
+     * @param cachePages the number of pages the buffer pool holds
+     * @return the store
+     * @throws IOException if the file cannot be read or is not a store
+     */
+    public static PagedStore open(File file, int pageSize, int cachePages) throws IOException {
+        if (pageSize < 128) throw new IllegalArgumentException("Pages must be at least 128 bytes");
+
+        File journalFile = new File(file.getPath() + ".journal");
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel journal = null;
+        try {
+            journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            BufferPool.recover(channel, journal);
+            if (channel.size() == 0) return create(channel, journalFile, journal, pageSize, cachePages);
+
+            ByteBuffer header = ByteBuffer.allocate(12);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) throw new IOException("Not a paged store: " + file);
+            }
+            if (header.getInt(0) != MAGIC) throw new IOException("Not a paged store: " + file);
+            if (header.getInt(4) != VERSION) throw new IOException("Unknown store version " + header.getInt(4));
+
+            BufferPool pool = new BufferPool(channel, header.getInt(8), cachePages, journal);
+            PagedStore store = new PagedStore(channel, journalFile, journal, pool);
+            store.readHeader();
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (journal != null) {
+                journal.close();
+            }
+            throw e;
+        }
+    }
+
+    private static PagedStore create(FileChannel channel, File journalFile, FileChannel journal, int pageSize, int cachePages)
+            throws IOException {
+        PagedStore store = new PagedStore(channel, journalFile, journal, new BufferPool(channel, pageSize, cachePages, journal));
+        store.pool.unpin(store.pool.allocate());
+        for (int tree = 0; tree < TREE_COUNT; tree++) {
+            store.trees[tree] = BPlusTree.create(store.pool, UNIQUE[tree]);
+        }
+        store.flush();
+        return store;
+    }
+
+    private void readHeader() throws IOException {
+        BufferPool.Page page = pool.pin(0);
+        try {
+            ByteBuffer data = page.getData();
+            data.position(12);
+            for (int tree = 0; tree < TREE_COUNT; tree++) {
+                trees[tree] = new BPlusTree(pool, data.getLong(), UNIQUE[tree]);
+            }
+            heapPage = data.getLong();
+            heapOffset = data.getInt();
+            contactCount = data.getInt();
+            meetingCount = data.getInt();
+            maxId = data.getInt();
+        } finally {
+            pool.unpin(page);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        BufferPool.Page page = pool.pin(0);
+        try {
+            ByteBuffer data = page.getData();
+            data.clear();
+            data.putInt(MAGIC).putInt(VERSION).putInt(pool.getPageSize());
+            for (BPlusTree tree : trees) {
+                data.putLong(tree.getRoot());
+            }
+            data.putLong(heapPage).putInt(heapOffset).putInt(contactCount).putInt(meetingCount).putInt(maxId);
+            data.clear();
+            page.markDirty();
+        } finally {
+            pool.unpin(page);
+        }
+    }
+
+    /**
+     * Stores a contact, replacing the one with the same id if there is one.
+     *
+     * @param aContact the contact
+     */
+    public synchronized void putContact(Contact aContact) {
+        try {
+            int id = aContact.getId();
+            long oldReference = trees[CONTACTS].get(id, -1);
+            if (oldReference >= 0) {
+                ByteBuffer old = ByteBuffer.wrap(readRecord(oldReference));
+                SnapshotCodec.readVarInt(old);
+                unindexContact(id, SnapshotCodec.readString(old), SnapshotCodec.readString(old));
+            }
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            SnapshotCodec.writeContact(new DataOutputStream(record), aContact);
+            trees[CONTACTS].put(id, writeRecord(record.toByteArray()));
+            if (oldReference < 0) {
+                contactCount++;
+            }
+            maxId = Math.max(maxId, id);
+
+            String name = aContact.getName();
+            if (name != null) {
+                trees[NAMES].put(name.hashCode(), id);
+                trees[PREFIXES].put(prefixKey(toPrefix(name), (char) 0), id);
+            }
+            for (String word : NotesIndexImpl.tokenize(aContact.getNotes())) {
+                trees[CONTACT_WORDS].put(word.hashCode(), id);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void unindexContact(int id, String name, String notes) throws IOException {
+        if (name != null) {
+            trees[NAMES].remove(name.hashCode(), id);
+            trees[PREFIXES].remove(prefixKey(toPrefix(name), (char) 0), id);
+        }
+        for (String word : NotesIndexImpl.tokenize(notes)) {
+            trees[CONTACT_WORDS].remove(word.hashCode(), id);
+        }
+    }
+
+    /**
+     * Reads a contact.
+     *
+     * @param id              the id of the contact
+     * @param aContactFactory the factory that makes the contact
+     * @return the contact, or null if there is none with the id
+     */
+    public synchronized Contact readContact(int id, ContactFactory aContactFactory) {
+        try {
+            long reference = trees[CONTACTS].get(id, -1);
+            if (reference < 0) return null;
+
+            return SnapshotCodec.readContact(ByteBuffer.wrap(readRecord(reference)), aContactFactory);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param id the id of a contact
+     * @return true if there is a contact with the id
+     */
+    public synchronized boolean hasContact(int id) {
+        try {
+            return trees[CONTACTS].get(id, -1) >= 0;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the ids of every contact, in order
+     */
+    public synchronized int[] getContactIds() {
+        return scanIds(CONTACTS, Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * Finds the contacts with a name.
+     *
+     * @param name            the name
+     * @param aContactFactory the factory that makes the contacts
+     * @return the contacts with exactly that name
+     */
+    public synchronized List<Contact> getContactsNamed(String name, ContactFactory aContactFactory) {
+        List<Contact> contacts = new ArrayList<>();
+        for (int id : scanIds(NAMES, name.hashCode(), name.hashCode() + 1L, true)) {
+            Contact contact = readContact(id, aContactFactory);
+            if (contact != null && name.equals(contact.getName())) {
+                contacts.add(contact);
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Finds the contacts whose names start with a prefix, ignoring case,
+     * in the order of their names in lower case.
+     *
+     * @param prefix          the prefix
+     * @param limit           the most contacts to return
+     * @param aContactFactory the factory that makes the contacts
+     * @return the contacts
+     */
+    public synchronized List<Contact> getContactsByPrefix(String prefix, final int limit, final ContactFactory aContactFactory) {
+        final String key = toPrefix(prefix);
+        final List<Contact> result = new ArrayList<>();
+        final List<Contact> group = new ArrayList<>();
+        long to = prefixKey(key, Character.MAX_VALUE);
+        try {
+            // the tree orders names by their first letters only, so names
+            // that share those are sorted in full before they are counted
+            trees[PREFIXES].scan(prefixKey(key, (char) 0), to == Long.MAX_VALUE ? to : to + 1, new BPlusTree.Visitor() {
+                private long groupKey;
+
+                @Override
+                public boolean visit(long prefixKey, long id) {
+                    if (prefixKey != groupKey) {
+                        addGroup(group, result, limit);
+                        groupKey = prefixKey;
+                    }
+                    Contact contact = readContact((int) id, aContactFactory);
+                    if (contact != null && contact.getName() != null && toPrefix(contact.getName()).startsWith(key)) {
+                        group.add(contact);
+                    }
+                    return result.size() < limit;
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        addGroup(group, result, limit);
+        return result;
+    }
+
+    private static void addGroup(List<Contact> group, List<Contact> result, int limit) {
+        Collections.sort(group, new Comparator<Contact>() {
+            @Override
+            public int compare(Contact o1, Contact o2) {
+                return toPrefix(o1.getName()).compareTo(toPrefix(o2.getName()));
+            }
+        });
+        for (Contact contact : group) {
+            if (result.size() == limit) break;
+            result.add(contact);
+        }
+        group.clear();
+    }
+
+    /**
+     * Finds the contacts whose notes have the words of a query.
+     *
+     * @param query    the words to look for
+     * @param matchAll true if every word must be there, false if any will do
+     * @return the ids of the contacts
+     */
+    public synchronized Set<Integer> searchContactNotes(String query, boolean matchAll) {
+        Set<Integer> result = new HashSet<>();
+        Set<String> words = NotesIndexImpl.tokenize(query);
+        try {
+            for (int id : candidates(CONTACT_WORDS, words, matchAll)) {
+                long reference = trees[CONTACTS].get(id, -1);
+                if (reference < 0) continue;
+
+                ByteBuffer in = ByteBuffer.wrap(readRecord(reference));
+                SnapshotCodec.readVarInt(in);
+                SnapshotCodec.readString(in);
+                if (matches(SnapshotCodec.readString(in), words, matchAll)) {
+                    result.add(id);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Stores a meeting, replacing the one with the same id if there is one.
+     *
+     * @param aMeeting the meeting
+     */
+    public synchronized void putMeeting(Meeting aMeeting) {
+        try {
+            int id = aMeeting.getId();
+            long oldReference = trees[MEETINGS].get(id, -1);
+            if (oldReference >= 0) {
+                MeetingRecord old = readMeetingRecord(oldReference);
+                trees[DATES].remove(old.date, id);
+                for (int contactId : old.attendeeIds) {
+                    trees[ATTENDEES].remove(contactId, id);
+                }
+                for (String word : NotesIndexImpl.tokenize(old.notes)) {
+                    trees[MEETING_WORDS].remove(word.hashCode(), id);
+                }
+            }
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            SnapshotCodec.writeMeeting(new DataOutputStream(record), aMeeting, 0);
+            trees[MEETINGS].put(id, writeRecord(record.toByteArray()));
+            if (oldReference < 0) {
+                meetingCount++;
+            }
+            maxId = Math.max(maxId, id);
+
+            trees[DATES].put(aMeeting.getTime(), id);
+            for (Contact contact : aMeeting.getContacts()) {
+                trees[ATTENDEES].put(contact.getId(), id);
+            }
+            if (aMeeting instanceof PastMeeting) {
+                for (String word : NotesIndexImpl.tokenize(((PastMeeting) aMeeting).getNotes())) {
+                    trees[MEETING_WORDS].put(word.hashCode(), id);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MeetingRecord readMeetingRecord(long reference) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(readRecord(reference));
+        MeetingRecord meeting = new MeetingRecord();
+        SnapshotCodec.readVarInt(in);
+        meeting.date = SnapshotCodec.readVarLong(in);
+        meeting.attendeeIds = new int[SnapshotCodec.readVarInt(in)];
+        for (int i = 0; i < meeting.attendeeIds.length; i++) {
+            meeting.attendeeIds[i] = SnapshotCodec.readVarInt(in);
+        }
+        meeting.notes = SnapshotCodec.readString(in);
+        return meeting;
+    }
+
+    /**
+     * Reads a meeting, looking its attendees up in a ContactsContainer.
+     *
+     * @param id                 the id of the meeting
+     * @param aContactsContainer the container the attendees are looked up in
+     * @param aMeetingFactory    the factory that makes the meeting
+     * @return the meeting, or null if there is none with the id
+     */
+    public synchronized Meeting readMeeting(int id, ContactsContainer aContactsContainer, MeetingFactory aMeetingFactory) {
+        try {
+            long reference = trees[MEETINGS].get(id, -1);
+            if (reference < 0) return null;
+
+            return SnapshotCodec.readMeeting(ByteBuffer.wrap(readRecord(reference)), 0, aContactsContainer, aMeetingFactory);
+        } catch (IOException | IllegalMeetingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param id the id of a meeting
+     * @return true if there is a meeting with the id
+     */
+    public synchronized boolean hasMeeting(int id) {
+        try {
+            return trees[MEETINGS].get(id, -1) >= 0;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the ids of every meeting, in order
+     */
+    public synchronized int[] getMeetingIds() {
+        return scanIds(MEETINGS, Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * Lists, in chronological order, the meetings from one time (inclusive) to another (exclusive).
+     *
+     * @param from the first time
+     * @param to   the time to stop at
+     * @return the ids of the meetings
+     */
+    public synchronized int[] getMeetingIdsBetween(long from, long to) {
+        return scanIds(DATES, from, to, true);
+    }
+
+    /**
+     * @param contactId the id of a contact
+     * @return the ids of the meetings the contact is at, in order of id
+     */
+    public synchronized int[] getMeetingIdsWith(int contactId) {
+        return scanIds(ATTENDEES, contactId, contactId + 1L, true);
+    }
+
+    /**
+     * Finds the past meetings whose notes have the words of a query.
+     *
+     * @param query    the words to look for
+     * @param matchAll true if every word must be there, false if any will do
+     * @return the ids of the meetings
+     */
+    public synchronized Set<Integer> searchMeetingNotes(String query, boolean matchAll) {
+        Set<Integer> result = new HashSet<>();
+        Set<String> words = NotesIndexImpl.tokenize(query);
+        try {
+            for (int id : candidates(MEETING_WORDS, words, matchAll)) {
+                long reference = trees[MEETINGS].get(id, -1);
+                if (reference >= 0 && matches(readMeetingRecord(reference).notes, words, matchAll)) {
+                    result.add(id);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    /*
+     * The ids under the hashes of the words; a hash can be shared, so each has to be checked
+     */
+    private Set<Integer> candidates(int tree, Set<String> words, boolean matchAll) {
+        Set<Integer> result = null;
+        for (String word : words) {
+            Set<Integer> ids = new HashSet<>();
+            for (int id : scanIds(tree, word.hashCode(), word.hashCode() + 1L, true)) {
+                ids.add(id);
+            }
+            if (result == null) {
+                result = ids;
+            } else if (matchAll) {
+                result.retainAll(ids);
+            } else {
+                result.addAll(ids);
+            }
+        }
+        return result == null ? new HashSet<Integer>() : result;
+    }
+
+    private static boolean matches(String notes, Set<String> words, boolean matchAll) {
+        Set<String> noteWords = NotesIndexImpl.tokenize(notes);
+        if (matchAll) return noteWords.containsAll(words);
+
+        for (String word : words) {
+            if (noteWords.contains(word)) return true;
+        }
+        return false;
+    }
+
+    /*
+     * The keys of a unique tree, or the values of the other trees, in a range of keys
+     */
+    private int[] scanIds(int tree, long from, long to, final boolean values) {
+        final List<Integer> ids = new ArrayList<>();
+        try {
+            trees[tree].scan(from, to, new BPlusTree.Visitor() {
+                @Override
+                public boolean visit(long key, long value) {
+                    ids.add((int) (values ? value : key));
+                    return true;
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    /*
+     * Prefix searches ignore case, so names are indexed in lower case
+     */
+    private static String toPrefix(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /*
+     * Packs the first characters of a name into a key that sorts as the
+     * name does, padding a short one with the character given
+     */
+    private static long prefixKey(String name, char padding) {
+        long key = 0;
+        for (int i = 0; i < PREFIX_LENGTH; i++) {
+            key = key << 16 | (i < name.length() ? name.charAt(i) : padding);
+        }
+        return key ^ Long.MIN_VALUE;
+    }
+
+    /*
+     * Appends a record, with its length in front, to the heap, starting a
+     * new page if it does not fit in what is left of the current one
+     */
+    private long writeRecord(byte[] record) throws IOException {
+        int pageSize = pool.getPageSize();
+        int length = record.length + 4;
+        if (heapPage == 0 || heapOffset + length > pageSize) {
+            BufferPool.Page page = pool.allocate();
+            pool.unpin(page);
+            heapPage = page.getNumber();
+            heapOffset = 0;
+            // a record bigger than a page takes a run of pages of its own
+            for (int covered = pageSize; covered < length; covered += pageSize) {
+                pool.unpin(pool.allocate());
+            }
+        }
+        long reference = heapPage * pageSize + heapOffset;
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        bytes.putInt(record.length).put(record);
+        copy(reference, bytes.array(), true);
+        if (length > pageSize) {
+            heapPage = 0;
+        } else {
+            heapOffset += length;
+        }
+        return reference;
+    }
+
+    private byte[] readRecord(long reference) throws IOException {
+        byte[] length = new byte[4];
+        copy(reference, length, false);
+        byte[] record = new byte[ByteBuffer.wrap(length).getInt()];
+        copy(reference + 4, record, false);
+        return record;
+    }
+
+    /*
+     * Copies bytes to or from the heap, across as many pages as they take
+     */
+    private void copy(long position, byte[] bytes, boolean write) throws IOException {
+        int pageSize = pool.getPageSize();
+        int done = 0;
+        while (done < bytes.length) {
+            BufferPool.Page page = pool.pin((position + done) / pageSize);
+            try {
+                int offset = (int) ((position + done) % pageSize);
+                int length = Math.min(bytes.length - done, pageSize - offset);
+                if (write) {
+                    System.arraycopy(bytes, done, page.getData().array(), offset, length);
+                    page.markDirty();
+                } else {
+                    System.arraycopy(page.getData().array(), offset, bytes, done, length);
+                }
+                done += length;
+            } finally {
+                pool.unpin(page);
+            }
+        }
+    }
+
+    /**
+     * @return the number of contacts stored
+     */
+    public synchronized int getContactCount() {
+        return contactCount;
+    }
+
+    /**
+     * @return the number of meetings stored
+     */
+    public synchronized int getMeetingCount() {
+        return meetingCount;
+    }
+
+    /**
+     * @return the highest id of a contact or meeting stored, or 0
+     */
+    public synchronized int getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * @return the buffer pool the pages are read through
+     */
+    public BufferPool getBufferPool() {
+        return pool;
+    }
+
+    /**
+     * Writes the header and every changed page to the file, by way of the
+     * journal, and forces it to disk.
+     *
+     * @throws IOException if the pages cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        writeHeader();
+        pool.flush();
+    }
+
+    /*
+     * The journal is empty once the flush is done, so it is deleted with the store closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+            journal.close();
+        }
+        Files.deleteIfExists(journalFile.toPath());
+    }
+}
@@ -0,0 +1,373 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
+import com.keimi.okamoto.app.organisers.ContactsContainerImpl;
+import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
+import com.keimi.okamoto.app.organisers.MeetingContainerImpl;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A DiskWriter that splits the data into partitions by id, each in a
+ * file of its own, so they can be read back side by side.
+ * <p/>
+ * Partition n holds the contacts and meetings with ids from
+ * n * partitionSize up to (n + 1) * partitionSize, laid out as by
+ * BinaryDiskWriterImpl, in a file named after the main file with
+ * ".part." and n. The first write, and any write after one that failed,
+ * writes every partition; after that only the partitions holding changed
+ * records are written again, with their records looked up by id rather
+ * than found by going through both containers. The main file is written
+ * last and says how many partitions there are:
+ * <pre>
+ * int    magic, "CMPM"
+ * byte   version
+ * varint the number of ids in a partition
+ * varint the number of partitions
+ * </pre>
+ * Reading decodes every partition at once on a fork-join pool, since
+ * none of them depends on another, and then puts the contacts and after
+ * them the meetings into the containers, which are not thread-safe. How
+ * long each phase took is kept in a RecoveryTimings.
+ */
+public class PartitionedDiskWriterImpl implements DiskWriter {
+    static final int MAGIC = 0x434D504D;
+    static final int PARTITION_MAGIC = 0x434D5050;
+    static final byte VERSION = 1;
+    private static final String PARTITION_SUFFIX = ".part.";
+
+    private File file;
+    private int partitionSize;
+    private int parallelism;
+    private ContactFactory aContactFactory;
+    private MeetingFactory aMeetingFactory;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private int lastPartition;
+    private boolean fullWriteNeeded;
+    private RecoveryTimings recoveryTimings;
+
+    /*
+     * The records of one partition once it is decoded, still without Contact or Meeting objects
+     */
+    private static class Partition {
+        private final List<ImportRecord> contacts = new ArrayList<>();
+        private final List<ImportRecord> meetings = new ArrayList<>();
+    }
+
+    /**
+     * Constructor for PartitionedDiskWriterImpl
+     *
+     * @param filename                        the main file; partitions are written next to it
+     * @param partitionSize                   the number of ids in each partition
+     * @param parallelism                     the number of threads that decode partitions
+     * @param aContactFactory                 the factory for the contacts that are read
+     * @param aMeetingFactory                 the factory for the meetings that are read
+     * @param aUniqueNumberGeneratorUtilities the unique number generator for the containers that are read
+     */
+    public PartitionedDiskWriterImpl(String filename, int partitionSize, int parallelism, ContactFactory aContactFactory,
+                                     MeetingFactory aMeetingFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        if (partitionSize < 1 || parallelism < 1) throw new IllegalArgumentException();
+
+        this.file = new File(filename);
+        this.partitionSize = partitionSize;
+        this.parallelism = parallelism;
+        this.aContactFactory = aContactFactory;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+        lastPartition = -1;
+        fullWriteNeeded = true;
+    }
+
+    /**
+     * Writes the partitions that hold changed records, or every partition
+     * when nothing has been written yet or the last write failed.
+     */
+    @Override
+    public synchronized boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        Set<Integer> changedContactIds = aContactsContainer.takeChangedContactIds();
+        Set<Integer> changedMeetingIds = aMeetingContainer.takeChangedMeetingIds();
+        boolean everything = fullWriteNeeded || !file.exists();
+
+        Set<Integer> partitions = new HashSet<>();
+        for (int id : changedContactIds) {
+            partitions.add(partitionOf(id));
+        }
+        for (int id : changedMeetingIds) {
+            partitions.add(partitionOf(id));
+        }
+        if (!everything && partitions.isEmpty()) return true;
+
+        Map<Integer, List<Contact>> contacts = new HashMap<>();
+        Map<Integer, List<Meeting>> meetings = new HashMap<>();
+        int last;
+        if (everything) {
+            last = -1;
+            for (Contact contact : aContactsContainer.getAllContacts()) {
+                if (contact == null) continue;
+                int partition = partitionOf(contact.getId());
+                last = Math.max(last, partition);
+                listFor(contacts, partition).add(contact);
+            }
+            for (Meeting meeting : aMeetingContainer.getAllMeetings()) {
+                if (meeting == null) continue;
+                int partition = partitionOf(meeting.getId());
+                last = Math.max(last, partition);
+                listFor(meetings, partition).add(meeting);
+            }
+        } else {
+            // records are never taken out, so only a changed partition can be past the last one written
+            last = lastPartition;
+            for (int partition : partitions) {
+                last = Math.max(last, partition);
+                collectPartition(partition, aContactsContainer, aMeetingContainer, contacts, meetings);
+            }
+        }
+
+        try {
+            for (int partition = 0; partition <= last; partition++) {
+                if (everything || partitions.contains(partition)) {
+                    writePartition(partition, contacts.get(partition), meetings.get(partition));
+                }
+            }
+            writeMain(last);
+            lastPartition = last;
+            fullWriteNeeded = false;
+        } catch (IOException e) {
+            // the changes have been taken from the containers, so only a full write can be sure to hold them
+            fullWriteNeeded = true;
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    private int partitionOf(int id) {
+        return id / partitionSize;
+    }
+
+    /*
+     * Looks up every id in the partition, so the work grows with the partition and not with the containers
+     */
+    private void collectPartition(int partition, ContactsView aContactsContainer, MeetingsView aMeetingContainer,
+                                  Map<Integer, List<Contact>> contacts, Map<Integer, List<Meeting>> meetings) {
+        int from = partition * partitionSize;
+        int to = from + partitionSize;
+        for (int id = from; id < to && id >= 0; id++) {
+            Contact contact = aContactsContainer.getContact(id);
+            if (contact != null) {
+                listFor(contacts, partition).add(contact);
+            }
+            Meeting meeting = aMeetingContainer.getMeeting(id);
+            if (meeting != null) {
+                listFor(meetings, partition).add(meeting);
+            }
+        }
+    }
+
+    private static <T> List<T> listFor(Map<Integer, List<T>> partitions, int partition) {
+        List<T> list = partitions.get(partition);
+        if (list == null) {
+            list = new ArrayList<>();
+            partitions.put(partition, list);
+        }
+        return list;
+    }
+
+    private void writePartition(int partition, List<Contact> contacts, List<Meeting> meetings) throws IOException {
+        File target = partitionFile(partition);
+        File temporaryFile = new File(target.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 65536))) {
+            out.writeInt(PARTITION_MAGIC);
+            out.writeByte(VERSION);
+            SnapshotCodec.writeVarInt(out, partition);
+            BinaryDiskWriterImpl.writeRecords(out,
+                    contacts == null ? Collections.<Contact>emptyList() : contacts,
+                    meetings == null ? Collections.<Meeting>emptyList() : meetings);
+        }
+        Files.move(temporaryFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeMain(int last) throws IOException {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            SnapshotCodec.writeVarInt(out, partitionSize);
+            SnapshotCodec.writeVarInt(out, last + 1);
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File partitionFile(int partition) {
+        return new File(file.getPath() + PARTITION_SUFFIX + partition);
+    }
+
+    /*
+     * Every change is found by asking the containers in writeToDisk, so nothing is recorded per change
+     */
+    @Override
+    public void recordContact(Contact aContact) {
+    }
+
+    @Override
+    public void recordMeeting(Meeting aMeeting) {
+    }
+
+    @Override
+    public boolean checkIfDataExists() {
+        return file.exists();
+    }
+
+    @Override
+    public synchronized void readDisk() {
+        RecoveryTimings timings = new RecoveryTimings();
+        ContactsContainer contacts = new ContactsContainerImpl(aContactFactory, aUniqueNumberGeneratorUtilities);
+        MeetingContainer meetings = new MeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities);
+        List<Partition> partitions;
+        int last;
+        int writtenPartitionSize;
+        try {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) throw new IOException("Not a partitioned snapshot: " + file);
+                byte version = in.readByte();
+                if (version != VERSION) throw new IOException("Unknown partitioned snapshot version " + version);
+
+                writtenPartitionSize = SnapshotCodec.readVarInt(in);
+                last = SnapshotCodec.readVarInt(in) - 1;
+            }
+            timings.endPhase("open");
+
+            partitions = decodeAll(last);
+            timings.endPhase("decode");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        int recordCount = 0;
+        for (Partition partition : partitions) {
+            for (ImportRecord record : partition.contacts) {
+                contacts.restoreContact(record.getId(), record.getName(), record.getNotes());
+            }
+            recordCount += partition.contacts.size();
+        }
+        timings.endPhase("contacts");
+
+        // a meeting's contacts may be in any partition, so every contact is in before the first meeting
+        for (Partition partition : partitions) {
+            for (ImportRecord record : partition.meetings) {
+                BinaryDiskWriterImpl.restoreMeeting(record, contacts, meetings);
+            }
+            recordCount += partition.meetings.size();
+        }
+        timings.endPhase("meetings");
+        timings.setCounts(partitions.size(), recordCount);
+
+        // what has just been read is already on disk
+        contacts.takeChangedContactIds();
+        meetings.takeChangedMeetingIds();
+        lastPartition = last;
+        // partitions of another size cannot be written over one at a time
+        fullWriteNeeded = writtenPartitionSize != partitionSize;
+        contactsContainer = contacts;
+        meetingContainer = meetings;
+        recoveryTimings = timings;
+    }
+
+    private List<Partition> decodeAll(int last) throws IOException {
+        if (last < 0) return Collections.emptyList();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new DecodeTask(0, last + 1));
+        } catch (IllegalStateException e) {
+            // the pool may wrap what a task threw again when it rethrows it in this thread
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) throw (IOException) cause;
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /*
+     * Decodes a range of partitions, halving it until there is one partition to a task
+     */
+    private class DecodeTask extends RecursiveTask<List<Partition>> {
+        private final int from;
+        private final int to;
+
+        private DecodeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Partition> compute() {
+            if (to - from == 1) {
+                try {
+                    return Collections.singletonList(decode(from));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            DecodeTask left = new DecodeTask(from, middle);
+            left.fork();
+            List<Partition> right = new DecodeTask(middle, to).compute();
+            List<Partition> partitions = new ArrayList<>(left.join());
+            partitions.addAll(right);
+            return partitions;
+        }
+    }
+
+    /*
+     * Reads one partition into records; a partition that was never written is empty
+     */
+    private Partition decode(int number) throws IOException {
+        Partition partition = new Partition();
+        File source = partitionFile(number);
+        if (!source.exists()) return partition;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source), 65536))) {
+            if (in.readInt() != PARTITION_MAGIC) throw new IOException("Not a partition: " + source);
+            byte version = in.readByte();
+            if (version != VERSION) throw new IOException("Unknown partition version " + version);
+            if (SnapshotCodec.readVarInt(in) != number) throw new IOException("Partition is misnamed: " + source);
+
+            BinaryDiskWriterImpl.decodeRecords(in, partition.contacts, partition.meetings);
+        }
+        return partition;
+    }
+
+    /**
+     * Gets how long each phase of the last readDisk took.
+     *
+     * @return the timings, or null if nothing has been read
+     */
+    public synchronized RecoveryTimings getRecoveryTimings() {
+        return recoveryTimings;
+    }
+
+    @Override
+    public ContactsContainer getContactContainer() {
+        return contactsContainer;
+    }
+
+    @Override
+    public MeetingContainer getMeetingContainer() {
+        return meetingContainer;
+    }
+}
@@ -0,0 +1,35 @@
+package com.keimi.okamoto.app.utils;
+
+import java.util.concurrent.Future;
+
+/**
+ * A persistence service writes data to disk on a background thread.
+ * Changes are gathered over a window of time or a number of changes
+ * and written together in a single commit.
+ */
+public interface PersistenceService {
+    /**
+     * Records that the data has changed. The change is written by
+     * the commit that closes the current window; the caller does not
+     * wait for it.
+     */
+    void recordMutation();
+
+    /**
+     * Asks for a commit without waiting for the window to close.
+     * Requests that arrive while a commit is being written share
+     * the next commit.
+     *
+     * @return a Future that is done once everything changed before
+     * the call has been written; it can be ignored by callers that
+     * do not need to wait
+     * @throws IllegalStateException if the service has been shut down
+     */
+    Future<Void> flushAsync() throws IllegalStateException;
+
+    /**
+     * Writes whatever has not been written yet and stops the
+     * background thread.
+     */
+    void shutdown();
+}
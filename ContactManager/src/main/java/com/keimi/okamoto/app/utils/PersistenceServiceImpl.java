@@ -0,0 +1,126 @@
+package com.keimi.okamoto.app.utils;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A PersistenceService with a single daemon thread that runs a commit task.
+ * <p/>
+ * A window opens with the first change after a commit. It closes when it
+ * has been open for the given time, when it holds the given number of
+ * changes, or when someone calls flushAsync, whichever comes first. Every
+ * caller waiting on the window shares one FutureTask, so a single write
+ * makes all of them durable, and a commit that throws because the write
+ * failed fails all of their Futures.
+ */
+public class PersistenceServiceImpl implements PersistenceService {
+    private final Runnable aCommit;
+    private final long windowNanos;
+    private final int windowSize;
+    private final Thread worker;
+    private FutureTask<Void> nextCommit;
+    private int pendingMutations;
+    private long windowOpenedAt;
+    private boolean commitRequested;
+    private boolean shutdown;
+
+    /**
+     * Constructor for PersistenceServiceImpl. The background thread starts straight away.
+     *
+     * @param aCommit      the task that writes the data, throwing if it could not
+     * @param windowMillis the longest a change waits before it is written
+     * @param windowSize   the number of changes that closes a window early
+     * @throws IllegalArgumentException if the task is null or the window is not positive
+     */
+    public PersistenceServiceImpl(Runnable aCommit, long windowMillis, int windowSize) throws IllegalArgumentException {
+        if (aCommit == null || windowMillis < 1 || windowSize < 1) throw new IllegalArgumentException();
+
+        this.aCommit = aCommit;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.windowSize = windowSize;
+        nextCommit = new FutureTask<>(aCommit, null);
+        worker = new Thread("PersistenceService") {
+            @Override
+            public void run() {
+                runCommits();
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void recordMutation() {
+        if (pendingMutations == 0) {
+            windowOpenedAt = System.nanoTime();
+        }
+        pendingMutations++;
+        // the background thread has to start timing the window as well as see it fill
+        if (pendingMutations == 1 || pendingMutations >= windowSize) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized Future<Void> flushAsync() throws IllegalStateException {
+        if (shutdown) throw new IllegalStateException();
+
+        commitRequested = true;
+        notifyAll();
+        return nextCommit;
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            if (shutdown) return;
+            shutdown = true;
+            notifyAll();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * The loop of the background thread: waits for a window to close, then
+     * runs its commit outside the lock so changes can keep coming in
+     */
+    private void runCommits() {
+        while (true) {
+            FutureTask<Void> commit;
+            boolean last;
+            synchronized (this) {
+                try {
+                    waitForWindowToClose();
+                } catch (InterruptedException e) {
+                    shutdown = true;
+                }
+                last = shutdown;
+                if (last && pendingMutations == 0 && !commitRequested) return;
+
+                commit = nextCommit;
+                nextCommit = new FutureTask<>(aCommit, null);
+                pendingMutations = 0;
+                commitRequested = false;
+            }
+            commit.run();
+            if (last) return;
+        }
+    }
+
+    private void waitForWindowToClose() throws InterruptedException {
+        while (!shutdown && !commitRequested && pendingMutations < windowSize) {
+            if (pendingMutations == 0) {
+                wait();
+            } else {
+                long remaining = windowNanos - (System.nanoTime() - windowOpenedAt);
+                if (remaining <= 0) return;
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A map from int keys to values that never changes once made. Putting
+ * or removing a key makes a new map, which shares everything but the
+ * path to that key with the map it was made from, so keeping a map as
+ * it was at some point costs nothing but holding on to it, and a map
+ * no one holds any more is reclaimed by the garbage collector like any
+ * other object.
+ * <p/>
+ * The map is a hash array mapped trie: each node takes five bits of the
+ * key and keeps only the children it has, found through a bitmap, so a
+ * key is at most seven nodes down and a put or a remove copies at most
+ * seven small arrays.
+ *
+ * @param <V> the type of the values
+ */
+public final class PersistentIntMap<V> implements Serializable {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentIntMap<Object> EMPTY = new PersistentIntMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the map with no keys.
+     *
+     * @param <V> the type of the values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /*
+     * A key and its value
+     */
+    private static final class Leaf implements Serializable {
+        private final int key;
+        private final Object value;
+
+        private Leaf(int key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /*
+     * The children of a node are Leafs or Nodes, kept in the order of the bits set in the bitmap
+     */
+    private static final class Node implements Serializable {
+        private final int bitmap;
+        private final Object[] children;
+
+        private Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Node node = root;
+        for (int shift = 0; node != null; shift += BITS) {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) return null;
+
+            Object child = node.children[node.indexOf(bit)];
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                return leaf.key == key ? (V) leaf.value : null;
+            }
+            node = (Node) child;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a key is in the map.
+     *
+     * @param key the key
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Makes a map with a key set to a value.
+     *
+     * @param key   the key
+     * @param value the value, which must not be null
+     * @return the new map, which shares all but one path with this one
+     */
+    public PersistentIntMap<V> put(int key, V value) {
+        if (value == null) throw new IllegalArgumentException();
+
+        boolean[] added = new boolean[1];
+        Node newRoot = put(root, 0, new Leaf(key, value), added);
+        return new PersistentIntMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    private static Node put(Node node, int shift, Leaf leaf, boolean[] added) {
+        int bit = 1 << ((leaf.key >>> shift) & MASK);
+        if (node == null) {
+            added[0] = true;
+            return new Node(bit, new Object[]{leaf});
+        }
+
+        int index = node.indexOf(bit);
+        if ((node.bitmap & bit) == 0) {
+            added[0] = true;
+            Object[] children = new Object[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, index);
+            children[index] = leaf;
+            System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+            return new Node(node.bitmap | bit, children);
+        }
+
+        Object child = node.children[index];
+        Object newChild;
+        if (child instanceof Node) {
+            newChild = put((Node) child, shift + BITS, leaf, added);
+        } else if (((Leaf) child).key == leaf.key) {
+            newChild = leaf;
+        } else {
+            newChild = put(put(null, shift + BITS, (Leaf) child, new boolean[1]), shift + BITS, leaf, added);
+        }
+        Object[] children = node.children.clone();
+        children[index] = newChild;
+        return new Node(node.bitmap, children);
+    }
+
+    /**
+     * Makes a map without a key.
+     *
+     * @param key the key
+     * @return the new map, or this map if the key is not in it
+     */
+    public PersistentIntMap<V> remove(int key) {
+        if (!containsKey(key)) return this;
+
+        return new PersistentIntMap<>(remove(root, 0, key), size - 1);
+    }
+
+    /*
+     * A node left with a single leaf is replaced by the leaf, so the trie shrinks back
+     */
+    private static Object removeChild(Node node, int shift, int key) {
+        Node newNode = remove(node, shift, key);
+        if (newNode != null && newNode.children.length == 1 && newNode.children[0] instanceof Leaf) {
+            return newNode.children[0];
+        }
+        return newNode;
+    }
+
+    private static Node remove(Node node, int shift, int key) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        int index = node.indexOf(bit);
+        Object child = node.children[index];
+        Object newChild = child instanceof Leaf ? null : removeChild((Node) child, shift + BITS, key);
+
+        if (newChild != null) {
+            Object[] children = node.children.clone();
+            children[index] = newChild;
+            return new Node(node.bitmap, children);
+        }
+        if (node.children.length == 1) return null;
+
+        Object[] children = new Object[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        return new Node(node.bitmap & ~bit, children);
+    }
+
+    /**
+     * Returns the number of keys in the map.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the values in the map, in no particular order. The map
+     * never changes, so neither does the collection.
+     *
+     * @return an unmodifiable collection of the values
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /*
+     * Walks the trie depth first, keeping the path down to the next leaf
+     */
+    private static final class ValueIterator<V> implements Iterator<V> {
+        private final Node[] nodes = new Node[8];
+        private final int[] positions = new int[8];
+        private int depth = -1;
+        private Leaf next;
+
+        private ValueIterator(Node root) {
+            if (root != null) {
+                nodes[0] = root;
+                depth = 0;
+                advance();
+            }
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                if (positions[depth] == node.children.length) {
+                    depth--;
+                    continue;
+                }
+                Object child = node.children[positions[depth]++];
+                if (child instanceof Leaf) {
+                    next = (Leaf) child;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) child;
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) throw new NoSuchElementException();
+
+            V value = (V) next.value;
+            advance();
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A line-delimited format for importing and exporting contacts and
+ * meetings, one record to a line. Parsing a record does not depend on
+ * any other, so the lines of an import can be parsed in any order.
+ */
+public interface RecordFormat {
+    /**
+     * Checks if a record is whole, or goes on to the next line because
+     * a value in it holds a line break.
+     *
+     * @param record the lines read so far, joined by line breaks
+     * @return true if the record is whole
+     */
+    boolean isComplete(String record);
+
+    /**
+     * Parses a record.
+     *
+     * @param record a whole record
+     * @return the contact or meeting in it
+     * @throws IOException if the record is not in this format
+     */
+    ImportRecord parse(String record) throws IOException;
+
+    /**
+     * Writes a contact as a record, ending with a line break.
+     *
+     * @param out      where to write
+     * @param aContact the contact
+     * @throws IOException if the record cannot be written
+     */
+    void writeContact(Writer out, Contact aContact) throws IOException;
+
+    /**
+     * Writes a meeting as a record, ending with a line break.
+     *
+     * @param out      where to write
+     * @param aMeeting the meeting
+     * @throws IOException if the record cannot be written
+     */
+    void writeMeeting(Writer out, Meeting aMeeting) throws IOException;
+}
@@ -0,0 +1,81 @@
+package com.keimi.okamoto.app.utils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long each phase of reading the persisted data back took, in the
+ * order the phases ran, so the time a restart takes can be tracked and
+ * the slow phase found.
+ */
+public class RecoveryTimings {
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private int segmentCount;
+    private int recordCount;
+    private long phaseStart = System.nanoTime();
+
+    /**
+     * Ends the phase that is running and starts the next one.
+     *
+     * @param phase the name of the phase that has just ended
+     */
+    public void endPhase(String phase) {
+        long now = System.nanoTime();
+        phaseNanos.put(phase, now - phaseStart);
+        phaseStart = now;
+    }
+
+    void setCounts(int segmentCount, int recordCount) {
+        this.segmentCount = segmentCount;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * @return the time each phase took in milliseconds, in the order they ran
+     */
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            millis.put(phase.getKey(), TimeUnit.NANOSECONDS.toMillis(phase.getValue()));
+        }
+        return Collections.unmodifiableMap(millis);
+    }
+
+    /**
+     * @return the time every phase took together, in milliseconds
+     */
+    public long getTotalMillis() {
+        long total = 0;
+        for (long nanos : phaseNanos.values()) {
+            total += nanos;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    /**
+     * @return the number of segments that were read
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return the number of contacts and meetings that were read
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(recordCount).append(" records from ").append(segmentCount).append(" segments in ")
+                .append(getTotalMillis()).append(" ms");
+        for (Map.Entry<String, Long> phase : getPhaseMillis().entrySet()) {
+            text.append(", ").append(phase.getKey()).append(' ').append(phase.getValue()).append(" ms");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,204 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+import com.keimi.okamoto.app.organisers.ContactsView;
+import com.keimi.okamoto.app.organisers.ContactsContainerImpl;
+import com.keimi.okamoto.app.organisers.MeetingContainer;
+import com.keimi.okamoto.app.organisers.MeetingsView;
+import com.keimi.okamoto.app.organisers.MeetingContainerImpl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A DiskWriter over a LogStructuredStore. Every contact and meeting is a
+ * record of its own, under a key made of its type and id, written with the
+ * codecs in SnapshotCodec.
+ * <p/>
+ * Recorded contacts and meetings go to the store's write-ahead log as they
+ * happen, and writeToDisk adds whatever else the containers have changed
+ * and writes the lot as a segment, so no write ever rewrites the whole
+ * store. A changed record that was already recorded as it is now is not
+ * put a second time. A meeting that is turned from a future meeting into a past one is
+ * written again under the same key, and the future meeting is dropped
+ * when the segments are merged.
+ */
+public class SegmentedDiskWriterImpl implements DiskWriter {
+    static final byte CONTACT_RECORD = 1;
+    static final byte MEETING_RECORD = 2;
+
+    private LogStructuredStore store;
+    private ContactFactory aContactFactory;
+    private MeetingFactory aMeetingFactory;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private Map<Long, byte[]> recordedSinceWrite = new HashMap<>();
+
+    /**
+     * Constructor for SegmentedDiskWriterImpl. Opens the store straight away.
+     *
+     * @param directoryName                   the directory the store is kept in
+     * @param memtableLimit                   the number of records held in memory before they are written as a segment
+     * @param compactionThreshold             the number of segments that starts a merge
+     * @param aContactFactory                 the factory for the contacts that are read
+     * @param aMeetingFactory                 the factory for the meetings that are read
+     * @param aUniqueNumberGeneratorUtilities the unique number generator for the containers that are read
+     * @throws IllegalStateException if the store cannot be opened
+     */
+    public SegmentedDiskWriterImpl(String directoryName, int memtableLimit, int compactionThreshold, ContactFactory aContactFactory,
+                                   MeetingFactory aMeetingFactory, UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities) {
+        try {
+            this.store = new LogStructuredStore(new File(directoryName), memtableLimit, compactionThreshold);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.aContactFactory = aContactFactory;
+        this.aMeetingFactory = aMeetingFactory;
+        this.aUniqueNumberGeneratorUtilities = aUniqueNumberGeneratorUtilities;
+    }
+
+    /**
+     * Adds the contacts and meetings the containers have changed since the
+     * last write, and writes everything not yet in a segment as a new one.
+     */
+    @Override
+    public synchronized boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+        try {
+            for (int id : aContactsContainer.takeChangedContactIds()) {
+                Contact aContact = aContactsContainer.getContact(id);
+                if (aContact != null) {
+                    putChanged(LogStructuredStore.key(CONTACT_RECORD, id), encode(aContact));
+                }
+            }
+            for (int id : aMeetingContainer.takeChangedMeetingIds()) {
+                Meeting aMeeting = aMeetingContainer.getMeeting(id);
+                if (aMeeting != null) {
+                    putChanged(LogStructuredStore.key(MEETING_RECORD, id), encode(aMeeting));
+                }
+            }
+            store.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            // whatever was recorded is in the write-ahead log or a segment either way
+            recordedSinceWrite.clear();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void recordContact(Contact aContact) {
+        if (aContact == null) return;
+
+        try {
+            putRecorded(LogStructuredStore.key(CONTACT_RECORD, aContact.getId()), encode(aContact));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void recordMeeting(Meeting aMeeting) {
+        if (aMeeting == null) return;
+
+        try {
+            putRecorded(LogStructuredStore.key(MEETING_RECORD, aMeeting.getId()), encode(aMeeting));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void putRecorded(long key, byte[] record) throws IOException {
+        store.put(key, record);
+        recordedSinceWrite.put(key, record);
+    }
+
+    /*
+     * Puts a changed record unless it was recorded as it is now since the last write
+     */
+    private void putChanged(long key, byte[] record) throws IOException {
+        if (!Arrays.equals(recordedSinceWrite.get(key), record)) {
+            store.put(key, record);
+        }
+    }
+
+    private static byte[] encode(Contact aContact) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        SnapshotCodec.writeContact(new DataOutputStream(record), aContact);
+        return record.toByteArray();
+    }
+
+    private static byte[] encode(Meeting aMeeting) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        SnapshotCodec.writeMeeting(new DataOutputStream(record), aMeeting, 0);
+        return record.toByteArray();
+    }
+
+    /**
+     * @return the store the records are kept in
+     */
+    public LogStructuredStore getStore() {
+        return store;
+    }
+
+    @Override
+    public boolean checkIfDataExists() {
+        return !store.isEmpty();
+    }
+
+    /*
+     * Contact keys sort before meeting keys, so every attendee is restored before its meetings
+     */
+    @Override
+    public synchronized void readDisk() {
+        ContactsContainer contacts = new ContactsContainerImpl(aContactFactory, aUniqueNumberGeneratorUtilities);
+        MeetingContainer meetings = new MeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities);
+
+        try {
+            for (Map.Entry<Long, byte[]> entry : store.getAll().entrySet()) {
+                ByteBuffer in = ByteBuffer.wrap(entry.getValue());
+                byte type = (byte) (entry.getKey() >>> 32);
+                if (type == CONTACT_RECORD) {
+                    int id = SnapshotCodec.readVarInt(in);
+                    String name = SnapshotCodec.readString(in);
+                    contacts.restoreContact(id, name, SnapshotCodec.readString(in));
+                } else if (type == MEETING_RECORD) {
+                    int id = SnapshotCodec.readVarInt(in);
+                    long date = SnapshotCodec.readVarLong(in);
+                    int attendeeCount = SnapshotCodec.readVarInt(in);
+                    Set<Contact> attendees = new HashSet<>();
+                    for (int i = 0; i < attendeeCount; i++) {
+                        Contact contact = contacts.getContact(SnapshotCodec.readVarInt(in));
+                        if (contact != null) {
+                            attendees.add(contact);
+                        }
+                    }
+                    meetings.restoreMeeting(id, attendees, date, SnapshotCodec.readString(in));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        // what has just been read is already in the store
+        contacts.takeChangedContactIds();
+        meetings.takeChangedMeetingIds();
+        contactsContainer = contacts;
+        meetingContainer = meetings;
+    }
+
+    @Override
+    public ContactsContainer getContactContainer() {
+        return contactsContainer;
+    }
+
+    @Override
+    public MeetingContainer getMeetingContainer() {
+        return meetingContainer;
+    }
+}
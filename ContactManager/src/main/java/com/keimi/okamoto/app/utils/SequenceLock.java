@@ -0,0 +1,165 @@
+package com.keimi.okamoto.app.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A read-write lock whose readers can read without taking it, like the
+ * optimistic reads of a StampedLock.
+ * <p/>
+ * A writer takes the write lock of a ReentrantReadWriteLock and bumps a
+ * version number as it starts and again as it finishes, so the version
+ * is odd while something is being written. A reader notes the version,
+ * reads, and then checks the version has not moved. If it has, or if
+ * what was read threw an exception because it was half written, the
+ * read is thrown away and done again under the read lock. A reader that
+ * is not held up by a writer only ever reads the version, so readers
+ * never write to memory that other readers share.
+ * <p/>
+ * An optimistic read must only read, must not go on for ever whatever it
+ * finds half written, and must not hand out anything it made before it
+ * has been validated. Made without optimistic reads, every read takes
+ * the read lock, which is how a plain ReentrantReadWriteLock behaves.
+ */
+public class SequenceLock {
+    private static final ThreadLocal<Fence> FENCES = new ThreadLocal<Fence>() {
+        @Override
+        protected Fence initialValue() {
+            return new Fence();
+        }
+    };
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final boolean optimisticReads;
+
+    /**
+     * A read that can be done with or without the lock.
+     *
+     * @param <T> what is read
+     */
+    public interface Read<T> {
+
+        /**
+         * Reads the data the lock guards.
+         *
+         * @return what was read
+         */
+        T read();
+    }
+
+    /*
+     * Writing to a volatile field that belongs to the reading thread keeps
+     * the reads before it from being moved after the version is read again
+     */
+    private static class Fence {
+        private volatile long stamp;
+    }
+
+    /**
+     * Constructor for SequenceLock
+     *
+     * @param optimisticReads whether reads are tried without the lock first
+     */
+    public SequenceLock(boolean optimisticReads) {
+        this.optimisticReads = optimisticReads;
+    }
+
+    /**
+     * Returns a stamp to read without the lock with, which is odd, and so
+     * never valid, while something is being written.
+     *
+     * @return the stamp
+     */
+    public long tryOptimisticRead() {
+        return version.get();
+    }
+
+    /**
+     * Checks that nothing has been written since a stamp was taken, so
+     * what was read since then can be used.
+     *
+     * @param stamp a stamp from tryOptimisticRead
+     * @return true if nothing has been written since the stamp was taken
+     */
+    public boolean validate(long stamp) {
+        if ((stamp & 1) != 0) return false;
+
+        FENCES.get().stamp = stamp;
+        return version.get() == stamp;
+    }
+
+    /**
+     * Reads without the lock, and again under the read lock if something
+     * was written meanwhile.
+     *
+     * @param aRead the read to do
+     * @param <T>   what is read
+     * @return what was read
+     */
+    public <T> T read(Read<T> aRead) {
+        if (optimisticReads) {
+            long stamp = tryOptimisticRead();
+            if ((stamp & 1) == 0) {
+                try {
+                    T result = aRead.read();
+                    if (validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    if (validate(stamp)) throw e;
+                }
+            }
+            fallbackCount.incrementAndGet();
+        }
+        return readLocked(aRead);
+    }
+
+    /**
+     * Reads under the read lock, for reads that must not see half-written
+     * data at all, such as walking a tree.
+     *
+     * @param aRead the read to do
+     * @param <T>   what is read
+     * @return what was read
+     */
+    public <T> T readLocked(Read<T> aRead) {
+        lock.readLock().lock();
+        try {
+            return aRead.read();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the write lock. A thread that already holds it can take it
+     * again, and the version only moves for the outermost write.
+     */
+    public void lockWrite() {
+        lock.writeLock().lock();
+        if (lock.getWriteHoldCount() == 1) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gives up the write lock.
+     */
+    public void unlockWrite() {
+        if (lock.getWriteHoldCount() == 1) {
+            version.incrementAndGet();
+        }
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * Returns how many optimistic reads had to be done again under the read lock.
+     *
+     * @return the number of reads that fell back to the read lock
+     */
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+}
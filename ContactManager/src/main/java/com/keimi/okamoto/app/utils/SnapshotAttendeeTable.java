@@ -0,0 +1,140 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * The table in a snapshot's index that finds the meetings of a contact
+ * without decoding them. There is an entry for every contact of every
+ * meeting, so a contact's meetings are next to each other, in date order:
+ * <pre>
+ * int    number of entries, then (int contact id, long date, int meeting id, byte 1 if past)
+ *        sorted by contact id, then date and then meeting id
+ * </pre>
+ */
+final class SnapshotAttendeeTable {
+    private static final int ATTENDEE_ENTRY = 17;
+
+    /**
+     * Private method to stop other classes from
+     * instantiating this object.
+     */
+    private SnapshotAttendeeTable() {
+    }
+
+    /**
+     * Writes the table for the meetings.
+     *
+     * @param out          where to write
+     * @param sortedByDate the meetings, in date order and then id order
+     * @throws IOException if the table cannot be written
+     */
+    static void write(DataOutputStream out, List<Meeting> sortedByDate) throws IOException {
+        List<long[]> attendees = new ArrayList<>();
+        for (int entry = 0; entry < sortedByDate.size(); entry++) {
+            for (Contact contact : sortedByDate.get(entry).getContacts()) {
+                attendees.add(new long[]{contact.getId(), entry});
+            }
+        }
+        // a stable sort by contact keeps each contact's meetings in the order of the date table
+        Collections.sort(attendees, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                return Long.compare(o1[0], o2[0]);
+            }
+        });
+
+        out.writeInt(attendees.size());
+        for (long[] attendee : attendees) {
+            Meeting meeting = sortedByDate.get((int) attendee[1]);
+            out.writeInt((int) attendee[0]);
+            out.writeLong(meeting.getTime());
+            out.writeInt(meeting.getId());
+            out.writeByte(meeting instanceof PastMeeting ? 1 : 0);
+        }
+    }
+
+    /**
+     * Gets the size of the table.
+     *
+     * @param buffer the buffer the table is in
+     * @param table  the position of the table in the buffer
+     * @return the number of bytes the table takes
+     */
+    static int length(ByteBuffer buffer, int table) {
+        return 4 + buffer.getInt(table) * ATTENDEE_ENTRY;
+    }
+
+    /**
+     * Finds the ids of the future or the past meetings of a contact.
+     *
+     * @param buffer    the buffer the table is in
+     * @param table     the position of the table in the buffer
+     * @param contactId the id of a contact
+     * @param past      true for the past meetings, false for the future ones
+     * @return the ids, in date order
+     */
+    static int[] find(ByteBuffer buffer, int table, int contactId, boolean past) {
+        int count = buffer.getInt(table);
+        int start = firstEntryAtOrAfter(buffer, table, contactId, Long.MIN_VALUE);
+        int[] ids = new int[16];
+        int found = 0;
+        for (int entry = start; entry < count && contactIdAt(buffer, table, entry) == contactId; entry++) {
+            if ((buffer.get(table + 4 + entry * ATTENDEE_ENTRY + 16) == 1) != past) continue;
+
+            if (found == ids.length) {
+                ids = Arrays.copyOf(ids, found * 2);
+            }
+            ids[found++] = buffer.getInt(table + 4 + entry * ATTENDEE_ENTRY + 12);
+        }
+        return Arrays.copyOf(ids, found);
+    }
+
+    /**
+     * Finds the ids of the meetings of a contact from one date (inclusive)
+     * up to another (exclusive).
+     *
+     * @param buffer    the buffer the table is in
+     * @param table     the position of the table in the buffer
+     * @param contactId the id of a contact
+     * @param from      the earliest date, in milliseconds since the epoch
+     * @param to        the date all meetings are before, in milliseconds since the epoch
+     * @return the ids, in date order
+     */
+    static int[] find(ByteBuffer buffer, int table, int contactId, long from, long to) {
+        if (from >= to) return new int[0];
+
+        int start = firstEntryAtOrAfter(buffer, table, contactId, from);
+        int end = firstEntryAtOrAfter(buffer, table, contactId, to);
+        int[] ids = new int[end - start];
+        for (int entry = start; entry < end; entry++) {
+            ids[entry - start] = buffer.getInt(table + 4 + entry * ATTENDEE_ENTRY + 12);
+        }
+        return ids;
+    }
+
+    private static int firstEntryAtOrAfter(ByteBuffer buffer, int table, int contactId, long date) {
+        int low = 0;
+        int high = buffer.getInt(table);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int id = contactIdAt(buffer, table, middle);
+            if (id < contactId || id == contactId && buffer.getLong(table + 4 + middle * ATTENDEE_ENTRY + 4) < date) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int contactIdAt(ByteBuffer buffer, int table, int entry) {
+        return buffer.getInt(table + 4 + entry * ATTENDEE_ENTRY);
+    }
+}
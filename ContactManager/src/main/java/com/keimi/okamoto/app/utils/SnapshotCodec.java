@@ -0,0 +1,265 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Field codecs for the binary snapshot format.
+ * <p/>
+ * Ids and lengths are written as variable length integers, seven bits
+ * to a byte, so small numbers take a single byte. Dates are written as
+ * the zig-zag encoded difference from the date of the meeting written
+ * before, which is small when meetings are written in date order.
+ * Strings are UTF-8 with their length plus one in front, zero meaning null.
+ */
+public final class SnapshotCodec {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Private method to stop other classes from
+     * instantiating this object.
+     */
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Writes a number that is not negative in as few bytes as possible.
+     *
+     * @param out   where to write
+     * @param value the number
+     * @throws IOException if the number cannot be written
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a number written by writeVarInt.
+     *
+     * @param in where to read from
+     * @return the number
+     * @throws IOException if the number cannot be read or is too long
+     */
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Reads a number written by writeVarInt from the current
+     * position of a buffer.
+     *
+     * @param in the buffer to read from
+     * @return the number
+     * @throws IOException if the number is too long
+     */
+    public static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Writes a number that may be negative, zig-zag encoded so
+     * that numbers close to zero take few bytes.
+     *
+     * @param out   where to write
+     * @param value the number
+     * @throws IOException if the number cannot be written
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    /**
+     * Reads a number written by writeVarLong.
+     *
+     * @param in where to read from
+     * @return the number
+     * @throws IOException if the number cannot be read or is too long
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Reads a number written by writeVarLong from the current
+     * position of a buffer.
+     *
+     * @param in the buffer to read from
+     * @return the number
+     * @throws IOException if the number is too long
+     */
+    public static long readVarLong(ByteBuffer in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Writes a string as UTF-8.
+     *
+     * @param out   where to write
+     * @param value the string, which may be null
+     * @throws IOException if the string cannot be written
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString.
+     *
+     * @param in where to read from
+     * @return the string, which may be null
+     * @throws IOException if the string cannot be read
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Reads a string written by writeString from the current
+     * position of a buffer.
+     *
+     * @param in the buffer to read from
+     * @return the string, which may be null
+     * @throws IOException if the length is malformed
+     */
+    public static String readString(ByteBuffer in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Writes the id, name and notes of a contact.
+     *
+     * @param out      where to write
+     * @param aContact the contact
+     * @throws IOException if the contact cannot be written
+     */
+    public static void writeContact(DataOutput out, Contact aContact) throws IOException {
+        writeVarInt(out, aContact.getId());
+        writeString(out, aContact.getName());
+        writeString(out, aContact.getNotes());
+    }
+
+    /**
+     * Writes the id, date, attendee ids and notes of a meeting.
+     * The notes of a future meeting are written as null.
+     *
+     * @param out          where to write
+     * @param aMeeting     the meeting
+     * @param previousDate the date of the meeting written before, or 0
+     * @throws IOException if the meeting cannot be written
+     */
+    public static void writeMeeting(DataOutput out, Meeting aMeeting, long previousDate) throws IOException {
+        Set<Contact> contacts = aMeeting.getContacts();
+        writeVarInt(out, aMeeting.getId());
+        writeVarLong(out, aMeeting.getTime() - previousDate);
+        writeVarInt(out, contacts.size());
+        for (Contact contact : contacts) {
+            writeVarInt(out, contact.getId());
+        }
+        writeString(out, aMeeting instanceof PastMeeting ? ((PastMeeting) aMeeting).getNotes() : null);
+    }
+
+    /**
+     * Reads a contact written by writeContact.
+     *
+     * @param in              where to read from, positioned at the contact
+     * @param aContactFactory the factory that makes the contact
+     * @return the contact
+     * @throws IOException if the contact cannot be read
+     */
+    public static Contact readContact(ByteBuffer in, ContactFactory aContactFactory) throws IOException {
+        int id = readVarInt(in);
+        String name = readString(in);
+        String notes = readString(in);
+        return aContactFactory.createContact(id, name, notes);
+    }
+
+    /**
+     * Reads a meeting written by writeMeeting, looking its attendees up
+     * in a ContactsContainer. Attendees that cannot be found are left out.
+     *
+     * @param in                 where to read from, positioned at the meeting
+     * @param previousDate       the date the meeting was written against
+     * @param aContactsContainer the container the attendees are looked up in
+     * @param aMeetingFactory    the factory that makes the meeting
+     * @return the meeting
+     * @throws IOException             if the meeting cannot be read
+     * @throws IllegalMeetingException if the factory will not make the meeting
+     */
+    public static Meeting readMeeting(ByteBuffer in, long previousDate, ContactsContainer aContactsContainer,
+                                      MeetingFactory aMeetingFactory) throws IOException, IllegalMeetingException {
+        int id = readVarInt(in);
+        long date = previousDate + readVarLong(in);
+        int attendeeCount = readVarInt(in);
+        Set<Contact> attendees = new HashSet<>();
+        for (int i = 0; i < attendeeCount; i++) {
+            Contact contact = aContactsContainer.getContact(readVarInt(in));
+            if (contact != null) {
+                attendees.add(contact);
+            }
+        }
+        String notes = readString(in);
+        if (notes == null) {
+            return aMeetingFactory.createFutureMeeting(id, date, attendees);
+        }
+        return aMeetingFactory.createPastMeeting(id, attendees, date, notes);
+    }
+}
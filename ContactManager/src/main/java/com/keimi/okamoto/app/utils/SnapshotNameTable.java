@@ -0,0 +1,126 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * The table at the end of a snapshot's index that finds contacts by name
+ * without decoding them. Names are kept in lower case, as prefix searches
+ * ignore case, so a lookup by whole name finds the contacts whose names
+ * differ only in case too:
+ * <pre>
+ * int    number of names, then (int position of the name, int id) sorted by name and then id
+ * the names, each an int length and UTF-8 bytes, positions being from the start of the table
+ * </pre>
+ */
+final class SnapshotNameTable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int NAME_ENTRY = 8;
+
+    /**
+     * Private method to stop other classes from
+     * instantiating this object.
+     */
+    private SnapshotNameTable() {
+    }
+
+    /**
+     * Turns a name into the form it is kept in.
+     *
+     * @param name a name
+     * @return the name in lower case
+     */
+    static String toKey(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Writes the table for the contacts that have a name.
+     *
+     * @param out      where to write
+     * @param contacts the contacts
+     * @throws IOException if the table cannot be written
+     */
+    static void write(DataOutputStream out, List<Contact> contacts) throws IOException {
+        final List<String> keys = new ArrayList<>(contacts.size());
+        final List<Integer> ids = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            if (contact.getName() != null) {
+                keys.add(toKey(contact.getName()));
+                ids.add(contact.getId());
+            }
+        }
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int result = keys.get(o1).compareTo(keys.get(o2));
+                return result != 0 ? result : ids.get(o1).compareTo(ids.get(o2));
+            }
+        });
+
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        DataOutputStream namesOut = new DataOutputStream(names);
+        int namesPosition = 4 + order.length * NAME_ENTRY;
+        out.writeInt(order.length);
+        for (int i : order) {
+            out.writeInt(namesPosition + namesOut.size());
+            out.writeInt(ids.get(i));
+            byte[] bytes = keys.get(i).getBytes(UTF_8);
+            namesOut.writeInt(bytes.length);
+            namesOut.write(bytes);
+        }
+        names.writeTo(out);
+    }
+
+    /**
+     * Finds the ids of the contacts whose names are, or start with, a key.
+     *
+     * @param buffer the buffer the table is in
+     * @param table  the position of the table in the buffer
+     * @param key    the name or the start of the names, in lower case
+     * @param prefix true if the names only have to start with the key
+     * @param limit  the most ids to find
+     * @return the ids, in order of their names and then ids
+     */
+    static int[] find(ByteBuffer buffer, int table, String key, boolean prefix, int limit) {
+        int count = buffer.getInt(table);
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (nameAt(buffer, table, middle).compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int[] ids = new int[Math.min(limit, count - low)];
+        int found = 0;
+        for (int entry = low; entry < count && found < ids.length; entry++) {
+            String name = nameAt(buffer, table, entry);
+            if (prefix ? !name.startsWith(key) : !name.equals(key)) break;
+            ids[found++] = buffer.getInt(table + 4 + entry * NAME_ENTRY + 4);
+        }
+        return Arrays.copyOf(ids, found);
+    }
+
+    private static String nameAt(ByteBuffer buffer, int table, int entry) {
+        int position = table + buffer.getInt(table + 4 + entry * NAME_ENTRY);
+        byte[] bytes = new byte[buffer.getInt(position)];
+        ByteBuffer in = buffer.duplicate();
+        in.position(position + 4);
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.ContactsContainer;
+
+/**
+ * A snapshot reader reads single contacts and meetings out of a
+ * snapshot file through its index, without reading the whole file.
+ */
+public interface SnapshotReader {
+    /**
+     * @return the number of contacts in the snapshot
+     */
+    int getContactCount();
+
+    /**
+     * @param entry a number from 0 to the number of contacts
+     * @return the id of the contact, contacts being in id order
+     */
+    int getContactId(int entry);
+
+    /**
+     * Checks if the snapshot holds a contact.
+     *
+     * @param contactId a contact's ID
+     * @return true if there is a contact with that id
+     */
+    boolean hasContact(int contactId);
+
+    /**
+     * Decodes a contact.
+     *
+     * @param contactId       a contact's ID
+     * @param aContactFactory the factory that makes the contact
+     * @return the contact, or null if there is none with that id
+     */
+    Contact readContact(int contactId, ContactFactory aContactFactory);
+
+    /**
+     * Gets the ids of the contacts with a name, ignoring case,
+     * using only the index.
+     *
+     * @param name the name
+     * @return the ids in id order
+     */
+    int[] getContactIdsByName(String name);
+
+    /**
+     * Gets the ids of the contacts whose names start with a prefix,
+     * ignoring case, using only the index.
+     *
+     * @param prefix the start of the names
+     * @param limit  the most ids to return
+     * @return the ids in order of their names
+     */
+    int[] getContactIdsByPrefix(String prefix, int limit);
+
+    /**
+     * @return the number of meetings in the snapshot
+     */
+    int getMeetingCount();
+
+    /**
+     * @param entry a number from 0 to the number of meetings
+     * @return the id of the meeting, meetings being in id order
+     */
+    int getMeetingId(int entry);
+
+    /**
+     * Checks if the snapshot holds a meeting.
+     *
+     * @param meetingId a meeting's ID
+     * @return true if there is a meeting with that id
+     */
+    boolean hasMeeting(int meetingId);
+
+    /**
+     * Decodes a meeting, looking its attendees up in a ContactsContainer.
+     *
+     * @param meetingId          a meeting's ID
+     * @param aContactsContainer the container the attendees are looked up in
+     * @param aMeetingFactory    the factory that makes the meeting
+     * @return the meeting, or null if there is none with that id
+     */
+    Meeting readMeeting(int meetingId, ContactsContainer aContactsContainer, MeetingFactory aMeetingFactory);
+
+    /**
+     * Gets the ids of the meetings from one date (inclusive)
+     * up to another (exclusive) using only the index.
+     *
+     * @param from the earliest date, in milliseconds since the epoch
+     * @param to   the date all meetings are before, in milliseconds since the epoch
+     * @return the meeting ids in chronological order
+     */
+    int[] getMeetingIdsBetween(long from, long to);
+
+    /**
+     * Gets the ids of the future or the past meetings of a contact
+     * using only the index.
+     *
+     * @param contactId a contact's ID
+     * @param past      true for the past meetings, false for the future ones
+     * @return the meeting ids in chronological order
+     */
+    int[] getMeetingIdsOf(int contactId, boolean past);
+
+    /**
+     * Gets the ids of the meetings of a contact from one date (inclusive)
+     * up to another (exclusive) using only the index.
+     *
+     * @param contactId a contact's ID
+     * @param from      the earliest date, in milliseconds since the epoch
+     * @param to        the date all meetings are before, in milliseconds since the epoch
+     * @return the meeting ids in chronological order
+     */
+    int[] getMeetingIdsOf(int contactId, long from, long to);
+}
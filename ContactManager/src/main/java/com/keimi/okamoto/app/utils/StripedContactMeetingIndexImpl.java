@@ -0,0 +1,99 @@
+package com.keimi.okamoto.app.utils;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ContactMeetingIndex that many threads can use at once. Contacts are
+ * spread over a number of stripes, each a ContactMeetingIndexImpl with a
+ * read-write lock of its own, so threads working on contacts in
+ * different stripes never wait for each other, and threads that only
+ * read a stripe never wait for each other either.
+ */
+public class StripedContactMeetingIndexImpl implements ContactMeetingIndex {
+    private final ContactMeetingIndex[] stripes;
+    private final ReadWriteLock[] locks;
+
+    /**
+     * Constructor that makes an empty index.
+     *
+     * @param stripeCount the number of stripes, rounded up to a power of two
+     */
+    public StripedContactMeetingIndexImpl(int stripeCount) {
+        if (stripeCount < 1) throw new IllegalArgumentException();
+
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        stripes = new ContactMeetingIndex[size];
+        locks = new ReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ContactMeetingIndexImpl();
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /*
+     * Spreads consecutive ids over the stripes
+     */
+    private int stripeOf(int contactId) {
+        int h = contactId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    @Override
+    public void addMeeting(int contactId, long time, int meetingId, boolean past) {
+        int stripe = stripeOf(contactId);
+        locks[stripe].writeLock().lock();
+        try {
+            stripes[stripe].addMeeting(contactId, time, meetingId, past);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeMeeting(int contactId, long time, int meetingId, boolean past) {
+        int stripe = stripeOf(contactId);
+        locks[stripe].writeLock().lock();
+        try {
+            stripes[stripe].removeMeeting(contactId, time, meetingId, past);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] getMeetingIds(int contactId, boolean past) {
+        int stripe = stripeOf(contactId);
+        locks[stripe].readLock().lock();
+        try {
+            return stripes[stripe].getMeetingIds(contactId, past);
+        } finally {
+            locks[stripe].readLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] getMeetingIds(int contactId, long from, long to) {
+        int stripe = stripeOf(contactId);
+        locks[stripe].readLock().lock();
+        try {
+            return stripes[stripe].getMeetingIds(contactId, from, to);
+        } finally {
+            locks[stripe].readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getMeetingCount(int contactId) {
+        int stripe = stripeOf(contactId);
+        locks[stripe].readLock().lock();
+        try {
+            return stripes[stripe].getMeetingCount(contactId);
+        } finally {
+            locks[stripe].readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+
+public class SystemClockImpl implements Clock, Serializable {
+    private static SystemClockImpl singleton;
+
+    /**
+     * Private method to stop other classes from
+     * instantiating this object.
+     */
+    private SystemClockImpl() {
+    }
+
+    /**
+     * Static method that allows people to reach the single
+     * instance.
+     *
+     * @return the single instance.
+     */
+    public static synchronized Clock getInstance() {
+        if (singleton == null) {
+            singleton = new SystemClockImpl();
+        }
+        return singleton;
+    }
+
+    /*
+     * Keeps the clock a single instance when a container holding it is read from disk
+     */
+    private Object readResolve() {
+        return getInstance();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
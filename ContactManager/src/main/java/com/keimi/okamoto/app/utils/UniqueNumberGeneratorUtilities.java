@@ -12,4 +12,23 @@ public interface UniqueNumberGeneratorUtilities {
      * @return a unique number
      */
     int getUniqueNumber();
+
+    /**
+     * Reserves a block of consecutive unique numbers at once,
+     * for example for the records of a bulk import.
+     *
+     * @param count the number of numbers to reserve
+     * @return the first number of the block
+     * @throws IllegalArgumentException if count is not positive
+     */
+    int reserve(int count);
+
+    /**
+     * Makes sure the numbers handed out from now on are
+     * greater than a number that is already in use, for
+     * example by a contact or meeting read back from disk.
+     *
+     * @param number a number that is in use
+     */
+    void skipPast(int number);
 }
@@ -3,6 +3,7 @@ package com.keimi.okamoto.app.utils;
 import java.io.Serializable;
 
 public class UniqueNumberGeneratorUtilitiesImpl implements UniqueNumberGeneratorUtilities, Serializable {
+    private static final long serialVersionUID = 8556912325385903268L;
     private static UniqueNumberGeneratorUtilities singleton;
     private int id = 0;
 
@@ -30,4 +31,20 @@ public class UniqueNumberGeneratorUtilitiesImpl implements UniqueNumberGenerator
     public int getUniqueNumber() {
         return id++;
     }
+
+    @Override
+    public int reserve(int count) {
+        if (count < 1) throw new IllegalArgumentException();
+
+        int first = id;
+        id += count;
+        return first;
+    }
+
+    @Override
+    public void skipPast(int number) {
+        if (number >= id) {
+            id = number + 1;
+        }
+    }
 }
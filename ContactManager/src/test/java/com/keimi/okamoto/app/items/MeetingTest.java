@@ -54,7 +54,33 @@ public class MeetingTest {
         Calendar actual = aMeeting.getDate();
         Calendar expected = date;
 
-        assertSame(expected, actual);
+        assertEquals(expected.getTimeInMillis(), actual.getTimeInMillis());
+    }
+
+    /**
+     * Test that changing the Calendar the meeting was created
+     * with does not change the date of the meeting.
+     */
+    @Test
+    public void shouldNotChangeDateWhenTheCalendarIsChanged() {
+        long expected = date.getTimeInMillis();
+        date.add(Calendar.DATE, 1);
+
+        assertEquals(expected, aMeeting.getDate().getTimeInMillis());
+        assertEquals(expected, aMeeting.getTime());
+    }
+
+    /**
+     * Test for a meeting created with the date in milliseconds.
+     *
+     * @throws IllegalMeetingException if the set does not contain at least one contact.
+     */
+    @Test
+    public void shouldBeAbleToCreateMeetingWithDateInMilliseconds() throws IllegalMeetingException {
+        Meeting meeting = new MeetingImpl(1, date.getTimeInMillis(), aContactSet);
+
+        assertEquals(date.getTimeInMillis(), meeting.getTime());
+        assertEquals(date.getTimeInMillis(), meeting.getDate().getTimeInMillis());
     }
 
     /**
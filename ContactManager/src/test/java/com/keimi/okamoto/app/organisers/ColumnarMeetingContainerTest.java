@@ -0,0 +1,173 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.*;
+import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/*
+ * Test for ColumnarMeetingContainerImpl
+ */
+public class ColumnarMeetingContainerTest {
+    private MeetingContainer aMeetingContainer;
+    private UniqueNumberGeneratorUtilities aUniqueNumberGeneratorUtilities;
+    private Contact adam;
+    private Contact benny;
+    private Set<Contact> contactSet;
+
+    @Before
+    public void buildUp() {
+        ContactsContainer aContactsContainer = mock(ContactsContainer.class);
+        aUniqueNumberGeneratorUtilities = mock(UniqueNumberGeneratorUtilities.class);
+        adam = new ContactImpl("Adam", 1);
+        benny = new ContactImpl("Benny", 2);
+        when(aContactsContainer.getContact(1)).thenReturn(adam);
+        when(aContactsContainer.getContact(2)).thenReturn(benny);
+
+        contactSet = new HashSet<>();
+        contactSet.add(adam);
+        contactSet.add(benny);
+
+        aMeetingContainer = new ColumnarMeetingContainerImpl(aContactsContainer, aUniqueNumberGeneratorUtilities);
+    }
+
+    /*
+     * Test for addFutureMeeting() and getMeeting()
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToAddAndGetFutureMeeting() {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 1);
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(10);
+
+        int id = aMeetingContainer.addFutureMeeting(contactSet, date);
+        Meeting meeting = aMeetingContainer.getMeeting(id);
+
+        assertTrue(meeting instanceof FutureMeeting);
+        assertEquals(10, meeting.getId());
+        assertEquals(date.getTimeInMillis(), meeting.getDate().getTimeInMillis());
+        assertEquals(contactSet, meeting.getContacts());
+        assertNull(aMeetingContainer.getMeeting(11));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfFutureMeetingHasNoContacts() {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 1);
+
+        aMeetingContainer.addFutureMeeting(new HashSet<Contact>(), date);
+    }
+
+    /*
+     * Test for addPastMeeting() and convertToPastMeeting()
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToAddPastMeetingWithNotes() {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, -1);
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(20);
+
+        aMeetingContainer.addPastMeeting(contactSet, date, "Apollo budget agreed");
+        PastMeeting pastMeeting = aMeetingContainer.getPastMeeting(20);
+
+        assertEquals("Apollo budget agreed", pastMeeting.getNotes());
+        assertEquals(Collections.singleton(20), aMeetingContainer.searchNotes("apollo", false));
+        assertEquals(Arrays.asList(pastMeeting), aMeetingContainer.getPastMeetings(adam));
+    }
+
+    @Test
+    public void shouldBeAbleToConvertFutureMeetingToPastMeeting() {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 1);
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(30);
+        int id = aMeetingContainer.addFutureMeeting(contactSet, date);
+
+        aMeetingContainer.convertToPastMeeting(aMeetingContainer.getMeeting(id), "Some notes...");
+
+        assertTrue(aMeetingContainer.getMeeting(id) instanceof PastMeeting);
+        assertEquals("Some notes...", aMeetingContainer.getPastMeeting(id).getNotes());
+        assertTrue(aMeetingContainer.getFutureMeetings(benny).isEmpty());
+        assertEquals(1, aMeetingContainer.getPastMeetings(benny).size());
+    }
+
+    @Test
+    public void shouldReturnNullIfTheMeetingIsNotOfTheKindAskedFor() {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 1);
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(35);
+        int id = aMeetingContainer.addFutureMeeting(contactSet, date);
+
+        assertNull(aMeetingContainer.getPastMeeting(id));
+        aMeetingContainer.convertToPastMeeting(aMeetingContainer.getMeeting(id), "Some notes...");
+        assertNull(aMeetingContainer.getFutureMeeting(id));
+    }
+
+    @Test
+    public void shouldRestoreMeetingWithItsIdAndConvertItWhenRestoredWithNotes() {
+        long date = System.currentTimeMillis() - 86400000L;
+
+        aMeetingContainer.restoreMeeting(40, contactSet, date, null);
+        assertTrue(aMeetingContainer.getMeeting(40) instanceof FutureMeeting);
+
+        aMeetingContainer.restoreMeeting(40, contactSet, date, "Restored notes");
+        assertEquals("Restored notes", aMeetingContainer.getPastMeeting(40).getNotes());
+        assertEquals(date, aMeetingContainer.getMeeting(40).getTime());
+        verify(aUniqueNumberGeneratorUtilities, times(2)).skipPast(40);
+    }
+
+    /*
+     * Test for getMeetings(Calendar from, Calendar to) and getMeetingIdListBy(Calendar date)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToGetMeetingsInADateRangeInChronologicalOrder() {
+        Calendar date1 = Calendar.getInstance();
+        Calendar date2 = Calendar.getInstance();
+        Calendar date3 = Calendar.getInstance();
+        date1.add(Calendar.DATE, 4);
+        date2.add(Calendar.DATE, 2);
+        date3.add(Calendar.DATE, 9);
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(1, 2, 3);
+        aMeetingContainer.addFutureMeeting(contactSet, date1);
+        aMeetingContainer.addFutureMeeting(contactSet, date2);
+        aMeetingContainer.addFutureMeeting(contactSet, date3);
+
+        Calendar from = Calendar.getInstance();
+        Calendar to = Calendar.getInstance();
+        to.add(Calendar.DATE, 7);
+        List<Meeting> actual = aMeetingContainer.getMeetings(from, to);
+
+        assertEquals(2, actual.size());
+        assertEquals(2, actual.get(0).getId());
+        assertEquals(1, actual.get(1).getId());
+        assertEquals(Collections.singleton(3), aMeetingContainer.getMeetingIdListBy(date3));
+    }
+
+    @Test
+    public void shouldKeepDateOrderForMeetingsAddedBetweenQueries() {
+        long day = 86400000L;
+        long now = System.currentTimeMillis();
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(1, 2, 3, 4);
+        aMeetingContainer.addFutureMeeting(contactSet, now + 2 * day);
+        assertEquals(1, aMeetingContainer.getMeetings(now, now + 10 * day).size());
+
+        aMeetingContainer.addFutureMeeting(contactSet, now + 3 * day);
+        aMeetingContainer.addFutureMeeting(contactSet, now + 2 * day);
+        aMeetingContainer.addFutureMeeting(contactSet, now + day);
+        List<Integer> actual = new ArrayList<>();
+        for (Meeting meeting : aMeetingContainer.getMeetings(now, now + 10 * day)) {
+            actual.add(meeting.getId());
+        }
+
+        assertEquals(Arrays.asList(4, 1, 3, 2), actual);
+        assertTrue(aMeetingContainer.getMeetings(now + 10 * day, now).isEmpty());
+        assertEquals(2, aMeetingContainer.getMeetings(now + 2 * day, now + 3 * day).size());
+    }
+}
@@ -0,0 +1,321 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.utils.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/*
+ * Test for ConcurrentContactManagerImpl and the concurrent containers, with many threads at once
+ */
+public class ConcurrentContactManagerTest {
+    private static final long NOW = 1400000000000L;
+    private static final long DAY = 86400000L;
+    private static final int THREADS = 8;
+
+    private AtomicUniqueNumberGeneratorImpl numbers;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private ManualClockImpl clock;
+    private ExecutorService executor;
+    private File file;
+
+    @Before
+    public void buildUp() {
+        numbers = new AtomicUniqueNumberGeneratorImpl(64);
+        clock = new ManualClockImpl(NOW);
+        contactsContainer = new ConcurrentContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new ConcurrentMeetingContainerImpl(new MeetingFactoryImpl(), numbers, clock);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @Test
+    public void shouldGiveEveryContactAddedAtOnceAnIdOfItsOwn() throws Exception {
+        final ContactManager aContactManager = new ConcurrentContactManagerImpl(contactsContainer, meetingContainer, mock(DiskWriter.class));
+
+        runOnEveryThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < 500; i++) {
+                    aContactManager.addNewContact("Contact " + i, "Works on project Apollo");
+                }
+                return null;
+            }
+        });
+
+        assertEquals(THREADS * 500, contactsContainer.getAllContacts().size());
+        assertTrue(numbers.getHighWaterMark() >= THREADS * 500);
+        assertEquals(THREADS, aContactManager.getContacts("Contact 7").size());
+        assertEquals(THREADS * 500, aContactManager.searchContactNotes("apollo", true).size());
+        assertEquals(THREADS * 500, contactsContainer.takeChangedContactIds().size());
+        assertTrue(contactsContainer.takeChangedContactIds().isEmpty());
+    }
+
+    @Test
+    public void shouldIndexEveryMeetingAddedAndConvertedAtOnce() throws Exception {
+        final ContactManager aContactManager = new ConcurrentContactManagerImpl(contactsContainer, meetingContainer, mock(DiskWriter.class));
+        aContactManager.addNewContact("Adam", "");
+        aContactManager.addNewContact("Benny", "");
+        final Contact adam = aContactManager.getContacts("Adam").iterator().next();
+        final Contact benny = aContactManager.getContacts("Benny").iterator().next();
+
+        runOnEveryThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < 200; i++) {
+                    Set<Contact> both = new HashSet<>(Arrays.asList(adam, benny));
+                    aContactManager.addFutureMeeting(both, NOW + DAY + i);
+                    aContactManager.addNewPastMeeting(Collections.singleton(adam), NOW - DAY - i, "Notes " + i);
+                    assertFalse(aContactManager.getFutureMeetingList(benny).isEmpty());
+                }
+                return null;
+            }
+        });
+
+        assertEquals(THREADS * 200, aContactManager.getFutureMeetingList(benny).size());
+        assertEquals(THREADS * 200, aContactManager.getPastMeetingList(adam).size());
+        assertEquals(THREADS * 400, meetingContainer.getMeetingCount(adam));
+        List<Meeting> future = aContactManager.getFutureMeetingList(adam);
+        for (int i = 1; i < future.size(); i++) {
+            assertTrue(future.get(i - 1).getTime() <= future.get(i).getTime());
+        }
+        assertEquals(THREADS, aContactManager.searchMeetingNotes("199", true).size());
+    }
+
+    @Test
+    public void shouldNotLetTwoThreadsConvertTheSameMeetingIntoTwo() throws Exception {
+        int adamId = contactsContainer.addContact("Adam", "");
+        final Set<Contact> adam = Collections.singleton(contactsContainer.getContact(adamId));
+        final int meetingId = meetingContainer.addFutureMeeting(adam, NOW + DAY);
+        clock.advance(2 * DAY);
+
+        runOnEveryThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < 100; i++) {
+                    meetingContainer.convertToPastMeeting(meetingContainer.getMeeting(meetingId), "Notes " + i);
+                }
+                return null;
+            }
+        });
+
+        assertEquals(1, meetingContainer.getPastMeetings(adam.iterator().next()).size());
+        assertTrue(meetingContainer.getFutureMeetings(adam.iterator().next()).isEmpty());
+        assertEquals(1, meetingContainer.getMeetingCount(adam.iterator().next()));
+        assertEquals(Collections.singleton(meetingId), meetingContainer.searchNotes("99", true));
+        assertTrue(meetingContainer.searchNotes("98", true).isEmpty());
+    }
+
+    @Test
+    public void shouldCopyWhatIsOnDiskIntoTheConcurrentContainers() throws IOException {
+        file = Files.createTempFile("contacts", ".bin").toFile();
+        UniqueNumberGeneratorUtilities oldNumbers = new CountingNumbers();
+        ContactsContainer oldContacts = new ContactsContainerImpl(new ContactFactoryImpl(), oldNumbers);
+        MeetingContainer oldMeetings = new MeetingContainerImpl(new MeetingFactoryImpl(), oldNumbers, new ManualClockImpl(NOW));
+        int adamId = oldContacts.addContact("Adam", "Likes tea");
+        Set<Contact> adam = Collections.singleton(oldContacts.getContact(adamId));
+        int pastId = oldMeetings.addPastMeeting(adam, NOW - DAY, "Tea");
+        int futureId = oldMeetings.addFutureMeeting(adam, NOW + DAY);
+        new BinaryDiskWriterImpl(file.getPath(), new ContactFactoryImpl(), new MeetingFactoryImpl(), oldNumbers)
+                .writeToDisk(oldContacts, oldMeetings);
+
+        ContactManager aContactManager = new ConcurrentContactManagerImpl(contactsContainer, meetingContainer, new ReadOnlyDiskWriter(
+                new BinaryDiskWriterImpl(file.getPath(), new ContactFactoryImpl(), new MeetingFactoryImpl(), new CountingNumbers())));
+
+        Contact copied = contactsContainer.getContact(adamId);
+        assertEquals("Likes tea", copied.getNotes());
+        assertEquals("Tea", aContactManager.getPastMeeting(pastId).getNotes());
+        assertSame(copied, aContactManager.getFutureMeeting(futureId).getContacts().iterator().next());
+        assertTrue(contactsContainer.takeChangedContactIds().isEmpty());
+        assertTrue(meetingContainer.takeChangedMeetingIds().isEmpty());
+        assertTrue(numbers.getUniqueNumber() > futureId);
+    }
+
+    @Test
+    public void shouldNotFlushAChangeHalfMade() throws Exception {
+        final ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        DiskWriter aDiskWriter = new CheckingDiskWriter(seen);
+        final ContactManager aContactManager = new ConcurrentContactManagerImpl(contactsContainer, meetingContainer, aDiskWriter);
+
+        Future<?> flusher = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < 200; i++) {
+                    aContactManager.flush();
+                }
+                return null;
+            }
+        });
+        runOnEveryThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < 300; i++) {
+                    aContactManager.addNewContact("Contact " + i, "");
+                }
+                return null;
+            }
+        });
+        flusher.get();
+        aContactManager.flush();
+
+        assertEquals(THREADS * 300, seen.size());
+    }
+
+    @Test
+    public void shouldLetChangesGoOnWhileAnImportIsRead() throws Exception {
+        final ContactManager aContactManager = new ConcurrentContactManagerImpl(contactsContainer, meetingContainer, mock(DiskWriter.class));
+        PipedWriter records = new PipedWriter();
+        final CountDownLatch reading = new CountDownLatch(1);
+        final Reader in = new FilterReader(new PipedReader(records)) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                reading.countDown();
+                return super.read(buffer, offset, length);
+            }
+        };
+
+        Future<Integer> importing = executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                return aContactManager.importData(in, new CsvRecordFormatImpl());
+            }
+        });
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        Future<?> adding = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                aContactManager.addNewContact("Benny", "");
+            }
+        });
+        adding.get(10, TimeUnit.SECONDS);
+        assertFalse(importing.isDone());
+
+        records.write("contact,1,\"Adam\",\"\"\n");
+        records.close();
+
+        assertEquals(1, (int) importing.get(10, TimeUnit.SECONDS));
+        assertEquals(2, contactsContainer.getAllContacts().size());
+    }
+
+    private void runOnEveryThread(Callable<Void> task) throws Exception {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(task));
+        }
+        for (Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    /*
+     * A DiskWriter that checks every contact it is told about has been added and recorded before it is written
+     */
+    private static class CheckingDiskWriter implements DiskWriter {
+        private final Map<Integer, Boolean> seen;
+        private final Set<Integer> recorded = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+        private CheckingDiskWriter(Map<Integer, Boolean> seen) {
+            this.seen = seen;
+        }
+
+        @Override
+        public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+            for (int id : aContactsContainer.takeChangedContactIds()) {
+                assertTrue(recorded.contains(id));
+                seen.put(id, Boolean.TRUE);
+            }
+            return true;
+        }
+
+        @Override
+        public void recordContact(Contact aContact) {
+            recorded.add(aContact.getId());
+        }
+
+        @Override
+        public void recordMeeting(Meeting aMeeting) {
+        }
+
+        @Override
+        public boolean checkIfDataExists() {
+            return false;
+        }
+
+        @Override
+        public void readDisk() {
+        }
+
+        @Override
+        public ContactsContainer getContactContainer() {
+            return null;
+        }
+
+        @Override
+        public MeetingContainer getMeetingContainer() {
+            return null;
+        }
+    }
+
+    /*
+     * A DiskWriter that reads through another and writes nothing, so the flush of a manager's shutdown
+     * hook does not put back a file the test has deleted
+     */
+    private static class ReadOnlyDiskWriter implements DiskWriter {
+        private final DiskWriter aDiskWriter;
+
+        private ReadOnlyDiskWriter(DiskWriter aDiskWriter) {
+            this.aDiskWriter = aDiskWriter;
+        }
+
+        @Override
+        public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+            return true;
+        }
+
+        @Override
+        public void recordContact(Contact aContact) {
+        }
+
+        @Override
+        public void recordMeeting(Meeting aMeeting) {
+        }
+
+        @Override
+        public boolean checkIfDataExists() {
+            return aDiskWriter.checkIfDataExists();
+        }
+
+        @Override
+        public void readDisk() {
+            aDiskWriter.readDisk();
+        }
+
+        @Override
+        public ContactsContainer getContactContainer() {
+            return aDiskWriter.getContactContainer();
+        }
+
+        @Override
+        public MeetingContainer getMeetingContainer() {
+            return aDiskWriter.getMeetingContainer();
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        executor.shutdownNow();
+        if (file != null) {
+            file.delete();
+        }
+    }
+}
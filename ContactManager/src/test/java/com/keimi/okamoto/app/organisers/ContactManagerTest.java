@@ -1,16 +1,23 @@
 package com.keimi.okamoto.app.organisers;
 
 import com.keimi.okamoto.app.items.*;
+import com.keimi.okamoto.app.utils.CsvRecordFormatImpl;
 import com.keimi.okamoto.app.utils.DiskWriter;
 import com.keimi.okamoto.app.utils.IllegalMeetingException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Matchers;
 
+import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
@@ -45,6 +52,7 @@ public class ContactManagerTest {
         aMeeting = mock(Meeting.class);
         aPastMeeting = mock(PastMeeting.class);
         aDiskWriter = mock(DiskWriter.class);
+        when(aDiskWriter.writeToDisk(any(ContactsContainer.class), any(MeetingContainer.class))).thenReturn(true);
 
         aContactManager = new ContactManagerImpl(aContactContainer, aMeetingContainer, aDiskWriter);
         notes = "Some notes go here";
@@ -61,6 +69,15 @@ public class ContactManagerTest {
         verify(aContactContainer).addContact(name, notes);
     }
 
+    @Test
+    public void shouldRecordTheNewContactWithTheDiskWriter() {
+        when(aContactContainer.addContact(name, notes)).thenReturn(3);
+        when(aContactContainer.getContact(3)).thenReturn(aContact);
+
+        aContactManager.addNewContact(name, notes);
+        verify(aDiskWriter).recordContact(aContact);
+    }
+
     @Test(expected = NullPointerException.class)
     public void shouldThrowNullPointerExceptionIfNameIsEmpty() throws NullPointerException {
         aContactManager.addNewContact(null, notes);
@@ -117,6 +134,61 @@ public class ContactManagerTest {
         aContactManager.getContacts(name);
     }
 
+    /*
+     * Test for getContactsByPrefix(String prefix, int limit, boolean rankByMeetings)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToGetContactsByPrefix() {
+        List<Contact> expected = Arrays.asList(aContact);
+        when(aContactContainer.getContactsByPrefix("Ad", 5)).thenReturn(expected);
+
+        List<Contact> actual = aContactManager.getContactsByPrefix("Ad", 5, false);
+
+        assertEquals(expected, actual);
+        verify(aMeetingContainer, never()).getMeetingCount(any(Contact.class));
+    }
+
+    @Test
+    public void shouldBeAbleToGetContactsByPrefixRankedByNumberOfMeetings() {
+        Contact adam = mock(Contact.class);
+        Contact adrian = mock(Contact.class);
+        Contact ada = mock(Contact.class);
+        when(aContactContainer.iterateContactsByPrefix("Ad")).thenReturn(Arrays.asList(ada, adam, adrian).iterator());
+        when(aMeetingContainer.getMeetingCount(ada)).thenReturn(1);
+        when(aMeetingContainer.getMeetingCount(adam)).thenReturn(5);
+        when(aMeetingContainer.getMeetingCount(adrian)).thenReturn(3);
+
+        List<Contact> actual = aContactManager.getContactsByPrefix("Ad", 2, true);
+
+        assertEquals(Arrays.asList(adam, adrian), actual);
+    }
+
+    @Test
+    public void shouldKeepNameOrderBetweenContactsWithAsManyMeetings() {
+        Contact adam = mock(Contact.class);
+        Contact adrian = mock(Contact.class);
+        Contact ada = mock(Contact.class);
+        when(aContactContainer.iterateContactsByPrefix("Ad"))
+                .thenReturn(Arrays.asList(ada, adam, adrian).iterator(), Arrays.asList(ada, adam, adrian).iterator());
+        when(aMeetingContainer.getMeetingCount(ada)).thenReturn(3);
+        when(aMeetingContainer.getMeetingCount(adam)).thenReturn(3);
+        when(aMeetingContainer.getMeetingCount(adrian)).thenReturn(5);
+
+        assertEquals(Arrays.asList(adrian, ada), aContactManager.getContactsByPrefix("Ad", 2, true));
+        assertEquals(Arrays.asList(adrian, ada, adam), aContactManager.getContactsByPrefix("Ad", 10, true));
+    }
+
+    @Test (expected = NullPointerException.class)
+    public void shouldThrowNullPointerExceptionIfPrefixIsNull() {
+        aContactManager.getContactsByPrefix(null, 5, false);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfLimitIsLessThanOne() {
+        aContactManager.getContactsByPrefix("Ad", 0, false);
+    }
+
     /*
     * Test for addFutureMeeting(Set contacts, Calendar date)
     * Starts here:
@@ -167,7 +239,7 @@ public class ContactManagerTest {
     @Test
     public void shouldReturnTheFutureMeetingWithTheRequestedId() {
         int id = 1;
-        Calendar date = Calendar.getInstance();
+        long date = System.currentTimeMillis();
 
         when(aMeetingContainer.getFutureMeeting(anyInt())).thenReturn(aFutureMeeting);
         when(aMeetingContainer.checkForPast(date)).thenReturn(false);
@@ -179,9 +251,9 @@ public class ContactManagerTest {
 
     @Test (expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionIfThereIsAMeetingWithThatIdHappeningInThePast() {
-        Calendar date = Calendar.getInstance();
+        long date = System.currentTimeMillis();
 
-        when(aFutureMeeting.getDate()).thenReturn(date);
+        when(aFutureMeeting.getTime()).thenReturn(date);
         when(aMeetingContainer.getFutureMeeting(anyInt())).thenReturn(aFutureMeeting);
         when(aMeetingContainer.checkForPast(date)).thenReturn(true);
         aContactManager.getFutureMeeting(1);
@@ -310,9 +382,9 @@ public class ContactManagerTest {
     @Test (expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionIfThereIsAMeetingWithThatIdHappeningInTheFuture() {
         int id = 0;
-        Calendar date = Calendar.getInstance();
+        long date = System.currentTimeMillis();
 
-        when(aPastMeeting.getDate()).thenReturn(date);
+        when(aPastMeeting.getTime()).thenReturn(date);
         when(aMeetingContainer.getPastMeeting(anyInt())).thenReturn(aPastMeeting);
         when(aMeetingContainer.checkForFuture(eq(date))).thenReturn(true);
         aContactManager.getPastMeeting(id);
@@ -324,17 +396,26 @@ public class ContactManagerTest {
      */
     @Test
     public void shouldBeAbleToAddMeetingNotes() {
-        Calendar date = Calendar.getInstance();
+        long date = System.currentTimeMillis();
         String notes = "Some notes...";
 
         when(aMeetingContainer.getMeeting(anyInt())).thenReturn(aFutureMeeting);
         when(aMeetingContainer.checkForFuture(eq(date))).thenReturn(false);
-        when(aFutureMeeting.getDate()).thenReturn(date);
+        when(aFutureMeeting.getTime()).thenReturn(date);
 
         aContactManager.addMeetingNotes(0, notes);
         verify(aMeetingContainer).convertToPastMeeting(aFutureMeeting, notes);
     }
 
+    @Test
+    public void shouldRecordTheMeetingWithTheDiskWriterWhenAddingNotes() {
+        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(aFutureMeeting, aPastMeeting);
+        when(aMeetingContainer.checkForFuture(anyLong())).thenReturn(false);
+
+        aContactManager.addMeetingNotes(0, "Some notes...");
+        verify(aDiskWriter).recordMeeting(aPastMeeting);
+    }
+
     @Test (expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionIfTheMeetingDoesNotExist() {
         String notes = "Some notes...";
@@ -345,12 +426,12 @@ public class ContactManagerTest {
 
     @Test (expected = IllegalStateException.class)
     public void  IllegalStateExceptionIfTheMeetingIsSetForADateInTheFuture() {
-        Calendar date = Calendar.getInstance();
+        long date = System.currentTimeMillis();
         String notes = "Some notes...";
 
         when(aMeetingContainer.getMeeting(anyInt())).thenReturn(aFutureMeeting);
         when(aMeetingContainer.checkForFuture(eq(date))).thenReturn(true);
-        when(aFutureMeeting.getDate()).thenReturn(date);
+        when(aFutureMeeting.getTime()).thenReturn(date);
 
         aContactManager.addMeetingNotes(0, notes);
     }
@@ -370,105 +451,107 @@ public class ContactManagerTest {
         Calendar date = Calendar.getInstance();
         date.add(Calendar.DATE, 2);
         Set<Contact> contactSet = new HashSet<>();
-        Set<Integer> meetingIds = new HashSet<>();
-        meetingIds.add(1);
-        meetingIds.add(2);
-        meetingIds.add(3);
-        meetingIds.add(4);
 
         FutureMeeting fm1 = futureMeetingMaker(1, date, contactSet);
         FutureMeeting fm2 = futureMeetingMaker(2, date, contactSet);
-        FutureMeeting fm3 = futureMeetingMaker(3, date, contactSet);
-        FutureMeeting fm4 = futureMeetingMaker(4, date, contactSet);
-
-        when(aMeetingContainer.getMeetingIdListBy(eq(aContact))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1,fm2,fm3,fm4);
+        List<FutureMeeting> expected = Arrays.asList(fm1, fm2);
 
-        List<FutureMeeting> expected = Arrays.asList(fm1,fm2, fm3, fm4);
+        when(aMeetingContainer.getFutureMeetings(eq(aContact))).thenReturn(expected);
 
         List<FutureMeeting> actual = (List<FutureMeeting>) (List<?>) aContactManager.getFutureMeetingList(aContact);
 
         assertEquals(expected, actual);
-        verify(aMeetingContainer,times(4)).getMeeting(anyInt());
+        verify(aMeetingContainer, never()).getMeeting(anyInt());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfTheContactDoesNotExist() throws IllegalMeetingException {
+        when(aContactContainer.checkForValidName(anyString())).thenReturn(false);
+        aContactManager.getFutureMeetingList(aContact);
     }
 
     @Test
-    public void shouldBeAbleToReturnListOfOnlyFutureMeetingsScheduledWithThisContact() {
+    public void shouldReturnAnEmptyListIfThereAreNoFutureMeetingsWithThisContact() {
         when(aContactContainer.checkForValidName(aContact.getName())).thenReturn(true);
+        when(aMeetingContainer.getFutureMeetings(eq(aContact))).thenReturn(new ArrayList<FutureMeeting>());
 
-        Set<Integer> meetingIds = new HashSet<>();
-        meetingIds.add(1);
-        meetingIds.add(2);
-        meetingIds.add(3);
-        meetingIds.add(4);
+        List<Meeting> actual = aContactManager.getFutureMeetingList(aContact);
 
+        assertEquals(Arrays.asList(), actual);
+    }
+
+    /*
+     * Test for getPastMeetingList(Contact contact)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToReturnListPastMeetingsScheduledWithThisContact() {
+        when(aContactContainer.checkForValidName(aContact.getName())).thenReturn(true);
         Calendar date = Calendar.getInstance();
-        date.add(Calendar.DATE, 2);
+        date.add(Calendar.DATE, -2);
+        String notes = "Some notes go here...";
         Set<Contact> contactSet = new HashSet<>();
-        FutureMeeting fm1 = futureMeetingMaker(1, date, contactSet);
-        FutureMeeting fm2 = futureMeetingMaker(2, date, contactSet);
-        FutureMeeting fm4 = futureMeetingMaker(3, date, contactSet);
 
-        when(aMeetingContainer.getMeetingIdListBy(eq(aContact))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1,fm2,null,fm4);
+        PastMeeting pm1 = pastMeetingMaker(1, date, notes, contactSet);
+        PastMeeting pm2 = pastMeetingMaker(2, date, notes, contactSet);
+        List<PastMeeting> expected = Arrays.asList(pm1, pm2);
 
-        List<FutureMeeting> expected = Arrays.asList(fm1,fm2,fm4);
+        when(aMeetingContainer.getPastMeetings(eq(aContact))).thenReturn(expected);
 
-        List<FutureMeeting> actual = (List<FutureMeeting>) (List<?>) aContactManager.getFutureMeetingList(aContact);
+        List<PastMeeting> actual = aContactManager.getPastMeetingList(aContact);
 
         assertEquals(expected, actual);
-        verify(aMeetingContainer,times(4)).getMeeting(anyInt());
+        verify(aMeetingContainer, never()).getMeeting(anyInt());
     }
 
     @Test (expected = IllegalArgumentException.class)
-    public void shouldThrowIllegalArgumentExceptionIfTheContactDoesNotExist() throws IllegalMeetingException {
+    public void shouldThrowIllegalArgumentExceptionIfTheContactDoesNotExistInPastMeeting() throws IllegalMeetingException {
         when(aContactContainer.checkForValidName(anyString())).thenReturn(false);
-        aContactManager.getFutureMeetingList(aContact);
+        aContactManager.getPastMeetingList(aContact);
     }
 
     @Test
-    public void shouldReturnListOfFutureMeetingsInChronologicalOrder() {
+    public void shouldReturnAnEmptyListIfThereAreNoPastMeetingsWithThisContact() {
         when(aContactContainer.checkForValidName(aContact.getName())).thenReturn(true);
+        when(aMeetingContainer.getPastMeetings(eq(aContact))).thenReturn(new ArrayList<PastMeeting>());
+
+        List<PastMeeting> actual = aContactManager.getPastMeetingList(aContact);
+
+        assertEquals(Arrays.asList(), actual);
+    }
 
+    /*
+     * Test for getFutureMeetingList(Date aDate)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToReturnListOfOnlyFutureMeetingsAccordingToDate() {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 2);
+        Set<Contact> contactSet = new HashSet<>();
         Set<Integer> meetingIds = new HashSet<>();
         meetingIds.add(1);
         meetingIds.add(2);
         meetingIds.add(3);
         meetingIds.add(4);
-        meetingIds.add(5);
-
-        Calendar date1 = Calendar.getInstance();
-        Calendar date2= Calendar.getInstance();
-        Calendar date3 = Calendar.getInstance();
-        Calendar date4 = Calendar.getInstance();
-        Calendar date5 = Calendar.getInstance();
-        date1.add(Calendar.DATE, 3);
-        date2.add(Calendar.DATE, 1);
-        date3.add(Calendar.DATE, 2);
-        date4.add(Calendar.DATE, 5);
-        date5.add(Calendar.DATE, 4);
-
-        Set<Contact> contactSet = new HashSet<>();
 
-        FutureMeeting fm1 = futureMeetingMaker(1, date1, contactSet);
-        FutureMeeting fm2 = futureMeetingMaker(1, date2, contactSet);
-        FutureMeeting fm3 = futureMeetingMaker(1, date3, contactSet);
-        FutureMeeting fm4 = futureMeetingMaker(1, date4, contactSet);
-        FutureMeeting fm5 = futureMeetingMaker(1, date5, contactSet);
+        FutureMeeting fm1 = futureMeetingMaker(1, date, contactSet);
+        FutureMeeting fm2 = futureMeetingMaker(2, date, contactSet);
+        FutureMeeting fm3 = futureMeetingMaker(3, date, contactSet);
+        FutureMeeting fm4 = futureMeetingMaker(4, date, contactSet);
 
-        when(aMeetingContainer.getMeetingIdListBy(eq(aContact))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1,fm2,fm3,fm4,fm5);
+        when(aMeetingContainer.getMeetingIdListBy(eq(date))).thenReturn(meetingIds);
+        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1,fm2,fm3,fm4);
 
-        List<FutureMeeting> expected = Arrays.asList(fm2,fm3,fm1,fm5,fm4);
-        List<FutureMeeting> actual = (List<FutureMeeting>) (List<?>) aContactManager.getFutureMeetingList(aContact);
+        List<FutureMeeting> expected = Arrays.asList(fm1,fm2, fm3, fm4);
+        List<FutureMeeting> actual = (List<FutureMeeting>) (List<?>) aContactManager.getFutureMeetingList(date);
 
         assertEquals(expected, actual);
-        verify(aMeetingContainer,times(5)).getMeeting(anyInt());
+        verify(aMeetingContainer,times(4)).getMeeting(anyInt());
     }
 
     @Test
-    public void shouldReturnAnEmptyListIfMeetingIdListIsEmptyForFutureMeeting() {
-        when(aContactContainer.checkForValidName(aContact.getName())).thenReturn(true);
+    public void shouldReturnAnEmptyListIfMeetingIdListIsEmptyForFutureMeetingAccordingToDate() {
 
         Set<Integer> meetingIds = null;
 
@@ -477,212 +560,190 @@ public class ContactManagerTest {
         Set<Contact> contactSet = new HashSet<>();
         FutureMeeting fm1 = futureMeetingMaker(1, date1, contactSet);
 
-        when(aMeetingContainer.getMeetingIdListBy(eq(aContact))).thenReturn(meetingIds);
+        when(aMeetingContainer.getMeetingIdListBy(eq(date1))).thenReturn(meetingIds);
         when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1);
 
         List<FutureMeeting> expected = Arrays.asList();
-        List<FutureMeeting> actual = (List<FutureMeeting>) (List<?>) aContactManager.getFutureMeetingList(aContact);
+        List<FutureMeeting> actual = (List<FutureMeeting>) (List<?>) aContactManager.getFutureMeetingList(date1);
 
         assertEquals(expected, actual);
         verify(aMeetingContainer,never()).getMeeting(anyInt());
     }
 
     /*
-     * Test for getPastMeetingList(Contact contact)
+     * Test for searchContactNotes() and searchMeetingNotes()
      * Starts here:
      */
     @Test
-    public void shouldBeAbleToReturnListPastMeetingsScheduledWithThisContact() {
-        when(aContactContainer.checkForValidName(aContact.getName())).thenReturn(true);
-        Calendar date = Calendar.getInstance();
-        date.add(Calendar.DATE, 2);
-        String notes = "Some notes go here...";
-        Set<Contact> contactSet = new HashSet<>();
-
-        Set<Integer> meetingIds = new HashSet<>();
-        meetingIds.add(1);
-        meetingIds.add(2);
-        meetingIds.add(3);
-        meetingIds.add(4);
-
-        int id1 = 1;
-        int id2 = 2;
-        int id3 = 3;
-        int id4 = 4;
-        PastMeeting pm1 = pastMeetingMaker(id1, date, notes, contactSet);
-        PastMeeting pm2 = pastMeetingMaker(id2, date, notes, contactSet);
-        PastMeeting pm3 = pastMeetingMaker(id3, date, notes, contactSet);
-        PastMeeting pm4 = pastMeetingMaker(id4, date, notes, contactSet);
+    public void shouldBeAbleToSearchNotes() {
+        Set<Integer> expected = new HashSet<>(Arrays.asList(1, 2));
+        when(aContactContainer.searchNotes("apollo", true)).thenReturn(expected);
+        when(aMeetingContainer.searchNotes("apollo", false)).thenReturn(expected);
 
-        when(aMeetingContainer.getMeetingIdListBy(eq(aContact))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(pm1,pm2,pm3,pm4);
+        assertEquals(expected, aContactManager.searchContactNotes("apollo", true));
+        assertEquals(expected, aContactManager.searchMeetingNotes("apollo", false));
+    }
 
-        List<PastMeeting> expected = Arrays.asList(pm1,pm2, pm3, pm4);
+    @Test (expected = NullPointerException.class)
+    public void shouldThrowNullPointerExceptionIfNotesQueryIsNull() {
+        aContactManager.searchMeetingNotes(null, true);
+    }
 
-        List<PastMeeting> actual = (List<PastMeeting>) (List<?>) aContactManager.getPastMeetingList(aContact);
+    /*
+     * Test for getMeetings(Calendar from, Calendar to) and getMeetings(Contact contact, Calendar from, Calendar to)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToGetMeetingsInADateRange() {
+        Calendar from = Calendar.getInstance();
+        Calendar to = Calendar.getInstance();
+        to.add(Calendar.DATE, 7);
+        List<Meeting> expected = Arrays.asList(aMeeting);
+        when(aMeetingContainer.getMeetings(from, to)).thenReturn(expected);
 
-        assertEquals(expected, actual);
-        verify(aMeetingContainer,times(4)).getMeeting(anyInt());
+        assertEquals(expected, aContactManager.getMeetings(from, to));
     }
 
     @Test
-    public void shouldBeAbleToReturnListOfOnlyPastMeetingsScheduledWithThisContact() {
-        when(aContactContainer.checkForValidName(aContact.getName())).thenReturn(true);
+    public void shouldBeAbleToGetMeetingsWithAContactInADateRange() {
+        Calendar from = Calendar.getInstance();
+        Calendar to = Calendar.getInstance();
+        to.add(Calendar.DATE, 7);
+        List<Meeting> expected = Arrays.asList(aMeeting);
+        when(aContactContainer.checkForValidId(anyInt())).thenReturn(true);
+        when(aMeetingContainer.getMeetings(aContact, from, to)).thenReturn(expected);
 
-        Set<Integer> meetingIds = new HashSet<>();
-        meetingIds.add(1);
-        meetingIds.add(2);
-        meetingIds.add(3);
-        meetingIds.add(4);
+        assertEquals(expected, aContactManager.getMeetings(aContact, from, to));
+    }
 
-        Calendar date = Calendar.getInstance();
-        date.add(Calendar.DATE, 2);
-        String notes = "Some notes go here...";
-        Set<Contact> contactSet = new HashSet<>();
-        PastMeeting fm1 = pastMeetingMaker(1, date, notes, contactSet);
-        PastMeeting fm2 = pastMeetingMaker(2, date, notes, contactSet);
-        PastMeeting fm4 = pastMeetingMaker(3, date, notes, contactSet);
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfRangeStartsAfterItEnds() {
+        Calendar from = Calendar.getInstance();
+        Calendar to = Calendar.getInstance();
+        from.add(Calendar.DATE, 7);
 
-        when(aMeetingContainer.getMeetingIdListBy(eq(aContact))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1,fm2,null,fm4);
+        aContactManager.getMeetings(from, to);
+    }
 
-        List<PastMeeting> expected = Arrays.asList(fm1,fm2,fm4);
-        List<PastMeeting> actual = aContactManager.getPastMeetingList(aContact);
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfTheContactDoesNotExistInDateRange() {
+        when(aContactContainer.checkForValidId(anyInt())).thenReturn(false);
 
-        assertEquals(expected, actual);
-        verify(aMeetingContainer,times(4)).getMeeting(anyInt());
+        aContactManager.getMeetings(aContact, Calendar.getInstance(), Calendar.getInstance());
     }
 
-    @Test (expected = IllegalArgumentException.class)
-    public void shouldThrowIllegalArgumentExceptionIfTheContactDoesNotExistInPastMeeting() throws IllegalMeetingException {
-        when(aContactContainer.checkForValidName(anyString())).thenReturn(false);
-        aContactManager.getPastMeetingList(aContact);
+    @Test (expected = NullPointerException.class)
+    public void shouldThrowNullPointerExceptionIfRangeIsNull() {
+        aContactManager.getMeetings(null, Calendar.getInstance());
     }
 
     /*
-     * Test for getPastMeetingList(Contact contact)
+     * Tests for the overloads taking dates in milliseconds
      * Starts here:
      */
     @Test
-    public void shouldReturnListOfPastMeetingsInChronologicalOrder() {
-        when(aContactContainer.checkForValidName(aContact.getName())).thenReturn(true);
-
-        Set<Integer> meetingIds = new HashSet<>();
-        meetingIds.add(1);
-        meetingIds.add(2);
-        meetingIds.add(3);
-        meetingIds.add(4);
-        meetingIds.add(5);
-
-        Calendar date1 = Calendar.getInstance();
-        Calendar date2= Calendar.getInstance();
-        Calendar date3 = Calendar.getInstance();
-        Calendar date4 = Calendar.getInstance();
-        Calendar date5 = Calendar.getInstance();
-        date1.add(Calendar.DATE, -3);
-        date2.add(Calendar.DATE, -1);
-        date3.add(Calendar.DATE, -2);
-        date4.add(Calendar.DATE, -5);
-        date5.add(Calendar.DATE, -4);
-
-        Set<Contact> contactSet = new HashSet<>();
-        String notes = "Some notes go here...";
-
-        PastMeeting pm1 = pastMeetingMaker(1, date1, notes, contactSet);
-        PastMeeting pm2 = pastMeetingMaker(2, date2, notes, contactSet);
-        PastMeeting pm3 = pastMeetingMaker(3, date3, notes, contactSet);
-        PastMeeting pm4 = pastMeetingMaker(4, date4, notes, contactSet);
-        PastMeeting pm5 = pastMeetingMaker(5, date5, notes, contactSet);
-
-        when(aMeetingContainer.getMeetingIdListBy(eq(aContact))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(pm1,pm2,pm3,pm4,pm5);
-
-        List<PastMeeting> expected = Arrays.asList(pm4,pm5,pm1,pm3,pm2);
-        List<PastMeeting> actual = aContactManager.getPastMeetingList(aContact);
+    public void shouldBeAbleToAddFutureMeetingWithDateInMilliseconds() {
+        Set<Contact> aSetOfContacts = new HashSet<>();
+        long date = System.currentTimeMillis() + 86400000L;
+        when(aMeetingContainer.checkForFuture(date)).thenReturn(true);
+        when(aContactContainer.checkForValidSetOfContacts(anySet())).thenReturn(true);
 
-        assertEquals(expected, actual);
-        verify(aMeetingContainer,times(5)).getMeeting(anyInt());
+        aContactManager.addFutureMeeting(aSetOfContacts, date);
+        verify(aMeetingContainer).addFutureMeeting(aSetOfContacts, date);
     }
 
     @Test
-    public void shouldReturnAnEmptyListIfMeetingIdListIsEmptyForPastMeeting() {
-        when(aContactContainer.checkForValidName(aContact.getName())).thenReturn(true);
-
-        Set<Integer> meetingIds = null;
+    public void shouldBeAbleToAddNewPastMeetingWithDateInMilliseconds() {
+        Set<Contact> aSetOfContacts = new HashSet<>();
+        aSetOfContacts.add(aContact);
+        long date = System.currentTimeMillis() - 86400000L;
+        when(aContactContainer.checkForValidSetOfContacts(aSetOfContacts)).thenReturn(true);
 
-        Calendar date1 = Calendar.getInstance();
-        date1.add(Calendar.DATE, -1);
-        Set<Contact> contactSet = new HashSet<>();
-        String notes = "Some notes...";
-        PastMeeting fm1 = pastMeetingMaker(1, date1, notes, contactSet);
+        aContactManager.addNewPastMeeting(aSetOfContacts, date, notes);
+        verify(aMeetingContainer).addPastMeeting(aSetOfContacts, date, notes);
+    }
 
-        when(aMeetingContainer.getMeetingIdListBy(eq(aContact))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1);
+    @Test
+    public void shouldBeAbleToGetMeetingsInADateRangeInMilliseconds() {
+        long from = System.currentTimeMillis();
+        long to = from + 86400000L;
+        List<Meeting> expected = Arrays.asList(aMeeting);
+        when(aContactContainer.checkForValidId(anyInt())).thenReturn(true);
+        when(aMeetingContainer.getMeetings(from, to)).thenReturn(expected);
+        when(aMeetingContainer.getMeetings(aContact, from, to)).thenReturn(expected);
 
-        List<PastMeeting> expected = Arrays.asList();
-        List<PastMeeting> actual = aContactManager.getPastMeetingList(aContact);
+        assertEquals(expected, aContactManager.getMeetings(from, to));
+        assertEquals(expected, aContactManager.getMeetings(aContact, from, to));
+    }
 
-        assertEquals(expected, actual);
-        verify(aMeetingContainer,never()).getMeeting(anyInt());
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfRangeInMillisecondsStartsAfterItEnds() {
+        aContactManager.getMeetings(1000L, 0L);
     }
 
     /*
-     * Test for getFutureMeetingList(Date aDate)
+     * Test for flush()
      * Starts here:
      */
     @Test
-    public void shouldBeAbleToReturnListOfOnlyFutureMeetingsAccordingToDate() {
-        Calendar date = Calendar.getInstance();
-        date.add(Calendar.DATE, 2);
-        Set<Contact> contactSet = new HashSet<>();
-        Set<Integer> meetingIds = new HashSet<>();
-        meetingIds.add(1);
-        meetingIds.add(2);
-        meetingIds.add(3);
-        meetingIds.add(4);
+    public void shouldBeAbleToWriteToDisk() {
+        aContactManager.flush();
+        verify(aDiskWriter).writeToDisk(eq(aContactContainer), eq(aMeetingContainer));
+    }
 
-        FutureMeeting fm1 = futureMeetingMaker(1, date, contactSet);
-        FutureMeeting fm2 = futureMeetingMaker(2, date, contactSet);
-        FutureMeeting fm3 = futureMeetingMaker(3, date, contactSet);
-        FutureMeeting fm4 = futureMeetingMaker(4, date, contactSet);
+    /*
+     * Test for flushAsync()
+     * Starts here:
+     */
+    @Test
+    public void shouldWriteToDiskStraightAwayWithoutAPersistenceService() throws Exception {
+        Future<Void> commit = aContactManager.flushAsync();
 
-        when(aMeetingContainer.getMeetingIdListBy(eq(date))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1,fm2,fm3,fm4);
+        assertTrue(commit.isDone());
+        commit.get();
+        verify(aDiskWriter).writeToDisk(eq(aContactContainer), eq(aMeetingContainer));
+    }
 
-        List<FutureMeeting> expected = Arrays.asList(fm1,fm2, fm3, fm4);
-        List<FutureMeeting> actual = (List<FutureMeeting>) (List<?>) aContactManager.getFutureMeetingList(date);
+    @Test (expected = ExecutionException.class)
+    public void shouldFailTheFutureWhenTheDataCannotBeWritten() throws Exception {
+        when(aDiskWriter.writeToDisk(any(ContactsContainer.class), any(MeetingContainer.class))).thenReturn(false);
+        aContactManager = new ContactManagerImpl(aContactContainer, aMeetingContainer, aDiskWriter, 3600000L, 10);
 
-        assertEquals(expected, actual);
-        verify(aMeetingContainer,times(4)).getMeeting(anyInt());
+        aContactManager.flushAsync().get(5, TimeUnit.SECONDS);
     }
 
     @Test
-    public void shouldReturnAnEmptyListIfMeetingIdListIsEmptyForFutureMeetingAccordingToDate() {
+    public void shouldWriteChangesInTheBackgroundOnceTheWindowIsFull() throws Exception {
+        when(aContactContainer.addContact(anyString(), anyString())).thenReturn(1, 2);
+        aContactManager = new ContactManagerImpl(aContactContainer, aMeetingContainer, aDiskWriter, 3600000L, 2);
 
-        Set<Integer> meetingIds = null;
+        aContactManager.addNewContact("Adam", notes);
+        aContactManager.addNewContact("Benny", notes);
 
-        Calendar date1 = Calendar.getInstance();
-        date1.add(Calendar.DATE, -1);
-        Set<Contact> contactSet = new HashSet<>();
-        FutureMeeting fm1 = futureMeetingMaker(1, date1, contactSet);
-
-        when(aMeetingContainer.getMeetingIdListBy(eq(date1))).thenReturn(meetingIds);
-        when(aMeetingContainer.getMeeting(anyInt())).thenReturn(fm1);
-
-        List<FutureMeeting> expected = Arrays.asList();
-        List<FutureMeeting> actual = (List<FutureMeeting>) (List<?>) aContactManager.getFutureMeetingList(date1);
-
-        assertEquals(expected, actual);
-        verify(aMeetingContainer,never()).getMeeting(anyInt());
+        verify(aDiskWriter, timeout(5000)).writeToDisk(eq(aContactContainer), eq(aMeetingContainer));
+        aContactManager.flushAsync().get();
+        verify(aDiskWriter, times(2)).writeToDisk(eq(aContactContainer), eq(aMeetingContainer));
     }
 
     /*
-     * Test for flush()
+     * Test for importData()
      * Starts here:
      */
     @Test
-    public void shouldBeAbleToWriteToDisk() {
-        aContactManager.flush();
+    public void shouldAddImportedRecordsInOneBatchAndWriteThemOnce() throws Exception {
+        when(aContactContainer.addContacts(Matchers.<List<String>>any(), Matchers.<List<String>>any())).thenReturn(10);
+        when(aContactContainer.getContact(11)).thenReturn(aContact);
+        when(aMeetingContainer.checkForPast(1000L)).thenReturn(true);
+        String records = "contact,1,\"Adam\",\"\"\ncontact,2,\"Benny\",\"\"\nmeeting,7,1000,2,\"Went well\"\n";
+
+        int count = aContactManager.importData(new StringReader(records), new CsvRecordFormatImpl());
+
+        assertEquals(3, count);
+        verify(aContactContainer).addContacts(Arrays.asList("Adam", "Benny"), Arrays.asList("", ""));
+        verify(aMeetingContainer).addMeetings(eq(Collections.singletonList(Collections.singleton(aContact))),
+                eq(new long[]{1000}), eq(Collections.singletonList("Went well")));
+        verify(aContactContainer, never()).addContact(anyString(), anyString());
+        verify(aDiskWriter, never()).recordContact(Matchers.<Contact>any());
         verify(aDiskWriter).writeToDisk(eq(aContactContainer), eq(aMeetingContainer));
     }
 
@@ -11,11 +11,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /*
@@ -140,11 +143,84 @@ public class ContactsContainerTest {
         assertFalse(aContactContainer.checkForValidName("Terry"));
     }
 
+    @Test
+    public void shouldNoLongerFindNameOfAContactThatHasBeenReplaced() {
+        addContact("Adam", 1, "Some notes about Adam...");
+        addContact("Terry", 1, "Some notes about Terry...");
+
+        assertFalse(aContactContainer.checkForValidName("Adam"));
+        assertTrue(aContactContainer.getContacts("Adam").isEmpty());
+        assertTrue(aContactContainer.checkForValidName("Terry"));
+    }
+
     @Test (expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionIfNameParameterIsNullWhenCheckingForValidName() {
         aContactContainer.checkForValidName(null);
     }
 
+    /*
+     * Test for getContactsByPrefix(String prefix, int limit)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToGetContactsByPrefixInAlphabeticalOrder() {
+        addContact("Benny", 1, "Some notes about Benny...");
+        addContact("adam", 2, "Some notes about Adam...");
+        addContact("Terry", 3, "Some notes about Terry...");
+        addContact("Abby", 4, "Some notes about Abby...");
+
+        List<Contact> actual = aContactContainer.getContactsByPrefix("a", 10);
+
+        assertEquals(2, actual.size());
+        assertEquals("Abby", actual.get(0).getName());
+        assertEquals("adam", actual.get(1).getName());
+    }
+
+    @Test
+    public void shouldReturnNoMoreThanTheLimitOfContactsByPrefix() {
+        addContact("Adam", 1, "Some notes about Adam...");
+        addContact("Abby", 2, "Some notes about Abby...");
+        addContact("Alan", 3, "Some notes about Alan...");
+
+        assertEquals(2, aContactContainer.getContactsByPrefix("A", 2).size());
+        assertTrue(aContactContainer.getContactsByPrefix("Z", 2).isEmpty());
+    }
+
+    @Test
+    public void shouldIterateOverOnlyTheContactsWithThePrefix() {
+        addContact("Benny", 1, "Some notes about Benny...");
+        addContact("adam", 2, "Some notes about Adam...");
+        addContact("Abby", 3, "Some notes about Abby...");
+
+        Iterator<Contact> contacts = aContactContainer.iterateContactsByPrefix("A");
+
+        assertEquals("Abby", contacts.next().getName());
+        assertEquals("adam", contacts.next().getName());
+        assertFalse(contacts.hasNext());
+        assertFalse(aContactContainer.iterateContactsByPrefix("Z").hasNext());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfPrefixIsNullWhenGettingContactsByPrefix() {
+        aContactContainer.getContactsByPrefix(null, 1);
+    }
+
+    /*
+     * Test for searchNotes(String query, boolean matchAll)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToSearchContactNotes() {
+        addContact("Adam", 1, "Works on project Apollo");
+        addContact("Benny", 2, "Works on project Gemini");
+
+        Set<Integer> expected = new HashSet<>();
+        expected.add(1);
+
+        assertEquals(expected, aContactContainer.searchNotes("apollo project", true));
+        assertEquals(2, aContactContainer.searchNotes("apollo gemini", false).size());
+    }
+
     /*
      * Test for checkForValidSetOfContacts(Set<Contact> aSetOfContacts)
      * Starts here:
@@ -171,6 +247,54 @@ public class ContactsContainerTest {
         aContactContainer.checkForValidSetOfContacts(null);
     }
 
+    /*
+     * Test for restoreContact(int contactId, String name, String notes)
+     * Starts here:
+     */
+    @Test
+    public void shouldRestoreContactWithItsIdAndSkipPastTheId() {
+        Contact mContact = mock(Contact.class);
+        when(mContact.getName()).thenReturn("Zoe");
+        when(mContact.getId()).thenReturn(40);
+        when(mContact.getNotes()).thenReturn("Restored notes");
+        when(aContactFactory.createContact(40, "Zoe", "Restored notes")).thenReturn(mContact);
+
+        aContactContainer.restoreContact(40, "Zoe", "Restored notes");
+
+        assertSame(mContact, aContactContainer.getContact(40));
+        assertTrue(aContactContainer.checkForValidName("Zoe"));
+        verify(aUniqueNumberGeneratorUtilities).skipPast(40);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfNameIsNullWhenRestoringContact() {
+        aContactContainer.restoreContact(40, null, "");
+    }
+
+    /*
+     * Test for takeChangedContactIds()
+     * Starts here:
+     */
+    @Test
+    public void shouldTakeTheIdsOfContactsChangedSinceTheLastCall() {
+        Set<Integer> expected = new HashSet<>();
+        expected.add(1);
+        expected.add(2);
+        expected.add(3);
+        expected.add(4);
+
+        assertEquals(expected, aContactContainer.takeChangedContactIds());
+        assertTrue(aContactContainer.takeChangedContactIds().isEmpty());
+
+        aContactContainer.restoreContact(40, "Zoe", "Restored notes");
+        addContact("Eric", 5, "");
+
+        expected.clear();
+        expected.add(40);
+        expected.add(5);
+        assertEquals(expected, aContactContainer.takeChangedContactIds());
+    }
+
     /*
      * Method that helps the test
      * Adds a contact
@@ -2,6 +2,7 @@ package com.keimi.okamoto.app.organisers;
 
 import com.keimi.okamoto.app.items.*;
 import com.keimi.okamoto.app.utils.IllegalMeetingException;
+import com.keimi.okamoto.app.utils.ManualClockImpl;
 import com.keimi.okamoto.app.utils.MeetingFactory;
 import com.keimi.okamoto.app.utils.UniqueNumberGeneratorUtilities;
 import org.junit.Before;
@@ -129,6 +130,18 @@ public class MeetingContainerTest {
         assertEquals(null, actualFutureMeeting);
     }
 
+    @Test
+    public void shouldReturnNullIfTheMeetingIsNotOfTheKindAskedFor() throws IllegalMeetingException {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 2);
+
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(0);
+        when(aMeetingFactory.createFutureMeeting(anyInt(), eq(date), anySet())).thenReturn(aFutureMeeting);
+        aMeetingContainer.addFutureMeeting(new HashSet<Contact>(), date);
+
+        assertNull(aMeetingContainer.getPastMeeting(0));
+    }
+
 
     /*
     * Test for getMeeting(int id)
@@ -174,6 +187,18 @@ public class MeetingContainerTest {
         verify(aMeetingFactory).createPastMeeting(anyInt(), anySet(), eq(date), anyString());
     }
 
+    @Test
+    public void shouldBeAbleToAddPastMeetingDatedNow() throws IllegalMeetingException {
+        Set<Contact> aSetOfContacts = new HashSet<>();
+        PastMeeting pastMeeting = mock(PastMeeting.class);
+        when(aMeetingFactory.createPastMeeting(anyInt(), anySet(), any(Calendar.class), anyString())).thenReturn(pastMeeting);
+
+        for (int i = 0; i < 100; i++) {
+            aMeetingContainer.addPastMeeting(aSetOfContacts, Calendar.getInstance(), "Some notes go here..");
+        }
+        verify(aMeetingFactory, times(100)).createPastMeeting(anyInt(), anySet(), any(Calendar.class), anyString());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionIfDateEnteredIsNotInThePast() throws IllegalMeetingException {
         Set<Contact> aSetOfContacts = new HashSet<>();
@@ -251,6 +276,39 @@ public class MeetingContainerTest {
         aMeetingContainer.convertToPastMeeting(aFutureMeeting, null);
     }
 
+    /*
+     * Test for searchNotes(String query, boolean matchAll)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToSearchNotesOfPastMeetings() throws IllegalMeetingException {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, -1);
+        when(aPastMeeting.getId()).thenReturn(7);
+        when(aMeetingFactory.createPastMeeting(anyInt(), anySet(), eq(date), anyString())).thenReturn(aPastMeeting);
+
+        aMeetingContainer.addPastMeeting(new HashSet<Contact>(), date, "Agreed the Apollo budget");
+
+        assertEquals(Collections.singleton(7), aMeetingContainer.searchNotes("apollo budget", true));
+        assertTrue(aMeetingContainer.searchNotes("gemini", false).isEmpty());
+    }
+
+    @Test
+    public void shouldReplaceNotesWhenConvertingToPastMeeting() throws IllegalMeetingException {
+        Calendar date = Calendar.getInstance();
+        when(aPastMeeting.getId()).thenReturn(4);
+        when(aPastMeeting.getDate()).thenReturn(date);
+        when(aPastMeeting.getNotes()).thenReturn("First draft");
+        when(aPastMeeting.getContacts()).thenReturn(new HashSet<Contact>());
+        when(aMeetingFactory.createPastMeeting(anyInt(), anySet(), eq(date), anyString())).thenReturn(aPastMeeting);
+
+        aMeetingContainer.convertToPastMeeting(aPastMeeting, "First draft");
+        aMeetingContainer.convertToPastMeeting(aPastMeeting, "Final version");
+
+        assertTrue(aMeetingContainer.searchNotes("draft", false).isEmpty());
+        assertEquals(Collections.singleton(4), aMeetingContainer.searchNotes("final", false));
+    }
+
     /*
      * Test for getMeetingIdListBy(Contact)
      * Starts here:
@@ -287,14 +345,10 @@ public class MeetingContainerTest {
         when(aMeetingFactory.createFutureMeeting(anyInt(), eq(date), anySet())).thenReturn(futureMeeting2);
         aMeetingContainer.addFutureMeeting(contactSet, date);
 
-        Set<Integer> expected = new HashSet<>();
-        expected.add(id0);
-        expected.add(id1);
-        expected.add(id2);
-
-        Set<Integer> meetingIds = aMeetingContainer.getMeetingIdListBy(contact1);
+        int[] expected = {id0, id1, id2};
+        int[] meetingIds = aMeetingContainer.getMeetingIdListBy(contact1);
 
-        assertEquals(expected, meetingIds);
+        assertArrayEquals(expected, meetingIds);
     }
 
     @Test
@@ -323,11 +377,10 @@ public class MeetingContainerTest {
         when(aMeetingFactory.createFutureMeeting(anyInt(), eq(date), anySet())).thenReturn(futureMeeting1);
         aMeetingContainer.addFutureMeeting(contactSet, date);
 
-        Set<Integer> expected = new HashSet<>();
-        expected.add(id0);
-        Set<Integer> meetingIds = aMeetingContainer.getMeetingIdListBy(contact1);
+        int[] expected = {id0};
+        int[] meetingIds = aMeetingContainer.getMeetingIdListBy(contact1);
 
-        assertEquals(expected, meetingIds);
+        assertArrayEquals(expected, meetingIds);
     }
 
     @Test (expected = IllegalArgumentException.class)
@@ -335,6 +388,31 @@ public class MeetingContainerTest {
         Contact contact = null;
         aMeetingContainer.getMeetingIdListBy(contact);
     }
+    /*
+     * Test for getMeetingCount(Contact contact)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToCountMeetingsWithAContact() throws IllegalMeetingException {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 2);
+        Set<Contact> contactSet = new HashSet<>();
+        Contact contact = contactMaker(3, "Adam", "Some notes about Adam...");
+        contactSet.add(contact);
+
+        assertEquals(0, aMeetingContainer.getMeetingCount(contact));
+
+        FutureMeeting futureMeeting1 = futureMeetingMaker(1, date, contactSet);
+        FutureMeeting futureMeeting2 = futureMeetingMaker(2, date, contactSet);
+
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(1, 2);
+        when(aMeetingFactory.createFutureMeeting(anyInt(), eq(date), anySet())).thenReturn(futureMeeting1, futureMeeting2);
+        aMeetingContainer.addFutureMeeting(contactSet, date);
+        aMeetingContainer.addFutureMeeting(contactSet, date);
+
+        assertEquals(2, aMeetingContainer.getMeetingCount(contact));
+    }
+
     /*
      * Test for getMeetingIdListBy(Calendar date).
      * Starts here:
@@ -359,15 +437,294 @@ public class MeetingContainerTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void shouldMatchMeetingsByDayRatherThanByCalendarInstance() throws IllegalMeetingException {
+        int id0 = 2;
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 2);
+        date.set(Calendar.HOUR_OF_DAY, 10);
+        Set<Contact> contactSet = new HashSet<>();
+
+        FutureMeeting futureMeeting = futureMeetingMaker(id0, date, contactSet);
+
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(id0);
+        when(aMeetingFactory.createFutureMeeting(anyInt(), eq(date), anySet())).thenReturn(futureMeeting);
+        aMeetingContainer.addFutureMeeting(contactSet, date);
+
+        Calendar laterThatDay = (Calendar) date.clone();
+        laterThatDay.set(Calendar.HOUR_OF_DAY, 18);
+        Calendar nextDay = (Calendar) date.clone();
+        nextDay.add(Calendar.DATE, 1);
+
+        assertEquals(Collections.singleton(id0), aMeetingContainer.getMeetingIdListBy(laterThatDay));
+        assertTrue(aMeetingContainer.getMeetingIdListBy(nextDay).isEmpty());
+    }
+
     @Test (expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionIfParameterForDateIsNullInGetMeetingListByDate() {
         Calendar date = null;
         aMeetingContainer.getMeetingIdListBy(date);
     }
 
+    /*
+     * Test for getFutureMeetings(Contact contact) and getPastMeetings(Contact contact)
+     * Starts here:
+     */
+    @Test
+    public void shouldReturnFutureMeetingsWithAContactInChronologicalOrder() throws IllegalMeetingException {
+        Contact contact = contactMaker(3, "Adam", "Some notes about Adam...");
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(contact);
+        Calendar date1 = Calendar.getInstance();
+        Calendar date2 = Calendar.getInstance();
+        Calendar date3 = Calendar.getInstance();
+        date1.add(Calendar.DATE, 3);
+        date2.add(Calendar.DATE, 1);
+        date3.add(Calendar.DATE, 2);
+
+        FutureMeeting fm1 = addFutureMeeting(1, date1, contactSet);
+        FutureMeeting fm2 = addFutureMeeting(2, date2, contactSet);
+        FutureMeeting fm3 = addFutureMeeting(3, date3, contactSet);
+
+        assertEquals(Arrays.asList(fm2, fm3, fm1), aMeetingContainer.getFutureMeetings(contact));
+        assertTrue(aMeetingContainer.getPastMeetings(contact).isEmpty());
+    }
+
+    @Test
+    public void shouldReturnPastMeetingsWithAContactInChronologicalOrder() throws IllegalMeetingException {
+        Contact contact = contactMaker(3, "Adam", "Some notes about Adam...");
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(contact);
+        Calendar date1 = Calendar.getInstance();
+        Calendar date2 = Calendar.getInstance();
+        date1.add(Calendar.DATE, -1);
+        date2.add(Calendar.DATE, -3);
+
+        PastMeeting pm1 = addPastMeeting(1, date1, contactSet);
+        PastMeeting pm2 = addPastMeeting(2, date2, contactSet);
+
+        assertEquals(Arrays.asList(pm2, pm1), aMeetingContainer.getPastMeetings(contact));
+        assertTrue(aMeetingContainer.getFutureMeetings(contact).isEmpty());
+        assertEquals(2, aMeetingContainer.getMeetingCount(contact));
+    }
+
+    @Test
+    public void shouldMoveAConvertedMeetingFromFutureToPastMeetings() throws IllegalMeetingException {
+        Contact contact = contactMaker(3, "Adam", "Some notes about Adam...");
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(contact);
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 1);
+
+        FutureMeeting futureMeeting = addFutureMeeting(6, date, contactSet);
+        when(aMeetingFactory.createPastMeeting(anyInt(), anySet(), eq(date), anyString())).thenReturn(aPastMeeting);
+        aMeetingContainer.convertToPastMeeting(futureMeeting, "Some notes...");
+
+        assertTrue(aMeetingContainer.getFutureMeetings(contact).isEmpty());
+        assertEquals(Arrays.asList(aPastMeeting), aMeetingContainer.getPastMeetings(contact));
+        assertEquals(1, aMeetingContainer.getMeetingCount(contact));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfParameterForContactIsNullInGetFutureMeetings() {
+        aMeetingContainer.getFutureMeetings(null);
+    }
+
+    /*
+     * Test for getMeetings(Calendar from, Calendar to)
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToGetMeetingsInADateRangeInChronologicalOrder() throws IllegalMeetingException {
+        Set<Contact> contactSet = new HashSet<>();
+        Calendar date1 = Calendar.getInstance();
+        Calendar date2 = Calendar.getInstance();
+        Calendar date3 = Calendar.getInstance();
+        date1.add(Calendar.DATE, 5);
+        date2.add(Calendar.DATE, 2);
+        date3.add(Calendar.DATE, 9);
+
+        FutureMeeting fm1 = addFutureMeeting(1, date1, contactSet);
+        FutureMeeting fm2 = addFutureMeeting(2, date2, contactSet);
+        addFutureMeeting(3, date3, contactSet);
+
+        Calendar from = Calendar.getInstance();
+        Calendar to = Calendar.getInstance();
+        to.add(Calendar.DATE, 7);
+
+        assertEquals(Arrays.<Meeting>asList(fm2, fm1), aMeetingContainer.getMeetings(from, to));
+        assertTrue(aMeetingContainer.getMeetings(to, from).isEmpty());
+    }
+
+    @Test
+    public void shouldBeAbleToGetMeetingsWithAContactInADateRange() throws IllegalMeetingException {
+        Contact adam = contactMaker(1, "Adam", "Some notes about Adam...");
+        Contact benny = contactMaker(2, "Benny", "Some notes about Benny...");
+        Set<Contact> adamSet = new HashSet<>();
+        adamSet.add(adam);
+        Set<Contact> bennySet = new HashSet<>();
+        bennySet.add(benny);
+        Calendar date1 = Calendar.getInstance();
+        Calendar date2 = Calendar.getInstance();
+        date1.add(Calendar.DATE, 3);
+        date2.add(Calendar.DATE, 4);
+
+        FutureMeeting fm1 = addFutureMeeting(10, date1, adamSet);
+        addFutureMeeting(11, date2, bennySet);
+
+        Calendar from = Calendar.getInstance();
+        Calendar to = Calendar.getInstance();
+        to.add(Calendar.DATE, 7);
+
+        assertEquals(Arrays.<Meeting>asList(fm1), aMeetingContainer.getMeetings(adam, from, to));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfParameterForDateIsNullInGetMeetings() {
+        aMeetingContainer.getMeetings(null, Calendar.getInstance());
+    }
+
+    /*
+     * Tests for the overloads taking dates in milliseconds
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToAddMeetingsWithDatesInMilliseconds() throws IllegalMeetingException {
+        Contact adam = contactMaker(1, "Adam", "Some notes about Adam...");
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(adam);
+        long now = System.currentTimeMillis();
+        long future = now + 86400000L;
+        long past = now - 86400000L;
+
+        FutureMeeting futureMeeting = mock(FutureMeeting.class);
+        PastMeeting pastMeeting = mock(PastMeeting.class);
+        when(pastMeeting.getId()).thenReturn(2);
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(1, 2);
+        when(aMeetingFactory.createFutureMeeting(anyInt(), eq(future), anySet())).thenReturn(futureMeeting);
+        when(aMeetingFactory.createPastMeeting(anyInt(), anySet(), eq(past), anyString())).thenReturn(pastMeeting);
+
+        assertEquals(1, aMeetingContainer.addFutureMeeting(contactSet, future));
+        aMeetingContainer.addPastMeeting(contactSet, past, "Some notes...");
+
+        assertEquals(Arrays.<Meeting>asList(pastMeeting, futureMeeting), aMeetingContainer.getMeetings(past, future + 1));
+        assertEquals(Arrays.<Meeting>asList(pastMeeting), aMeetingContainer.getMeetings(adam, past, now));
+    }
+
+    @Test
+    public void shouldAddNoneOfABatchWithAMeetingWithoutContacts() {
+        Set<Contact> contactSet = Collections.singleton(contactMaker(1, "Adam", ""));
+        List<Set<Contact>> contactSets = Arrays.asList(contactSet, Collections.<Contact>emptySet());
+
+        try {
+            aMeetingContainer.addMeetings(contactSets, new long[]{1000, 2000}, Arrays.asList("Notes", "Notes"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertTrue(aMeetingContainer.getAllMeetings().isEmpty());
+        verify(aUniqueNumberGeneratorUtilities, never()).reserve(anyInt());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfDateInMillisecondsIsInThePast() {
+        aMeetingContainer.addFutureMeeting(new HashSet<Contact>(), System.currentTimeMillis() - 1000);
+    }
+
+    @Test
+    public void shouldCheckDatesInMillisecondsAgainstTheCurrentTime() {
+        long now = System.currentTimeMillis();
+
+        assertTrue(aMeetingContainer.checkForFuture(now + 60000));
+        assertTrue(aMeetingContainer.checkForPast(now - 60000));
+    }
+
+    @Test
+    public void shouldDecidePastAndFutureByTheClock() throws IllegalMeetingException {
+        ManualClockImpl aClock = new ManualClockImpl(1000);
+        MeetingContainer aContainer = new MeetingContainerImpl(aMeetingFactory, aUniqueNumberGeneratorUtilities, aClock);
+
+        assertTrue(aContainer.checkForFuture(1001));
+        assertTrue(aContainer.checkForPast(1000));
+
+        aClock.advance(10);
+        assertTrue(aContainer.checkForPast(1001));
+    }
+
+    /*
+     * Test for restoreMeeting(int id, Set<Contact> aSetOfContacts, long date, String notes)
+     * Starts here:
+     */
+    @Test
+    public void shouldRestoreMeetingWithItsIdAndConvertItWhenRestoredWithNotes() throws IllegalMeetingException {
+        Contact adam = contactMaker(1, "Adam", "Some notes about Adam...");
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(adam);
+        long date = System.currentTimeMillis() - 86400000L;
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(date);
+
+        FutureMeeting futureMeeting = futureMeetingMaker(7, calendar, contactSet);
+        when(aMeetingFactory.createFutureMeeting(7, date, contactSet)).thenReturn(futureMeeting);
+        when(aMeetingFactory.createPastMeeting(7, contactSet, calendar, "Restored notes")).thenReturn(aPastMeeting);
+
+        aMeetingContainer.restoreMeeting(7, contactSet, date, null);
+        assertSame(futureMeeting, aMeetingContainer.getMeeting(7));
+
+        aMeetingContainer.restoreMeeting(7, contactSet, date, "Restored notes");
+        assertSame(aPastMeeting, aMeetingContainer.getMeeting(7));
+        assertEquals(Arrays.asList(aPastMeeting), aMeetingContainer.getPastMeetings(adam));
+        assertEquals(Collections.singleton(7), aMeetingContainer.searchNotes("restored", true));
+        verify(aUniqueNumberGeneratorUtilities, times(2)).skipPast(7);
+    }
+
+    /*
+     * Test for takeChangedMeetingIds()
+     * Starts here:
+     */
+    @Test
+    public void shouldTakeTheIdsOfMeetingsAddedOrConvertedSinceTheLastCall() throws IllegalMeetingException {
+        Set<Contact> contactSet = new HashSet<>();
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DATE, 1);
+        FutureMeeting futureMeeting = addFutureMeeting(5, date, contactSet);
+        Calendar pastDate = Calendar.getInstance();
+        pastDate.add(Calendar.DATE, -1);
+        addPastMeeting(6, pastDate, contactSet);
+
+        assertEquals(new HashSet<>(Arrays.asList(5, 6)), aMeetingContainer.takeChangedMeetingIds());
+        assertTrue(aMeetingContainer.takeChangedMeetingIds().isEmpty());
+
+        when(aMeetingFactory.createPastMeeting(eq(5), anySet(), eq(date), anyString())).thenReturn(aPastMeeting);
+        aMeetingContainer.convertToPastMeeting(futureMeeting, "Notes");
+
+        assertEquals(Collections.singleton(5), aMeetingContainer.takeChangedMeetingIds());
+    }
+
     /*
      * Helpers for tests
      */
+    private PastMeeting addPastMeeting(int meetingId, Calendar date, Set<Contact> contactSet) throws IllegalMeetingException {
+        PastMeeting pastMeeting = mock(PastMeeting.class);
+        when(pastMeeting.getId()).thenReturn(meetingId);
+        when(pastMeeting.getDate()).thenReturn(date);
+        when(pastMeeting.getContacts()).thenReturn(contactSet);
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(meetingId);
+        when(aMeetingFactory.createPastMeeting(anyInt(), anySet(), eq(date), anyString())).thenReturn(pastMeeting);
+        aMeetingContainer.addPastMeeting(contactSet, date, "Some notes...");
+
+        return pastMeeting;
+    }
+
+    private FutureMeeting addFutureMeeting(int meetingId, Calendar date, Set<Contact> contactSet) throws IllegalMeetingException {
+        FutureMeeting futureMeeting = futureMeetingMaker(meetingId, date, contactSet);
+        when(aUniqueNumberGeneratorUtilities.getUniqueNumber()).thenReturn(meetingId);
+        when(aMeetingFactory.createFutureMeeting(anyInt(), eq(date), anySet())).thenReturn(futureMeeting);
+        aMeetingContainer.addFutureMeeting(contactSet, date);
+
+        return futureMeeting;
+    }
+
     private Contact contactMaker(int contactId, String contactName, String contactNotes) {
         Contact contact1 = mock(Contact.class);
         when(contact1.getId()).thenReturn(contactId);
@@ -0,0 +1,159 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.FutureMeeting;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.utils.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for OptimisticMeetingContainerImpl and OptimisticContactsContainerImpl, with readers running while a writer writes
+ */
+public class OptimisticContainersTest {
+    private static final long NOW = 1400000000000L;
+    private static final long DAY = 86400000L;
+    private static final int READERS = 6;
+
+    private UniqueNumberGeneratorUtilities numbers;
+    private ExecutorService executor;
+
+    @Before
+    public void buildUp() {
+        numbers = new AtomicUniqueNumberGeneratorImpl(64);
+        executor = Executors.newFixedThreadPool(READERS + 1);
+    }
+
+    @Test
+    public void shouldNeverReadAMeetingHalfAdded() throws Exception {
+        final ContactsContainer contacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        final Contact adam = contacts.getContact(contacts.addContact("Adam", ""));
+        final OptimisticMeetingContainerImpl meetings = new OptimisticMeetingContainerImpl(
+                new MeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW)), true);
+
+        runWhileWriting(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < 2000; i++) {
+                    int id = meetings.addFutureMeeting(Collections.singleton(adam), NOW + DAY + i);
+                    if (i % 2 == 0) {
+                        meetings.convertToPastMeeting(meetings.getMeeting(id), "Notes " + i);
+                    }
+                }
+                return null;
+            }
+        }, new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (FutureMeeting m : meetings.getFutureMeetings(adam)) {
+                    assertNotNull(m);
+                }
+                for (PastMeeting m : meetings.getPastMeetings(adam)) {
+                    assertNotNull(m.getNotes());
+                }
+                for (Meeting m : meetings.getMeetings(adam, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                    assertNotNull(m);
+                }
+                return null;
+            }
+        });
+
+        assertEquals(1000, meetings.getFutureMeetings(adam).size());
+        assertEquals(1000, meetings.getPastMeetings(adam).size());
+        assertEquals(2000, meetings.getMeetingCount(adam));
+    }
+
+    @Test
+    public void shouldFindEveryContactOnceItHasBeenAdded() throws Exception {
+        final OptimisticContactsContainerImpl contacts = new OptimisticContactsContainerImpl(
+                new ContactsContainerImpl(new ContactFactoryImpl(), numbers), true);
+        final AtomicInteger lastAdded = new AtomicInteger(-1);
+
+        runWhileWriting(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < 5000; i++) {
+                    lastAdded.set(contacts.addContact("Contact " + (i % 100), "Notes " + i));
+                }
+                return null;
+            }
+        }, new Callable<Void>() {
+            @Override
+            public Void call() {
+                int id = lastAdded.get();
+                if (id >= 0) {
+                    Contact c = contacts.getContact(id);
+                    assertNotNull(c);
+                    assertTrue(contacts.checkForValidId(id));
+                    assertTrue(contacts.getContacts(c.getName()).contains(c));
+                }
+                return null;
+            }
+        });
+
+        assertEquals(5000, contacts.getAllContacts().size());
+        assertEquals(50, contacts.getContacts("Contact 7").size());
+    }
+
+    @Test
+    public void shouldWorkTheSameWithoutOptimisticReads() {
+        ContactsContainer contacts = new OptimisticContactsContainerImpl(new ContactsContainerImpl(new ContactFactoryImpl(), numbers), false);
+        MeetingContainer meetings = new OptimisticMeetingContainerImpl(
+                new MeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW)), false);
+        Contact adam = contacts.getContact(contacts.addContact("Adam", "Likes tea"));
+        int futureId = meetings.addFutureMeeting(Collections.singleton(adam), NOW + DAY);
+        int pastId = meetings.addPastMeeting(Collections.singleton(adam), NOW - DAY, "Tea");
+
+        assertEquals(Collections.singletonList(adam), contacts.getContactsByPrefix("ad", 10));
+        assertEquals(Collections.singleton(adam.getId()), contacts.searchNotes("tea", true));
+        assertEquals(futureId, meetings.getFutureMeeting(futureId).getId());
+        assertEquals("Tea", meetings.getPastMeeting(pastId).getNotes());
+        assertEquals(2, meetings.getMeetings(NOW - 2 * DAY, NOW + 2 * DAY).size());
+        assertEquals(2, meetings.takeChangedMeetingIds().size());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldStillThrowIllegalArgumentExceptionFromAnOptimisticRead() {
+        new OptimisticMeetingContainerImpl(new MeetingContainerImpl(new MeetingFactoryImpl(), numbers), true).getFutureMeetings(null);
+    }
+
+    /*
+     * Runs the writer once while every reader runs the read over and over, until the writer is done
+     */
+    private void runWhileWriting(Callable<Void> writer, final Callable<Void> read) throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        List<Future<Void>> readers = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            readers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    while (done.getCount() > 0) {
+                        read.call();
+                    }
+                    return null;
+                }
+            }));
+        }
+        try {
+            executor.submit(writer).get(60, TimeUnit.SECONDS);
+        } finally {
+            done.countDown();
+        }
+        for (Future<Void> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,106 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.utils.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * Measures how many meeting queries a second many threads get through
+ * with optimistic reads, against the same containers where every read
+ * takes the read lock of a ReentrantReadWriteLock. Run with the highest
+ * number of threads and the seconds each run takes as the arguments.
+ *
+ * About 95 in every 100 operations are reads, split between the future
+ * meetings of a contact, the past meetings of a contact and a meeting by
+ * id. The rest add a future meeting or turn one into a past meeting.
+ */
+public class OptimisticReadBenchmark {
+    private static final long NOW = 1400000000000L;
+    private static final long DAY = 86400000L;
+    private static final int CONTACTS = 10000;
+    private static final int MEETINGS = 50000;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        System.out.printf("%d contacts, %d meetings, %d s a run%n", CONTACTS, MEETINGS, seconds);
+        System.out.printf("%-8s %16s %18s %10s %12s%n", "threads", "rwlock (ops/s)", "optimistic (ops/s)", "speedup", "fallbacks");
+        // once to warm up
+        run(Math.min(2, maxThreads), 1, true);
+        run(Math.min(2, maxThreads), 1, false);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long locked = run(threads, seconds, false)[0];
+            long[] optimistic = run(threads, seconds, true);
+            System.out.printf("%-8d %16d %18d %10.2f %12d%n", threads, locked / seconds, optimistic[0] / seconds,
+                    (double) optimistic[0] / locked, optimistic[1]);
+        }
+    }
+
+    /*
+     * Returns the operations done and how many reads fell back to the read lock
+     */
+    private static long[] run(int threads, int seconds, boolean optimisticReads) throws Exception {
+        UniqueNumberGeneratorUtilities numbers = new AtomicUniqueNumberGeneratorImpl(1024);
+        final ContactsContainer contacts = new OptimisticContactsContainerImpl(
+                new ContactsContainerImpl(new ContactFactoryImpl(), numbers), optimisticReads);
+        final OptimisticMeetingContainerImpl meetings = new OptimisticMeetingContainerImpl(
+                new MeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW)), optimisticReads);
+
+        final Contact[] everyone = new Contact[CONTACTS];
+        for (int i = 0; i < CONTACTS; i++) {
+            everyone[i] = contacts.getContact(contacts.addContact("Contact " + i, ""));
+        }
+        final int[] meetingIds = new int[MEETINGS];
+        Random random = new Random(42);
+        for (int i = 0; i < MEETINGS; i++) {
+            Set<Contact> attendees = new HashSet<>(Arrays.asList(everyone[random.nextInt(CONTACTS)], everyone[random.nextInt(CONTACTS)]));
+            meetingIds[i] = i % 2 == 0
+                    ? meetings.addFutureMeeting(attendees, NOW + (i + 1) * 60000L)
+                    : meetings.addPastMeeting(attendees, NOW - (i + 1) * 60000L, "Notes " + i);
+        }
+
+        final long end = System.nanoTime() + seconds * 1000000000L;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            futures.add(executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    Random random = new Random(seed);
+                    long operations = 0;
+                    long found = 0;
+                    while ((operations & 1023) != 0 || System.nanoTime() < end) {
+                        int dice = random.nextInt(100);
+                        Contact contact = everyone[random.nextInt(CONTACTS)];
+                        if (dice < 32) {
+                            found += meetings.getFutureMeetings(contact).size();
+                        } else if (dice < 64) {
+                            found += meetings.getPastMeetings(contact).size();
+                        } else if (dice < 95) {
+                            found += meetings.getMeeting(meetingIds[random.nextInt(MEETINGS)]) == null ? 0 : 1;
+                        } else if (dice < 98) {
+                            meetings.addFutureMeeting(Collections.singleton(contact), NOW + DAY + random.nextInt(1000000));
+                        } else {
+                            Meeting m = meetings.getMeeting(meetingIds[random.nextInt(MEETINGS / 2) * 2]);
+                            meetings.convertToPastMeeting(m, "Converted");
+                        }
+                        operations++;
+                    }
+                    if (found < 0) throw new IllegalStateException();
+                    return operations;
+                }
+            }));
+        }
+        long operations = 0;
+        for (Future<Long> future : futures) {
+            operations += future.get();
+        }
+        executor.shutdown();
+        return new long[]{operations, meetings.getLock().getFallbackCount()};
+    }
+}
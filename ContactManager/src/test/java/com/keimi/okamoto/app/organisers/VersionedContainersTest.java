@@ -0,0 +1,325 @@
+package com.keimi.okamoto.app.organisers;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.utils.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for VersionedContactsContainerImpl and VersionedMeetingContainerImpl and the snapshots they hand out,
+ * which the plain containers hand out too
+ */
+public class VersionedContainersTest {
+    private static final long NOW = 1400000000000L;
+    private static final long DAY = 86400000L;
+
+    private UniqueNumberGeneratorUtilities numbers;
+    private VersionedContactsContainerImpl contactsContainer;
+    private VersionedMeetingContainerImpl meetingContainer;
+    private File file;
+
+    @Before
+    public void buildUp() {
+        numbers = new CountingNumbers();
+        contactsContainer = new VersionedContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new VersionedMeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW));
+    }
+
+    @Test
+    public void shouldNotSeeChangesMadeAfterTheSnapshot() {
+        int adamId = contactsContainer.addContact("Adam", "Likes tea");
+        Contact adam = contactsContainer.getContact(adamId);
+        int futureId = meetingContainer.addFutureMeeting(Collections.singleton(adam), NOW + DAY);
+        ContactsView contacts = contactsContainer.getSnapshot();
+        MeetingsView meetings = meetingContainer.getSnapshot();
+
+        contactsContainer.restoreContact(adamId, "Adam", "Likes coffee");
+        contactsContainer.addContact("Benny", "");
+        meetingContainer.convertToPastMeeting(meetingContainer.getMeeting(futureId), "Tea");
+        meetingContainer.addPastMeeting(Collections.singleton(adam), NOW - DAY, "Lunch");
+
+        assertEquals(1, contacts.getAllContacts().size());
+        assertEquals("Likes tea", contacts.getContact(adamId).getNotes());
+        assertFalse(contacts.checkForValidName("Benny"));
+        assertEquals(Collections.singleton(adamId), contacts.searchNotes("tea", true));
+        assertEquals(1, meetings.getAllMeetings().size());
+        assertNotNull(meetings.getFutureMeeting(futureId));
+        assertEquals(1, meetings.getFutureMeetings(adam).size());
+        assertTrue(meetings.getPastMeetings(adam).isEmpty());
+
+        assertEquals(2, contactsContainer.getAllContacts().size());
+        assertEquals("Likes coffee", contactsContainer.getContact(adamId).getNotes());
+        assertEquals(2, meetingContainer.getPastMeetings(adam).size());
+    }
+
+    @Test
+    public void shouldMoveTheChangedIdsIntoTheSnapshotTaken() {
+        int adamId = contactsContainer.addContact("Adam", "");
+        ContactsView first = contactsContainer.takeSnapshot();
+        int bennyId = contactsContainer.addContact("Benny", "");
+        ContactsView second = contactsContainer.takeSnapshot();
+
+        assertEquals(Collections.singleton(adamId), first.takeChangedContactIds());
+        assertTrue(first.takeChangedContactIds().isEmpty());
+        assertEquals(Collections.singleton(bennyId), second.takeChangedContactIds());
+        assertTrue(contactsContainer.getSnapshot().takeChangedContactIds().isEmpty());
+        assertTrue(contactsContainer.takeChangedContactIds().isEmpty());
+    }
+
+    @Test
+    public void shouldNotChangeASnapshot() {
+        assertFalse(contactsContainer.getSnapshot() instanceof ContactsContainer);
+        assertFalse(meetingContainer.getSnapshot() instanceof MeetingContainer);
+    }
+
+    @Test
+    public void shouldReadBackSnapshotsWrittenWithDiskWriterImpl() throws IOException {
+        file = Files.createTempFile("contacts", ".txt").toFile();
+        int adamId = contactsContainer.addContact("Adam", "");
+        Contact adam = contactsContainer.getContact(adamId);
+        int pastId = meetingContainer.addPastMeeting(Collections.singleton(adam), NOW - DAY, "Tea");
+        DiskWriter aDiskWriter = new DiskWriterImpl(file.getPath());
+        aDiskWriter.writeToDisk(contactsContainer.takeSnapshot(), meetingContainer.takeSnapshot());
+
+        aDiskWriter.readDisk();
+        ContactsContainer contacts = aDiskWriter.getContactContainer();
+        MeetingContainer meetings = aDiskWriter.getMeetingContainer();
+
+        assertTrue(contacts instanceof VersionedContactsContainer);
+        assertTrue(meetings instanceof VersionedMeetingContainer);
+        assertSame(contacts.getContact(adamId), meetings.getPastMeeting(pastId).getContacts().iterator().next());
+        assertEquals("Tea", meetings.getPastMeetings(contacts.getContact(adamId)).get(0).getNotes());
+    }
+
+    @Test
+    public void shouldReadBackSnapshotsOfThePlainContainersAsPlainContainers() throws IOException {
+        file = Files.createTempFile("contacts", ".txt").toFile();
+        ContactsContainerImpl plainContacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        MeetingContainerImpl plainMeetings = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW));
+        int adamId = plainContacts.addContact("Adam", "Likes tea");
+        int pastId = plainMeetings.addPastMeeting(Collections.singleton(plainContacts.getContact(adamId)), NOW - DAY, "Tea");
+        DiskWriter aDiskWriter = new DiskWriterImpl(file.getPath());
+        aDiskWriter.writeToDisk(plainContacts.takeSnapshot(), plainMeetings.takeSnapshot());
+
+        aDiskWriter.readDisk();
+        ContactsContainer contacts = aDiskWriter.getContactContainer();
+        MeetingContainer meetings = aDiskWriter.getMeetingContainer();
+
+        assertSame(ContactsContainerImpl.class, contacts.getClass());
+        assertSame(MeetingContainerImpl.class, meetings.getClass());
+        assertEquals(Collections.singleton(adamId), contacts.searchNotes("tea", true));
+        assertSame(contacts.getContact(adamId), meetings.getPastMeeting(pastId).getContacts().iterator().next());
+        assertTrue(contacts.takeChangedContactIds().isEmpty());
+        assertTrue(meetings.takeChangedMeetingIds().isEmpty());
+    }
+
+    @Test
+    public void shouldKeepTakingChangesWhileAFlushIsWriting() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> written = new ArrayList<>();
+        DiskWriter aDiskWriter = new SlowDiskWriter(writing, release, written);
+        final ContactManager aContactManager = new ContactManagerImpl(contactsContainer, meetingContainer, aDiskWriter);
+        aContactManager.addNewContact("Adam", "");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> flush = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    aContactManager.flush();
+                }
+            });
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            aContactManager.addNewContact("Benny", "");
+            assertEquals(1, aContactManager.getContacts("Benny").size());
+            release.countDown();
+            flush.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Collections.singletonList(1), written);
+    }
+
+    @Test
+    public void shouldKeepTakingChangesWhileAFlushOfThePlainContainersIsWriting() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> written = new ArrayList<>();
+        DiskWriter aDiskWriter = new SlowDiskWriter(writing, release, written);
+        final ContactManager aContactManager = new ContactManagerImpl(new ContactsContainerImpl(new ContactFactoryImpl(), numbers),
+                new MeetingContainerImpl(new MeetingFactoryImpl(), numbers), aDiskWriter);
+        aContactManager.addNewContact("Adam", "");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> flush = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    aContactManager.flush();
+                }
+            });
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            aContactManager.addNewContact("Benny", "");
+            assertEquals(1, aContactManager.getContacts("Benny").size());
+            release.countDown();
+            flush.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Collections.singletonList(1), written);
+    }
+
+    @Test
+    public void shouldKeepTakingChangesWhileThePlainContainersAreExported() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Writer out = new FilterWriter(new StringWriter()) {
+            @Override
+            public void write(String str, int off, int len) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                super.write(str, off, len);
+            }
+        };
+        final ContactManager aContactManager = new ContactManagerImpl(new ContactsContainerImpl(new ContactFactoryImpl(), numbers),
+                new MeetingContainerImpl(new MeetingFactoryImpl(), numbers), new SlowDiskWriter(new CountDownLatch(1),
+                new CountDownLatch(0), new ArrayList<Integer>()));
+        aContactManager.addNewContact("Adam", "");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> export = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return aContactManager.exportData(out, new CsvRecordFormatImpl());
+                }
+            });
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    aContactManager.addNewContact("Benny", "");
+                }
+            }).get(10, TimeUnit.SECONDS);
+            assertEquals(1, aContactManager.getContacts("Benny").size());
+            release.countDown();
+            assertEquals(1, (int) export.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldMoveTheChangedIdsOfThePlainContainersIntoTheSnapshotTaken() {
+        ContactsContainerImpl plainContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        int adamId = plainContainer.addContact("Adam", "");
+        ContactsView snapshot = plainContainer.takeSnapshot();
+        plainContainer.addContact("Benny", "");
+
+        assertEquals(1, snapshot.getAllContacts().size());
+        assertEquals(Collections.singleton(adamId), snapshot.takeChangedContactIds());
+        assertEquals(1, plainContainer.takeChangedContactIds().size());
+    }
+
+    @Test
+    public void shouldKeepThePlainContainersReadyToSnapshotOnceTheyAreRead() throws Exception {
+        ContactsContainerImpl plainContacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        MeetingContainerImpl plainMeetings = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW));
+        Contact adam = plainContacts.getContact(plainContacts.addContact("Adam", ""));
+        int futureId = plainMeetings.addFutureMeeting(Collections.singleton(adam), NOW + DAY);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(plainContacts);
+            out.writeObject(plainMeetings);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            plainContacts = (ContactsContainerImpl) in.readObject();
+            plainMeetings = (MeetingContainerImpl) in.readObject();
+        }
+        MeetingsView meetings = plainMeetings.takeSnapshot();
+        plainMeetings.convertToPastMeeting(plainMeetings.getMeeting(futureId), "Tea");
+
+        assertEquals(1, plainContacts.takeSnapshot().getAllContacts().size());
+        assertNotNull(meetings.getFutureMeeting(futureId));
+        assertNotNull(plainMeetings.takeSnapshot().getPastMeeting(futureId));
+    }
+
+    /*
+     * A DiskWriter that writes down how many contacts it was given, once it is let go
+     */
+    private static class SlowDiskWriter implements DiskWriter {
+        private final CountDownLatch writing;
+        private final CountDownLatch release;
+        private final List<Integer> written;
+
+        private SlowDiskWriter(CountDownLatch writing, CountDownLatch release, List<Integer> written) {
+            this.writing = writing;
+            this.release = release;
+            this.written = written;
+        }
+
+        @Override
+        public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+            writing.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(aContactsContainer.getAllContacts().size());
+            return true;
+        }
+
+        @Override
+        public void recordContact(Contact aContact) {
+        }
+
+        @Override
+        public void recordMeeting(Meeting aMeeting) {
+        }
+
+        @Override
+        public boolean checkIfDataExists() {
+            return false;
+        }
+
+        @Override
+        public void readDisk() {
+        }
+
+        @Override
+        public ContactsContainer getContactContainer() {
+            return null;
+        }
+
+        @Override
+        public MeetingContainer getMeetingContainer() {
+            return null;
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+}
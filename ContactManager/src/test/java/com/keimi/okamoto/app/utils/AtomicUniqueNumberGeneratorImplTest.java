@@ -0,0 +1,103 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for AtomicUniqueNumberGeneratorImpl
+ */
+public class AtomicUniqueNumberGeneratorImplTest {
+
+    @Test
+    public void shouldHandOutEachNumberOnceAcrossThreads() throws Exception {
+        final AtomicUniqueNumberGeneratorImpl numbers = new AtomicUniqueNumberGeneratorImpl(16);
+        final Set<Integer> handedOut = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 10000; i++) {
+                            assertTrue(handedOut.add(numbers.getUniqueNumber()));
+                        }
+                        int first = numbers.reserve(100);
+                        for (int i = 0; i < 100; i++) {
+                            assertTrue(handedOut.add(first + i));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(8 * 10100, handedOut.size());
+        assertTrue(numbers.getHighWaterMark() >= 8 * 10100);
+    }
+
+    @Test
+    public void shouldHandOutNumbersInOrderFromABlock() {
+        AtomicUniqueNumberGeneratorImpl numbers = new AtomicUniqueNumberGeneratorImpl(4);
+
+        assertEquals(0, numbers.getUniqueNumber());
+        assertEquals(1, numbers.getUniqueNumber());
+        assertEquals(4, numbers.getHighWaterMark());
+        assertEquals(4, numbers.reserve(10));
+        assertEquals(2, numbers.getUniqueNumber());
+        assertEquals(3, numbers.getUniqueNumber());
+        assertEquals(14, numbers.getUniqueNumber());
+    }
+
+    @Test
+    public void shouldDropABlockThatASkippedNumberIsIn() {
+        AtomicUniqueNumberGeneratorImpl numbers = new AtomicUniqueNumberGeneratorImpl(100);
+        numbers.getUniqueNumber();
+
+        numbers.skipPast(50);
+
+        assertTrue(numbers.getUniqueNumber() > 50);
+        assertTrue(numbers.reserve(5) > 50);
+    }
+
+    @Test
+    public void shouldStartAtTheHighWaterMarkWhenReadBack() throws Exception {
+        AtomicUniqueNumberGeneratorImpl numbers = new AtomicUniqueNumberGeneratorImpl(8);
+        numbers.getUniqueNumber();
+        numbers.reserve(20);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(numbers);
+        }
+        AtomicUniqueNumberGeneratorImpl readBack;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            readBack = (AtomicUniqueNumberGeneratorImpl) in.readObject();
+        }
+
+        assertEquals(28, readBack.getUniqueNumber());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfNothingIsReserved() {
+        new AtomicUniqueNumberGeneratorImpl(8).reserve(0);
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void shouldThrowIllegalStateExceptionOnceTheNumbersRunOut() {
+        new AtomicUniqueNumberGeneratorImpl(8, Integer.MAX_VALUE - 2).reserve(5);
+    }
+}
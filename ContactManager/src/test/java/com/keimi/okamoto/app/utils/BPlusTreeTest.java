@@ -0,0 +1,142 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for BPlusTree, over pages small enough that a few dozen entries
+ * split leaves and internal nodes, and a pool small enough to evict them
+ */
+public class BPlusTreeTest {
+    private File file;
+    private FileChannel channel;
+    private BufferPool pool;
+
+    @Before
+    public void buildUp() throws IOException {
+        file = File.createTempFile("tree", ".dat");
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        pool = new BufferPool(channel, 128, 8);
+    }
+
+    @Test
+    public void shouldFindEveryKeyOfAUniqueTreeAfterManySplits() throws IOException {
+        BPlusTree tree = BPlusTree.create(pool, true);
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; key < 2000; key++) {
+            keys.add(key * 3);
+        }
+        Collections.shuffle(keys, new Random(7));
+        for (long key : keys) {
+            assertTrue(tree.put(key, key + 1));
+        }
+
+        assertFalse(tree.put(300, 42));
+        assertEquals(42, tree.get(300, -1));
+        assertEquals(1, tree.get(0, -1));
+        assertEquals(5998, tree.get(5997, -1));
+        assertEquals(-1, tree.get(301, -1));
+        assertTrue(pool.getPageCount() > 100);
+        assertTrue(pool.getCachedPageCount() <= 8);
+    }
+
+    @Test
+    public void shouldScanARangeInOrder() throws IOException {
+        BPlusTree tree = BPlusTree.create(pool, true);
+        for (long key = 999; key >= 0; key--) {
+            tree.put(key, key * 10);
+        }
+        final List<Long> values = new ArrayList<>();
+        tree.scan(100, 400, new BPlusTree.Visitor() {
+            @Override
+            public boolean visit(long key, long value) {
+                values.add(value);
+                return true;
+            }
+        });
+
+        assertEquals(300, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals((100 + i) * 10L, (long) values.get(i));
+        }
+    }
+
+    @Test
+    public void shouldKeepEveryValueOfAKeyWhenNotUnique() throws IOException {
+        BPlusTree tree = BPlusTree.create(pool, false);
+        for (long value = 0; value < 50; value++) {
+            for (long key = 0; key < 20; key++) {
+                tree.put(key, value);
+            }
+        }
+        assertFalse(tree.put(7, 3));
+        final List<Long> values = new ArrayList<>();
+        tree.scan(7, 8, new BPlusTree.Visitor() {
+            @Override
+            public boolean visit(long key, long value) {
+                values.add(value);
+                return values.size() < 40;
+            }
+        });
+
+        assertEquals(40, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, (long) values.get(i));
+        }
+    }
+
+    @Test
+    public void shouldRemoveEntries() throws IOException {
+        BPlusTree tree = BPlusTree.create(pool, false);
+        for (long key = 0; key < 500; key++) {
+            tree.put(key % 10, key);
+        }
+        for (long key = 0; key < 500; key += 2) {
+            assertTrue(tree.remove(key % 10, key));
+        }
+        assertFalse(tree.remove(0, 0));
+
+        final List<Long> values = new ArrayList<>();
+        tree.scan(Long.MIN_VALUE, Long.MAX_VALUE, new BPlusTree.Visitor() {
+            @Override
+            public boolean visit(long key, long value) {
+                values.add(value);
+                return true;
+            }
+        });
+        assertEquals(250, values.size());
+        for (long value : values) {
+            assertEquals(1, value % 2);
+        }
+    }
+
+    @Test
+    public void shouldReadTheTreeBackFromTheFile() throws IOException {
+        BPlusTree tree = BPlusTree.create(pool, true);
+        for (long key = 0; key < 1000; key++) {
+            tree.put(key, -key);
+        }
+        pool.flush();
+
+        BPlusTree reopened = new BPlusTree(new BufferPool(channel, 128, 4), tree.getRoot(), true);
+
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(-key, reopened.get(key, 1));
+        }
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        channel.close();
+        file.delete();
+    }
+}
@@ -0,0 +1,98 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for BinaryDiskWriterImpl
+ */
+public class BinaryDiskWriterImplTest {
+    private File binaryFile;
+    private File serializedFile;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+
+    @Before
+    public void buildUp() throws IOException {
+        binaryFile = File.createTempFile("contacts", ".bin");
+        serializedFile = File.createTempFile("contacts", ".txt");
+
+        UniqueNumberGeneratorUtilities numbers = new CountingNumbers();
+        contactsContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+    }
+
+    @Test
+    public void shouldReadBackTheContactsAndMeetings() {
+        int adamId = contactsContainer.addContact("Adam", "Works on project Apollo");
+        int bennyId = contactsContainer.addContact("Benny", "");
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(contactsContainer.getContact(adamId));
+        contactSet.add(contactsContainer.getContact(bennyId));
+        long now = System.currentTimeMillis();
+        int futureId = meetingContainer.addFutureMeeting(contactSet, now + 86400000L);
+        int pastId = meetingContainer.addPastMeeting(contactSet, now - 86400000L, "Budget agreed");
+
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        ContactsContainer contacts = diskWriter.getContactContainer();
+        MeetingContainer meetings = diskWriter.getMeetingContainer();
+
+        assertEquals("Adam", contacts.getContact(adamId).getName());
+        assertEquals(Collections.singleton(adamId), contacts.searchNotes("apollo", true));
+        assertEquals(now + 86400000L, meetings.getFutureMeeting(futureId).getTime());
+        assertEquals("Budget agreed", meetings.getPastMeeting(pastId).getNotes());
+        assertEquals(2, meetings.getMeeting(pastId).getContacts().size());
+        assertEquals(2, meetings.getMeetingCount(contacts.getContact(bennyId)));
+    }
+
+    @Test
+    public void shouldBeSmallerThanSerializingTheContainers() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 500; i++) {
+            int id = contactsContainer.addContact("Contact " + i, "Notes about contact " + i);
+            Set<Contact> contactSet = Collections.singleton(contactsContainer.getContact(id));
+            meetingContainer.addPastMeeting(contactSet, now - (i + 1) * 3600000L, "Meeting notes " + i);
+        }
+
+        newDiskWriter().writeToDisk(contactsContainer, meetingContainer);
+        new DiskWriterImpl(serializedFile.getPath()).writeToDisk(contactsContainer, meetingContainer);
+
+        assertTrue(binaryFile.length() * 2 < serializedFile.length());
+    }
+
+    @Test
+    public void shouldNotReadAFileThatIsNotASnapshot() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(binaryFile)) {
+            out.write(new byte[]{1, 2, 3, 4, 5});
+        }
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.readDisk();
+
+        assertNull(diskWriter.getContactContainer());
+        assertNull(diskWriter.getMeetingContainer());
+    }
+
+    private DiskWriter newDiskWriter() {
+        return new BinaryDiskWriterImpl(binaryFile.getPath(), new ContactFactoryImpl(), new MeetingFactoryImpl(), new CountingNumbers());
+    }
+
+    @After
+    public void cleanUp() {
+        binaryFile.delete();
+        serializedFile.delete();
+    }
+}
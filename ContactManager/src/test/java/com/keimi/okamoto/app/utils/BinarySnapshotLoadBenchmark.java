@@ -0,0 +1,77 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+ * Measures how long it takes to load the same data written by DiskWriterImpl,
+ * which serializes the containers, and by BinaryDiskWriterImpl. Run with the
+ * number of contacts and the number of loads to time as the arguments; each
+ * contact gets one past meeting with itself and the contact before it.
+ *
+ * Each writer loads the file a few times first so both are timed after the
+ * JIT has compiled them, and the best of the timed loads is reported.
+ */
+public class BinarySnapshotLoadBenchmark {
+    private static final int WARM_UP_LOADS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int loads = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        UniqueNumberGeneratorUtilities numbers = new CountingNumbers();
+        ContactsContainer contacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        MeetingContainer meetings = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+        long now = System.currentTimeMillis();
+        Contact previous = null;
+        for (int i = 0; i < count; i++) {
+            Contact contact = contacts.getContact(contacts.addContact("Contact " + i, "Notes about contact " + i));
+            Set<Contact> attendees = new HashSet<>();
+            attendees.add(contact);
+            if (previous != null) {
+                attendees.add(previous);
+            }
+            meetings.addPastMeeting(attendees, now - (i + 1) * 60000L, "Meeting notes " + i);
+            previous = contact;
+        }
+
+        File serializedFile = File.createTempFile("benchmark", ".txt");
+        File binaryFile = File.createTempFile("benchmark", ".bin");
+        try {
+            DiskWriter serialized = new DiskWriterImpl(serializedFile.getPath());
+            DiskWriter binary = new BinaryDiskWriterImpl(binaryFile.getPath(), new ContactFactoryImpl(), new MeetingFactoryImpl(), new CountingNumbers());
+            serialized.writeToDisk(contacts, meetings);
+            binary.writeToDisk(contacts, meetings);
+
+            long serializedLoad = bestLoad(serialized, loads);
+            long binaryLoad = bestLoad(binary, loads);
+
+            System.out.printf("%d contacts and %d meetings, best of %d loads%n", count, count, loads);
+            System.out.printf("%-12s %12s %12s%n", "", "size (KB)", "load (ms)");
+            System.out.printf("%-12s %12d %12.1f%n", "serialized", serializedFile.length() / 1024, serializedLoad / 1e6);
+            System.out.printf("%-12s %12d %12.1f%n", "binary", binaryFile.length() / 1024, binaryLoad / 1e6);
+            System.out.printf("binary loads %.1f times faster%n", (double) serializedLoad / binaryLoad);
+        } finally {
+            serializedFile.delete();
+            binaryFile.delete();
+        }
+    }
+
+    private static long bestLoad(DiskWriter diskWriter, int loads) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARM_UP_LOADS + loads; i++) {
+            long start = System.nanoTime();
+            diskWriter.readDisk();
+            long elapsed = System.nanoTime() - start;
+            if (diskWriter.getMeetingContainer() == null) throw new IllegalStateException("Could not load");
+            if (i >= WARM_UP_LOADS) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,117 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for BufferPool with a journal, over a pool of two pages so that changed pages are evicted
+ */
+public class BufferPoolTest {
+    private static final int PAGE_SIZE = 128;
+
+    private File file;
+    private File journalFile;
+    private FileChannel channel;
+    private FileChannel journal;
+    private BufferPool pool;
+
+    @Before
+    public void buildUp() throws IOException {
+        file = File.createTempFile("pages", ".dat");
+        journalFile = File.createTempFile("pages", ".journal");
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        pool = new BufferPool(channel, PAGE_SIZE, 2, journal);
+        for (int i = 0; i < 4; i++) {
+            fill(pool.allocate(), (byte) 1);
+        }
+        pool.flush();
+    }
+
+    @Test
+    public void shouldNotWriteEvictedPagesToTheFileBeforeAFlush() throws IOException {
+        byte[] flushed = Files.readAllBytes(file.toPath());
+        for (int i = 0; i < 4; i++) {
+            fill(pool.pin(i), (byte) 2);
+        }
+
+        assertArrayEquals(flushed, Files.readAllBytes(file.toPath()));
+        assertTrue(journal.size() > 0);
+        assertEquals(2, pool.pin(0).getData().get(0));
+
+        pool.flush();
+
+        assertEquals(0, journal.size());
+        assertEquals(2, Files.readAllBytes(file.toPath())[3 * PAGE_SIZE]);
+    }
+
+    @Test
+    public void shouldFinishAFlushThatReachedTheJournal() throws IOException {
+        writeJournalEntry(1, (byte) 3, true);
+
+        BufferPool.recover(channel, journal);
+
+        assertEquals(3, Files.readAllBytes(file.toPath())[PAGE_SIZE]);
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    public void shouldThrowAwayAFlushThatWasNotWhole() throws IOException {
+        byte[] flushed = Files.readAllBytes(file.toPath());
+        writeJournalEntry(1, (byte) 3, false);
+
+        BufferPool.recover(channel, journal);
+
+        assertArrayEquals(flushed, Files.readAllBytes(file.toPath()));
+        assertEquals(0, journal.size());
+    }
+
+    /*
+     * Helper for test.
+     * Fills a pinned page with a byte, marks it changed and unpins it.
+     */
+    private void fill(BufferPool.Page page, byte value) {
+        byte[] bytes = new byte[PAGE_SIZE];
+        Arrays.fill(bytes, value);
+        page.getData().clear();
+        page.getData().put(bytes).clear();
+        page.markDirty();
+        pool.unpin(page);
+    }
+
+    /*
+     * Helper for test.
+     * Writes a page to the journal as a flush would, with or without the mark that the flush is whole.
+     */
+    private void writeJournalEntry(long number, byte value, boolean whole) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(12 + PAGE_SIZE + 8);
+        entry.putLong(number).putInt(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            entry.put(value);
+        }
+        if (whole) {
+            entry.putLong(-1);
+        }
+        entry.flip();
+        journal.write(entry, 0);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        channel.close();
+        journal.close();
+        file.delete();
+        journalFile.delete();
+    }
+}
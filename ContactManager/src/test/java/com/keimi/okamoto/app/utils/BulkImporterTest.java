@@ -0,0 +1,150 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.items.PastMeeting;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for BulkImporter and BulkExporter, in both record formats
+ */
+public class BulkImporterTest {
+    private static final long NOW = 1400000000000L;
+    private static final long DAY = 86400000L;
+
+    private UniqueNumberGeneratorUtilities numbers;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+
+    @Before
+    public void buildUp() {
+        numbers = new CountingNumbers();
+        contactsContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW));
+    }
+
+    @Test
+    public void shouldReadBackAnExportInEitherFormat() throws IOException {
+        int adamId = contactsContainer.addContact("Adam \"the boss\"", "Likes commas, quotes \" and\nline breaks");
+        int bennyId = contactsContainer.addContact("Benny", "");
+        Set<Contact> both = new HashSet<>(Arrays.asList(contactsContainer.getContact(adamId), contactsContainer.getContact(bennyId)));
+        meetingContainer.addFutureMeeting(both, NOW + DAY);
+        meetingContainer.addPastMeeting(Collections.singleton(contactsContainer.getContact(bennyId)), NOW - DAY, "");
+
+        for (RecordFormat format : Arrays.asList(new CsvRecordFormatImpl(), new JsonLinesRecordFormatImpl())) {
+            StringWriter out = new StringWriter();
+            assertEquals(4, new BulkExporter(format).exportRecords(out, contactsContainer, meetingContainer));
+
+            UniqueNumberGeneratorUtilities importNumbers = new CountingNumbers();
+            importNumbers.skipPast(99);
+            ContactsContainer contacts = new ContactsContainerImpl(new ContactFactoryImpl(), importNumbers);
+            MeetingContainer meetings = new MeetingContainerImpl(new MeetingFactoryImpl(), importNumbers, new ManualClockImpl(NOW));
+            assertEquals(4, new BulkImporter(format, 1, 2).importRecords(new StringReader(out.toString()), contacts, meetings));
+
+            Contact adam = contacts.getContacts("Adam \"the boss\"").iterator().next();
+            Contact benny = contacts.getContacts("Benny").iterator().next();
+            assertEquals("Likes commas, quotes \" and\nline breaks", adam.getNotes());
+            assertEquals(1, meetings.getFutureMeetings(adam).size());
+            assertEquals(2, meetings.getFutureMeetings(adam).get(0).getContacts().size());
+            List<PastMeeting> pastMeetings = meetings.getPastMeetings(benny);
+            assertEquals(1, pastMeetings.size());
+            assertEquals("", pastMeetings.get(0).getNotes());
+            assertEquals(NOW - DAY, pastMeetings.get(0).getTime());
+            assertEquals(Collections.singleton(adam.getId()), contacts.searchNotes("commas", true));
+        }
+    }
+
+    @Test
+    public void shouldGiveEachBatchABlockOfIds() throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            records.append("{\"type\":\"meeting\",\"id\":").append(5000 + i).append(",\"date\":").append(NOW - i)
+                    .append(",\"contacts\":[").append(i).append("],\"notes\":\"meeting ").append(i).append("\"}\n");
+            records.append("{\"type\":\"contact\",\"id\":").append(i).append(",\"name\":\"Contact ").append(i)
+                    .append("\",\"notes\":\"\",\"source\":\"crm\"}\n\n");
+        }
+        numbers.skipPast(9);
+
+        int count = new BulkImporter(new JsonLinesRecordFormatImpl(), 64, 4)
+                .importRecords(new StringReader(records.toString()), contactsContainer, meetingContainer);
+
+        assertEquals(2000, count);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Contact " + i, contactsContainer.getContact(10 + i).getName());
+            Meeting meeting = meetingContainer.getMeeting(1010 + i);
+            assertEquals(NOW - i, meeting.getTime());
+            assertEquals(10 + i, meeting.getContacts().iterator().next().getId());
+        }
+        assertEquals(2010, numbers.getUniqueNumber());
+        assertEquals(Collections.singleton(1010 + 123), meetingContainer.searchNotes("123", true));
+    }
+
+    @Test
+    public void shouldAddNothingIfAMeetingHasAContactThatIsNotInTheImport() {
+        String records = "contact,1,\"Adam\",\"\"\nmeeting,2,1000,1 3,\"Notes\"\n";
+
+        try {
+            new BulkImporter(new CsvRecordFormatImpl(), 1, 1).importRecords(new StringReader(records), contactsContainer, meetingContainer);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("contact 3"));
+        }
+        assertTrue(contactsContainer.getAllContacts().isEmpty());
+        assertTrue(meetingContainer.getAllMeetings().isEmpty());
+    }
+
+    @Test
+    public void shouldAddNothingIfAMeetingHasNoContacts() {
+        String records = "{\"type\":\"contact\",\"id\":1,\"name\":\"Adam\",\"notes\":\"\"}\n"
+                + "{\"type\":\"meeting\",\"id\":2,\"date\":1000,\"contacts\":[],\"notes\":\"Notes\"}\n";
+
+        try {
+            new BulkImporter(new JsonLinesRecordFormatImpl(), 1, 1).importRecords(new StringReader(records), contactsContainer, meetingContainer);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("no contacts"));
+        }
+        assertTrue(contactsContainer.getAllContacts().isEmpty());
+        assertTrue(meetingContainer.getAllMeetings().isEmpty());
+        assertEquals(0, numbers.getUniqueNumber());
+    }
+
+    @Test
+    public void shouldAddNothingIfAMeetingDateDoesNotMatchItsNotes() {
+        String pastWithoutNotes = "contact,1,\"Adam\",\"\"\nmeeting,2," + (NOW - DAY) + ",1,\n";
+        String futureWithNotes = "contact,1,\"Adam\",\"\"\nmeeting,2," + (NOW + DAY) + ",1,\"Notes\"\n";
+
+        for (String records : Arrays.asList(pastWithoutNotes, futureWithNotes)) {
+            try {
+                new BulkImporter(new CsvRecordFormatImpl(), 1, 1).importRecords(new StringReader(records), contactsContainer, meetingContainer);
+                fail();
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Meeting 2 has"));
+            }
+        }
+        assertTrue(contactsContainer.getAllContacts().isEmpty());
+        assertTrue(meetingContainer.getAllMeetings().isEmpty());
+    }
+
+    @Test
+    public void shouldSayWhereARecordCouldNotBeParsed() {
+        String records = "contact,1,\"Adam\",\"\"\ncontact,2,\"Benny\",\"\"\ncontact,x,\"Carl\",\"\"\n";
+
+        try {
+            new BulkImporter(new CsvRecordFormatImpl(), 2, 2).importRecords(new StringReader(records), contactsContainer, meetingContainer);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("In the chunk from line 3"));
+        }
+        assertTrue(contactsContainer.getAllContacts().isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Test for the clocks the meeting containers read the time from.
+ */
+package com.keimi.okamoto.app.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClockTest {
+
+    /**
+     * Test that the cached clock is a single instance that
+     * stays close to the system time.
+     *
+     * @throws InterruptedException if the test is interrupted while waiting
+     */
+    @Test
+    public void shouldKeepCachedTimeUpToDate() throws InterruptedException {
+        Clock aClock = CachedClockImpl.getInstance();
+        assertSame(aClock, CachedClockImpl.getInstance());
+
+        long before = System.currentTimeMillis();
+        Thread.sleep(50);
+        long actual = aClock.currentTimeMillis();
+
+        assertTrue(actual >= before);
+        assertTrue(actual <= System.currentTimeMillis());
+    }
+
+    /**
+     * Test that the system clock is a single instance that
+     * never falls behind the system time.
+     */
+    @Test
+    public void shouldReadSystemTimeFromSystemClock() {
+        Clock aClock = SystemClockImpl.getInstance();
+        assertSame(aClock, SystemClockImpl.getInstance());
+
+        for (int i = 0; i < 1000; i++) {
+            long before = System.currentTimeMillis();
+            assertTrue(aClock.currentTimeMillis() >= before);
+        }
+    }
+
+    /**
+     * Test that the manual clock only moves when it is told to.
+     */
+    @Test
+    public void shouldOnlyMoveManualClockWhenToldTo() {
+        ManualClockImpl aClock = new ManualClockImpl(1000);
+        assertEquals(1000, aClock.currentTimeMillis());
+
+        aClock.advance(500);
+        assertEquals(1500, aClock.currentTimeMillis());
+
+        aClock.setTime(42);
+        assertEquals(42, aClock.currentTimeMillis());
+    }
+}
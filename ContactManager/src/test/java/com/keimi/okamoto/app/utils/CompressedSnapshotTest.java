@@ -0,0 +1,120 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for CompressedSnapshot and reading it through MappedDiskWriterImpl
+ */
+public class CompressedSnapshotTest {
+    private static final long DAY = 86400000L;
+
+    private File compressedFile;
+    private File mappedFile;
+    private UniqueNumberGeneratorUtilities numbers;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private long now;
+
+    @Before
+    public void buildUp() throws IOException {
+        compressedFile = File.createTempFile("contacts", ".cmp");
+        mappedFile = File.createTempFile("contacts", ".map");
+        numbers = new CountingNumbers();
+        contactsContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+        now = System.currentTimeMillis();
+
+        for (int i = 0; i < 5000; i++) {
+            int id = contactsContainer.addContact("Contact " + i, "Met at the quarterly review, follow up about the budget " + (i % 10));
+            meetingContainer.addPastMeeting(Collections.singleton(contactsContainer.getContact(id)), now - (i + 1) * 60000L,
+                    "Went through the budget and agreed the next steps " + i);
+        }
+    }
+
+    @Test
+    public void shouldReadSingleRecordsFromAFileOfSeveralBlocks() throws IOException {
+        CompressedSnapshot.write(compressedFile, contactsContainer.getAllContacts(), meetingContainer.getAllMeetings());
+
+        try (CompressedSnapshot snapshot = CompressedSnapshot.open(compressedFile)) {
+            assertTrue(snapshot.getBlockCount() > 1);
+            assertEquals(5000, snapshot.getContactCount());
+            assertEquals(5000, snapshot.getMeetingCount());
+
+            Contact contact = contactsContainer.getContact(4321 * 2);
+            assertEquals(contact.getName(), snapshot.readContact(contact.getId(), new ContactFactoryImpl()).getName());
+            assertNull(snapshot.readContact(-1, new ContactFactoryImpl()));
+            assertFalse(snapshot.hasMeeting(0));
+            assertTrue(snapshot.hasMeeting(1));
+
+            Meeting meeting = snapshot.readMeeting(4321 * 2 + 1, contactsContainer, new MeetingFactoryImpl());
+            assertEquals("Went through the budget and agreed the next steps 4321", meetingContainer.getPastMeeting(meeting.getId()).getNotes());
+            assertEquals(now - 4322 * 60000L, meeting.getTime());
+            assertEquals(Collections.singleton(contact), meeting.getContacts());
+
+            int[] ids = snapshot.getMeetingIdsBetween(now - 3 * 60000L, now);
+            assertArrayEquals(new int[]{5, 3, 1}, ids);
+            assertArrayEquals(new int[]{meeting.getId()}, snapshot.getMeetingIdsOf(contact.getId(), true));
+            assertEquals(0, snapshot.getMeetingIdsOf(contact.getId(), false).length);
+            assertEquals(0, snapshot.getMeetingIdsOf(contact.getId(), now - 4322 * 60000L + 1, now).length);
+        }
+    }
+
+    @Test
+    public void shouldBeSmallerThanTheUncompressedSnapshot() throws IOException {
+        CompressedSnapshot.write(compressedFile, contactsContainer.getAllContacts(), meetingContainer.getAllMeetings());
+        MappedSnapshot.write(mappedFile, contactsContainer.getAllContacts(), meetingContainer.getAllMeetings());
+
+        assertTrue(compressedFile.length() * 2 < mappedFile.length());
+    }
+
+    @Test
+    public void shouldReadACompressedSnapshotThroughMappedDiskWriter() {
+        DiskWriter diskWriter = new MappedDiskWriterImpl(compressedFile.getPath(), true, new ContactFactoryImpl(), new MeetingFactoryImpl(),
+                numbers, SystemClockImpl.getInstance());
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        MappedContactsContainerImpl contacts = (MappedContactsContainerImpl) diskWriter.getContactContainer();
+        MappedMeetingContainerImpl meetings = (MappedMeetingContainerImpl) diskWriter.getMeetingContainer();
+
+        assertEquals("Contact 7", contacts.getContact(14).getName());
+        assertEquals(1, meetings.getMeetings(now - 60000L, now).size());
+        assertFalse(contacts.isLoaded());
+        assertFalse(meetings.isLoaded());
+        assertEquals(Collections.singleton(15), meetings.searchNotes("steps 7", true));
+    }
+
+    @Test
+    public void shouldWriteAndReadAnEmptySnapshot() throws IOException {
+        CompressedSnapshot.write(compressedFile, Collections.<Contact>emptySet(), Collections.<Meeting>emptySet());
+
+        try (CompressedSnapshot snapshot = CompressedSnapshot.open(compressedFile)) {
+            assertEquals(0, snapshot.getBlockCount());
+            assertEquals(0, snapshot.getContactCount());
+            assertEquals(0, snapshot.getMeetingIdsBetween(Long.MIN_VALUE, Long.MAX_VALUE).length);
+        }
+    }
+
+    @Test (expected = IOException.class)
+    public void shouldThrowIOExceptionIfFileIsNotACompressedSnapshot() throws IOException {
+        MappedSnapshot.write(mappedFile, contactsContainer.getAllContacts(), meetingContainer.getAllMeetings());
+
+        CompressedSnapshot.open(mappedFile);
+    }
+
+    @After
+    public void cleanUp() {
+        compressedFile.delete();
+        mappedFile.delete();
+    }
+}
@@ -0,0 +1,133 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/*
+ * Test for ContactManagerServerImpl, over real HTTP connections
+ */
+public class ContactManagerServerImplTest {
+    private static final long NOW = 1400000000000L;
+    private static final long DAY = 86400000L;
+
+    private DiskWriter aDiskWriter;
+    private ContactManagerServer server;
+
+    @Before
+    public void buildUp() throws IOException {
+        UniqueNumberGeneratorUtilities numbers = new CountingNumbers();
+        aDiskWriter = mock(DiskWriter.class);
+        ContactManager aContactManager = new ContactManagerImpl(new ContactsContainerImpl(new ContactFactoryImpl(), numbers),
+                new MeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW)), aDiskWriter);
+        server = new ContactManagerServerImpl(aContactManager, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+    }
+
+    @Test
+    public void shouldAddAndFindContactsAndMeetings() throws IOException {
+        assertEquals(201, request("POST", "/contacts", "{\"name\":\"Adam\",\"notes\":\"Likes \\\"tea\\\"\"}").status);
+        assertEquals(201, request("POST", "/contacts", "{\"name\":\"Benny\",\"notes\":\"\"}").status);
+
+        Reply adam = request("GET", "/contacts?name=Adam", null);
+        assertEquals(200, adam.status);
+        assertEquals("[{\"id\":0,\"name\":\"Adam\",\"notes\":\"Likes \\\"tea\\\"\"}]", adam.body);
+
+        Reply future = request("POST", "/meetings", "{\"contacts\":[0,1],\"date\":" + (NOW + DAY) + "}");
+        assertEquals(201, future.status);
+        assertEquals("{\"id\":2}", future.body);
+        assertEquals(201, request("POST", "/meetings", "{\"contacts\":[0],\"date\":" + (NOW - DAY) + ",\"notes\":\"Tea\"}").status);
+
+        Reply meeting = request("GET", "/meetings/2?type=future", null);
+        assertEquals(200, meeting.status);
+        assertTrue(meeting.body.startsWith("{\"id\":2,\"date\":" + (NOW + DAY) + ",\"contacts\":["));
+        assertTrue(meeting.body.endsWith("],\"notes\":null}"));
+        assertEquals("[3]", request("GET", "/meetings/search?q=tea", null).body);
+        assertTrue(request("GET", "/meetings?contact=0&type=past", null).body.contains("\"notes\":\"Tea\""));
+        assertEquals("[0]", request("GET", "/contacts/search?q=tea", null).body);
+        assertTrue(request("GET", "/contacts?ids=0,1", null).body.contains("\"name\":\"Benny\""));
+    }
+
+    @Test
+    public void shouldTurnBadRequestsIntoStatuses() throws IOException {
+        assertEquals(400, request("POST", "/contacts", "{\"name\":\"Adam\"}").status);
+        assertEquals(400, request("POST", "/contacts", "{\"notes\":\"\"}").status);
+        assertEquals(400, request("POST", "/contacts", "not json").status);
+        assertEquals(400, request("GET", "/contacts?ids=x", null).status);
+        assertEquals(404, request("GET", "/contacts?ids=42", null).status);
+        assertEquals(404, request("GET", "/meetings?contact=42&type=past", null).status);
+        assertEquals(404, request("POST", "/meetings/42/notes", "{\"notes\":\"Tea\"}").status);
+        assertEquals(404, request("GET", "/meetings/42", null).status);
+        assertEquals(404, request("GET", "/nothing", null).status);
+        assertEquals(405, request("DELETE", "/contacts", null).status);
+
+        request("POST", "/contacts", "{\"name\":\"Adam\",\"notes\":\"\"}");
+        request("POST", "/meetings", "{\"contacts\":[0],\"date\":" + (NOW + DAY) + "}");
+        Reply tooEarly = request("POST", "/meetings/1/notes", "{\"notes\":\"Tea\"}");
+        assertEquals(409, tooEarly.status);
+        assertTrue(tooEarly.body.startsWith("{\"error\":"));
+        assertEquals(404, request("GET", "/meetings/1?type=past", null).status);
+        assertEquals(200, request("GET", "/meetings/1?type=future", null).status);
+    }
+
+    @Test
+    public void shouldFlushOnRequest() throws IOException {
+        assertEquals(204, request("POST", "/flush", null).status);
+
+        verify(aDiskWriter).writeToDisk(org.mockito.Matchers.any(ContactsContainer.class), org.mockito.Matchers.any(MeetingContainer.class));
+    }
+
+    private Reply request(String method, String path, String body) throws IOException {
+        URL url = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path).toURL();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes("UTF-8"));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        StringBuilder text = new StringBuilder();
+        if (in != null) {
+            try (Reader reader = new InputStreamReader(in, "UTF-8")) {
+                char[] buffer = new char[1024];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    text.append(buffer, 0, read);
+                }
+            }
+        }
+        return new Reply(status, text.toString());
+    }
+
+    /*
+     * The status and body of a response
+     */
+    private static class Reply {
+        private final int status;
+        private final String body;
+
+        private Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        server.stop(0);
+    }
+}
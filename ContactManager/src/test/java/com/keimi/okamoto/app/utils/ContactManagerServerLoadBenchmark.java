@@ -0,0 +1,247 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+import static org.mockito.Mockito.mock;
+
+/*
+ * Measures how many requests a second a ContactManagerServerImpl answers,
+ * and how long they take, with many connections open at once. Run with
+ * the number of connections and the seconds to run for as the arguments,
+ * and a host:port as the third to load a server that is already running
+ * instead of one started here over 1000 contacts and 5000 meetings.
+ *
+ * The client is a single thread with a Selector, so it can hold ten
+ * thousand connections without ten thousand threads. Each connection
+ * sends a request, waits for the answer and sends the next, over the same
+ * connection. About 95 in every 100 requests are reads, of the future
+ * meetings of a contact or of a meeting by id, and the rest add a future
+ * meeting. The limit on open files has to be above the number of
+ * connections, twice over if the server is in the same process.
+ */
+public class ContactManagerServerLoadBenchmark {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int CONTACTS = 1000;
+    private static final int MEETINGS = 5000;
+    private static final long DAY = 86400000L;
+
+    private final InetSocketAddress address;
+    private final int connections;
+    private final Random random = new Random(42);
+    private long[] latencies = new long[1 << 16];
+    private int completed;
+    private int failed;
+    private int reconnects;
+
+    private ContactManagerServerLoadBenchmark(InetSocketAddress address, int connections) {
+        this.address = address;
+        this.connections = connections;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        ContactManagerServer server = null;
+        InetSocketAddress address;
+        if (args.length > 2) {
+            String[] hostAndPort = args[2].split(":");
+            address = new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1]));
+        } else {
+            // the JDK server closes keep-alive connections beyond this many idle ones
+            System.setProperty("sun.net.httpserver.maxIdleConnections", Integer.toString(connections));
+            server = new ContactManagerServerImpl(newContactManager(), new InetSocketAddress("127.0.0.1", 0), connections, null);
+            server.start();
+            address = server.getAddress();
+        }
+        try {
+            new ContactManagerServerLoadBenchmark(address, connections).run(seconds);
+        } finally {
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+
+    private static ContactManager newContactManager() {
+        UniqueNumberGeneratorUtilities numbers = new AtomicUniqueNumberGeneratorImpl(1);
+        ContactManager aContactManager = new ContactManagerImpl(new ContactsContainerImpl(new ContactFactoryImpl(), numbers),
+                new MeetingContainerImpl(new MeetingFactoryImpl(), numbers), mock(DiskWriter.class));
+        for (int i = 0; i < CONTACTS; i++) {
+            aContactManager.addNewContact("Contact " + i, "");
+        }
+        long later = System.currentTimeMillis() + DAY;
+        Random random = new Random(7);
+        for (int i = 0; i < MEETINGS; i++) {
+            Set<Contact> attendees = aContactManager.getContacts(random.nextInt(CONTACTS), random.nextInt(CONTACTS));
+            aContactManager.addFutureMeeting(attendees, later + i * 60000L);
+        }
+        return aContactManager;
+    }
+
+    /*
+     * A connection and the request it is waiting on
+     */
+    private static class Connection {
+        private SocketChannel channel;
+        private ByteBuffer out;
+        private ByteBuffer in = ByteBuffer.allocate(8192);
+        private long sentAt;
+    }
+
+    private void run(int seconds) throws IOException {
+        Selector selector = Selector.open();
+        int open = 0;
+        try {
+            for (; open < connections; open++) {
+                open(selector, new Connection());
+            }
+        } catch (IOException e) {
+            System.out.printf("Only %d connections could be opened: %s%n", open, e.getMessage());
+        }
+        int connectionsOpened = open;
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        while (open > 0 && System.nanoTime() < end + 10000000000L) {
+            selector.select(100);
+            for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Connection c = (Connection) key.attachment();
+                try {
+                    if (key.isConnectable()) {
+                        c.channel.finishConnect();
+                        send(key, c);
+                    } else if (key.isWritable()) {
+                        c.channel.write(c.out);
+                        if (!c.out.hasRemaining()) {
+                            key.interestOps(SelectionKey.OP_READ);
+                        }
+                    } else if (key.isReadable()) {
+                        if (c.channel.read(c.in) < 0) throw new IOException("Closed by the server");
+                        if (!c.in.hasRemaining()) {
+                            ByteBuffer bigger = ByteBuffer.allocate(c.in.capacity() * 2);
+                            c.in.flip();
+                            bigger.put(c.in);
+                            c.in = bigger;
+                        }
+                        if (readResponse(c)) {
+                            if (System.nanoTime() < end) {
+                                send(key, c);
+                            } else {
+                                key.cancel();
+                                c.channel.close();
+                                open--;
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    key.cancel();
+                    c.channel.close();
+                    failed++;
+                    if (System.nanoTime() < end && reopen(selector, c)) {
+                        reconnects++;
+                    } else {
+                        open--;
+                    }
+                }
+            }
+        }
+        long elapsed = Math.min(System.nanoTime(), end) - start;
+        selector.close();
+        report(connectionsOpened, elapsed);
+    }
+
+    private void open(Selector selector, Connection c) throws IOException {
+        c.channel = SocketChannel.open();
+        c.channel.configureBlocking(false);
+        c.in.clear();
+        if (c.channel.connect(address)) {
+            send(c.channel.register(selector, SelectionKey.OP_WRITE, c), c);
+        } else {
+            c.channel.register(selector, SelectionKey.OP_CONNECT, c);
+        }
+    }
+
+    private boolean reopen(Selector selector, Connection c) {
+        try {
+            open(selector, c);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void send(SelectionKey key, Connection c) throws IOException {
+        c.out = ByteBuffer.wrap(nextRequest().getBytes(ASCII));
+        c.sentAt = System.nanoTime();
+        c.channel.write(c.out);
+        key.interestOps(c.out.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private String nextRequest() {
+        String host = "Host: " + address.getHostString() + ":" + address.getPort() + "\r\n";
+        int dice = random.nextInt(100);
+        if (dice < 50) {
+            return "GET /meetings?contact=" + random.nextInt(CONTACTS) + "&type=future HTTP/1.1\r\n" + host + "\r\n";
+        }
+        if (dice < 95) {
+            return "GET /meetings/" + (CONTACTS + random.nextInt(MEETINGS)) + " HTTP/1.1\r\n" + host + "\r\n";
+        }
+        String body = "{\"contacts\":[" + random.nextInt(CONTACTS) + "],\"date\":" + (System.currentTimeMillis() + DAY) + "}";
+        return "POST /meetings HTTP/1.1\r\n" + host + "Content-Type: application/json\r\nContent-Length: " + body.length()
+                + "\r\n\r\n" + body;
+    }
+
+    /*
+     * Returns true once the whole response is in, counting it and how long it took
+     */
+    private boolean readResponse(Connection c) {
+        String text = new String(c.in.array(), 0, c.in.position(), ASCII);
+        int headerEnd = text.indexOf("\r\n\r\n");
+        if (headerEnd < 0) return false;
+
+        int length = 0;
+        for (String line : text.substring(0, headerEnd).split("\r\n")) {
+            if (line.toLowerCase(Locale.ENGLISH).startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        if (c.in.position() < headerEnd + 4 + length) return false;
+
+        int status = Integer.parseInt(text.substring(9, 12));
+        if (status >= 200 && status < 300) {
+            if (completed == latencies.length) {
+                latencies = Arrays.copyOf(latencies, completed * 2);
+            }
+            latencies[completed++] = System.nanoTime() - c.sentAt;
+        } else {
+            failed++;
+        }
+        c.in.clear();
+        return true;
+    }
+
+    private void report(int connectionsOpened, long elapsedNanos) {
+        long[] sorted = Arrays.copyOf(latencies, completed);
+        Arrays.sort(sorted);
+        System.out.printf("%d connections for %.1f s%n", connectionsOpened, elapsedNanos / 1e9);
+        System.out.printf("%d requests answered, %.0f requests/s%n", completed, completed / (elapsedNanos / 1e9));
+        if (completed > 0) {
+            System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    sorted[completed / 2] / 1e6, sorted[(int) (completed * 0.99)] / 1e6, sorted[completed - 1] / 1e6);
+        }
+        System.out.printf("%d failed, %d reconnects%n", failed, reconnects);
+    }
+}
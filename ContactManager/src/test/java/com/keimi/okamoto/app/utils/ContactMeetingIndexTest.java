@@ -0,0 +1,85 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Test for ContactMeetingIndex
+ */
+public class ContactMeetingIndexTest {
+    private ContactMeetingIndex aContactMeetingIndex;
+
+    @Before
+    public void buildUp() {
+        aContactMeetingIndex = new ContactMeetingIndexImpl();
+    }
+
+    /*
+     * Test for addMeeting() and getMeetingIds(int contactId, boolean past)
+     * Starts here:
+     */
+    @Test
+    public void shouldKeepMeetingsOfAContactInChronologicalOrder() {
+        aContactMeetingIndex.addMeeting(1, 300L, 10, false);
+        aContactMeetingIndex.addMeeting(1, 100L, 11, false);
+        aContactMeetingIndex.addMeeting(1, 200L, 12, false);
+        aContactMeetingIndex.addMeeting(1, 100L, 13, true);
+
+        assertArrayEquals(new int[]{11, 12, 10}, aContactMeetingIndex.getMeetingIds(1, false));
+        assertArrayEquals(new int[]{13}, aContactMeetingIndex.getMeetingIds(1, true));
+        assertArrayEquals(new int[0], aContactMeetingIndex.getMeetingIds(2, false));
+    }
+
+    @Test
+    public void shouldNotAddTheSameMeetingTwice() {
+        aContactMeetingIndex.addMeeting(1, 100L, 10, false);
+        aContactMeetingIndex.addMeeting(1, 100L, 10, false);
+
+        assertEquals(1, aContactMeetingIndex.getMeetingCount(1));
+    }
+
+    @Test
+    public void shouldKeepContactsApartWhenTheIndexGrows() {
+        for (int contactId = 0; contactId < 1000; contactId++) {
+            aContactMeetingIndex.addMeeting(contactId, contactId, contactId + 5000, false);
+        }
+        for (int contactId = 0; contactId < 1000; contactId++) {
+            assertArrayEquals(new int[]{contactId + 5000}, aContactMeetingIndex.getMeetingIds(contactId, false));
+        }
+    }
+
+    /*
+     * Test for removeMeeting()
+     * Starts here:
+     */
+    @Test
+    public void shouldBeAbleToMoveAMeetingFromFutureToPast() {
+        aContactMeetingIndex.addMeeting(1, 100L, 10, false);
+        aContactMeetingIndex.addMeeting(1, 100L, 11, false);
+
+        aContactMeetingIndex.removeMeeting(1, 100L, 10, false);
+        aContactMeetingIndex.addMeeting(1, 100L, 10, true);
+
+        assertArrayEquals(new int[]{11}, aContactMeetingIndex.getMeetingIds(1, false));
+        assertArrayEquals(new int[]{10}, aContactMeetingIndex.getMeetingIds(1, true));
+        assertEquals(2, aContactMeetingIndex.getMeetingCount(1));
+    }
+
+    /*
+     * Test for getMeetingIds(int contactId, long from, long to)
+     * Starts here:
+     */
+    @Test
+    public void shouldMergeFutureAndPastMeetingsInARange() {
+        aContactMeetingIndex.addMeeting(1, 100L, 10, true);
+        aContactMeetingIndex.addMeeting(1, 200L, 11, false);
+        aContactMeetingIndex.addMeeting(1, 150L, 12, true);
+        aContactMeetingIndex.addMeeting(1, 400L, 13, false);
+
+        assertArrayEquals(new int[]{10, 12, 11}, aContactMeetingIndex.getMeetingIds(1, 100L, 400L));
+        assertArrayEquals(new int[0], aContactMeetingIndex.getMeetingIds(1, 400L, 100L));
+    }
+}
@@ -0,0 +1,29 @@
+package com.keimi.okamoto.app.utils;
+
+import java.io.Serializable;
+
+/**
+ * A UniqueNumberGeneratorUtilities for tests, counting up from 0. Unlike the
+ * singleton each test can have its own, so ids do not depend on which tests
+ * ran before.
+ */
+public class CountingNumbers implements UniqueNumberGeneratorUtilities, Serializable {
+    private int next;
+
+    @Override
+    public int getUniqueNumber() {
+        return next++;
+    }
+
+    @Override
+    public int reserve(int count) {
+        int first = next;
+        next += count;
+        return first;
+    }
+
+    @Override
+    public void skipPast(int number) {
+        next = Math.max(next, number + 1);
+    }
+}
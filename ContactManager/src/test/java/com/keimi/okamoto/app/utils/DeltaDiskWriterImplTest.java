@@ -0,0 +1,167 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for DeltaDiskWriterImpl
+ */
+public class DeltaDiskWriterImplTest {
+    private static final long DAY = 86400000L;
+
+    private File directory;
+    private File file;
+    private UniqueNumberGeneratorUtilities numbers;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+
+    @Before
+    public void buildUp() throws IOException {
+        directory = Files.createTempDirectory("contacts").toFile();
+        file = new File(directory, "contacts.bin");
+        numbers = new CountingNumbers();
+        contactsContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+    }
+
+    @Test
+    public void shouldWriteOnlyTheChangesAfterTheFirstWrite() {
+        for (int i = 0; i < 1000; i++) {
+            contactsContainer.addContact("Contact " + i, "Some notes about contact " + i);
+        }
+        DeltaDiskWriterImpl diskWriter = newDiskWriter(10);
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        assertEquals(0, diskWriter.getSegmentCount());
+
+        contactsContainer.addContact("Zoe", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+
+        assertEquals(1, diskWriter.getSegmentCount());
+        assertTrue(segment(1).length() * 100 < file.length());
+    }
+
+    @Test
+    public void shouldNotWriteASegmentWhenNothingHasChanged() {
+        DeltaDiskWriterImpl diskWriter = newDiskWriter(10);
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+
+        assertEquals(0, diskWriter.getSegmentCount());
+        assertFalse(segment(1).exists());
+    }
+
+    @Test
+    public void shouldReadTheBaseAndThenTheSegments() {
+        long now = System.currentTimeMillis();
+        int adamId = contactsContainer.addContact("Adam", "Works on project Apollo");
+        DeltaDiskWriterImpl diskWriter = newDiskWriter(10);
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+
+        Set<Contact> contactSet = Collections.singleton(contactsContainer.getContact(adamId));
+        int meetingId = meetingContainer.addPastMeeting(contactSet, now - DAY, "First notes");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        int bennyId = contactsContainer.addContact("Benny", "");
+        meetingContainer.convertToPastMeeting(meetingContainer.getMeeting(meetingId), "Second notes");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        assertEquals(2, diskWriter.getSegmentCount());
+
+        numbers = new CountingNumbers();
+        DeltaDiskWriterImpl reader = newDiskWriter(10);
+        reader.readDisk();
+        ContactsContainer contacts = reader.getContactContainer();
+        MeetingContainer meetings = reader.getMeetingContainer();
+
+        assertEquals("Benny", contacts.getContact(bennyId).getName());
+        assertEquals("Second notes", meetings.getPastMeeting(meetingId).getNotes());
+        assertEquals(Collections.singleton(meetingId), meetings.searchNotes("second", true));
+        assertEquals(1, meetings.getMeetingCount(contacts.getContact(adamId)));
+        assertTrue(contacts.takeChangedContactIds().isEmpty());
+        assertTrue(meetings.takeChangedMeetingIds().isEmpty());
+        assertEquals(2, reader.getSegmentCount());
+        assertTrue(numbers.getUniqueNumber() > bennyId);
+    }
+
+    @Test
+    public void shouldMergeTheSegmentsIntoTheBaseOnceThereAreEnough() {
+        DeltaDiskWriterImpl diskWriter = newDiskWriter(2);
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        contactsContainer.addContact("Adam", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        contactsContainer.addContact("Benny", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        assertEquals(2, diskWriter.getSegmentCount());
+
+        int carlId = contactsContainer.addContact("Carl", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+
+        assertEquals(0, diskWriter.getSegmentCount());
+        assertFalse(segment(1).exists());
+        assertFalse(segment(2).exists());
+
+        contactsContainer.addContact("Derek", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        assertTrue(segment(3).exists());
+
+        DeltaDiskWriterImpl reader = newDiskWriter(2);
+        reader.readDisk();
+        assertEquals(4, reader.getContactContainer().getAllContacts().size());
+        assertEquals("Carl", reader.getContactContainer().getContact(carlId).getName());
+    }
+
+    @Test
+    public void shouldNotReplaySegmentsAlreadyMergedIntoTheBase() throws IOException {
+        int adamId = contactsContainer.addContact("Adam", "");
+        DeltaDiskWriterImpl diskWriter = newDiskWriter(1);
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        contactsContainer.restoreContact(adamId, "Adam", "Old notes");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        File leftOver = new File(directory, "left-over");
+        Files.copy(segment(1).toPath(), leftOver.toPath());
+
+        contactsContainer.restoreContact(adamId, "Adam", "New notes");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        assertFalse(segment(1).exists());
+        // as if the merge had stopped before deleting the segment
+        Files.move(leftOver.toPath(), segment(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        DeltaDiskWriterImpl reader = newDiskWriter(1);
+        reader.readDisk();
+        assertEquals("New notes", reader.getContactContainer().getContact(adamId).getNotes());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfMergeThresholdIsNotPositive() {
+        newDiskWriter(0);
+    }
+
+    private DeltaDiskWriterImpl newDiskWriter(int mergeThreshold) {
+        return new DeltaDiskWriterImpl(file.getPath(), mergeThreshold, new ContactFactoryImpl(), new MeetingFactoryImpl(), numbers);
+    }
+
+    private File segment(int segmentNumber) {
+        return new File(file.getPath() + ".delta." + segmentNumber);
+    }
+
+    @After
+    public void cleanUp() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+}
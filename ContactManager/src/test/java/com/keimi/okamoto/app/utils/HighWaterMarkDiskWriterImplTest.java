@@ -0,0 +1,76 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for HighWaterMarkDiskWriterImpl
+ */
+public class HighWaterMarkDiskWriterImplTest {
+    private File directory;
+
+    @Before
+    public void buildUp() throws IOException {
+        directory = Files.createTempDirectory("contacts").toFile();
+    }
+
+    @Test
+    public void shouldNotHandOutANumberAgainAfterARestart() {
+        AtomicUniqueNumberGeneratorImpl numbers = new AtomicUniqueNumberGeneratorImpl(1000);
+        ContactsContainer contacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        MeetingContainer meetings = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+        contacts.addContact("Adam", "");
+        // numbers reserved by an import that added nothing were still handed out
+        int reserved = numbers.reserve(500);
+        newDiskWriter(numbers).writeToDisk(contacts, meetings);
+
+        AtomicUniqueNumberGeneratorImpl restarted = new AtomicUniqueNumberGeneratorImpl(1000);
+        HighWaterMarkDiskWriterImpl reader = newDiskWriter(restarted);
+        assertTrue(reader.checkIfDataExists());
+        reader.readDisk();
+
+        assertEquals("Adam", reader.getContactContainer().getContact(0).getName());
+        assertTrue(restarted.getUniqueNumber() >= reserved + 500);
+    }
+
+    @Test
+    public void shouldStillReadTheDataWithoutAHighWaterMark() {
+        AtomicUniqueNumberGeneratorImpl numbers = new AtomicUniqueNumberGeneratorImpl(10);
+        ContactsContainer contacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        int adamId = contacts.addContact("Adam", "");
+        newDiskWriter(numbers).writeToDisk(contacts, new MeetingContainerImpl(new MeetingFactoryImpl(), numbers));
+        assertTrue(new File(directory, "contacts.hwm").delete());
+
+        AtomicUniqueNumberGeneratorImpl restarted = new AtomicUniqueNumberGeneratorImpl(10);
+        HighWaterMarkDiskWriterImpl reader = newDiskWriter(restarted);
+        reader.readDisk();
+
+        assertEquals("Adam", reader.getContactContainer().getContact(adamId).getName());
+        assertTrue(restarted.getUniqueNumber() > adamId);
+    }
+
+    private HighWaterMarkDiskWriterImpl newDiskWriter(AtomicUniqueNumberGeneratorImpl numbers) {
+        DiskWriter data = new BinaryDiskWriterImpl(new File(directory, "contacts.bin").getPath(), new ContactFactoryImpl(),
+                new MeetingFactoryImpl(), numbers);
+        return new HighWaterMarkDiskWriterImpl(data, new File(directory, "contacts.hwm").getPath(), numbers);
+    }
+
+    @After
+    public void cleanUp() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,309 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for LogDiskWriterImpl
+ */
+public class LogDiskWriterImplTest {
+    private File snapshotFile;
+    private File logFile;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private LogDiskWriterImpl diskWriter;
+
+    @Before
+    public void buildUp() throws IOException {
+        snapshotFile = File.createTempFile("contacts", ".txt");
+        logFile = File.createTempFile("contacts", ".log");
+        snapshotFile.delete();
+        logFile.delete();
+
+        diskWriter = newDiskWriter(100);
+        contactsContainer = diskWriter.getContactContainer();
+        meetingContainer = diskWriter.getMeetingContainer();
+    }
+
+    @Test
+    public void shouldReplayTheLogWhenThereIsNoSnapshot() {
+        int adamId = contactsContainer.addContact("Adam", "Some notes about Adam...");
+        diskWriter.recordContact(contactsContainer.getContact(adamId));
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(contactsContainer.getContact(adamId));
+        long date = System.currentTimeMillis() + 86400000L;
+        int meetingId = meetingContainer.addFutureMeeting(contactSet, date);
+        diskWriter.recordMeeting(meetingContainer.getMeeting(meetingId));
+
+        assertFalse(snapshotFile.exists());
+        LogDiskWriterImpl restored = newDiskWriter(100);
+        assertTrue(restored.checkIfDataExists());
+        restored.readDisk();
+
+        Contact adam = restored.getContactContainer().getContact(adamId);
+        assertEquals("Adam", adam.getName());
+        assertEquals(date, restored.getMeetingContainer().getFutureMeeting(meetingId).getTime());
+        assertEquals(1, restored.getMeetingContainer().getMeetingCount(adam));
+    }
+
+    @Test
+    public void shouldReplayNotesAddedToAMeetingOnTopOfTheMeeting() {
+        int adamId = contactsContainer.addContact("Adam", "Some notes about Adam...");
+        diskWriter.recordContact(contactsContainer.getContact(adamId));
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(contactsContainer.getContact(adamId));
+        int meetingId = meetingContainer.addPastMeeting(contactSet, System.currentTimeMillis() - 1000, "Agenda");
+        diskWriter.recordMeeting(meetingContainer.getMeeting(meetingId));
+        meetingContainer.convertToPastMeeting(meetingContainer.getMeeting(meetingId), "Minutes");
+        diskWriter.recordMeeting(meetingContainer.getMeeting(meetingId));
+
+        LogDiskWriterImpl restored = newDiskWriter(100);
+        restored.readDisk();
+
+        assertEquals("Minutes", restored.getMeetingContainer().getPastMeeting(meetingId).getNotes());
+        assertEquals(Collections.singleton(meetingId), restored.getMeetingContainer().searchNotes("minutes", true));
+        assertTrue(restored.getMeetingContainer().searchNotes("agenda", true).isEmpty());
+    }
+
+    @Test
+    public void shouldTakeASnapshotAndStartANewLogAfterTheInterval() throws Exception {
+        diskWriter = newDiskWriter(2);
+        contactsContainer = diskWriter.getContactContainer();
+
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Adam", "")));
+        assertTrue(logFile.exists());
+        assertFalse(snapshotFile.exists());
+
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Benny", "")));
+        diskWriter.awaitPeriodicSnapshot(10, TimeUnit.SECONDS);
+        assertTrue(snapshotFile.exists());
+        assertFalse(logFile.exists());
+
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Carl", "")));
+        LogDiskWriterImpl restored = newDiskWriter(2);
+        restored.readDisk();
+
+        assertTrue(restored.getContactContainer().checkForValidName("Adam"));
+        assertTrue(restored.getContactContainer().checkForValidName("Benny"));
+        assertTrue(restored.getContactContainer().checkForValidName("Carl"));
+    }
+
+    @Test
+    public void shouldKeepTheRecordsLoggedAfterTheSnapshotWasTaken() {
+        int adamId = contactsContainer.addContact("Adam", "");
+        diskWriter.recordContact(contactsContainer.getContact(adamId));
+        ContactsContainer snapshot = new ContactsContainerImpl(new ContactFactoryImpl(), new CountingNumbers());
+        snapshot.restoreContact(adamId, "Adam", "");
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Benny", "")));
+
+        assertTrue(diskWriter.writeToDisk(snapshot, new MeetingContainerImpl(new MeetingFactoryImpl(), new CountingNumbers())));
+        assertTrue(logFile.exists());
+        LogDiskWriterImpl restored = newDiskWriter(100);
+        restored.readDisk();
+
+        assertTrue(restored.getContactContainer().checkForValidName("Adam"));
+        assertTrue(restored.getContactContainer().checkForValidName("Benny"));
+    }
+
+    @Test
+    public void shouldKeepAMeetingRecordWithOtherContactsThanTheSnapshot() {
+        int adamId = contactsContainer.addContact("Adam", "");
+        int bennyId = contactsContainer.addContact("Benny", "");
+        diskWriter.recordContact(contactsContainer.getContact(adamId));
+        diskWriter.recordContact(contactsContainer.getContact(bennyId));
+        long date = System.currentTimeMillis() + 86400000L;
+        int meetingId = meetingContainer.addFutureMeeting(Collections.singleton(contactsContainer.getContact(adamId)), date);
+        diskWriter.recordMeeting(meetingContainer.getMeeting(meetingId));
+
+        UniqueNumberGeneratorUtilities numbers = new CountingNumbers();
+        ContactsContainer contacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        contacts.restoreContact(adamId, "Adam", "");
+        contacts.restoreContact(bennyId, "Benny", "");
+        MeetingContainer meetings = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+        meetings.restoreMeeting(meetingId, Collections.singleton(contacts.getContact(bennyId)), date, null);
+        assertTrue(diskWriter.writeToDisk(contacts, meetings));
+
+        // the contact records match the snapshot, so only the meeting record keeps the log
+        assertTrue(logFile.exists());
+    }
+
+    @Test
+    public void shouldLogARecordWhileASnapshotIsBeingWritten() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        DiskWriter slowWriter = new DiskWriterImpl(snapshotFile.getPath()) {
+            @Override
+            public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+                return super.writeToDisk(aContactsContainer, aMeetingContainer);
+            }
+        };
+        diskWriter = newDiskWriter(slowWriter, 100);
+        contactsContainer = diskWriter.getContactContainer();
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Adam", "")));
+        final ContactsContainer snapshot = new ContactsContainerImpl(new ContactFactoryImpl(), new CountingNumbers());
+        snapshot.restoreContact(0, "Adam", "");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> flush = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return diskWriter.writeToDisk(snapshot, new MeetingContainerImpl(new MeetingFactoryImpl(), new CountingNumbers()));
+                }
+            });
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            Future<?> record = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Benny", "")));
+                }
+            });
+            record.get(10, TimeUnit.SECONDS);
+            release.countDown();
+            assertTrue(flush.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        LogDiskWriterImpl restored = newDiskWriter(100);
+        restored.readDisk();
+
+        assertTrue(restored.getContactContainer().checkForValidName("Adam"));
+        assertTrue(restored.getContactContainer().checkForValidName("Benny"));
+    }
+
+    @Test
+    public void shouldNotHoldUpARecordWhileThePeriodicSnapshotIsWritten() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        DiskWriter slowWriter = new DiskWriterImpl(snapshotFile.getPath()) {
+            @Override
+            public boolean writeToDisk(ContactsView aContactsContainer, MeetingsView aMeetingContainer) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+                return super.writeToDisk(aContactsContainer, aMeetingContainer);
+            }
+        };
+        diskWriter = newDiskWriter(slowWriter, 2);
+        contactsContainer = diskWriter.getContactContainer();
+
+        try {
+            diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Adam", "")));
+            diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Benny", "")));
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Carl", "")));
+        } finally {
+            release.countDown();
+        }
+        diskWriter.awaitPeriodicSnapshot(10, TimeUnit.SECONDS);
+
+        LogDiskWriterImpl restored = newDiskWriter(100);
+        restored.readDisk();
+
+        assertTrue(restored.getContactContainer().checkForValidName("Benny"));
+        assertTrue(restored.getContactContainer().checkForValidName("Carl"));
+        assertTrue(logFile.exists());
+    }
+
+    @Test
+    public void shouldDropARecordThatWasNotFinished() throws IOException {
+        int adamId = contactsContainer.addContact("Adam", "");
+        diskWriter.recordContact(contactsContainer.getContact(adamId));
+        long length = logFile.length();
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Benny", "")));
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        LogDiskWriterImpl restored = newDiskWriter(100);
+        restored.readDisk();
+
+        assertTrue(restored.getContactContainer().checkForValidName("Adam"));
+        assertFalse(restored.getContactContainer().checkForValidName("Benny"));
+        assertEquals(length, logFile.length());
+    }
+
+    @Test
+    public void shouldKeepTheLogWhenTheSnapshotCannotBeWritten() {
+        String unwritable = new File(snapshotFile.getPath() + ".missing", "contacts.txt").getPath();
+        diskWriter = newDiskWriter(new DiskWriterImpl(unwritable), 2);
+        contactsContainer = diskWriter.getContactContainer();
+
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Adam", "")));
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Benny", "")));
+        assertFalse(diskWriter.writeToDisk(contactsContainer, diskWriter.getMeetingContainer()));
+        assertTrue(logFile.exists());
+
+        LogDiskWriterImpl restored = newDiskWriter(100);
+        restored.readDisk();
+
+        assertTrue(restored.getContactContainer().checkForValidName("Adam"));
+        assertTrue(restored.getContactContainer().checkForValidName("Benny"));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void shouldThrowWhenARecordCannotBeLogged() {
+        String unwritable = new File(logFile.getPath() + ".missing", "contacts.log").getPath();
+        diskWriter = new LogDiskWriterImpl(new DiskWriterImpl(snapshotFile.getPath()), unwritable, 100, contactsContainer, meetingContainer);
+
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Adam", "")));
+    }
+
+    @Test
+    public void shouldReplayIntoTheGivenContainersWhenTheSnapshotCannotBeRead() throws IOException {
+        diskWriter.recordContact(contactsContainer.getContact(contactsContainer.addContact("Adam", "")));
+        try (FileOutputStream out = new FileOutputStream(snapshotFile)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+
+        LogDiskWriterImpl restored = newDiskWriter(100);
+        restored.readDisk();
+
+        assertTrue(restored.getContactContainer().checkForValidName("Adam"));
+    }
+
+    /*
+     * Makes a writer over the test files, with empty containers that share a number generator
+     */
+    private LogDiskWriterImpl newDiskWriter(int snapshotInterval) {
+        return newDiskWriter(new DiskWriterImpl(snapshotFile.getPath()), snapshotInterval);
+    }
+
+    private LogDiskWriterImpl newDiskWriter(DiskWriter aSnapshotWriter, int snapshotInterval) {
+        UniqueNumberGeneratorUtilities numbers = new CountingNumbers();
+        ContactsContainer contacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        MeetingContainer meetings = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+        return new LogDiskWriterImpl(aSnapshotWriter, logFile.getPath(), snapshotInterval, contacts, meetings);
+    }
+
+    @After
+    public void cleanUp() {
+        snapshotFile.delete();
+        logFile.delete();
+    }
+}
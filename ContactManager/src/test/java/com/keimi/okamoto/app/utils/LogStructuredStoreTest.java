@@ -0,0 +1,162 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SortedMap;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for LogStructuredStore
+ */
+public class LogStructuredStoreTest {
+    private File directory;
+    private LogStructuredStore store;
+
+    @Before
+    public void buildUp() throws IOException {
+        directory = Files.createTempDirectory("store").toFile();
+    }
+
+    @Test
+    public void shouldReadRecordsFromTheTableAndFromSegments() throws IOException {
+        store = new LogStructuredStore(directory, 100, 10);
+        store.put(1, bytes("one"));
+        assertEquals("one", string(store.get(1)));
+        assertEquals(0, store.getSegmentCount());
+
+        store.flush();
+        store.put(2, bytes("two"));
+        store.flush();
+        store.put(1, bytes("one again"));
+
+        assertEquals(2, store.getSegmentCount());
+        assertEquals("one again", string(store.get(1)));
+        assertEquals("two", string(store.get(2)));
+        assertNull(store.get(3));
+        SortedMap<Long, byte[]> all = store.getAll();
+        assertEquals(2, all.size());
+        assertEquals("one again", string(all.get(1L)));
+    }
+
+    @Test
+    public void shouldWriteASegmentOnceTheTableIsFull() throws IOException {
+        store = new LogStructuredStore(directory, 3, 10);
+        store.put(1, bytes("a"));
+        store.put(2, bytes("b"));
+        assertEquals(0, store.getSegmentCount());
+
+        store.put(3, bytes("c"));
+
+        assertEquals(1, store.getSegmentCount());
+        assertEquals("b", string(store.get(2)));
+    }
+
+    @Test
+    public void shouldReplayTheLogAndCutOffATornRecordWhenOpened() throws IOException {
+        store = new LogStructuredStore(directory, 100, 10);
+        store.put(1, bytes("kept"));
+        store.flush();
+        store.put(2, bytes("logged"));
+        store.close();
+        try (FileOutputStream out = new FileOutputStream(new File(directory, "memtable.log"), true)) {
+            out.write(new byte[]{0, 0, 0, 0, 0, 0, 0, 3, 0, 0});
+        }
+
+        store = new LogStructuredStore(directory, 100, 10);
+
+        assertEquals("kept", string(store.get(1)));
+        assertEquals("logged", string(store.get(2)));
+        assertEquals(8 + 4 + 6, new File(directory, "memtable.log").length());
+    }
+
+    @Test
+    public void shouldKeepOnlyTheNewestRecordsWhenMerging() throws IOException {
+        store = new LogStructuredStore(directory, 100, 100);
+        for (int round = 0; round < 5; round++) {
+            for (int key = 0; key < 10; key++) {
+                store.put(key, bytes("round " + round));
+            }
+            store.flush();
+        }
+        assertEquals(5, store.getSegmentCount());
+
+        store.compact();
+
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(40, store.getDroppedRecordCount());
+        assertEquals("round 4", string(store.get(7)));
+        store.close();
+
+        store = new LogStructuredStore(directory, 100, 100);
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(10, store.getAll().size());
+        assertEquals("round 4", string(store.get(0)));
+    }
+
+    @Test
+    public void shouldMergeInTheBackgroundOnceThereAreEnoughSegments() throws Exception {
+        store = new LogStructuredStore(directory, 100, 3);
+        for (int round = 0; round < 3; round++) {
+            store.put(1, bytes("round " + round));
+            store.flush();
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.getSegmentCount() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, store.getSegmentCount());
+        assertEquals("round 2", string(store.get(1)));
+    }
+
+    @Test
+    public void shouldOnlyMergeSegmentsOfAboutTheSameSize() throws IOException {
+        store = new LogStructuredStore(directory, 2, 2);
+        for (int key = 0; key < 12; key++) {
+            store.put(key, bytes("record " + key));
+        }
+
+        store.compactTiers();
+
+        // six segments of two records end up as one of eight and one of four, as six is 110 in binary
+        assertEquals(2, store.getSegmentCount());
+        assertEquals(12, store.getAll().size());
+        assertEquals("record 3", string(store.get(3)));
+        assertEquals("record 11", string(store.get(11)));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfRecordIsNull() throws IOException {
+        store = new LogStructuredStore(directory, 100, 10);
+        store.put(1, null);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes();
+    }
+
+    private static String string(byte[] value) {
+        return new String(value);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,213 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for MappedDiskWriterImpl and the containers it reads
+ */
+public class MappedDiskWriterImplTest {
+    private static final long DAY = 86400000L;
+
+    private File file;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private UniqueNumberGeneratorUtilities numbers;
+    private long now;
+    private int adamId;
+    private int bennyId;
+    private int futureId;
+    private int pastId;
+
+    @Before
+    public void buildUp() throws IOException {
+        file = File.createTempFile("contacts", ".map");
+        numbers = new CountingNumbers();
+        contactsContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+
+        now = System.currentTimeMillis();
+        adamId = contactsContainer.addContact("Adam", "Works on project Apollo");
+        bennyId = contactsContainer.addContact("Benny", "");
+        Set<Contact> contactSet = new HashSet<>();
+        contactSet.add(contactsContainer.getContact(adamId));
+        contactSet.add(contactsContainer.getContact(bennyId));
+        futureId = meetingContainer.addFutureMeeting(contactSet, now + DAY);
+        pastId = meetingContainer.addPastMeeting(Collections.singleton(contactsContainer.getContact(adamId)), now - DAY, "Budget agreed");
+    }
+
+    @Test
+    public void shouldReadRecordsByIdWithoutLoadingTheSnapshot() {
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        MappedContactsContainerImpl contacts = (MappedContactsContainerImpl) diskWriter.getContactContainer();
+        MappedMeetingContainerImpl meetings = (MappedMeetingContainerImpl) diskWriter.getMeetingContainer();
+
+        assertEquals("Adam", contacts.getContact(adamId).getName());
+        assertSame(contacts.getContact(adamId), contacts.getContact(adamId));
+        assertNull(contacts.getContact(99));
+        assertTrue(contacts.checkForValidId(adamId, bennyId));
+        assertFalse(contacts.checkForValidId(adamId, 99));
+        assertEquals("Budget agreed", meetings.getPastMeeting(pastId).getNotes());
+        assertEquals(2, meetings.getFutureMeeting(futureId).getContacts().size());
+        assertEquals(now + DAY, meetings.getMeeting(futureId).getTime());
+
+        List<Meeting> inRange = meetings.getMeetings(now - 2 * DAY, now + 2 * DAY);
+        assertEquals(Arrays.asList(pastId, futureId), Arrays.asList(inRange.get(0).getId(), inRange.get(1).getId()));
+        Calendar yesterday = Calendar.getInstance();
+        yesterday.setTimeInMillis(now - DAY);
+        assertEquals(Collections.singleton(pastId), meetings.getMeetingIdListBy(yesterday));
+
+        assertFalse(contacts.isLoaded());
+        assertFalse(meetings.isLoaded());
+    }
+
+    @Test
+    public void shouldReadTheWholeSnapshotForIndexedQueries() {
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        numbers = new CountingNumbers();
+        diskWriter = newDiskWriter();
+        diskWriter.readDisk();
+        MappedContactsContainerImpl contacts = (MappedContactsContainerImpl) diskWriter.getContactContainer();
+        MappedMeetingContainerImpl meetings = (MappedMeetingContainerImpl) diskWriter.getMeetingContainer();
+
+        assertEquals(Collections.singleton(adamId), contacts.searchNotes("apollo", true));
+        assertTrue(contacts.isLoaded());
+        Contact adam = contacts.getContact(adamId);
+        assertEquals(Collections.singleton(pastId), meetings.searchNotes("budget", true));
+        assertTrue(meetings.isLoaded());
+
+        int newId = contacts.addContact("Carl", "");
+        assertTrue(newId > pastId);
+        assertEquals("Carl", contacts.getContact(newId).getName());
+        assertEquals(1, meetings.getPastMeetings(adam).size());
+    }
+
+    @Test
+    public void shouldLookUpTheMeetingsOfAContactWithoutLoadingTheSnapshot() {
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        MappedContactsContainerImpl contacts = (MappedContactsContainerImpl) diskWriter.getContactContainer();
+        MappedMeetingContainerImpl meetings = (MappedMeetingContainerImpl) diskWriter.getMeetingContainer();
+        Contact adam = contacts.getContact(adamId);
+
+        assertEquals(2, meetings.getMeetingCount(adam));
+        assertEquals(pastId, meetings.getPastMeetings(adam).get(0).getId());
+        assertEquals(futureId, meetings.getFutureMeetings(adam).get(0).getId());
+        assertEquals(1, meetings.getMeetings(adam, now, now + 2 * DAY).size());
+        assertArrayEquals(new int[]{pastId, futureId}, meetings.getMeetingIdListBy(adam));
+        assertTrue(meetings.getMeetings(adam, now + 2 * DAY, now + 3 * DAY).isEmpty());
+        assertFalse(meetings.isLoaded());
+    }
+
+    @Test
+    public void shouldLookUpNamesWithoutLoadingTheSnapshot() {
+        contactsContainer.addContact("adam", "");
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        MappedContactsContainerImpl contacts = (MappedContactsContainerImpl) diskWriter.getContactContainer();
+
+        assertTrue(contacts.checkForValidName("Adam"));
+        assertFalse(contacts.checkForValidName("ADAM"));
+        assertEquals(Collections.singleton(contacts.getContact(adamId)), contacts.getContacts("Adam"));
+        assertEquals(2, contacts.getContactsByPrefix("AD", 5).size());
+        assertEquals(1, contacts.getContactsByPrefix("a", 1).size());
+        assertEquals("Benny", contacts.getContactsByPrefix("", 5).get(2).getName());
+        assertTrue(contacts.getContactsByPrefix("Carl", 5).isEmpty());
+        assertFalse(contacts.isLoaded());
+    }
+
+    @Test
+    public void shouldKeepChangesOverTheSnapshotWithoutLoadingIt() {
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        MappedContactsContainerImpl contacts = (MappedContactsContainerImpl) diskWriter.getContactContainer();
+        MappedMeetingContainerImpl meetings = (MappedMeetingContainerImpl) diskWriter.getMeetingContainer();
+
+        int carlId = contacts.addContact("Carl", "");
+        contacts.restoreContact(adamId, "Adam", "Works on project Gemini");
+        Contact adam = contacts.getContact(adamId);
+        int lunchId = meetings.addPastMeeting(Collections.singleton(adam), now - 2 * DAY, "Lunch");
+        meetings.convertToPastMeeting(meetings.getMeeting(futureId), "Moved forward");
+
+        assertFalse(contacts.isLoaded());
+        assertFalse(meetings.isLoaded());
+        assertEquals("Works on project Gemini", adam.getNotes());
+        assertEquals(3, contacts.getAllContacts().size());
+        assertEquals(new HashSet<>(Arrays.asList(adamId, carlId)), contacts.takeChangedContactIds());
+        assertEquals(new HashSet<>(Arrays.asList(lunchId, futureId)), meetings.takeChangedMeetingIds());
+        assertEquals("Moved forward", meetings.getPastMeeting(futureId).getNotes());
+        assertNull(meetings.getFutureMeeting(futureId));
+        List<Meeting> inRange = meetings.getMeetings(now - 3 * DAY, now + 2 * DAY);
+        assertEquals(Arrays.asList(lunchId, pastId, futureId),
+                Arrays.asList(inRange.get(0).getId(), inRange.get(1).getId(), inRange.get(2).getId()));
+        List<String> names = new ArrayList<>();
+        for (Contact contact : contacts.getContactsByPrefix("", 5)) {
+            names.add(contact.getName());
+        }
+        assertEquals(Arrays.asList("Adam", "Benny", "Carl"), names);
+
+        assertEquals(Collections.singleton(adamId), contacts.searchNotes("gemini", true));
+        assertTrue(contacts.searchNotes("apollo", true).isEmpty());
+        assertEquals(3, meetings.getPastMeetings(adam).size());
+        assertTrue(meetings.getFutureMeetings(adam).isEmpty());
+        assertEquals(3, meetings.getMeetingCount(adam));
+        assertEquals(Collections.singleton(futureId), meetings.searchNotes("forward", true));
+    }
+
+    @Test
+    public void shouldKeepTheRecordsAlreadyDecodedWhenTheSnapshotIsLoaded() {
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        MappedContactsContainerImpl contacts = (MappedContactsContainerImpl) diskWriter.getContactContainer();
+        MappedMeetingContainerImpl meetings = (MappedMeetingContainerImpl) diskWriter.getMeetingContainer();
+        Contact adam = contacts.getContact(adamId);
+        Meeting past = meetings.getPastMeeting(pastId);
+
+        contacts.searchNotes("apollo", true);
+        meetings.searchNotes("budget", true);
+
+        assertTrue(contacts.isLoaded());
+        assertTrue(meetings.isLoaded());
+        assertSame(adam, contacts.getContact(adamId));
+        assertSame(past, meetings.getMeeting(pastId));
+        assertTrue(meetings.getMeeting(futureId).getContacts().contains(adam));
+        assertTrue(contacts.takeChangedContactIds().isEmpty());
+        assertTrue(meetings.takeChangedMeetingIds().isEmpty());
+    }
+
+    @Test
+    public void shouldWriteAndReadAnEmptySnapshot() {
+        DiskWriter diskWriter = newDiskWriter();
+        diskWriter.writeToDisk(new ContactsContainerImpl(new ContactFactoryImpl(), numbers), new MeetingContainerImpl(new MeetingFactoryImpl(), numbers));
+        diskWriter.readDisk();
+
+        assertTrue(diskWriter.getContactContainer().getAllContacts().isEmpty());
+        assertTrue(diskWriter.getMeetingContainer().getMeetings(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    private DiskWriter newDiskWriter() {
+        return new MappedDiskWriterImpl(file.getPath(), new ContactFactoryImpl(), new MeetingFactoryImpl(), numbers, SystemClockImpl.getInstance());
+    }
+
+    @After
+    public void cleanUp() {
+        file.delete();
+    }
+}
@@ -49,4 +49,39 @@ public class MeetingFactoryTest {
         assertEquals(aSetOfContacts, actual.getContacts());
         assertEquals(date, actual.getDate());
     }
+
+    @Test
+    public void shouldBeAbleToCreateFutureMeetingWithDateInMilliseconds() throws IllegalMeetingException {
+        int id = 0;
+        Set<Contact> aSetOfContacts = new HashSet<>();
+        long date = System.currentTimeMillis();
+
+        Contact aContact = mock(Contact.class);
+        aSetOfContacts.add(aContact);
+
+        MeetingFactory aMeetingFactory = new MeetingFactoryImpl();
+        FutureMeeting actual = aMeetingFactory.createFutureMeeting(id, date, aSetOfContacts);
+
+        assertEquals(id, actual.getId());
+        assertEquals(aSetOfContacts, actual.getContacts());
+        assertEquals(date, actual.getTime());
+    }
+
+    @Test
+    public void shouldBeAbleToCreatePastMeetingWithDateInMilliseconds() throws IllegalMeetingException {
+        String notes = "some notes...";
+        Set<Contact> aSetOfContacts = new HashSet<>();
+        long date = System.currentTimeMillis();
+        int id = 0;
+
+        Contact aContact = mock(Contact.class);
+        aSetOfContacts.add(aContact);
+
+        MeetingFactory aMeetingFactory = new MeetingFactoryImpl();
+        PastMeeting actual = aMeetingFactory.createPastMeeting(id, aSetOfContacts, date, notes);
+
+        assertEquals(notes, actual.getNotes());
+        assertEquals(aSetOfContacts, actual.getContacts());
+        assertEquals(date, actual.getTime());
+    }
 }
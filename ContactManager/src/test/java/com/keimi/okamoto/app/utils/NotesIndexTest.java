@@ -0,0 +1,67 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Test for NotesIndex
+ */
+public class NotesIndexTest {
+    private NotesIndex aNotesIndex;
+
+    @Before
+    public void buildUp() {
+        aNotesIndex = new NotesIndexImpl();
+        aNotesIndex.addNotes(1, "Discussed project Apollo budget.");
+        aNotesIndex.addNotes(2, "Apollo launch date agreed");
+        aNotesIndex.addNotes(3, "Budget review for project Gemini");
+    }
+
+    /*
+     * Test for search(String query, boolean matchAll)
+     * Starts here:
+     */
+    @Test
+    public void shouldFindIdsContainingAllWords() {
+        assertEquals(ids(1), aNotesIndex.search("apollo BUDGET", true));
+    }
+
+    @Test
+    public void shouldFindIdsContainingAnyWord() {
+        assertEquals(ids(1, 2, 3), aNotesIndex.search("apollo, gemini", false));
+    }
+
+    @Test
+    public void shouldReturnAnEmptySetIfAWordIsNotFound() {
+        assertTrue(aNotesIndex.search("apollo mercury", true).isEmpty());
+        assertTrue(aNotesIndex.search("  ", false).isEmpty());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfQueryIsNull() {
+        aNotesIndex.search(null, true);
+    }
+
+    /*
+     * Test for removeNotes(int id, String notes)
+     * Starts here:
+     */
+    @Test
+    public void shouldNoLongerFindRemovedNotes() {
+        aNotesIndex.removeNotes(1, "Discussed project Apollo budget.");
+
+        assertEquals(ids(2), aNotesIndex.search("apollo", false));
+        assertEquals(ids(3), aNotesIndex.search("budget", false));
+    }
+
+    private Set<Integer> ids(Integer... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+}
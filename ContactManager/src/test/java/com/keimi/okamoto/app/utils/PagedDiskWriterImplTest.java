@@ -0,0 +1,187 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.items.Meeting;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for PagedDiskWriterImpl and the paged containers it reads
+ */
+public class PagedDiskWriterImplTest {
+    private static final long DAY = 86400000L;
+    private static final long NOW = 1400000000000L;
+
+    private File file;
+    private UniqueNumberGeneratorUtilities numbers;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private PagedDiskWriterImpl diskWriter;
+
+    @Before
+    public void buildUp() throws IOException {
+        file = File.createTempFile("paged", ".db");
+        file.delete();
+        numbers = new CountingNumbers();
+        contactsContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers, new ManualClockImpl(NOW));
+        diskWriter = newDiskWriter();
+    }
+
+    @Test
+    public void shouldReadBackWhatWasWritten() throws IOException {
+        assertFalse(diskWriter.checkIfDataExists());
+        int adamId = contactsContainer.addContact("Adam", "Works on project Apollo");
+        int amyId = contactsContainer.addContact("Amy", "");
+        Set<Contact> contactSet = new HashSet<>(Arrays.asList(contactsContainer.getContact(adamId), contactsContainer.getContact(amyId)));
+        int futureId = meetingContainer.addFutureMeeting(contactSet, NOW + DAY);
+        int pastId = meetingContainer.addPastMeeting(contactSet, NOW - DAY, "Budget agreed");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.getStore().close();
+
+        numbers = new CountingNumbers();
+        PagedDiskWriterImpl reader = newDiskWriter();
+        assertTrue(reader.checkIfDataExists());
+        reader.readDisk();
+        ContactsContainer contacts = reader.getContactContainer();
+        MeetingContainer meetings = reader.getMeetingContainer();
+
+        assertEquals("Adam", contacts.getContact(adamId).getName());
+        assertEquals(1, contacts.getContacts("Amy").size());
+        assertEquals(Collections.singleton(adamId), contacts.searchNotes("apollo", true));
+        assertEquals(NOW + DAY, meetings.getFutureMeeting(futureId).getTime());
+        assertEquals("Budget agreed", meetings.getPastMeeting(pastId).getNotes());
+        assertArrayEquals(new int[]{pastId, futureId}, meetings.getMeetingIdListBy(contacts.getContact(amyId)));
+        assertEquals(Collections.singleton(pastId), meetings.searchNotes("budget", false));
+        assertTrue(numbers.getUniqueNumber() > pastId);
+        diskWriter = reader;
+    }
+
+    @Test
+    public void shouldKeepChangesMadeThroughThePagedContainers() throws IOException {
+        contactsContainer.addContact("Adam", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        ContactsContainer contacts = diskWriter.getContactContainer();
+        MeetingContainer meetings = diskWriter.getMeetingContainer();
+
+        int bobId = contacts.addContact("Bob", "Plays chess");
+        Set<Contact> contactSet = Collections.singleton(contacts.getContact(bobId));
+        int meetingId = meetings.addFutureMeeting(contactSet, NOW + DAY);
+        meetings.convertToPastMeeting(meetings.getMeeting(meetingId), "Lost at chess");
+        diskWriter.writeToDisk(contacts, meetings);
+        diskWriter.getStore().close();
+
+        diskWriter = newDiskWriter();
+        diskWriter.readDisk();
+        meetings = diskWriter.getMeetingContainer();
+        Contact bob = diskWriter.getContactContainer().getContact(bobId);
+
+        assertEquals("Lost at chess", meetings.getPastMeeting(meetingId).getNotes());
+        assertTrue(meetings.getFutureMeetings(bob).isEmpty());
+        assertEquals(1, meetings.getPastMeetings(bob).size());
+        assertEquals(Collections.singleton(meetingId), meetings.searchNotes("chess", true));
+        assertEquals(2, diskWriter.getStore().getContactCount());
+        assertEquals(1, diskWriter.getStore().getMeetingCount());
+    }
+
+    @Test
+    public void shouldAnswerQueriesFromAStoreLargerThanItsCache() {
+        diskWriter.readDisk();
+        ContactsContainer contacts = diskWriter.getContactContainer();
+        MeetingContainer meetings = diskWriter.getMeetingContainer();
+        for (int i = 0; i < 2000; i++) {
+            int id = contacts.addContact("Contact " + i, "notes " + i);
+            meetings.addPastMeeting(Collections.singleton(contacts.getContact(id)), NOW - (i + 1) * DAY, "meeting " + i);
+        }
+        BufferPool pool = diskWriter.getStore().getBufferPool();
+
+        assertTrue(pool.getPageCount() > 16);
+        assertTrue(pool.getCachedPageCount() <= 16);
+        assertEquals("Contact 1234", contacts.getContact(2468).getName());
+        assertEquals(2000, contacts.getAllContacts().size());
+        List<Meeting> lastWeek = meetings.getMeetings(NOW - 7 * DAY, NOW);
+        assertEquals(7, lastWeek.size());
+        assertEquals(NOW - 7 * DAY, lastWeek.get(0).getTime());
+        assertEquals(Collections.singleton(2469), meetings.searchNotes("1234", true));
+    }
+
+    @Test
+    public void shouldLeaveTheStoreAsOfTheLastFlushIfTheProgramStops() throws IOException {
+        contactsContainer.addContact("Adam", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.readDisk();
+        ContactsContainer contacts = diskWriter.getContactContainer();
+        for (int i = 0; i < 500; i++) {
+            contacts.addContact("Contact " + i, "notes " + i);
+        }
+
+        // a copy of the files as they are now is what a crash would leave behind
+        File crashed = new File(file.getPath() + ".crashed");
+        Files.copy(file.toPath(), crashed.toPath());
+        Files.copy(new File(file.getPath() + ".journal").toPath(), new File(crashed.getPath() + ".journal").toPath());
+        PagedStore store = PagedStore.open(crashed, 512, 16);
+        try {
+            assertEquals(1, store.getContactCount());
+            assertEquals(1, store.getContactsNamed("Adam", new ContactFactoryImpl()).size());
+        } finally {
+            store.close();
+            crashed.delete();
+        }
+    }
+
+    @Test
+    public void shouldListContactsByPrefixInNameOrder() {
+        diskWriter.readDisk();
+        ContactsContainer contacts = diskWriter.getContactContainer();
+        contacts.addContact("Annabel", "");
+        contacts.addContact("anna", "");
+        contacts.addContact("Annette", "");
+        contacts.addContact("Bob", "");
+        contacts.addContact("Ann", "");
+
+        List<Contact> found = contacts.getContactsByPrefix("ANN", 3);
+
+        assertEquals(3, found.size());
+        assertEquals("Ann", found.get(0).getName());
+        assertEquals("anna", found.get(1).getName());
+        assertEquals("Annabel", found.get(2).getName());
+        assertEquals(5, contacts.getContactsByPrefix("", 10).size());
+    }
+
+    @Test
+    public void shouldStoreARecordLargerThanAPage() throws IOException {
+        StringBuilder notes = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            notes.append("word").append(i).append(' ');
+        }
+        int adamId = contactsContainer.addContact("Adam", notes.toString());
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        diskWriter.getStore().close();
+
+        diskWriter = newDiskWriter();
+        diskWriter.readDisk();
+
+        assertEquals(notes.toString(), diskWriter.getContactContainer().getContact(adamId).getNotes());
+    }
+
+    private PagedDiskWriterImpl newDiskWriter() {
+        return new PagedDiskWriterImpl(file.getPath(), 512, 16, new ContactFactoryImpl(), new MeetingFactoryImpl(), numbers,
+                new ManualClockImpl(NOW));
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        diskWriter.getStore().close();
+        file.delete();
+    }
+}
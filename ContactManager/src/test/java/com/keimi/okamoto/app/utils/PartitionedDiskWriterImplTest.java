@@ -0,0 +1,145 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for PartitionedDiskWriterImpl
+ */
+public class PartitionedDiskWriterImplTest {
+    private static final long DAY = 86400000L;
+
+    private File directory;
+    private File file;
+    private UniqueNumberGeneratorUtilities numbers;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+
+    @Before
+    public void buildUp() throws IOException {
+        directory = Files.createTempDirectory("contacts").toFile();
+        file = new File(directory, "contacts.bin");
+        numbers = new CountingNumbers();
+        contactsContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+    }
+
+    @Test
+    public void shouldReadBackMeetingsWhoseContactsAreInOtherPartitions() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            contactsContainer.addContact("Contact " + i, "Notes about contact " + i);
+        }
+        Set<Contact> firstAndLast = new HashSet<>(Arrays.asList(contactsContainer.getContact(0), contactsContainer.getContact(99)));
+        int pastId = meetingContainer.addPastMeeting(firstAndLast, now - DAY, "Project Apollo");
+        int futureId = meetingContainer.addFutureMeeting(firstAndLast, now + DAY);
+        newDiskWriter(10).writeToDisk(contactsContainer, meetingContainer);
+        assertTrue(partition(10).exists());
+
+        numbers = new CountingNumbers();
+        PartitionedDiskWriterImpl reader = newDiskWriter(10);
+        reader.readDisk();
+        ContactsContainer contacts = reader.getContactContainer();
+        MeetingContainer meetings = reader.getMeetingContainer();
+
+        assertEquals(100, contacts.getAllContacts().size());
+        assertEquals("Notes about contact 42", contacts.getContact(42).getNotes());
+        assertEquals("Project Apollo", meetings.getPastMeeting(pastId).getNotes());
+        assertEquals(2, meetings.getFutureMeeting(futureId).getContacts().size());
+        assertEquals(2, meetings.getMeetingCount(contacts.getContact(99)));
+        assertTrue(contacts.takeChangedContactIds().isEmpty());
+        assertTrue(meetings.takeChangedMeetingIds().isEmpty());
+        assertTrue(numbers.getUniqueNumber() > futureId);
+    }
+
+    @Test
+    public void shouldWriteOnlyThePartitionsThatHoldChanges() throws IOException {
+        for (int i = 0; i < 30; i++) {
+            contactsContainer.addContact("Contact " + i, "");
+        }
+        PartitionedDiskWriterImpl diskWriter = newDiskWriter(10);
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        long untouched = partition(0).lastModified();
+        partition(0).setLastModified(untouched - 10000);
+
+        contactsContainer.restoreContact(25, "Contact 25", "Changed");
+        int newId = contactsContainer.addContact("Zoe", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+
+        assertEquals(untouched - 10000, partition(0).lastModified());
+        assertTrue(partition(3).exists());
+
+        PartitionedDiskWriterImpl reader = newDiskWriter(10);
+        reader.readDisk();
+        assertEquals("Changed", reader.getContactContainer().getContact(25).getNotes());
+        assertEquals("Zoe", reader.getContactContainer().getContact(newId).getName());
+        assertEquals(31, reader.getContactContainer().getAllContacts().size());
+    }
+
+    @Test
+    public void shouldReportHowLongEachPhaseTook() {
+        for (int i = 0; i < 50; i++) {
+            contactsContainer.addContact("Contact " + i, "");
+        }
+        newDiskWriter(10).writeToDisk(contactsContainer, meetingContainer);
+
+        PartitionedDiskWriterImpl reader = newDiskWriter(10);
+        assertNull(reader.getRecoveryTimings());
+        reader.readDisk();
+
+        RecoveryTimings timings = reader.getRecoveryTimings();
+        assertEquals(Arrays.asList("open", "decode", "contacts", "meetings"), Arrays.asList(timings.getPhaseMillis().keySet().toArray()));
+        assertEquals(5, timings.getSegmentCount());
+        assertEquals(50, timings.getRecordCount());
+        assertTrue(timings.toString().startsWith("50 records from 5 segments"));
+    }
+
+    @Test
+    public void shouldReadNothingIfAPartitionIsDamaged() throws IOException {
+        contactsContainer.addContact("Adam", "");
+        newDiskWriter(10).writeToDisk(contactsContainer, meetingContainer);
+        Files.write(partition(0).toPath(), new byte[]{1, 2, 3, 4, 5});
+
+        PartitionedDiskWriterImpl reader = newDiskWriter(10);
+        reader.readDisk();
+
+        assertNull(reader.getContactContainer());
+        assertNull(reader.getRecoveryTimings());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfPartitionSizeIsNotPositive() {
+        newDiskWriter(0);
+    }
+
+    private PartitionedDiskWriterImpl newDiskWriter(int partitionSize) {
+        return new PartitionedDiskWriterImpl(file.getPath(), partitionSize, 4, new ContactFactoryImpl(), new MeetingFactoryImpl(), numbers);
+    }
+
+    private File partition(int partitionNumber) {
+        return new File(file.getPath() + ".part." + partitionNumber);
+    }
+
+    @After
+    public void cleanUp() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+}
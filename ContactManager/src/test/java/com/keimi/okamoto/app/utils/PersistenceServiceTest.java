@@ -0,0 +1,158 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for PersistenceServiceImpl
+ */
+public class PersistenceServiceTest {
+    private CountingCommit aCommit;
+    private PersistenceService aPersistenceService;
+
+    @Before
+    public void buildUp() {
+        aCommit = new CountingCommit();
+    }
+
+    @Test
+    public void shouldCommitOnceTheWindowHoldsEnoughChanges() throws InterruptedException {
+        aPersistenceService = new PersistenceServiceImpl(aCommit, 3600000L, 3);
+        aPersistenceService.recordMutation();
+        aPersistenceService.recordMutation();
+        Thread.sleep(50);
+        assertEquals(0, aCommit.count.get());
+
+        aPersistenceService.recordMutation();
+
+        assertTrue(aCommit.firstCommit.await(5, TimeUnit.SECONDS));
+        assertEquals(1, aCommit.count.get());
+    }
+
+    @Test
+    public void shouldCommitOnceTheWindowHasBeenOpenLongEnough() throws InterruptedException {
+        aPersistenceService = new PersistenceServiceImpl(aCommit, 20, 1000);
+        aPersistenceService.recordMutation();
+
+        assertTrue(aCommit.firstCommit.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldWriteEveryChangeInOneCommitWhenAskedTo() throws Exception {
+        aPersistenceService = new PersistenceServiceImpl(aCommit, 3600000L, 1000);
+        for (int i = 0; i < 100; i++) {
+            aPersistenceService.recordMutation();
+        }
+
+        aPersistenceService.flushAsync().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, aCommit.count.get());
+    }
+
+    @Test
+    public void shouldShareTheNextCommitBetweenRequestsMadeDuringACommit() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+        aPersistenceService = new PersistenceServiceImpl(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                count.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 3600000L, 1000);
+
+        Future<Void> first = aPersistenceService.flushAsync();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Void> second = aPersistenceService.flushAsync();
+        Future<Void> third = aPersistenceService.flushAsync();
+        assertNotSame(first, second);
+        assertSame(second, third);
+
+        release.countDown();
+        third.get(5, TimeUnit.SECONDS);
+        assertTrue(first.isDone());
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void shouldReportAFailedCommitThroughTheFuture() throws Exception {
+        aPersistenceService = new PersistenceServiceImpl(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("disk full");
+            }
+        }, 3600000L, 1000);
+
+        try {
+            aPersistenceService.flushAsync().get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void shouldWriteWhatIsLeftWhenShutDown() {
+        aPersistenceService = new PersistenceServiceImpl(aCommit, 3600000L, 1000);
+        aPersistenceService.recordMutation();
+
+        aPersistenceService.shutdown();
+
+        assertEquals(1, aCommit.count.get());
+    }
+
+    @Test
+    public void shouldNotWriteWhenShutDownWithNothingLeft() {
+        aPersistenceService = new PersistenceServiceImpl(aCommit, 3600000L, 1000);
+
+        aPersistenceService.shutdown();
+
+        assertEquals(0, aCommit.count.get());
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void shouldThrowIllegalStateExceptionIfAskedToFlushAfterShutdown() {
+        aPersistenceService = new PersistenceServiceImpl(aCommit, 3600000L, 1000);
+        aPersistenceService.shutdown();
+
+        aPersistenceService.flushAsync();
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionIfCommitIsNull() {
+        new PersistenceServiceImpl(null, 10, 10);
+    }
+
+    /*
+     * A commit that counts how often it has run
+     */
+    private static class CountingCommit implements Runnable {
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch firstCommit = new CountDownLatch(1);
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+            firstCommit.countDown();
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        if (aPersistenceService != null) {
+            aPersistenceService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for PersistentIntMap
+ */
+public class PersistentIntMapTest {
+
+    @Test
+    public void shouldLeaveAnOlderVersionAsItWas() {
+        PersistentIntMap<String> empty = PersistentIntMap.empty();
+        PersistentIntMap<String> first = empty.put(1, "one").put(2, "two");
+        PersistentIntMap<String> second = first.put(2, "deux").put(3, "three").remove(1);
+
+        assertEquals(0, empty.size());
+        assertNull(empty.get(1));
+        assertEquals(2, first.size());
+        assertEquals("one", first.get(1));
+        assertEquals("two", first.get(2));
+        assertNull(first.get(3));
+        assertEquals(2, second.size());
+        assertNull(second.get(1));
+        assertEquals("deux", second.get(2));
+        assertEquals("three", second.get(3));
+    }
+
+    @Test
+    public void shouldKeepKeysThatShareTheirLowBits() {
+        int[] keys = {0, 32, 1024, 1 << 30, Integer.MIN_VALUE, -1, Integer.MAX_VALUE, 31 << 25};
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int key : keys) {
+            map = map.put(key, key);
+        }
+
+        assertEquals(keys.length, map.size());
+        for (int key : keys) {
+            assertEquals(Integer.valueOf(key), map.get(key));
+        }
+        for (int key : keys) {
+            map = map.remove(key);
+            assertFalse(map.containsKey(key));
+        }
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void shouldAgreeWithAHashMap() {
+        Random random = new Random(7);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000) - 1000;
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        List<Integer> values = new ArrayList<>(map.values());
+        List<Integer> expectedValues = new ArrayList<>(expected.values());
+        Collections.sort(values);
+        Collections.sort(expectedValues);
+        assertEquals(expectedValues, values);
+    }
+
+    @Test
+    public void shouldReturnTheSameMapWhenRemovingAMissingKey() {
+        PersistentIntMap<String> map = PersistentIntMap.<String>empty().put(1, "one");
+
+        assertSame(map, map.remove(2));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowIllegalArgumentExceptionForANullValue() {
+        PersistentIntMap.<String>empty().put(1, null);
+    }
+}
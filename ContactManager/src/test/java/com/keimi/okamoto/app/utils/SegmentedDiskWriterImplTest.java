@@ -0,0 +1,124 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for SegmentedDiskWriterImpl
+ */
+public class SegmentedDiskWriterImplTest {
+    private static final long DAY = 86400000L;
+
+    private File directory;
+    private UniqueNumberGeneratorUtilities numbers;
+    private ContactsContainer contactsContainer;
+    private MeetingContainer meetingContainer;
+    private SegmentedDiskWriterImpl diskWriter;
+
+    @Before
+    public void buildUp() throws IOException {
+        directory = Files.createTempDirectory("segments").toFile();
+        numbers = new CountingNumbers();
+        contactsContainer = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        meetingContainer = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+        diskWriter = newDiskWriter();
+    }
+
+    @Test
+    public void shouldReadBackWhatWasRecordedAndWritten() {
+        assertFalse(diskWriter.checkIfDataExists());
+        int adamId = contactsContainer.addContact("Adam", "Works on project Apollo");
+        diskWriter.recordContact(contactsContainer.getContact(adamId));
+        Set<Contact> contactSet = Collections.singleton(contactsContainer.getContact(adamId));
+        long now = System.currentTimeMillis();
+        int futureId = meetingContainer.addFutureMeeting(contactSet, now + DAY);
+        int pastId = meetingContainer.addPastMeeting(contactSet, now - DAY, "Budget agreed");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        assertTrue(diskWriter.checkIfDataExists());
+
+        numbers = new CountingNumbers();
+        SegmentedDiskWriterImpl reader = newDiskWriter();
+        reader.readDisk();
+        ContactsContainer contacts = reader.getContactContainer();
+        MeetingContainer meetings = reader.getMeetingContainer();
+
+        assertEquals("Adam", contacts.getContact(adamId).getName());
+        assertEquals(now + DAY, meetings.getFutureMeeting(futureId).getTime());
+        assertEquals("Budget agreed", meetings.getPastMeeting(pastId).getNotes());
+        assertEquals(2, meetings.getMeetingCount(contacts.getContact(adamId)));
+        assertTrue(contacts.takeChangedContactIds().isEmpty());
+        assertTrue(numbers.getUniqueNumber() > pastId);
+    }
+
+    @Test
+    public void shouldNotPutWhatWasRecordedAgainWhenItIsWritten() throws IOException {
+        diskWriter.getStore().close();
+        diskWriter = new SegmentedDiskWriterImpl(directory.getPath(), 1, 100, new ContactFactoryImpl(), new MeetingFactoryImpl(), numbers);
+        int adamId = contactsContainer.addContact("Adam", "");
+        diskWriter.recordContact(contactsContainer.getContact(adamId));
+        assertEquals(1, diskWriter.getStore().getSegmentCount());
+
+        contactsContainer.addContact("Benny", "");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+
+        assertEquals(2, diskWriter.getStore().getSegmentCount());
+    }
+
+    @Test
+    public void shouldDropTheFutureMeetingOnceItIsPastAndMerged() throws IOException {
+        int adamId = contactsContainer.addContact("Adam", "");
+        Set<Contact> contactSet = Collections.singleton(contactsContainer.getContact(adamId));
+        int meetingId = meetingContainer.addFutureMeeting(contactSet, System.currentTimeMillis() + DAY);
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+
+        meetingContainer.convertToPastMeeting(meetingContainer.getMeeting(meetingId), "Went well");
+        diskWriter.writeToDisk(contactsContainer, meetingContainer);
+        assertEquals(2, diskWriter.getStore().getSegmentCount());
+
+        diskWriter.getStore().compact();
+
+        assertEquals(1, diskWriter.getStore().getSegmentCount());
+        assertEquals(1, diskWriter.getStore().getDroppedRecordCount());
+        diskWriter.readDisk();
+        assertEquals("Went well", diskWriter.getMeetingContainer().getPastMeeting(meetingId).getNotes());
+    }
+
+    @Test
+    public void shouldKeepRecordedChangesThatWereNeverWrittenAsASegment() throws IOException {
+        int adamId = contactsContainer.addContact("Adam", "");
+        diskWriter.recordContact(contactsContainer.getContact(adamId));
+        diskWriter.getStore().close();
+
+        SegmentedDiskWriterImpl reader = newDiskWriter();
+        reader.readDisk();
+
+        assertEquals("Adam", reader.getContactContainer().getContact(adamId).getName());
+    }
+
+    private SegmentedDiskWriterImpl newDiskWriter() {
+        return new SegmentedDiskWriterImpl(directory.getPath(), 1000, 4, new ContactFactoryImpl(), new MeetingFactoryImpl(), numbers);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        diskWriter.getStore().close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,83 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for SequenceLock
+ */
+public class SequenceLockTest {
+
+    @Test
+    public void shouldNotValidateAStampOnceSomethingIsWritten() {
+        SequenceLock lock = new SequenceLock(true);
+        long stamp = lock.tryOptimisticRead();
+        assertTrue(lock.validate(stamp));
+
+        lock.lockWrite();
+        assertFalse(lock.validate(stamp));
+        assertFalse(lock.validate(lock.tryOptimisticRead()));
+        lock.unlockWrite();
+
+        assertFalse(lock.validate(stamp));
+        assertTrue(lock.validate(lock.tryOptimisticRead()));
+    }
+
+    @Test
+    public void shouldOnlyMoveTheVersionForTheOutermostWrite() {
+        SequenceLock lock = new SequenceLock(true);
+        lock.lockWrite();
+        lock.lockWrite();
+        lock.unlockWrite();
+        assertFalse(lock.validate(lock.tryOptimisticRead()));
+        lock.unlockWrite();
+
+        assertTrue(lock.validate(lock.tryOptimisticRead()));
+    }
+
+    @Test
+    public void shouldReadAgainUnderTheLockIfSomethingWasWritten() {
+        final SequenceLock lock = new SequenceLock(true);
+        final int[] reads = new int[1];
+
+        String result = lock.read(new SequenceLock.Read<String>() {
+            @Override
+            public String read() {
+                if (reads[0]++ == 0) {
+                    lock.lockWrite();
+                    lock.unlockWrite();
+                    throw new IllegalStateException("half written");
+                }
+                return "whole";
+            }
+        });
+
+        assertEquals("whole", result);
+        assertEquals(2, reads[0]);
+        assertEquals(1, lock.getFallbackCount());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void shouldThrowAnExceptionFromAReadThatWasValid() {
+        new SequenceLock(true).read(new SequenceLock.Read<Object>() {
+            @Override
+            public Object read() {
+                throw new IllegalArgumentException();
+            }
+        });
+    }
+
+    @Test
+    public void shouldAlwaysTakeTheReadLockWithoutOptimisticReads() {
+        SequenceLock lock = new SequenceLock(false);
+
+        assertEquals("read", lock.read(new SequenceLock.Read<String>() {
+            @Override
+            public String read() {
+                return "read";
+            }
+        }));
+        assertEquals(0, lock.getFallbackCount());
+    }
+}
@@ -0,0 +1,47 @@
+package com.keimi.okamoto.app.utils;
+
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Test for SnapshotCodec
+ */
+public class SnapshotCodecTest {
+
+    @Test
+    public void shouldWriteSmallNumbersInOneByte() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        SnapshotCodec.writeVarInt(out, 127);
+        SnapshotCodec.writeVarLong(out, -64);
+
+        assertEquals(2, bytes.size());
+    }
+
+    @Test
+    public void shouldReadBackWhatWasWritten() throws IOException {
+        int[] ints = {0, 1, 127, 128, 300, Integer.MAX_VALUE, -1};
+        long[] longs = {0, -1, 1, Long.MIN_VALUE, Long.MAX_VALUE, 86400000L};
+        String[] strings = {null, "", "Adam", "Zoë 日本"};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int value : ints) SnapshotCodec.writeVarInt(out, value);
+        for (long value : longs) SnapshotCodec.writeVarLong(out, value);
+        for (String value : strings) SnapshotCodec.writeString(out, value);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int value : ints) assertEquals(value, SnapshotCodec.readVarInt(in));
+        for (long value : longs) assertEquals(value, SnapshotCodec.readVarLong(in));
+        for (String value : strings) assertEquals(value, SnapshotCodec.readString(in));
+    }
+
+    @Test (expected = IOException.class)
+    public void shouldRejectANumberThatNeverEnds() throws IOException {
+        byte[] bytes = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1};
+        SnapshotCodec.readVarInt(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,106 @@
+package com.keimi.okamoto.app.utils;
+
+import com.keimi.okamoto.app.items.Contact;
+import com.keimi.okamoto.app.organisers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+
+/*
+ * Measures what compressing snapshots costs in CPU against what it saves in
+ * I/O, by writing and loading the same data as a MappedSnapshot and as a
+ * CompressedSnapshot. Run with the number of contacts as the only argument;
+ * each contact gets one past meeting.
+ *
+ * Loading is measured twice: reading every record in order, which inflates
+ * each block once, and reading records at random, which can inflate a block
+ * for every record once the recently inflated blocks no longer cover them.
+ */
+public class SnapshotCompressionBenchmark {
+    private static final String[] NOTES = {
+            "Met at the quarterly review, follow up about the budget for next year",
+            "Prefers email, do not call before ten in the morning",
+            "Introduced by the sales team, interested in the premium plan",
+            "Went through the contract and agreed to send the revised terms on Monday"
+    };
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        UniqueNumberGeneratorUtilities numbers = new CountingNumbers();
+        ContactsContainer contacts = new ContactsContainerImpl(new ContactFactoryImpl(), numbers);
+        MeetingContainer meetings = new MeetingContainerImpl(new MeetingFactoryImpl(), numbers);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            int id = contacts.addContact("Contact " + i, NOTES[i % NOTES.length] + " " + i);
+            meetings.addPastMeeting(Collections.singleton(contacts.getContact(id)), now - (i + 1) * 60000L, NOTES[(i + 1) % NOTES.length]);
+        }
+
+        File mapped = File.createTempFile("benchmark", ".map");
+        File compressed = File.createTempFile("benchmark", ".cmp");
+        try {
+            // once each to warm up
+            MappedSnapshot.write(mapped, contacts.getAllContacts(), meetings.getAllMeetings());
+            CompressedSnapshot.write(compressed, contacts.getAllContacts(), meetings.getAllMeetings());
+
+            long start = System.nanoTime();
+            MappedSnapshot.write(mapped, contacts.getAllContacts(), meetings.getAllMeetings());
+            long mappedWrite = System.nanoTime() - start;
+            start = System.nanoTime();
+            CompressedSnapshot.write(compressed, contacts.getAllContacts(), meetings.getAllMeetings());
+            long compressedWrite = System.nanoTime() - start;
+
+            int[] randomIds = new int[Math.min(count, 100000)];
+            Random random = new Random(42);
+            for (int i = 0; i < randomIds.length; i++) {
+                randomIds[i] = random.nextInt(count) * 2;
+            }
+
+            MappedSnapshot mappedSnapshot = MappedSnapshot.open(mapped);
+            long mappedScan = readInOrder(mappedSnapshot);
+            long mappedRandom = readAtRandom(mappedSnapshot, randomIds);
+            long compressedScan;
+            long compressedRandom;
+            try (CompressedSnapshot compressedSnapshot = CompressedSnapshot.open(compressed)) {
+                compressedScan = readInOrder(compressedSnapshot);
+            }
+            try (CompressedSnapshot compressedSnapshot = CompressedSnapshot.open(compressed)) {
+                compressedRandom = readAtRandom(compressedSnapshot, randomIds);
+            }
+
+            System.out.printf("%d contacts and %d meetings%n", count, count);
+            System.out.printf("%-12s %12s %12s %14s %16s%n", "", "size (KB)", "write (ms)", "read all (ms)", "random (us/rec)");
+            System.out.printf("%-12s %12d %12.1f %14.1f %16.2f%n", "mapped", mapped.length() / 1024,
+                    mappedWrite / 1e6, mappedScan / 1e6, mappedRandom / 1e3 / randomIds.length);
+            System.out.printf("%-12s %12d %12.1f %14.1f %16.2f%n", "compressed", compressed.length() / 1024,
+                    compressedWrite / 1e6, compressedScan / 1e6, compressedRandom / 1e3 / randomIds.length);
+            System.out.printf("compression ratio %.2f%n", (double) mapped.length() / compressed.length());
+        } finally {
+            mapped.delete();
+            compressed.delete();
+        }
+    }
+
+    private static long readInOrder(SnapshotReader snapshot) {
+        ContactFactory contactFactory = new ContactFactoryImpl();
+        long start = System.nanoTime();
+        int found = 0;
+        for (int entry = 0; entry < snapshot.getContactCount(); entry++) {
+            Contact contact = snapshot.readContact(snapshot.getContactId(entry), contactFactory);
+            found += contact.getNotes().length() > 0 ? 1 : 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (found != snapshot.getContactCount()) throw new IllegalStateException();
+        return elapsed;
+    }
+
+    private static long readAtRandom(SnapshotReader snapshot, int[] ids) {
+        ContactFactory contactFactory = new ContactFactoryImpl();
+        long start = System.nanoTime();
+        for (int id : ids) {
+            if (snapshot.readContact(id, contactFactory) == null) throw new IllegalStateException("Missing contact " + id);
+        }
+        return System.nanoTime() - start;
+    }
+}